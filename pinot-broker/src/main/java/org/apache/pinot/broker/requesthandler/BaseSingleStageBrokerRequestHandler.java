@@ -28,8 +28,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
@@ -56,6 +58,7 @@ import org.apache.pinot.broker.api.AccessControl;
 import org.apache.pinot.broker.broker.AccessControlFactory;
 import org.apache.pinot.broker.querylog.QueryLogger;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
+import org.apache.pinot.broker.routing.manager.BaseBrokerRoutingManager;
 import org.apache.pinot.common.config.provider.TableCache;
 import org.apache.pinot.common.http.MultiHttpRequest;
 import org.apache.pinot.common.http.MultiHttpRequestResponse;
@@ -181,6 +184,12 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
   protected BlockingQueue<Pair<String, String>> _multistageCompileQueryQueue;
   protected ImplicitHybridTableRouteProvider _implicitHybridTableRouteProvider;
   protected LogicalTableRouteProvider _logicalTableRouteProvider;
+  @Nullable
+  protected final BrokerResultCache _resultCache;
+  @Nullable
+  protected final BrokerQueryCoalescer _queryCoalescer;
+  @Nullable
+  protected final RollupQueryRewriter _rollupQueryRewriter;
 
   public BaseSingleStageBrokerRequestHandler(PinotConfiguration config, String brokerId,
       BrokerRequestIdGenerator requestIdGenerator, RoutingManager routingManager,
@@ -220,6 +229,13 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     _implicitHybridTableRouteProvider = new ImplicitHybridTableRouteProvider();
     _logicalTableRouteProvider = new LogicalTableRouteProvider(multiClusterRoutingContext);
 
+    _resultCache = BrokerResultCache.fromConfig(_config);
+    if (_resultCache != null && routingManager instanceof BaseBrokerRoutingManager) {
+      ((BaseBrokerRoutingManager) routingManager).addRoutingChangeListener(_resultCache::invalidateTable);
+    }
+    _queryCoalescer = BrokerQueryCoalescer.fromConfig(_config);
+    _rollupQueryRewriter = RollupQueryRewriter.fromConfig(_config, tableCache);
+
     LOGGER.info("Initialized {} with broker id: {}, timeout: {}ms, query response limit: {}, "
             + "default query limit {}, query log max length: {}, query log max rate: {}, query cancellation "
             + "enabled: {}", getClass().getSimpleName(), _brokerId, _brokerTimeoutMs, _queryResponseLimit,
@@ -559,6 +575,16 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
       return BrokerResponseNative.NO_TABLE_RESULT;
     }
 
+    // Answer the query from a rollup table when possible
+    if (_rollupQueryRewriter != null && logicalTableConfig == null) {
+      TableRouteInfo rollupRouteInfo =
+          _rollupQueryRewriter.getRollupRouteInfo(serverPinotQuery, routeInfo, selectedRoutingManager);
+      if (rollupRouteInfo != null) {
+        routeInfo = rollupRouteInfo;
+        _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.ROLLUP_QUERIES, 1);
+      }
+    }
+
     String offlineTableName = routeInfo.getOfflineTableName();
     String realtimeTableName = routeInfo.getRealtimeTableName();
     TableConfig offlineTableConfig = routeInfo.getOfflineTableConfig();
@@ -672,6 +698,10 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     // Calculate routing table for the query
     // TODO: Modify RoutingManager interface to directly take PinotQuery
     long routingStartTimeNs = System.nanoTime();
+    // Read the result cache generation before routing, so that the result is not cached if the routing changes while
+    // the query is in flight
+    long resultCacheGeneration =
+        _resultCache != null ? _resultCache.getGeneration(offlineTableName, realtimeTableName) : 0;
     routeProvider.calculateRoutes(routeInfo, selectedRoutingManager, offlineBrokerRequest, realtimeBrokerRequest,
         requestId);
 
@@ -738,6 +768,31 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
             schema, query, database, queryWasLogged);
       }
     }
+    // Build the result cache and query coalescing key before the per-request query options (e.g. remaining timeout)
+    // are set. Queries on logical tables, explain, traced queries and queries with broker side errors are neither
+    // cached nor coalesced.
+    BrokerResultCache.Key resultCacheKey = null;
+    BrokerResultCache.Key queryCoalescingKey = null;
+    if ((_resultCache != null || _queryCoalescer != null) && logicalTableConfig == null && !pinotQuery.isExplain()
+        && errorMsgs.isEmpty() && !requestContext.isSampledRequest() && !Boolean.parseBoolean(
+        pinotQuery.getQueryOptions().get(CommonConstants.Broker.Request.TRACE))) {
+      boolean useResultCache =
+          _resultCache != null && QueryOptionsUtils.isUseResultCache(pinotQuery.getQueryOptions(), true);
+      boolean useQueryCoalescing =
+          _queryCoalescer != null && QueryOptionsUtils.isUseQueryCoalescing(pinotQuery.getQueryOptions(), true);
+      if (useResultCache || useQueryCoalescing) {
+        BrokerResultCache.Key key =
+            BrokerResultCache.buildKey(pinotQuery, offlineBrokerRequest, routeInfo.getOfflineRoutingTable(),
+                realtimeBrokerRequest, routeInfo.getRealtimeRoutingTable());
+        resultCacheKey = useResultCache ? key : null;
+        queryCoalescingKey = useQueryCoalescing ? key : null;
+      }
+    }
+    // Rate at which the table sampler selects the segments, used to extrapolate the aggregation results to the whole
+    // table
+    Double samplingRate = logicalTableConfig == null ? getSamplingRate(selectedRoutingManager,
+        pinotQuery.getQueryOptions(), offlineBrokerRequest != null ? offlineTableName : null,
+        realtimeBrokerRequest != null ? realtimeTableName : null) : null;
     long routingEndTimeNs = System.nanoTime();
     _brokerMetrics.addPhaseTiming(rawTableName, BrokerQueryPhase.QUERY_ROUTING,
         routingEndTimeNs - routingStartTimeNs);
@@ -831,30 +886,80 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
         realtimeExecutionServers = null;
       }
     }
-    BrokerResponseNative brokerResponse;
-    if (isQueryCancellationEnabled()) {
-      // Start to track the running query for cancellation just before sending it out to servers to avoid any
-      // potential failures that could happen before sending it out, like failures to calculate the routing table etc.
-      // TODO: Even tracking the query as late as here, a potential race condition between calling cancel API and
-      //       query being sent out to servers can still happen. If cancel request arrives earlier than query being
-      //       sent out to servers, the servers miss the cancel request and continue to run the queries. The users
-      //       can always list the running queries and cancel query again until it ends. Just that such race
-      //       condition makes cancel API less reliable. This should be rare as it assumes sending queries out to
-      //       servers takes time, but will address later if needed.
-      String clientRequestId = extractClientRequestId(sqlNodeAndOptions);
-      onQueryStart(requestId, clientRequestId, query,
-          new QueryServers(query, offlineExecutionServers, realtimeExecutionServers));
+    BrokerResponseNative brokerResponse = resultCacheKey != null ? _resultCache.get(resultCacheKey) : null;
+    boolean resultCacheHit = brokerResponse != null;
+    if (resultCacheHit) {
+      _brokerMetrics.addMeteredGlobalValue(BrokerMeter.RESULT_CACHE_HITS, 1);
+    }
+    // Wait for the response of an identical in-flight query if any, otherwise become the leader for the identical
+    // queries arriving while this one is in flight
+    boolean queryCoalescingLeader = false;
+    boolean queryCoalescingFollower = false;
+    if (brokerResponse == null && queryCoalescingKey != null) {
+      CompletableFuture<BrokerResponseNative> leaderFuture = _queryCoalescer.join(queryCoalescingKey);
+      if (leaderFuture == null) {
+        queryCoalescingLeader = true;
+        _brokerMetrics.addMeteredGlobalValue(BrokerMeter.QUERY_COALESCING_LEADERS, 1);
+      } else {
+        try {
+          // NOTE: Null response means the leader failed, in which case the query is executed independently
+          brokerResponse = BrokerQueryCoalescer.getFollowerResponse(leaderFuture, remainingTimeMs);
+        } catch (TimeoutException e) {
+          LOGGER.info("Timed out waiting for the response of an identical in-flight query {}: {}", requestId, query);
+          brokerResponse = new BrokerResponseNative(QueryErrorCode.BROKER_TIMEOUT,
+              "Timed out waiting for the response of an identical in-flight query");
+        }
+        if (brokerResponse != null) {
+          queryCoalescingFollower = true;
+          _brokerMetrics.addMeteredGlobalValue(BrokerMeter.QUERY_COALESCING_FOLLOWERS, 1);
+        }
+      }
+    }
+    if (brokerResponse == null) {
       try {
-        brokerResponse = processBrokerRequest(requestId, brokerRequest, serverBrokerRequest, routeInfo,
-            remainingTimeMs, serverStats, requestContext);
-        brokerResponse.setClientRequestId(clientRequestId);
+        if (isQueryCancellationEnabled()) {
+          // Start to track the running query for cancellation just before sending it out to servers to avoid any
+          // potential failures that could happen before sending it out, like failures to calculate the routing table
+          // etc.
+          // TODO: Even tracking the query as late as here, a potential race condition between calling cancel API and
+          //       query being sent out to servers can still happen. If cancel request arrives earlier than query being
+          //       sent out to servers, the servers miss the cancel request and continue to run the queries. The users
+          //       can always list the running queries and cancel query again until it ends. Just that such race
+          //       condition makes cancel API less reliable. This should be rare as it assumes sending queries out to
+          //       servers takes time, but will address later if needed.
+          String clientRequestId = extractClientRequestId(sqlNodeAndOptions);
+          onQueryStart(requestId, clientRequestId, query,
+              new QueryServers(query, offlineExecutionServers, realtimeExecutionServers));
+          try {
+            brokerResponse = processBrokerRequest(requestId, brokerRequest, serverBrokerRequest, routeInfo,
+                remainingTimeMs, serverStats, requestContext);
+            brokerResponse.setClientRequestId(clientRequestId);
+          } finally {
+            onQueryFinish(requestId);
+            LOGGER.debug("Remove track of running query: {}", requestId);
+          }
+        } else {
+          brokerResponse = processBrokerRequest(requestId, brokerRequest, serverBrokerRequest, routeInfo,
+              remainingTimeMs, serverStats, requestContext);
+        }
+        ResultTable resultTable = brokerResponse.getResultTable();
+        if (samplingRate != null && resultTable != null) {
+          SampledAggregationExtrapolator.extrapolate(pinotQuery, resultTable, samplingRate);
+        }
       } finally {
-        onQueryFinish(requestId);
-        LOGGER.debug("Remove track of running query: {}", requestId);
+        if (queryCoalescingLeader) {
+          _queryCoalescer.complete(queryCoalescingKey, brokerResponse);
+        }
+      }
+    }
+    if (resultCacheKey != null && !resultCacheHit) {
+      // A follower gets the response of its leader, which puts it into the cache when the leader uses the cache
+      if (queryCoalescingFollower) {
+        _brokerMetrics.addMeteredGlobalValue(BrokerMeter.RESULT_CACHE_COALESCED, 1);
+      } else {
+        _brokerMetrics.addMeteredGlobalValue(BrokerMeter.RESULT_CACHE_MISSES, 1);
+        _resultCache.put(resultCacheKey, resultCacheGeneration, brokerResponse);
       }
-    } else {
-      brokerResponse = processBrokerRequest(requestId, brokerRequest, serverBrokerRequest, routeInfo,
-          remainingTimeMs, serverStats, requestContext);
     }
     brokerResponse.setTablesQueried(Set.of(rawTableName));
     brokerResponse.setPools(Stream.concat(
@@ -1997,6 +2102,28 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     return columnName;
   }
 
+  /**
+   * Returns the rate at which the table sampler requested in the query options selects the segments when the
+   * aggregation results should be extrapolated to the whole table, or {@code null} otherwise. For hybrid tables, both
+   * the offline and the realtime table must sample the segments with the same rate.
+   */
+  @Nullable
+  private static Double getSamplingRate(RoutingManager routingManager, Map<String, String> queryOptions,
+      @Nullable String offlineTableName, @Nullable String realtimeTableName) {
+    String samplerName = QueryOptionsUtils.getTableSampler(queryOptions);
+    if (samplerName == null || !QueryOptionsUtils.isExtrapolateSampledAggregations(queryOptions)) {
+      return null;
+    }
+    Double offlineSamplingRate =
+        offlineTableName != null ? routingManager.getSamplingRate(offlineTableName, samplerName) : null;
+    Double realtimeSamplingRate =
+        realtimeTableName != null ? routingManager.getSamplingRate(realtimeTableName, samplerName) : null;
+    if (offlineTableName != null && realtimeTableName != null) {
+      return Objects.equals(offlineSamplingRate, realtimeSamplingRate) ? offlineSamplingRate : null;
+    }
+    return offlineTableName != null ? offlineSamplingRate : realtimeSamplingRate;
+  }
+
   /**
    * Sets the query timeout (remaining time in milliseconds) into the query options, and returns the remaining time in
    * milliseconds.
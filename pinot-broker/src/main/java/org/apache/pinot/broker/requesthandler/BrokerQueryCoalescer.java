@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Broker;
+
+
+/**
+ * Single-flight layer for single-stage queries on the broker.
+ * <p>The first query for a {@link BrokerResultCache.Key} (the broker query, the rewritten server queries and the
+ * segments they are routed to) becomes the leader and is executed as usual. Identical queries arriving while the
+ * leader is in flight become followers: they wait for the leader's response and return a copy of it instead of being
+ * sent to the servers. Once the leader completes, the next identical query becomes a new leader.
+ * <p>Followers get a copy of the result table (including the rows), the exceptions and the server counts of the
+ * leader's response, so that the responses can be modified independently. Execution stats reflect that no server was
+ * queried for the follower. Followers do not put the response into the result cache, which is left to the leader, and
+ * are counted as coalesced instead of result cache misses.
+ */
+public class BrokerQueryCoalescer {
+  private final ConcurrentHashMap<BrokerResultCache.Key, CompletableFuture<BrokerResponseNative>> _inFlightQueries =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Returns the query coalescer configured for the broker, or {@code null} if it is not enabled.
+   */
+  @Nullable
+  public static BrokerQueryCoalescer fromConfig(PinotConfiguration config) {
+    return config.getProperty(Broker.CONFIG_OF_ENABLE_QUERY_COALESCING, Broker.DEFAULT_ENABLE_QUERY_COALESCING)
+        ? new BrokerQueryCoalescer() : null;
+  }
+
+  /**
+   * Joins the in-flight query for the given key. Returns {@code null} if there is no in-flight query, in which case the
+   * caller becomes the leader and must call {@link #complete(BrokerResultCache.Key, BrokerResponseNative)} once done.
+   * Otherwise, returns the future of the leader's response.
+   */
+  @Nullable
+  public CompletableFuture<BrokerResponseNative> join(BrokerResultCache.Key key) {
+    return _inFlightQueries.putIfAbsent(key, new CompletableFuture<>());
+  }
+
+  /**
+   * Completes the in-flight query for the given key with the leader's response, or {@code null} if the leader failed
+   * to produce one, in which case the followers execute the query themselves. Must be called from the leader thread
+   * before the response gets further modified.
+   */
+  public void complete(BrokerResultCache.Key key, @Nullable BrokerResponseNative brokerResponse) {
+    CompletableFuture<BrokerResponseNative> leaderFuture = _inFlightQueries.remove(key);
+    if (leaderFuture != null) {
+      leaderFuture.complete(brokerResponse != null ? copy(brokerResponse) : null);
+    }
+  }
+
+  /**
+   * Waits for the leader's response and returns a copy of it, or {@code null} if the leader failed to produce one.
+   */
+  @Nullable
+  public static BrokerResponseNative getFollowerResponse(CompletableFuture<BrokerResponseNative> leaderFuture,
+      long timeoutMs)
+      throws TimeoutException, InterruptedException {
+    BrokerResponseNative brokerResponse;
+    try {
+      brokerResponse = leaderFuture.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      return null;
+    }
+    return brokerResponse != null ? copy(brokerResponse) : null;
+  }
+
+  private static BrokerResponseNative copy(BrokerResponseNative brokerResponse) {
+    BrokerResponseNative copy = new BrokerResponseNative();
+    ResultTable resultTable = brokerResponse.getResultTable();
+    if (resultTable != null) {
+      copy.setResultTable(BrokerResultCache.copyResultTable(resultTable));
+    }
+    copy.setExceptions(new ArrayList<>(brokerResponse.getExceptions()));
+    copy.setNumServersQueried(brokerResponse.getNumServersQueried());
+    copy.setNumServersResponded(brokerResponse.getNumServersResponded());
+    copy.setTotalDocs(brokerResponse.getTotalDocs());
+    copy.setNumGroupsLimitReached(brokerResponse.isNumGroupsLimitReached());
+    copy.setNumGroupsWarningLimitReached(brokerResponse.isNumGroupsWarningLimitReached());
+    copy.setGroupsTrimmed(brokerResponse.isGroupsTrimmed());
+    return copy;
+  }
+
+  @VisibleForTesting
+  int getNumInFlightQueries() {
+    return _inFlightQueries.size();
+  }
+}
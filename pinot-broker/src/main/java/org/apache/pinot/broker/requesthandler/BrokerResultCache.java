@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.core.routing.SegmentsToQuery;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Broker;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+
+
+/**
+ * Size bounded cache of single-stage query results on the broker.
+ * <p>The cache is keyed on the broker query, the rewritten server queries (which include the time boundary filter for
+ * hybrid tables and the query options affecting the result) and the set of segments each of them is routed to. The
+ * broker query is part of the key because the broker side processing (e.g. gapfill) is stripped from the server
+ * queries. Entries are invalidated through {@link #invalidateTable(String)} when the routing of one of the queried
+ * tables changes, and expire after a configurable TTL. The TTL is shorter for queries touching a REALTIME table
+ * because the consuming segments keep ingesting data without any routing change.
+ * <p>Each table has a generation which is bumped when the table is invalidated. The generation read before routing a
+ * query must be passed back when caching its result, so that the result of a query routed before an invalidation is
+ * not cached after the invalidation removed the entries of the table.
+ * <p>Only the result table and the result level flags are cached. The rows are copied when cached and when returned,
+ * so that callers modifying the returned rows do not affect the cache. Execution stats of a cache hit reflect that no
+ * server was queried.
+ */
+public class BrokerResultCache {
+  private final Cache<Key, Entry> _cache;
+  private final ConcurrentHashMap<String, AtomicLong> _tableGenerations = new ConcurrentHashMap<>();
+  private final long _offlineTtlMs;
+  private final long _realtimeTtlMs;
+
+  public BrokerResultCache(long maxRows, long offlineTtlMs, long realtimeTtlMs) {
+    _offlineTtlMs = offlineTtlMs;
+    _realtimeTtlMs = realtimeTtlMs;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxRows)
+        .weigher((Key key, Entry entry) -> entry._resultTable.getRows().size() + 1)
+        .expireAfterWrite(Math.max(offlineTtlMs, realtimeTtlMs), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the result cache configured for the broker, or {@code null} if it is not enabled.
+   */
+  @Nullable
+  public static BrokerResultCache fromConfig(PinotConfiguration config) {
+    if (!config.getProperty(Broker.CONFIG_OF_ENABLE_RESULT_CACHE, Broker.DEFAULT_ENABLE_RESULT_CACHE)) {
+      return null;
+    }
+    return new BrokerResultCache(
+        config.getProperty(Broker.CONFIG_OF_RESULT_CACHE_MAX_ROWS, Broker.DEFAULT_RESULT_CACHE_MAX_ROWS),
+        config.getProperty(Broker.CONFIG_OF_RESULT_CACHE_OFFLINE_TTL_MS, Broker.DEFAULT_RESULT_CACHE_OFFLINE_TTL_MS),
+        config.getProperty(Broker.CONFIG_OF_RESULT_CACHE_REALTIME_TTL_MS,
+            Broker.DEFAULT_RESULT_CACHE_REALTIME_TTL_MS));
+  }
+
+  /**
+   * Builds the cache key for the broker query and the routed OFFLINE and REALTIME requests. The same key identifies
+   * identical in-flight queries for {@link BrokerQueryCoalescer}. Must be called before the per-request query options
+   * (e.g. remaining timeout) are set on the requests.
+   */
+  public static Key buildKey(PinotQuery brokerQuery, @Nullable BrokerRequest offlineBrokerRequest,
+      @Nullable Map<ServerInstance, SegmentsToQuery> offlineRoutingTable, @Nullable BrokerRequest realtimeBrokerRequest,
+      @Nullable Map<ServerInstance, SegmentsToQuery> realtimeRoutingTable) {
+    return new Key(getQuery(brokerQuery), getQuery(offlineBrokerRequest), getSegments(offlineRoutingTable),
+        getQuery(realtimeBrokerRequest), getSegments(realtimeRoutingTable));
+  }
+
+  @Nullable
+  private static PinotQuery getQuery(@Nullable BrokerRequest brokerRequest) {
+    return brokerRequest != null ? getQuery(brokerRequest.getPinotQuery()) : null;
+  }
+
+  private static PinotQuery getQuery(PinotQuery query) {
+    PinotQuery pinotQuery = query.deepCopy();
+    Map<String, String> queryOptions = pinotQuery.getQueryOptions();
+    if (queryOptions != null) {
+      queryOptions.remove(QueryOptionKey.USE_RESULT_CACHE);
+      queryOptions.remove(QueryOptionKey.USE_QUERY_COALESCING);
+      if (queryOptions.isEmpty()) {
+        pinotQuery.setQueryOptions(null);
+      }
+    }
+    return pinotQuery;
+  }
+
+  private static List<String> getSegments(@Nullable Map<ServerInstance, SegmentsToQuery> routingTable) {
+    if (routingTable == null) {
+      return List.of();
+    }
+    List<String> segments = new ArrayList<>();
+    for (SegmentsToQuery segmentsToQuery : routingTable.values()) {
+      segments.addAll(segmentsToQuery.getSegments());
+      segments.addAll(segmentsToQuery.getOptionalSegments());
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  /**
+   * Returns a new response holding the cached result for the given key, or {@code null} if there is no valid entry.
+   */
+  @Nullable
+  public BrokerResponseNative get(Key key) {
+    Entry entry = _cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() >= entry._expirationTimeMs) {
+      _cache.invalidate(key);
+      return null;
+    }
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    brokerResponse.setResultTable(copyResultTable(entry._resultTable));
+    brokerResponse.setTotalDocs(entry._totalDocs);
+    brokerResponse.setNumGroupsLimitReached(entry._numGroupsLimitReached);
+    brokerResponse.setNumGroupsWarningLimitReached(entry._numGroupsWarningLimitReached);
+    brokerResponse.setGroupsTrimmed(entry._groupsTrimmed);
+    return brokerResponse;
+  }
+
+  /**
+   * Returns the current generation of the given tables, which changes every time one of the tables is invalidated.
+   * Must be read before the query is routed, and passed to {@link #put(Key, long, BrokerResponseNative)}.
+   */
+  public long getGeneration(@Nullable String offlineTableName, @Nullable String realtimeTableName) {
+    return getTableGeneration(offlineTableName) + getTableGeneration(realtimeTableName);
+  }
+
+  private long getGeneration(Key key) {
+    return getGeneration(key._offlineQuery != null ? key._offlineQuery.getDataSource().getTableName() : null,
+        key._realtimeQuery != null ? key._realtimeQuery.getDataSource().getTableName() : null);
+  }
+
+  private long getTableGeneration(@Nullable String tableNameWithType) {
+    if (tableNameWithType == null) {
+      return 0;
+    }
+    AtomicLong tableGeneration = _tableGenerations.get(tableNameWithType);
+    return tableGeneration != null ? tableGeneration.get() : 0;
+  }
+
+  /**
+   * Caches the result of the given response if it is complete, i.e. all queried servers responded without exception,
+   * and none of the queried tables was invalidated since the given generation was read.
+   */
+  public void put(Key key, long generation, BrokerResponseNative brokerResponse) {
+    ResultTable resultTable = brokerResponse.getResultTable();
+    if (resultTable == null || !brokerResponse.getExceptions().isEmpty()
+        || brokerResponse.getNumServersResponded() != brokerResponse.getNumServersQueried()
+        || getGeneration(key) != generation) {
+      return;
+    }
+    long ttlMs = key._realtimeQuery != null ? _realtimeTtlMs : _offlineTtlMs;
+    Entry entry = new Entry(copyResultTable(resultTable), brokerResponse, System.currentTimeMillis() + ttlMs);
+    _cache.put(key, entry);
+    // The table might have been invalidated after the generation check but before its entries were removed
+    if (getGeneration(key) != generation) {
+      _cache.asMap().remove(key, entry);
+    }
+  }
+
+  /**
+   * Removes all the cached results of queries hitting the given table.
+   */
+  public void invalidateTable(String tableNameWithType) {
+    // NOTE: Bump the generation before removing the entries so that a concurrent put either sees the new generation or
+    //       puts its entry before it is removed
+    _tableGenerations.computeIfAbsent(tableNameWithType, k -> new AtomicLong()).incrementAndGet();
+    _cache.asMap().keySet().removeIf(key -> key.hitsTable(tableNameWithType));
+  }
+
+  /**
+   * Returns a copy of the given result table, where the rows and the array values are copied.
+   */
+  static ResultTable copyResultTable(ResultTable resultTable) {
+    List<Object[]> rows = resultTable.getRows();
+    List<Object[]> rowsCopy = new ArrayList<>(rows.size());
+    for (Object[] row : rows) {
+      Object[] rowCopy = new Object[row.length];
+      for (int i = 0; i < row.length; i++) {
+        Object value = row[i];
+        rowCopy[i] = value != null && value.getClass().isArray() ? ObjectUtils.clone(value) : value;
+      }
+      rowsCopy.add(rowCopy);
+    }
+    return new ResultTable(resultTable.getDataSchema(), rowsCopy);
+  }
+
+  @VisibleForTesting
+  long size() {
+    return _cache.size();
+  }
+
+  public static class Key {
+    private final PinotQuery _brokerQuery;
+    private final PinotQuery _offlineQuery;
+    private final List<String> _offlineSegments;
+    private final PinotQuery _realtimeQuery;
+    private final List<String> _realtimeSegments;
+    private final int _hashCode;
+
+    private Key(PinotQuery brokerQuery, @Nullable PinotQuery offlineQuery, List<String> offlineSegments,
+        @Nullable PinotQuery realtimeQuery, List<String> realtimeSegments) {
+      _brokerQuery = brokerQuery;
+      _offlineQuery = offlineQuery;
+      _offlineSegments = offlineSegments;
+      _realtimeQuery = realtimeQuery;
+      _realtimeSegments = realtimeSegments;
+      _hashCode = Objects.hash(brokerQuery, offlineQuery, offlineSegments, realtimeQuery, realtimeSegments);
+    }
+
+    private boolean hitsTable(String tableNameWithType) {
+      return (_offlineQuery != null && tableNameWithType.equals(_offlineQuery.getDataSource().getTableName()))
+          || (_realtimeQuery != null && tableNameWithType.equals(_realtimeQuery.getDataSource().getTableName()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && _brokerQuery.equals(that._brokerQuery)
+          && Objects.equals(_offlineQuery, that._offlineQuery)
+          && _offlineSegments.equals(that._offlineSegments) && Objects.equals(_realtimeQuery, that._realtimeQuery)
+          && _realtimeSegments.equals(that._realtimeSegments);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  private static class Entry {
+    final ResultTable _resultTable;
+    final long _totalDocs;
+    final boolean _numGroupsLimitReached;
+    final boolean _numGroupsWarningLimitReached;
+    final boolean _groupsTrimmed;
+    final long _expirationTimeMs;
+
+    Entry(ResultTable resultTable, BrokerResponseNative brokerResponse, long expirationTimeMs) {
+      _resultTable = resultTable;
+      _totalDocs = brokerResponse.getTotalDocs();
+      _numGroupsLimitReached = brokerResponse.isNumGroupsLimitReached();
+      _numGroupsWarningLimitReached = brokerResponse.isNumGroupsWarningLimitReached();
+      _groupsTrimmed = brokerResponse.isGroupsTrimmed();
+      _expirationTimeMs = expirationTimeMs;
+    }
+  }
+}
@@ -473,6 +473,9 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
     int sortExchangeCopyThreshold = _config.getProperty(
         CommonConstants.Broker.CONFIG_OF_SORT_EXCHANGE_COPY_THRESHOLD,
         CommonConstants.Broker.DEFAULT_SORT_EXCHANGE_COPY_THRESHOLD);
+    long broadcastJoinRowCountThreshold = _config.getProperty(
+        CommonConstants.Broker.CONFIG_OF_BROADCAST_JOIN_ROW_COUNT_THRESHOLD,
+        CommonConstants.Broker.DEFAULT_BROADCAST_JOIN_ROW_COUNT_THRESHOLD);
     WorkerManager workerManager = QueryOptionsUtils.isMultiClusterRoutingEnabled(queryOptions, false)
         ? _multiClusterWorkerManager : _workerManager;
     return QueryEnvironment.configBuilder()
@@ -497,6 +500,7 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
         .defaultHashFunction(defaultHashFunction)
         .defaultDisabledPlannerRules(_defaultDisabledPlannerRules)
         .defaultSortExchangeCopyLimit(sortExchangeCopyThreshold)
+        .defaultBroadcastJoinRowCountThreshold(broadcastJoinRowCountThreshold)
         .build();
   }
 
@@ -0,0 +1,589 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.request.Identifier;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.core.routing.ImplicitHybridTableRouteInfo;
+import org.apache.pinot.core.routing.RoutingManager;
+import org.apache.pinot.core.routing.TableRouteInfo;
+import org.apache.pinot.core.routing.timeboundary.TimeBoundaryInfo;
+import org.apache.pinot.segment.spi.AggregationFunctionType;
+import org.apache.pinot.spi.config.provider.TableConfigChangeListener;
+import org.apache.pinot.spi.config.table.QueryConfig;
+import org.apache.pinot.spi.config.table.RollupConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.DateTimeFieldSpec;
+import org.apache.pinot.spi.data.DateTimeFormatSpec;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Broker;
+import org.apache.pinot.spi.utils.TimeUtils;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+import org.apache.pinot.sql.FilterKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code RollupQueryRewriter} answers the single-stage aggregation queries on a table from the rollup tables
+ * registered for it (see {@link RollupConfig}), similar to the materialized views.
+ * <p>A rollup table is compatible with a query when:
+ * <ul>
+ *   <li>The query is an aggregation or group-by query without subquery</li>
+ *   <li>All the columns referenced outside the aggregations are dimensions of the rollup table not erased by the
+ *   rollup, with the same data type as in the source table</li>
+ *   <li>The aggregations are SUM/MIN/MAX over the metrics aggregated with the same function in the rollup, or
+ *   MIN/MAX/DISTINCTCOUNT over the dimensions</li>
+ *   <li>The time column only appears in range filters and DATETRUNC, aligned with the time bucket of the rollup</li>
+ * </ul>
+ * <p>The rollup table covers the time range from the min start time of its segments to its latest time bucket (both
+ * tracked by the time boundary manager of the rollup table), and the query time range must start within it, so that a
+ * rollup table with a shorter retention than the source table is not used for older data. When the query time range is
+ * fully covered, the query is routed to the rollup table only. Otherwise,
+ * the uncovered tail is answered by the REALTIME part of the source table, the same way as a hybrid table with the time
+ * boundary at the end of the covered time range. The query is routed to the source table as usual when the tail cannot
+ * be answered that way (e.g. for OFFLINE only source tables). Among the compatible rollup tables, the one with the
+ * coarsest time bucket is picked.
+ */
+public class RollupQueryRewriter implements TableConfigChangeListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RollupQueryRewriter.class);
+  private static final String DATE_TRUNC = "datetrunc";
+  private static final String FILTER = "filter";
+
+  private final TableCache _tableCache;
+  // Map from the raw source table name to the rollup tables, sorted by the time bucket size in descending order
+  private volatile Map<String, List<RollupTable>> _rollupTablesMap = Map.of();
+
+  @VisibleForTesting
+  RollupQueryRewriter(TableCache tableCache) {
+    _tableCache = tableCache;
+    tableCache.registerTableConfigChangeListener(this);
+  }
+
+  /**
+   * Returns the rollup query rewriter configured for the broker, or {@code null} if it is not enabled.
+   */
+  @Nullable
+  public static RollupQueryRewriter fromConfig(PinotConfiguration config, TableCache tableCache) {
+    return config.getProperty(Broker.CONFIG_OF_ENABLE_ROLLUP_QUERY_REWRITE, Broker.DEFAULT_ENABLE_ROLLUP_QUERY_REWRITE)
+        ? new RollupQueryRewriter(tableCache) : null;
+  }
+
+  @Override
+  public void onChange(List<TableConfig> tableConfigList) {
+    Map<String, List<RollupTable>> rollupTablesMap = new HashMap<>();
+    for (TableConfig tableConfig : tableConfigList) {
+      QueryConfig queryConfig = tableConfig.getQueryConfig();
+      RollupConfig rollupConfig = queryConfig != null ? queryConfig.getRollupConfig() : null;
+      if (rollupConfig == null) {
+        continue;
+      }
+      if (tableConfig.getTableType() != TableType.OFFLINE) {
+        LOGGER.warn("Ignoring rollup config for non-OFFLINE table: {}", tableConfig.getTableName());
+        continue;
+      }
+      RollupTable rollupTable;
+      try {
+        rollupTable = new RollupTable(tableConfig.getTableName(), rollupConfig);
+      } catch (Exception e) {
+        LOGGER.warn("Ignoring invalid rollup config for table: {}", tableConfig.getTableName(), e);
+        continue;
+      }
+      rollupTablesMap.computeIfAbsent(rollupConfig.getSourceTableName(), k -> new ArrayList<>()).add(rollupTable);
+    }
+    for (List<RollupTable> rollupTables : rollupTablesMap.values()) {
+      rollupTables.sort(Comparator.comparingLong((RollupTable rollupTable) -> rollupTable._timeBucketMs).reversed());
+    }
+    _rollupTablesMap = rollupTablesMap;
+  }
+
+  /**
+   * Returns the route to answer the given server query from a rollup table, or {@code null} if the query should be
+   * routed to the queried table as usual.
+   *
+   * @param serverPinotQuery Compiled server query on the raw table name
+   * @param routeInfo Route for the queried table
+   * @param routingManager Routing manager providing the time range covered by the rollup tables
+   */
+  @Nullable
+  public TableRouteInfo getRollupRouteInfo(PinotQuery serverPinotQuery, TableRouteInfo routeInfo,
+      RoutingManager routingManager) {
+    String tableName = serverPinotQuery.getDataSource().getTableName();
+    if (tableName == null || serverPinotQuery.getDataSource().getSubquery() != null
+        || TableNameBuilder.getTableTypeFromTableName(tableName) != null) {
+      return null;
+    }
+    List<RollupTable> rollupTables = _rollupTablesMap.get(tableName);
+    if (rollupTables == null) {
+      return null;
+    }
+    Map<String, String> queryOptions = serverPinotQuery.getQueryOptions();
+    if (queryOptions != null && !QueryOptionsUtils.isUseRollupTables(queryOptions, true)) {
+      return null;
+    }
+    TableConfig tableConfig = routeInfo.getOfflineTableConfig();
+    if (tableConfig == null) {
+      tableConfig = routeInfo.getRealtimeTableConfig();
+    }
+    Schema schema = _tableCache.getSchema(tableName);
+    if (tableConfig == null || schema == null) {
+      return null;
+    }
+    String timeColumn = tableConfig.getValidationConfig().getTimeColumnName();
+    DateTimeFieldSpec timeFieldSpec = timeColumn != null ? schema.getSpecForTimeColumn(timeColumn) : null;
+    if (timeFieldSpec == null) {
+      return null;
+    }
+    DateTimeFormatSpec timeFormatSpec = timeFieldSpec.getFormatSpec();
+
+    for (RollupTable rollupTable : rollupTables) {
+      Schema rollupSchema = _tableCache.getSchema(TableNameBuilder.extractRawTableName(rollupTable._tableName));
+      if (rollupSchema == null) {
+        continue;
+      }
+      DateTimeFieldSpec rollupTimeFieldSpec = rollupSchema.getSpecForTimeColumn(timeColumn);
+      if (rollupTimeFieldSpec == null || !timeFormatSpec.equals(rollupTimeFieldSpec.getFormatSpec())) {
+        continue;
+      }
+      CompatibilityChecker checker =
+          new CompatibilityChecker(schema, rollupSchema, rollupTable, timeColumn, timeFormatSpec);
+      if (!checker.isCompatible(serverPinotQuery)) {
+        continue;
+      }
+      TableRouteInfo rollupRouteInfo =
+          getRollupRouteInfo(rollupTable, checker, routeInfo, routingManager, timeColumn, timeFormatSpec);
+      if (rollupRouteInfo != null) {
+        return rollupRouteInfo;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private TableRouteInfo getRollupRouteInfo(RollupTable rollupTable, CompatibilityChecker checker,
+      TableRouteInfo routeInfo, RoutingManager routingManager, String timeColumn, DateTimeFormatSpec timeFormatSpec) {
+    String rollupTableName = rollupTable._tableName;
+    TableConfig rollupTableConfig = _tableCache.getTableConfig(rollupTableName);
+    if (rollupTableConfig == null || !routingManager.routingExists(rollupTableName)
+        || routingManager.isTableDisabled(rollupTableName)) {
+      return null;
+    }
+    TimeBoundaryInfo rollupTimeBoundaryInfo = routingManager.getTimeBoundaryInfo(rollupTableName);
+    if (rollupTimeBoundaryInfo == null || !timeColumn.equals(rollupTimeBoundaryInfo.getTimeColumn())) {
+      return null;
+    }
+    // The rollup table covers the time range from the start of its oldest segment (which might have been purged by
+    // the retention earlier than the source table) to its latest (possibly partial) time bucket
+    Long coveredStartMs = routingManager.getMinStartTimeMs(rollupTableName);
+    if (coveredStartMs == null || checker._lowerBoundMs < coveredStartMs) {
+      return null;
+    }
+    long coveredEndMs = timeFormatSpec.fromFormatToMillis(rollupTimeBoundaryInfo.getTimeValue());
+    coveredEndMs -= Math.floorMod(coveredEndMs, rollupTable._timeBucketMs);
+    if (checker._lowerBoundMs >= coveredEndMs) {
+      return null;
+    }
+
+    ImplicitHybridTableRouteInfo rollupRouteInfo = new ImplicitHybridTableRouteInfo();
+    rollupRouteInfo.setOfflineTableName(rollupTableName);
+    rollupRouteInfo.setOfflineTableConfig(rollupTableConfig);
+    rollupRouteInfo.setOfflineRouteExists(true);
+    if (checker._upperBoundMs <= coveredEndMs) {
+      return rollupRouteInfo;
+    }
+
+    // Answer the uncovered tail from the REALTIME part of the source table
+    if (!routeInfo.hasRealtime() || !routeInfo.isRealtimeRouteExists()) {
+      return null;
+    }
+    String timeBoundary = timeFormatSpec.fromMillisToFormat(coveredEndMs - 1);
+    TimeBoundaryInfo sourceTimeBoundaryInfo = routeInfo.isHybrid() ? routeInfo.getTimeBoundaryInfo() : null;
+    if (sourceTimeBoundaryInfo != null && timeFormatSpec.fromFormatToMillis(sourceTimeBoundaryInfo.getTimeValue())
+        > timeFormatSpec.fromFormatToMillis(timeBoundary)) {
+      // Part of the tail is only available in the OFFLINE part of the source table
+      return null;
+    }
+    rollupRouteInfo.setRealtimeTableName(routeInfo.getRealtimeTableName());
+    rollupRouteInfo.setRealtimeTableConfig(routeInfo.getRealtimeTableConfig());
+    rollupRouteInfo.setRealtimeRouteExists(true);
+    rollupRouteInfo.setRealtimeTableDisabled(routeInfo.isRealtimeTableDisabled());
+    rollupRouteInfo.setTimeBoundaryInfo(new TimeBoundaryInfo(timeColumn, timeBoundary));
+    return rollupRouteInfo;
+  }
+
+  @VisibleForTesting
+  Map<String, List<RollupTable>> getRollupTablesMap() {
+    return _rollupTablesMap;
+  }
+
+  @VisibleForTesting
+  static class RollupTable {
+    final String _tableName;
+    final long _timeBucketMs;
+    // Map from metric column to the aggregation type
+    final Map<String, AggregationFunctionType> _aggregationTypes = new HashMap<>();
+    final Set<String> _erasedDimensions;
+
+    RollupTable(String tableName, RollupConfig rollupConfig) {
+      _tableName = tableName;
+      _timeBucketMs = TimeUtils.convertPeriodToMillis(rollupConfig.getRoundBucketTimePeriod());
+      Map<String, String> aggregationTypes = rollupConfig.getAggregationTypes();
+      if (aggregationTypes != null) {
+        for (Map.Entry<String, String> entry : aggregationTypes.entrySet()) {
+          _aggregationTypes.put(entry.getKey(), AggregationFunctionType.getAggregationFunctionType(entry.getValue()));
+        }
+      }
+      List<String> erasedDimensions = rollupConfig.getErasedDimensions();
+      _erasedDimensions = erasedDimensions != null ? new HashSet<>(erasedDimensions) : Set.of();
+    }
+
+    AggregationFunctionType getAggregationType(String metric) {
+      // Same as the merge-rollup task, metrics are aggregated with SUM by default
+      return _aggregationTypes.getOrDefault(metric, AggregationFunctionType.SUM);
+    }
+  }
+
+  /**
+   * Checks whether a query can be answered from a rollup table, and extracts the query time range.
+   */
+  private static class CompatibilityChecker {
+    final Schema _schema;
+    final Schema _rollupSchema;
+    final RollupTable _rollupTable;
+    final String _timeColumn;
+    final DateTimeFormatSpec _timeFormatSpec;
+    // Size of a unit of the time column in millis, or -1 if not fixed (e.g. SIMPLE_DATE_FORMAT)
+    final long _timeUnitMs;
+
+    // Time range of the query from the top-level AND filters, lower bound inclusive and upper bound exclusive
+    long _lowerBoundMs = Long.MIN_VALUE;
+    long _upperBoundMs = Long.MAX_VALUE;
+    boolean _hasAggregation;
+
+    CompatibilityChecker(Schema schema, Schema rollupSchema, RollupTable rollupTable, String timeColumn,
+        DateTimeFormatSpec timeFormatSpec) {
+      _schema = schema;
+      _rollupSchema = rollupSchema;
+      _rollupTable = rollupTable;
+      _timeColumn = timeColumn;
+      _timeFormatSpec = timeFormatSpec;
+      switch (timeFormatSpec.getTimeFormat()) {
+        case EPOCH:
+          _timeUnitMs = timeFormatSpec.getColumnUnit().toMillis(timeFormatSpec.getColumnSize());
+          break;
+        case TIMESTAMP:
+          _timeUnitMs = 1;
+          break;
+        default:
+          _timeUnitMs = -1;
+          break;
+      }
+    }
+
+    boolean isCompatible(PinotQuery query) {
+      for (Expression expression : query.getSelectList()) {
+        if (!isCompatibleExpression(expression)) {
+          return false;
+        }
+      }
+      List<Expression> groupByList = query.getGroupByList();
+      if (groupByList != null) {
+        for (Expression expression : groupByList) {
+          if (!isCompatibleExpression(expression)) {
+            return false;
+          }
+        }
+      }
+      if (!_hasAggregation && (groupByList == null || groupByList.isEmpty())) {
+        return false;
+      }
+      List<Expression> orderByList = query.getOrderByList();
+      if (orderByList != null) {
+        for (Expression expression : orderByList) {
+          if (!isCompatibleExpression(expression)) {
+            return false;
+          }
+        }
+      }
+      if (query.getHavingExpression() != null && !isCompatibleExpression(query.getHavingExpression())) {
+        return false;
+      }
+      return query.getFilterExpression() == null || isCompatibleFilter(query.getFilterExpression(), true);
+    }
+
+    private boolean isCompatibleExpression(Expression expression) {
+      Identifier identifier = expression.getIdentifier();
+      if (identifier != null) {
+        return isDimension(identifier.getName());
+      }
+      Function function = expression.getFunctionCall();
+      if (function == null) {
+        return true;
+      }
+      String operator = function.getOperator();
+      if (operator.equals(FILTER)) {
+        // Filtered aggregation is not supported
+        return false;
+      }
+      if (AggregationFunctionType.isAggregationFunction(operator)) {
+        _hasAggregation = true;
+        return isCompatibleAggregation(function);
+      }
+      if (RequestUtils.canonicalizeFunctionName(operator).equals(DATE_TRUNC)) {
+        return isCompatibleDateTrunc(function);
+      }
+      for (Expression operand : function.getOperands()) {
+        if (!isCompatibleExpression(operand)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isCompatibleAggregation(Function function) {
+      List<Expression> operands = function.getOperands();
+      if (operands.isEmpty() || operands.get(0).getIdentifier() == null) {
+        return false;
+      }
+      for (int i = 1; i < operands.size(); i++) {
+        if (operands.get(i).getLiteral() == null) {
+          return false;
+        }
+      }
+      String column = operands.get(0).getIdentifier().getName();
+      AggregationFunctionType functionType = AggregationFunctionType.getAggregationFunctionType(function.getOperator());
+      switch (functionType) {
+        case SUM:
+          return isMetric(column) && _rollupTable.getAggregationType(column) == AggregationFunctionType.SUM;
+        case MIN:
+        case MAX:
+          return isDimension(column) || (isMetric(column) && _rollupTable.getAggregationType(column) == functionType);
+        case DISTINCTCOUNT:
+        case DISTINCTCOUNTBITMAP:
+        case DISTINCTCOUNTHLL:
+        case DISTINCTCOUNTHLLPLUS:
+        case DISTINCTCOUNTSMARTHLL:
+        case DISTINCTCOUNTULL:
+          return isDimension(column);
+        default:
+          return false;
+      }
+    }
+
+    /**
+     * DATETRUNC(unit, timeColumn[, inputTimeUnit[, 'UTC'[, outputTimeUnit]]]) is compatible when the truncation unit is
+     * a multiple of the time bucket.
+     */
+    private boolean isCompatibleDateTrunc(Function function) {
+      List<Expression> operands = function.getOperands();
+      if (operands.size() < 2) {
+        return false;
+      }
+      Identifier identifier = operands.get(1).getIdentifier();
+      if (identifier == null || !identifier.getName().equals(_timeColumn)) {
+        return false;
+      }
+      for (int i = 0; i < operands.size(); i++) {
+        if (i != 1 && operands.get(i).getLiteral() == null) {
+          return false;
+        }
+      }
+      if (operands.size() > 3 && !RequestUtils.getLiteralString(operands.get(3)).equalsIgnoreCase("UTC")) {
+        return false;
+      }
+      long truncateUnitMs;
+      switch (RequestUtils.getLiteralString(operands.get(0)).toUpperCase()) {
+        case "SECOND":
+          truncateUnitMs = TimeUnit.SECONDS.toMillis(1);
+          break;
+        case "MINUTE":
+          truncateUnitMs = TimeUnit.MINUTES.toMillis(1);
+          break;
+        case "HOUR":
+          truncateUnitMs = TimeUnit.HOURS.toMillis(1);
+          break;
+        case "DAY":
+        case "WEEK":
+        case "MONTH":
+        case "QUARTER":
+        case "YEAR":
+          // Boundaries of these units are all day boundaries in UTC
+          truncateUnitMs = TimeUnit.DAYS.toMillis(1);
+          break;
+        default:
+          return false;
+      }
+      return truncateUnitMs % _rollupTable._timeBucketMs == 0;
+    }
+
+    private boolean isCompatibleFilter(Expression filter, boolean topLevel) {
+      Function function = filter.getFunctionCall();
+      if (function == null) {
+        return isCompatibleExpression(filter);
+      }
+      String operator = function.getOperator();
+      List<Expression> operands = function.getOperands();
+      if (operator.equals(FilterKind.AND.name()) || operator.equals(FilterKind.OR.name()) || operator.equals(
+          FilterKind.NOT.name())) {
+        boolean childTopLevel = topLevel && operator.equals(FilterKind.AND.name());
+        for (Expression operand : operands) {
+          if (!isCompatibleFilter(operand, childTopLevel)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      Identifier identifier = operands.isEmpty() ? null : operands.get(0).getIdentifier();
+      if (identifier != null && identifier.getName().equals(_timeColumn)) {
+        try {
+          return isCompatibleTimeFilter(operator, operands, topLevel);
+        } catch (Exception e) {
+          // Invalid time value
+          return false;
+        }
+      }
+      return isCompatibleExpression(filter);
+    }
+
+    /**
+     * Time filter is compatible when it is a range filter with bounds aligned with the time bucket, i.e. the time range
+     * [lowerBound, upperBound) consists of whole time buckets.
+     */
+    private boolean isCompatibleTimeFilter(String operator, List<Expression> operands, boolean topLevel) {
+      for (int i = 1; i < operands.size(); i++) {
+        if (operands.get(i).getLiteral() == null) {
+          return false;
+        }
+      }
+      String lowerBound = null;
+      boolean lowerInclusive = false;
+      String upperBound = null;
+      boolean upperInclusive = false;
+      switch (FilterKind.valueOf(operator)) {
+        case GREATER_THAN:
+          lowerBound = RequestUtils.getLiteralString(operands.get(1));
+          break;
+        case GREATER_THAN_OR_EQUAL:
+          lowerBound = RequestUtils.getLiteralString(operands.get(1));
+          lowerInclusive = true;
+          break;
+        case LESS_THAN:
+          upperBound = RequestUtils.getLiteralString(operands.get(1));
+          break;
+        case LESS_THAN_OR_EQUAL:
+          upperBound = RequestUtils.getLiteralString(operands.get(1));
+          upperInclusive = true;
+          break;
+        case BETWEEN:
+          lowerBound = RequestUtils.getLiteralString(operands.get(1));
+          lowerInclusive = true;
+          upperBound = RequestUtils.getLiteralString(operands.get(2));
+          upperInclusive = true;
+          break;
+        case RANGE:
+          RangePredicate rangePredicate = new RangePredicate(ExpressionContext.forIdentifier(_timeColumn),
+              RequestUtils.getLiteralString(operands.get(1)));
+          if (!rangePredicate.getLowerBound().equals(RangePredicate.UNBOUNDED)) {
+            lowerBound = rangePredicate.getLowerBound();
+            lowerInclusive = rangePredicate.isLowerInclusive();
+          }
+          if (!rangePredicate.getUpperBound().equals(RangePredicate.UNBOUNDED)) {
+            upperBound = rangePredicate.getUpperBound();
+            upperInclusive = rangePredicate.isUpperInclusive();
+          }
+          break;
+        default:
+          return false;
+      }
+      if (lowerBound != null) {
+        long lowerBoundMs = toBucketBoundMs(lowerBound, !lowerInclusive);
+        if (lowerBoundMs == Long.MIN_VALUE) {
+          return false;
+        }
+        if (topLevel) {
+          _lowerBoundMs = Math.max(_lowerBoundMs, lowerBoundMs);
+        }
+      }
+      if (upperBound != null) {
+        long upperBoundMs = toBucketBoundMs(upperBound, upperInclusive);
+        if (upperBoundMs == Long.MIN_VALUE) {
+          return false;
+        }
+        if (topLevel) {
+          _upperBoundMs = Math.min(_upperBoundMs, upperBoundMs);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the bucket boundary in millis for the given time value (moved to the next time unit when requested), or
+     * {@link Long#MIN_VALUE} if it is not aligned with the time bucket.
+     */
+    private long toBucketBoundMs(String timeValue, boolean nextTimeUnit) {
+      long timeMs = _timeFormatSpec.fromFormatToMillis(timeValue);
+      if (nextTimeUnit) {
+        if (_timeUnitMs <= 0) {
+          return Long.MIN_VALUE;
+        }
+        timeMs += _timeUnitMs;
+      }
+      return Math.floorMod(timeMs, _rollupTable._timeBucketMs) == 0 ? timeMs : Long.MIN_VALUE;
+    }
+
+    private boolean isDimension(String column) {
+      if (column.equals(_timeColumn) || _rollupTable._erasedDimensions.contains(column)) {
+        return false;
+      }
+      FieldSpec rollupFieldSpec = _rollupSchema.getFieldSpecFor(column);
+      if (rollupFieldSpec == null || rollupFieldSpec.getFieldType() == FieldSpec.FieldType.METRIC) {
+        return false;
+      }
+      FieldSpec fieldSpec = _schema.getFieldSpecFor(column);
+      return fieldSpec != null && fieldSpec.getDataType() == rollupFieldSpec.getDataType()
+          && fieldSpec.isSingleValueField() == rollupFieldSpec.isSingleValueField();
+    }
+
+    private boolean isMetric(String column) {
+      FieldSpec rollupFieldSpec = _rollupSchema.getFieldSpecFor(column);
+      return rollupFieldSpec != null && rollupFieldSpec.getFieldType() == FieldSpec.FieldType.METRIC
+          && _schema.getFieldSpecFor(column) != null;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.segment.spi.AggregationFunctionType;
+
+
+/**
+ * Extrapolates the additive aggregation results of a query over the segments selected by a table sampler to the whole
+ * table.
+ * <p>When each segment is selected independently with probability {@code p}, dividing the sum over the selected
+ * segments by {@code p} gives an unbiased estimate of the sum over all the segments (Horvitz-Thompson estimator). Only
+ * the top-level (optionally filtered) COUNT and SUM aggregations in the select list are extrapolated. Other
+ * aggregations (e.g. AVG, MIN, MAX) are estimated as is from the sampled segments, and aggregations nested in other
+ * expressions as well as the HAVING clause are evaluated on the sampled values.
+ */
+public class SampledAggregationExtrapolator {
+  private static final Set<AggregationFunctionType> ADDITIVE_AGGREGATION_FUNCTION_TYPES =
+      EnumSet.of(AggregationFunctionType.COUNT, AggregationFunctionType.COUNTMV, AggregationFunctionType.SUM,
+          AggregationFunctionType.SUM0, AggregationFunctionType.SUMINT, AggregationFunctionType.SUMLONG,
+          AggregationFunctionType.SUMMV, AggregationFunctionType.SUMPRECISION);
+
+  private SampledAggregationExtrapolator() {
+  }
+
+  /**
+   * Extrapolates the additive aggregation results in the given result table in place with the given sampling rate.
+   */
+  public static void extrapolate(PinotQuery pinotQuery, ResultTable resultTable, double samplingRate) {
+    List<Expression> selectList = pinotQuery.getSelectList();
+    ColumnDataType[] columnDataTypes = resultTable.getDataSchema().getColumnDataTypes();
+    if (samplingRate >= 1 || selectList.size() != columnDataTypes.length) {
+      return;
+    }
+    List<Integer> columnIds = new ArrayList<>();
+    for (int i = 0; i < columnDataTypes.length; i++) {
+      if (isAdditiveAggregation(selectList.get(i))) {
+        columnIds.add(i);
+      }
+    }
+    if (columnIds.isEmpty()) {
+      return;
+    }
+    for (Object[] row : resultTable.getRows()) {
+      for (int columnId : columnIds) {
+        Object value = row[columnId];
+        if (value != null) {
+          row[columnId] = extrapolate(value, columnDataTypes[columnId], samplingRate);
+        }
+      }
+    }
+  }
+
+  private static boolean isAdditiveAggregation(Expression expression) {
+    Function function = expression.getFunctionCall();
+    if (function == null) {
+      return false;
+    }
+    String operator = function.getOperator();
+    if (operator.equals("as") || operator.equals("filter")) {
+      return isAdditiveAggregation(function.getOperands().get(0));
+    }
+    return AggregationFunctionType.isAggregationFunction(operator)
+        && ADDITIVE_AGGREGATION_FUNCTION_TYPES.contains(AggregationFunctionType.getAggregationFunctionType(operator));
+  }
+
+  private static Object extrapolate(Object value, ColumnDataType columnDataType, double samplingRate) {
+    switch (columnDataType) {
+      case LONG:
+        return Math.round(((Number) value).longValue() / samplingRate);
+      case DOUBLE:
+        return ((Number) value).doubleValue() / samplingRate;
+      case BIG_DECIMAL:
+        // BigDecimal values are formatted as String in the result table
+        BigDecimal bigDecimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+        BigDecimal extrapolated = bigDecimal.divide(BigDecimal.valueOf(samplingRate), MathContext.DECIMAL128);
+        return value instanceof BigDecimal ? extrapolated : extrapolated.toPlainString();
+      default:
+        return value;
+    }
+  }
+}
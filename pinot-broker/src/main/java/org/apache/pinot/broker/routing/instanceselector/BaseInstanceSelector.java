@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.helix.AccessOption;
@@ -106,6 +107,10 @@ public abstract class BaseInstanceSelector implements InstanceSelector {
   // Reduce this map to reduce garbage
   protected final Map<String, List<SegmentInstanceCandidate>> _oldSegmentCandidatesMap = new HashMap<>();
   protected Map<String, NewSegmentState> _newSegmentStateMap;
+  // Ideal state and external view instance state maps the old segment candidates were computed from. Used to reuse the
+  // candidates of the segments with unchanged assignment instead of recomputing them for every segment on each change.
+  protected final Map<String, Map<String, String>> _oldSegmentIdealStateMap = new HashMap<>();
+  protected final Map<String, Map<String, String>> _oldSegmentExternalViewMap = new HashMap<>();
 
   // _segmentStates is needed for instance selection (multi-threaded), so it is made volatile.
   protected volatile SegmentStates _segmentStates;
@@ -250,22 +255,43 @@ public abstract class BaseInstanceSelector implements InstanceSelector {
   /// segments. After this update:
   /// - Old segments' online instances should be tracked in _oldSegmentCandidatesMap
   /// - New segments' state (creation time and candidate instances) should be tracked in _newSegmentStateMap
+  ///
+  /// The candidates of an old segment are only recomputed when its ideal state or external view instance state map, or
+  /// the pool of its candidate instances has changed since the last update. This keeps the change processing cheap for
+  /// large tables where each change only touches a few segments.
   void updateSegmentMaps(IdealState idealState, ExternalView externalView, Set<String> onlineSegments,
       Map<String, Long> newSegmentCreationTimeMap) {
-    _oldSegmentCandidatesMap.clear();
+    _oldSegmentCandidatesMap.keySet().retainAll(onlineSegments);
+    _oldSegmentIdealStateMap.keySet().retainAll(_oldSegmentCandidatesMap.keySet());
+    _oldSegmentExternalViewMap.keySet().retainAll(_oldSegmentCandidatesMap.keySet());
     _newSegmentStateMap = new HashMap<>(HashUtil.getHashMapCapacity(newSegmentCreationTimeMap.size()));
 
     Map<String, Map<String, String>> idealStateAssignment = idealState.getRecord().getMapFields();
     Map<String, Map<String, String>> externalViewAssignment = externalView.getRecord().getMapFields();
     int numSinglePoolSegments = 0;
+    int numUnchangedSegments = 0;
     Set<Integer> pools = new HashSet<>();
     for (String segment : onlineSegments) {
       Map<String, String> idealStateInstanceStateMap = idealStateAssignment.get(segment);
-      // TODO: Verify whether sorting is actually needed
-      Map<String, String> sortedIdealStateMap = convertToSortedMap(idealStateInstanceStateMap);
       Long newSegmentCreationTimeMs = newSegmentCreationTimeMap.get(segment);
       Map<String, String> externalViewInstanceStateMap = externalViewAssignment.get(segment);
 
+      if (newSegmentCreationTimeMs == null && isOldSegmentUnchanged(segment, idealStateInstanceStateMap,
+          externalViewInstanceStateMap)) {
+        numUnchangedSegments++;
+        if (_emitSinglePoolSegmentsMetric && isSinglePoolSegment(idealStateInstanceStateMap, pools)) {
+          numSinglePoolSegments++;
+        }
+        continue;
+      }
+      // TODO: Verify whether sorting is actually needed
+      Map<String, String> sortedIdealStateMap = convertToSortedMap(idealStateInstanceStateMap);
+      if (newSegmentCreationTimeMs != null) {
+        _oldSegmentCandidatesMap.remove(segment);
+        _oldSegmentIdealStateMap.remove(segment);
+        _oldSegmentExternalViewMap.remove(segment);
+      }
+
       if (externalViewInstanceStateMap == null) {
         if (newSegmentCreationTimeMs != null) {
           // New segment
@@ -282,6 +308,8 @@ public abstract class BaseInstanceSelector implements InstanceSelector {
         } else {
           // Old segment
           _oldSegmentCandidatesMap.put(segment, Collections.emptyList());
+          _oldSegmentIdealStateMap.remove(segment);
+          _oldSegmentExternalViewMap.remove(segment);
         }
       } else {
         TreeSet<String> onlineInstances = getOnlineInstances(idealStateInstanceStateMap, externalViewInstanceStateMap);
@@ -310,25 +338,52 @@ public abstract class BaseInstanceSelector implements InstanceSelector {
             idealStateReplicaId++;
           }
           _oldSegmentCandidatesMap.put(segment, candidates);
+          // NOTE: Copy the instance state maps because the callers might modify them in place
+          _oldSegmentIdealStateMap.put(segment, Map.copyOf(idealStateInstanceStateMap));
+          _oldSegmentExternalViewMap.put(segment, Map.copyOf(externalViewInstanceStateMap));
         }
       }
-      if (_emitSinglePoolSegmentsMetric) {
-        pools.clear();
-        for (String instance : idealStateInstanceStateMap.keySet()) {
-          pools.add(getPool(instance));
-        }
-        if (pools.size() < 2) {
-          numSinglePoolSegments++;
-        }
+      if (_emitSinglePoolSegmentsMetric && isSinglePoolSegment(idealStateInstanceStateMap, pools)) {
+        numSinglePoolSegments++;
       }
     }
     if (_emitSinglePoolSegmentsMetric) {
       _brokerMetrics.addMeteredTableValue(_tableNameWithType, BrokerMeter.SINGLE_POOL_SEGMENTS, numSinglePoolSegments);
     }
     if (LOGGER.isDebugEnabled()) {
-      LOGGER.debug("Got _newSegmentStateMap: {}, _oldSegmentCandidatesMap: {}", _newSegmentStateMap.keySet(),
-          _oldSegmentCandidatesMap.keySet());
+      LOGGER.debug("Got _newSegmentStateMap: {}, _oldSegmentCandidatesMap: {}, reused candidates for {} unchanged "
+              + "segments", _newSegmentStateMap.keySet(), _oldSegmentCandidatesMap.keySet(), numUnchangedSegments);
+    }
+  }
+
+  /**
+   * Returns whether the cached candidates of an old segment are still valid, i.e. the ideal state and external view
+   * instance state maps and the pools of the candidate instances are unchanged since they were computed.
+   */
+  private boolean isOldSegmentUnchanged(String segment, Map<String, String> idealStateInstanceStateMap,
+      @Nullable Map<String, String> externalViewInstanceStateMap) {
+    if (externalViewInstanceStateMap == null) {
+      return false;
+    }
+    List<SegmentInstanceCandidate> candidates = _oldSegmentCandidatesMap.get(segment);
+    if (candidates == null || !idealStateInstanceStateMap.equals(_oldSegmentIdealStateMap.get(segment))
+        || !externalViewInstanceStateMap.equals(_oldSegmentExternalViewMap.get(segment))) {
+      return false;
+    }
+    for (SegmentInstanceCandidate candidate : candidates) {
+      if (candidate.getPool() != getPool(candidate.getInstance())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isSinglePoolSegment(Map<String, String> idealStateInstanceStateMap, Set<Integer> pools) {
+    pools.clear();
+    for (String instance : idealStateInstanceStateMap.keySet()) {
+      pools.add(getPool(instance));
     }
+    return pools.size() < 2;
   }
 
   /**
@@ -488,6 +543,51 @@ public abstract class BaseInstanceSelector implements InstanceSelector {
     return _segmentStates.getServingInstances();
   }
 
+  @Nullable
+  @Override
+  public String selectAlternativeInstance(List<String> segments, Set<String> excludedInstances) {
+    if (segments.isEmpty()) {
+      return null;
+    }
+    SegmentStates segmentStates = _segmentStates;
+    // Start with the online candidates of the first segment, then only keep the ones hosting all the other segments.
+    // Instances disabled since the segment states were calculated are skipped so that they are never picked while
+    // another candidate is available.
+    List<SegmentInstanceCandidate> firstSegmentCandidates = segmentStates.getCandidates(segments.get(0));
+    if (firstSegmentCandidates == null) {
+      return null;
+    }
+    List<String> alternativeInstances = new ArrayList<>(firstSegmentCandidates.size());
+    for (SegmentInstanceCandidate candidate : firstSegmentCandidates) {
+      String instance = candidate.getInstance();
+      if (candidate.isOnline() && !excludedInstances.contains(instance) && _enabledServerStore.containsKey(instance)) {
+        alternativeInstances.add(instance);
+      }
+    }
+    int numSegments = segments.size();
+    for (int i = 1; i < numSegments && !alternativeInstances.isEmpty(); i++) {
+      List<SegmentInstanceCandidate> candidates = segmentStates.getCandidates(segments.get(i));
+      if (candidates == null) {
+        return null;
+      }
+      alternativeInstances.removeIf(instance -> !isOnlineCandidate(candidates, instance));
+    }
+    int numAlternativeInstances = alternativeInstances.size();
+    if (numAlternativeInstances == 0) {
+      return null;
+    }
+    return alternativeInstances.get(ThreadLocalRandom.current().nextInt(numAlternativeInstances));
+  }
+
+  private static boolean isOnlineCandidate(List<SegmentInstanceCandidate> candidates, String instance) {
+    for (SegmentInstanceCandidate candidate : candidates) {
+      if (candidate.getInstance().equals(instance)) {
+        return candidate.isOnline();
+      }
+    }
+    return false;
+  }
+
   @VisibleForTesting
   int getPool(String instanceID) {
     int pool = FALLBACK_POOL_ID;
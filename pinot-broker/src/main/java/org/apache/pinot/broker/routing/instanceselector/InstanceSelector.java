@@ -90,6 +90,16 @@ public interface InstanceSelector {
    */
   Set<String> getServingInstances();
 
+  /**
+   * Returns an online and enabled instance, other than the excluded instances, that hosts all the given segments, or
+   * {@code null} if there is no such instance. This is used to re-issue the query for the segments to another replica
+   * when the selected instance is slow to respond.
+   */
+  @Nullable
+  default String selectAlternativeInstance(List<String> segments, Set<String> excludedInstances) {
+    return null;
+  }
+
   class SelectionResult {
     private final Pair<Map<String, String>, Map<String, String>/*optional segments*/> _segmentToInstanceMap;
     private final List<String> _unavailableSegments;
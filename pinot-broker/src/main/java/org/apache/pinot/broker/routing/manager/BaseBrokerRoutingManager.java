@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -69,6 +70,7 @@ import org.apache.pinot.broker.routing.segmentselector.SegmentSelector;
 import org.apache.pinot.broker.routing.segmentselector.SegmentSelectorFactory;
 import org.apache.pinot.broker.routing.tablesampler.TableSampler;
 import org.apache.pinot.broker.routing.tablesampler.TableSamplerFactory;
+import org.apache.pinot.broker.routing.tablestats.TableTotalDocsManager;
 import org.apache.pinot.broker.routing.timeboundary.TimeBoundaryManager;
 import org.apache.pinot.common.metadata.ZKMetadataProvider;
 import org.apache.pinot.common.metrics.BrokerMeter;
@@ -137,9 +139,12 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
   private final ServerRoutingStatsManager _serverRoutingStatsManager;
   private final PinotConfiguration _pinotConfig;
   private final boolean _enablePartitionMetadataManager;
+  private final boolean _enableTableTotalDocsManager;
   private final ExecutorService _executorService;
   @Nullable
   private Consumer<ServerInstance> _serverReenableCallback;
+  // Listeners notified with the table name with type whenever the served segments or their metadata change
+  private final List<Consumer<String>> _routingChangeListeners = new CopyOnWriteArrayList<>();
 
   // Global read-write lock for protecting the global data structures such as _enabledServerInstanceMap,
   // _excludedServers, and _routableServers. Write lock must be held if any of these are modified, read lock must be
@@ -174,6 +179,9 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     _enablePartitionMetadataManager =
         pinotConfig.getProperty(CommonConstants.Broker.CONFIG_OF_ENABLE_PARTITION_METADATA_MANAGER,
             CommonConstants.Broker.DEFAULT_ENABLE_PARTITION_METADATA_MANAGER);
+    _enableTableTotalDocsManager =
+        pinotConfig.getProperty(CommonConstants.Broker.CONFIG_OF_ENABLE_TABLE_TOTAL_DOCS_MANAGER,
+            CommonConstants.Broker.DEFAULT_ENABLE_TABLE_TOTAL_DOCS_MANAGER);
     int processSegmentAssignmentChangeNumThreads =
         pinotConfig.getProperty(CommonConstants.Broker.CONFIG_OF_ROUTING_ASSIGNMENT_CHANGE_PROCESS_PARALLELISM,
             CommonConstants.Broker.DEFAULT_ROUTING_ASSIGNMENT_CHANGE_PROCESS_PARALLELISM);
@@ -199,6 +207,25 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     _serverReenableCallback = callback;
   }
 
+  /**
+   * Registers a listener to be invoked with the table name with type whenever the routing of the table is built,
+   * removed, or changed because of a segment assignment change or a segment refresh. This is useful for invalidating
+   * state derived from the served segments, such as cached query results.
+   */
+  public void addRoutingChangeListener(Consumer<String> listener) {
+    _routingChangeListeners.add(listener);
+  }
+
+  private void notifyRoutingChange(String tableNameWithType) {
+    for (Consumer<String> listener : _routingChangeListeners) {
+      try {
+        listener.accept(tableNameWithType);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while notifying routing change for table: {}", tableNameWithType, e);
+      }
+    }
+  }
+
   private Object getRoutingTableBuildLock(String tableNameWithType) {
     String rawTableName = TableNameBuilder.extractRawTableName(tableNameWithType);
     return _routingTableBuildLocks.computeIfAbsent(rawTableName, k -> new Object());
@@ -305,6 +332,9 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     }
 
     long updateRoutingEntriesEndTimeMs = System.currentTimeMillis();
+    for (String tableNameWithType : tablesUpdated) {
+      notifyRoutingChange(tableNameWithType);
+    }
 
     LOGGER.info(
         "Processed segment assignment change in {}ms (fetch ideal state and external view stats for {} tables: {}ms, "
@@ -682,6 +712,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     } finally {
       _globalLock.readLock().unlock();
     }
+    notifyRoutingChange(tableNameWithType);
   }
 
   private void buildRoutingInternal(String tableNameWithType) {
@@ -740,7 +771,8 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
               adaptiveServerSelector, _pinotConfig, _routableServers, _enabledServerInstanceMap, idealState,
               externalView, preSelectedOnlineSegments);
 
-      // Add time boundary manager if both offline and real-time part exist for a hybrid table
+      // Add time boundary manager if both offline and real-time part exist for a hybrid table, or if the table is a
+      // rollup table (to track the time range covered by the rollup)
       TimeBoundaryManager timeBoundaryManager = null;
       String rawTableName = TableNameBuilder.extractRawTableName(tableNameWithType);
       if (TableNameBuilder.isOfflineTableResource(tableNameWithType)) {
@@ -750,6 +782,10 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
           LOGGER.info("Adding time boundary manager for table: {}", tableNameWithType);
           timeBoundaryManager = new TimeBoundaryManager(tableConfig, _propertyStore, _brokerMetrics);
           timeBoundaryManager.init(idealState, externalView, preSelectedOnlineSegments);
+        } else if (tableConfig.getQueryConfig() != null && tableConfig.getQueryConfig().getRollupConfig() != null) {
+          LOGGER.info("Adding time boundary manager for rollup table: {}", tableNameWithType);
+          timeBoundaryManager = new TimeBoundaryManager(tableConfig, _propertyStore, _brokerMetrics, 0L);
+          timeBoundaryManager.init(idealState, externalView, preSelectedOnlineSegments);
         }
       } else {
         // Current table is real-time
@@ -819,6 +855,11 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       if (partitionMetadataManager != null) {
         segmentZkMetadataFetcher.register(partitionMetadataManager);
       }
+      TableTotalDocsManager totalDocsManager = null;
+      if (_enableTableTotalDocsManager) {
+        totalDocsManager = new TableTotalDocsManager(tableNameWithType);
+        segmentZkMetadataFetcher.register(totalDocsManager);
+      }
       segmentZkMetadataFetcher.init(idealState, externalView, preSelectedOnlineSegments);
 
       // Build table sampler contexts keyed by normalized sampler name.
@@ -865,7 +906,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       RoutingEntry routingEntry =
           new RoutingEntry(tableNameWithType, idealStatePath, externalViewPath, segmentPreSelector, segmentSelector,
               segmentPruners, instanceSelector, idealStateVersion, externalViewVersion, segmentZkMetadataFetcher,
-              timeBoundaryManager, partitionMetadataManager, queryTimeoutMs, samplerInfos,
+              timeBoundaryManager, partitionMetadataManager, totalDocsManager, queryTimeoutMs, samplerInfos,
               !idealState.isEnabled());
       if (_routingEntryMap.put(tableNameWithType, routingEntry) == null) {
         LOGGER.info("Built routing for table: {}", tableNameWithType);
@@ -936,6 +977,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     } finally {
       _globalLock.readLock().unlock();
     }
+    notifyRoutingChange(tableNameWithType);
   }
 
   private void removeRoutingInternal(String tableNameWithType) {
@@ -1043,6 +1085,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     } finally {
       _globalLock.readLock().unlock();
     }
+    notifyRoutingChange(tableNameWithType);
   }
 
   private void refreshSegmentInternal(String tableNameWithType, String segment) {
@@ -1183,7 +1226,9 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
   /**
    * Returns the time boundary info for the given offline table, or {@code null} if the routing or time boundary does
    * not exist.
-   * <p>NOTE: Time boundary info is only available for the offline part of the hybrid table.
+   * <p>NOTE: Time boundary info is only available for the offline part of the hybrid table, and for the rollup table
+   *       (see {@link org.apache.pinot.spi.config.table.RollupConfig}), where it is the start of the latest time
+   *       bucket.
    */
   @Nullable
   @Override
@@ -1196,6 +1241,21 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     return timeBoundaryManager != null ? timeBoundaryManager.getTimeBoundaryInfo() : null;
   }
 
+  @Nullable
+  @Override
+  public Long getMinStartTimeMs(String offlineTableName) {
+    RoutingEntry routingEntry = _routingEntryMap.get(offlineTableName);
+    if (routingEntry == null) {
+      return null;
+    }
+    TimeBoundaryManager timeBoundaryManager = routingEntry.getTimeBoundaryManager();
+    if (timeBoundaryManager == null) {
+      return null;
+    }
+    long minStartTimeMs = timeBoundaryManager.getMinStartTimeMs();
+    return minStartTimeMs > 0 ? minStartTimeMs : null;
+  }
+
   @Nullable
   @Override
   public TablePartitionInfo getTablePartitionInfo(String tableNameWithType) {
@@ -1218,6 +1278,28 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     return partitionMetadataManager != null ? partitionMetadataManager.getTablePartitionReplicatedServersInfo() : null;
   }
 
+  @Nullable
+  @Override
+  public Long getTableTotalDocs(String tableNameWithType) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    if (routingEntry == null) {
+      return null;
+    }
+    TableTotalDocsManager totalDocsManager = routingEntry.getTotalDocsManager();
+    return totalDocsManager != null ? totalDocsManager.getTotalDocs() : null;
+  }
+
+  @Nullable
+  @Override
+  public Double getSamplingRate(String tableNameWithType, String samplerName) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    if (routingEntry == null) {
+      return null;
+    }
+    SamplerInfo samplerInfo = routingEntry.getSamplerInfo(samplerName);
+    return samplerInfo != null ? samplerInfo._tableSampler.getSamplingRate() : null;
+  }
+
   @Nullable
   @Override
   public Set<String> getServingInstances(String tableNameWithType) {
@@ -1228,6 +1310,18 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     return routingEntry._instanceSelector.getServingInstances();
   }
 
+  @Nullable
+  @Override
+  public ServerInstance getAlternativeServerInstance(String tableNameWithType, List<String> segments,
+      Set<String> excludedInstances) {
+    RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
+    if (routingEntry == null) {
+      return null;
+    }
+    String instance = routingEntry._instanceSelector.selectAlternativeInstance(segments, excludedInstances);
+    return instance != null ? _enabledServerInstanceMap.get(instance) : null;
+  }
+
   /**
    * Returns the table-level query timeout in milliseconds for the given table, or {@code null} if the timeout is not
    * configured in the table config.
@@ -1268,6 +1362,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     final SegmentSelector _segmentSelector;
     final List<SegmentPruner> _segmentPruners;
     final SegmentPartitionMetadataManager _partitionMetadataManager;
+    final TableTotalDocsManager _totalDocsManager;
     final InstanceSelector _instanceSelector;
     final Long _queryTimeoutMs;
     final Map<String, SamplerInfo> _samplerInfos;
@@ -1285,7 +1380,8 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
         SegmentPreSelector segmentPreSelector, SegmentSelector segmentSelector, List<SegmentPruner> segmentPruners,
         InstanceSelector instanceSelector, int lastUpdateIdealStateVersion, int lastUpdateExternalViewVersion,
         SegmentZkMetadataFetcher segmentZkMetadataFetcher, @Nullable TimeBoundaryManager timeBoundaryManager,
-        @Nullable SegmentPartitionMetadataManager partitionMetadataManager, @Nullable Long queryTimeoutMs,
+        @Nullable SegmentPartitionMetadataManager partitionMetadataManager,
+        @Nullable TableTotalDocsManager totalDocsManager, @Nullable Long queryTimeoutMs,
         Map<String, SamplerInfo> samplerInfos, boolean disabled) {
       _tableNameWithType = tableNameWithType;
       _idealStatePath = idealStatePath;
@@ -1298,6 +1394,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       _lastUpdateExternalViewVersion = lastUpdateExternalViewVersion;
       _timeBoundaryManager = timeBoundaryManager;
       _partitionMetadataManager = partitionMetadataManager;
+      _totalDocsManager = totalDocsManager;
       _queryTimeoutMs = queryTimeoutMs;
       _samplerInfos = samplerInfos;
       _segmentZkMetadataFetcher = segmentZkMetadataFetcher;
@@ -1330,6 +1427,11 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       return _partitionMetadataManager;
     }
 
+    @Nullable
+    TableTotalDocsManager getTotalDocsManager() {
+      return _totalDocsManager;
+    }
+
     Long getQueryTimeoutMs() {
       return _queryTimeoutMs;
     }
@@ -151,6 +151,12 @@ public class MultiClusterRoutingManager implements RoutingManager {
     return findFirst(mgr -> mgr.getTimeBoundaryInfo(tableNameWithType), tableNameWithType);
   }
 
+  @Nullable
+  @Override
+  public Long getMinStartTimeMs(String offlineTableName) {
+    return findFirst(mgr -> mgr.getMinStartTimeMs(offlineTableName), offlineTableName);
+  }
+
   @Override
   public Map<String, ServerInstance> getEnabledServerInstanceMap() {
     Map<String, ServerInstance> combined = new HashMap<>(_localClusterRoutingManager.getEnabledServerInstanceMap());
@@ -165,6 +171,18 @@ public class MultiClusterRoutingManager implements RoutingManager {
     return findFirst(mgr -> mgr.getTablePartitionInfo(tableNameWithType), tableNameWithType);
   }
 
+  @Nullable
+  @Override
+  public Long getTableTotalDocs(String tableNameWithType) {
+    return findFirst(mgr -> mgr.getTableTotalDocs(tableNameWithType), tableNameWithType);
+  }
+
+  @Nullable
+  @Override
+  public Double getSamplingRate(String tableNameWithType, String samplerName) {
+    return findFirst(mgr -> mgr.getSamplingRate(tableNameWithType, samplerName), tableNameWithType);
+  }
+
   @Override
   public Set<String> getServingInstances(String tableNameWithType) {
     Set<String> combined = new HashSet<>();
@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.segmentpruner;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.request.Identifier;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.RequestContextUtils;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.env.CommonsConfigurationUtils;
+import org.apache.pinot.spi.utils.CommonConstants.Segment;
+import org.apache.pinot.sql.FilterKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code MinMaxValueSegmentPruner} prunes segments based on the min/max values of the broker pruning columns
+ * published in the segment ZK metadata (see {@code IndexingConfig#getBrokerPruningColumns()}). The pruner supports
+ * queries with filter (or nested filter) of EQUALITY, IN and RANGE predicates. Segments without published min/max
+ * values for a column are never pruned on that column.
+ */
+public class MinMaxValueSegmentPruner implements SegmentPruner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MinMaxValueSegmentPruner.class);
+
+  private final String _tableNameWithType;
+  private final Map<String, DataType> _columnDataTypes;
+  private final Map<String, Map<String, MinMaxValue>> _minMaxValueMap = new ConcurrentHashMap<>();
+
+  public MinMaxValueSegmentPruner(String tableNameWithType, Map<String, DataType> columnDataTypes) {
+    _tableNameWithType = tableNameWithType;
+    _columnDataTypes = columnDataTypes;
+  }
+
+  @Override
+  public void init(IdealState idealState, ExternalView externalView, List<String> onlineSegments,
+      List<ZNRecord> znRecords) {
+    // Bulk load min/max values for all online segments
+    for (int idx = 0; idx < onlineSegments.size(); idx++) {
+      String segment = onlineSegments.get(idx);
+      Map<String, MinMaxValue> minMaxValues = extractMinMaxValues(segment, znRecords.get(idx));
+      if (minMaxValues != null) {
+        _minMaxValueMap.put(segment, minMaxValues);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void onAssignmentChange(IdealState idealState, ExternalView externalView,
+      Set<String> onlineSegments, List<String> pulledSegments, List<ZNRecord> znRecords) {
+    // NOTE: We don't update all the segment ZK metadata for every external view change, but only the new added/removed
+    //       ones. The refreshed segment ZK metadata change won't be picked up.
+    for (int idx = 0; idx < pulledSegments.size(); idx++) {
+      String segment = pulledSegments.get(idx);
+      ZNRecord znRecord = znRecords.get(idx);
+      _minMaxValueMap.computeIfAbsent(segment, k -> extractMinMaxValues(k, znRecord));
+    }
+    _minMaxValueMap.keySet().retainAll(onlineSegments);
+  }
+
+  @Override
+  public synchronized void refreshSegment(String segment, @Nullable ZNRecord znRecord) {
+    Map<String, MinMaxValue> minMaxValues = extractMinMaxValues(segment, znRecord);
+    if (minMaxValues != null) {
+      _minMaxValueMap.put(segment, minMaxValues);
+    } else {
+      _minMaxValueMap.remove(segment);
+    }
+  }
+
+  @Nullable
+  private Map<String, MinMaxValue> extractMinMaxValues(String segment, @Nullable ZNRecord znRecord) {
+    if (znRecord == null) {
+      return null;
+    }
+    Map<String, String> customMap = znRecord.getMapField(Segment.CUSTOM_MAP);
+    if (customMap == null) {
+      return null;
+    }
+    Map<String, MinMaxValue> minMaxValues = new HashMap<>();
+    for (Map.Entry<String, DataType> entry : _columnDataTypes.entrySet()) {
+      String column = entry.getKey();
+      String minValue = customMap.get(Segment.PRUNING_MIN_VALUE_KEY_PREFIX + column);
+      String maxValue = customMap.get(Segment.PRUNING_MAX_VALUE_KEY_PREFIX + column);
+      if (minValue == null || maxValue == null) {
+        continue;
+      }
+      DataType storedType = entry.getValue().getStoredType();
+      try {
+        minMaxValues.put(column,
+            new MinMaxValue(convertMetadataValue(minValue, storedType), convertMetadataValue(maxValue, storedType)));
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while extracting min/max values for column: {}, segment: {}, table: {}", column,
+            segment, _tableNameWithType, e);
+      }
+    }
+    return !minMaxValues.isEmpty() ? minMaxValues : null;
+  }
+
+  private static Comparable convertMetadataValue(String value, DataType storedType) {
+    if (storedType == DataType.STRING) {
+      value = CommonsConfigurationUtils.recoverSpecialCharacterInPropertyValue(value);
+    }
+    return storedType.convertInternal(value);
+  }
+
+  @Override
+  public Set<String> prune(BrokerRequest brokerRequest, Set<String> segments) {
+    Expression filterExpression = brokerRequest.getPinotQuery().getFilterExpression();
+    if (filterExpression == null) {
+      return segments;
+    }
+    Set<String> selectedSegments = new HashSet<>();
+    for (String segment : segments) {
+      Map<String, MinMaxValue> minMaxValues = _minMaxValueMap.get(segment);
+      if (minMaxValues == null || isMatch(filterExpression, minMaxValues)) {
+        selectedSegments.add(segment);
+      }
+    }
+    return selectedSegments;
+  }
+
+  private boolean isMatch(Expression filterExpression, Map<String, MinMaxValue> minMaxValues) {
+    Function function = filterExpression.getFunctionCall();
+    FilterKind filterKind = FilterKind.valueOf(function.getOperator());
+    List<Expression> operands = function.getOperands();
+    switch (filterKind) {
+      case AND:
+        for (Expression child : operands) {
+          if (!isMatch(child, minMaxValues)) {
+            return false;
+          }
+        }
+        return true;
+      case OR:
+        for (Expression child : operands) {
+          if (isMatch(child, minMaxValues)) {
+            return true;
+          }
+        }
+        return false;
+      default:
+        break;
+    }
+
+    Identifier identifier = operands.get(0).getIdentifier();
+    if (identifier == null) {
+      return true;
+    }
+    String column = identifier.getName();
+    MinMaxValue minMaxValue = minMaxValues.get(column);
+    if (minMaxValue == null) {
+      return true;
+    }
+    DataType dataType = _columnDataTypes.get(column);
+    try {
+      switch (filterKind) {
+        case EQUALS: {
+          Comparable value = convertLiteral(operands.get(1), dataType);
+          return minMaxValue.overlaps(value, true, value, true);
+        }
+        case IN: {
+          int numOperands = operands.size();
+          for (int i = 1; i < numOperands; i++) {
+            Comparable value = convertLiteral(operands.get(i), dataType);
+            if (minMaxValue.overlaps(value, true, value, true)) {
+              return true;
+            }
+          }
+          return false;
+        }
+        case GREATER_THAN:
+          return minMaxValue.overlaps(convertLiteral(operands.get(1), dataType), false, null, false);
+        case GREATER_THAN_OR_EQUAL:
+          return minMaxValue.overlaps(convertLiteral(operands.get(1), dataType), true, null, false);
+        case LESS_THAN:
+          return minMaxValue.overlaps(null, false, convertLiteral(operands.get(1), dataType), false);
+        case LESS_THAN_OR_EQUAL:
+          return minMaxValue.overlaps(null, false, convertLiteral(operands.get(1), dataType), true);
+        case BETWEEN:
+          return minMaxValue.overlaps(convertLiteral(operands.get(1), dataType), true,
+              convertLiteral(operands.get(2), dataType), true);
+        case RANGE: {
+          RangePredicate rangePredicate = new RangePredicate(ExpressionContext.forIdentifier(column),
+              RequestContextUtils.getStringValue(operands.get(1)));
+          String lowerBound = rangePredicate.getLowerBound();
+          String upperBound = rangePredicate.getUpperBound();
+          return minMaxValue.overlaps(
+              lowerBound.equals(RangePredicate.UNBOUNDED) ? null : dataType.convertInternal(lowerBound),
+              rangePredicate.isLowerInclusive(),
+              upperBound.equals(RangePredicate.UNBOUNDED) ? null : dataType.convertInternal(upperBound),
+              rangePredicate.isUpperInclusive());
+        }
+        default:
+          return true;
+      }
+    } catch (Exception e) {
+      // Cannot prune when the literal cannot be converted to the column data type
+      return true;
+    }
+  }
+
+  private static Comparable convertLiteral(Expression expression, DataType dataType) {
+    return dataType.convertInternal(RequestContextUtils.getStringValue(expression));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static class MinMaxValue {
+    final Comparable _minValue;
+    final Comparable _maxValue;
+
+    MinMaxValue(Comparable minValue, Comparable maxValue) {
+      _minValue = minValue;
+      _maxValue = maxValue;
+    }
+
+    /**
+     * Returns {@code true} if the value range [min, max] overlaps with the given range, where {@code null} means
+     * unbounded.
+     */
+    boolean overlaps(@Nullable Comparable lowerBound, boolean lowerInclusive, @Nullable Comparable upperBound,
+        boolean upperInclusive) {
+      if (lowerBound != null) {
+        int result = _maxValue.compareTo(lowerBound);
+        if (result < 0 || (result == 0 && !lowerInclusive)) {
+          return false;
+        }
+      }
+      if (upperBound != null) {
+        int result = _minValue.compareTo(upperBound);
+        return result < 0 || (result == 0 && upperInclusive);
+      }
+      return true;
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.pinot.broker.routing.segmentpruner;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +36,8 @@ import org.apache.pinot.spi.config.table.SegmentsValidationAndRetentionConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.data.DateTimeFieldSpec;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
 import org.apache.pinot.spi.data.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,10 +79,16 @@ public class SegmentPrunerFactory {
               configuredSegmentPruners.add(timeSegmentPruner);
             }
           }
+          if (RoutingConfig.MIN_MAX_VALUE_SEGMENT_PRUNER_TYPE.equalsIgnoreCase(segmentPrunerType)) {
+            MinMaxValueSegmentPruner minMaxValueSegmentPruner = getMinMaxValueSegmentPruner(tableConfig, propertyStore);
+            if (minMaxValueSegmentPruner != null) {
+              configuredSegmentPruners.add(minMaxValueSegmentPruner);
+            }
+          }
         }
-        // Sort all segment pruners in order of: empty -> time -> partition. We are trying to sort them in a this order
-        // for improving the performance, this order may not be the optimal case -- we need move the pruner that will
-        // potentially prune the most segments to front)
+        // Sort all segment pruners in order of: empty -> time -> partition -> min/max value. We are trying to sort them
+        // in a this order for improving the performance, this order may not be the optimal case -- we need move the
+        // pruner that will potentially prune the most segments to front)
         segmentPruners.addAll(sortSegmentPruners(configuredSegmentPruners));
       } else {
         // Handle legacy configs for backward-compatibility
@@ -149,9 +158,52 @@ public class SegmentPrunerFactory {
     return new TimeSegmentPruner(tableConfig, timeFieldSpec);
   }
 
+  @Nullable
+  private static MinMaxValueSegmentPruner getMinMaxValueSegmentPruner(TableConfig tableConfig,
+      ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    String tableNameWithType = tableConfig.getTableName();
+    List<String> brokerPruningColumns = tableConfig.getIndexingConfig().getBrokerPruningColumns();
+    if (brokerPruningColumns == null || brokerPruningColumns.isEmpty()) {
+      LOGGER.warn("Cannot enable min/max value pruning without broker pruning columns for table: {}",
+          tableNameWithType);
+      return null;
+    }
+    Schema schema = ZKMetadataProvider.getTableSchema(propertyStore, tableNameWithType);
+    if (schema == null) {
+      LOGGER.warn("Cannot enable min/max value pruning without schema for table: {}", tableNameWithType);
+      return null;
+    }
+    Map<String, DataType> columnDataTypes = new HashMap<>();
+    for (String column : brokerPruningColumns) {
+      FieldSpec fieldSpec = schema.getFieldSpecFor(column);
+      if (fieldSpec == null) {
+        LOGGER.warn("Skipping min/max value pruning on non-existing column: {} for table: {}", column,
+            tableNameWithType);
+        continue;
+      }
+      DataType dataType = fieldSpec.getDataType();
+      // BYTES values are not comparable after conversion
+      if (!dataType.canBeASortedColumn() || dataType == DataType.UNKNOWN
+          || dataType.getStoredType() == DataType.BYTES) {
+        LOGGER.warn("Skipping min/max value pruning on column: {} of data type: {} for table: {}", column, dataType,
+            tableNameWithType);
+        continue;
+      }
+      columnDataTypes.put(column, dataType);
+    }
+    if (columnDataTypes.isEmpty()) {
+      LOGGER.warn("Cannot enable min/max value pruning without valid broker pruning columns for table: {}",
+          tableNameWithType);
+      return null;
+    }
+    LOGGER.info("Using MinMaxValueSegmentPruner on columns: {} for table: {}", columnDataTypes.keySet(),
+        tableNameWithType);
+    return new MinMaxValueSegmentPruner(tableNameWithType, columnDataTypes);
+  }
+
   private static List<SegmentPruner> sortSegmentPruners(List<SegmentPruner> pruners) {
     // If there's multiple pruners, always prune empty segments first. After that, pruned based on time range, and
-    // followed by partition pruners.
+    // followed by partition pruners. Min/max value pruners check multiple columns per segment, so they go last.
     // Partition pruner run time is proportional to input # of segments while time range pruner is not,
     // Prune based on time range first will have a smaller input size for partition pruners, so have better performance.
     List<SegmentPruner> sortedPruners = new ArrayList<>();
@@ -171,6 +223,11 @@ public class SegmentPrunerFactory {
         sortedPruners.add(pruner);
       }
     }
+    for (SegmentPruner pruner : pruners) {
+      if (pruner instanceof MinMaxValueSegmentPruner) {
+        sortedPruners.add(pruner);
+      }
+    }
     return sortedPruners;
   }
 }
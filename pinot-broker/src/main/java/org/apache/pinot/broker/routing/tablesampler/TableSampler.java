@@ -19,6 +19,7 @@
 package org.apache.pinot.broker.routing.tablesampler;
 
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.pinot.spi.config.table.TableConfig;
@@ -45,4 +46,14 @@ public interface TableSampler {
    * multiple samplers. Implementations must return a non-null set.
    */
   Set<String> sampleSegments(Set<String> onlineSegments);
+
+  /**
+   * Returns the probability of each segment to be selected by the sampler, which can be used to extrapolate additive
+   * aggregation results (e.g. COUNT, SUM) from the sampled segments to the whole table, or {@code null} if segments are
+   * not selected with a fixed probability.
+   */
+  @Nullable
+  default Double getSamplingRate() {
+    return null;
+  }
 }
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.tablesampler;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.spi.annotations.tablesampler.TableSamplerProvider;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.sampler.TableSamplerConfig;
+
+
+/**
+ * Selects each segment independently with a fixed probability, based on the hash of the segment name.
+ *
+ * <p>Because the selection of a segment only depends on its name, segments are not re-shuffled when other segments are
+ * added or removed, and each segment (regardless of its time range or partition) has the same probability to be
+ * selected. Additive aggregation results over the sampled segments can then be extrapolated to the whole table by
+ * dividing them by the sampling rate (Horvitz-Thompson estimator).
+ *
+ * <p>Config:
+ * <ul>
+ *   <li>{@code properties.samplingPercentage}: percentage of the segments to select, in (0, 100]</li>
+ *   <li>{@code properties.seed}: optional integer seed of the hash function, to select a different set of segments</li>
+ * </ul>
+ */
+@TableSamplerProvider(name = UniformSegmentsTableSampler.TYPE)
+public class UniformSegmentsTableSampler implements TableSampler {
+  public static final String TYPE = "uniform";
+  public static final String PROP_SAMPLING_PERCENTAGE = "samplingPercentage";
+  public static final String PROP_SEED = "seed";
+
+  private double _samplingRate;
+  private HashFunction _hashFunction;
+
+  @Override
+  public void init(TableConfig tableConfig, TableSamplerConfig samplerConfig,
+      ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    Map<String, String> props = samplerConfig.getProperties();
+    if (MapUtils.isEmpty(props) || !props.containsKey(PROP_SAMPLING_PERCENTAGE)) {
+      throw new IllegalArgumentException(
+          "Missing required property '" + PROP_SAMPLING_PERCENTAGE + "' for table sampler type '" + TYPE + "'");
+    }
+    double samplingPercentage = Double.parseDouble(props.get(PROP_SAMPLING_PERCENTAGE));
+    if (!(samplingPercentage > 0 && samplingPercentage <= 100)) {
+      throw new IllegalArgumentException("'" + PROP_SAMPLING_PERCENTAGE + "' must be in (0, 100]");
+    }
+    _samplingRate = samplingPercentage / 100;
+    String seed = props.get(PROP_SEED);
+    _hashFunction = Hashing.murmur3_32_fixed(seed != null ? Integer.parseInt(seed) : 0);
+  }
+
+  @Override
+  public Set<String> sampleSegments(Set<String> onlineSegments) {
+    if (_samplingRate == 1) {
+      return onlineSegments;
+    }
+    Set<String> sampledSegments = new HashSet<>();
+    for (String segment : onlineSegments) {
+      if (isSelected(segment)) {
+        sampledSegments.add(segment);
+      }
+    }
+    return sampledSegments;
+  }
+
+  @Override
+  public Double getSamplingRate() {
+    return _samplingRate;
+  }
+
+  private boolean isSelected(String segment) {
+    // Map the unsigned 32-bit hash to [0, 1)
+    long hash = Integer.toUnsignedLong(_hashFunction.hashString(segment, StandardCharsets.UTF_8).asInt());
+    return hash < _samplingRate * (1L << 32);
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.tablestats;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.broker.routing.segmentmetadata.SegmentZkMetadataFetchListener;
+import org.apache.pinot.common.metadata.segment.SegmentZKMetadata;
+
+
+/**
+ * The {@code TableTotalDocsManager} keeps track of the total number of documents of a table by summing up the total
+ * docs recorded in the segment ZK metadata of the online segments. It is used by the multi-stage query planner to
+ * estimate the row count of the table scans when ordering the joins and picking the join distribution.
+ *
+ * <p>Segments without total docs in the ZK metadata (e.g. consuming segments) are not counted.
+ */
+public class TableTotalDocsManager implements SegmentZkMetadataFetchListener {
+  private static final long UNKNOWN_TOTAL_DOCS = -1L;
+
+  private final String _tableNameWithType;
+  private final Map<String, Long> _segmentTotalDocsMap = new HashMap<>();
+
+  private volatile long _totalDocs;
+
+  public TableTotalDocsManager(String tableNameWithType) {
+    _tableNameWithType = tableNameWithType;
+  }
+
+  @Override
+  public synchronized void init(IdealState idealState, ExternalView externalView, List<String> onlineSegments,
+      List<ZNRecord> znRecords) {
+    int numSegments = onlineSegments.size();
+    for (int i = 0; i < numSegments; i++) {
+      _segmentTotalDocsMap.put(onlineSegments.get(i), getTotalDocs(znRecords.get(i)));
+    }
+    computeTotalDocs();
+  }
+
+  @Override
+  public synchronized void onAssignmentChange(IdealState idealState, ExternalView externalView,
+      Set<String> onlineSegments, List<String> pulledSegments, List<ZNRecord> znRecords) {
+    int numSegments = pulledSegments.size();
+    for (int i = 0; i < numSegments; i++) {
+      _segmentTotalDocsMap.put(pulledSegments.get(i), getTotalDocs(znRecords.get(i)));
+    }
+    _segmentTotalDocsMap.keySet().retainAll(onlineSegments);
+    computeTotalDocs();
+  }
+
+  @Override
+  public synchronized void refreshSegment(String segment, @Nullable ZNRecord znRecord) {
+    _segmentTotalDocsMap.put(segment, getTotalDocs(znRecord));
+    computeTotalDocs();
+  }
+
+  public String getTableNameWithType() {
+    return _tableNameWithType;
+  }
+
+  /**
+   * Returns the total number of documents of the online segments with known total docs.
+   */
+  public long getTotalDocs() {
+    return _totalDocs;
+  }
+
+  private static long getTotalDocs(@Nullable ZNRecord znRecord) {
+    if (znRecord == null) {
+      return UNKNOWN_TOTAL_DOCS;
+    }
+    return new SegmentZKMetadata(znRecord).getTotalDocs();
+  }
+
+  private void computeTotalDocs() {
+    long totalDocs = 0;
+    for (long segmentTotalDocs : _segmentTotalDocsMap.values()) {
+      if (segmentTotalDocs > 0) {
+        totalDocs += segmentTotalDocs;
+      }
+    }
+    _totalDocs = totalDocs;
+  }
+}
@@ -50,7 +50,8 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * The {@code TimeBoundaryManager} class manages the time boundary information for a table.
+ * The {@code TimeBoundaryManager} class manages the time boundary information for a table. It also tracks the min start
+ * time of the segments, which is the start of the time range covered by the table (e.g. for rollup tables).
  * <p>TODO: Support SDF (simple date format) time column
  */
 public class TimeBoundaryManager {
@@ -64,13 +65,26 @@ public class TimeBoundaryManager {
   private final String _timeColumn;
   private final DateTimeFormatSpec _timeFormatSpec;
   private final long _timeOffsetMs;
+  private final Map<String, Long> _startTimeMsMap = new HashMap<>();
   private final Map<String, Long> _endTimeMsMap = new HashMap<>();
 
   private long _explicitlySetTimeBoundaryMs = INVALID_TIME_MS;
   private volatile TimeBoundaryInfo _timeBoundaryInfo;
+  private volatile long _minStartTimeMs = INVALID_TIME_MS;
 
   public TimeBoundaryManager(TableConfig tableConfig, ZkHelixPropertyStore<ZNRecord> propertyStore,
       BrokerMetrics brokerMetrics) {
+    this(tableConfig, propertyStore, brokerMetrics, null);
+  }
+
+  /**
+   * Constructs a time boundary manager with the given offset from the max end time of the segments. When the offset is
+   * not specified, it is derived from the push frequency of the table.
+   * <p>Rollup tables use offset 0, so that the time boundary is the start of the latest (possibly partial) time bucket
+   * within the table.
+   */
+  public TimeBoundaryManager(TableConfig tableConfig, ZkHelixPropertyStore<ZNRecord> propertyStore,
+      BrokerMetrics brokerMetrics, @Nullable Long timeOffsetMs) {
     Preconditions.checkState(tableConfig.getTableType() == TableType.OFFLINE,
         "Cannot construct TimeBoundaryManager for real-time table: %s", tableConfig.getTableName());
     _offlineTableName = tableConfig.getTableName();
@@ -93,13 +107,17 @@ public class TimeBoundaryManager {
 
     // For HOURLY table with time unit other than DAYS, use (maxEndTime - 1 HOUR) as the time boundary; otherwise, use
     // (maxEndTime - 1 DAY)
-    boolean isHourlyTable = CommonConstants.Table.PUSH_FREQUENCY_HOURLY.equalsIgnoreCase(
-        IngestionConfigUtils.getBatchSegmentIngestionFrequency(tableConfig))
-        && _timeFormatSpec.getColumnUnit() != TimeUnit.DAYS;
-    _timeOffsetMs = isHourlyTable ? TimeUnit.HOURS.toMillis(1) : TimeUnit.DAYS.toMillis(1);
+    if (timeOffsetMs != null) {
+      _timeOffsetMs = timeOffsetMs;
+    } else {
+      boolean isHourlyTable = CommonConstants.Table.PUSH_FREQUENCY_HOURLY.equalsIgnoreCase(
+          IngestionConfigUtils.getBatchSegmentIngestionFrequency(tableConfig))
+          && _timeFormatSpec.getColumnUnit() != TimeUnit.DAYS;
+      _timeOffsetMs = isHourlyTable ? TimeUnit.HOURS.toMillis(1) : TimeUnit.DAYS.toMillis(1);
+    }
 
-    LOGGER.info("Constructed TimeBoundaryManager with timeColumn: {}, timeFormat: {}, isHourlyTable: {} for table: {}",
-        _timeColumn, dateTimeSpec.getFormat(), isHourlyTable, _offlineTableName);
+    LOGGER.info("Constructed TimeBoundaryManager with timeColumn: {}, timeFormat: {}, timeOffsetMs: {} for table: {}",
+        _timeColumn, dateTimeSpec.getFormat(), _timeOffsetMs, _offlineTableName);
   }
 
   /**
@@ -122,14 +140,11 @@ public class TimeBoundaryManager {
       segmentZKMetadataPaths.add(_segmentZKMetadataPathPrefix + segment);
     }
     List<ZNRecord> znRecords = _propertyStore.get(segmentZKMetadataPaths, null, AccessOption.PERSISTENT, false);
-    long maxEndTimeMs = INVALID_TIME_MS;
     for (int i = 0; i < numSegments; i++) {
-      String segment = segments.get(i);
-      long endTimeMs = extractEndTimeMsFromSegmentZKMetadataZNRecord(segment, znRecords.get(i));
-      _endTimeMsMap.put(segment, endTimeMs);
-      maxEndTimeMs = Math.max(maxEndTimeMs, endTimeMs);
+      updateSegmentTimes(segments.get(i), znRecords.get(i));
     }
-    updateTimeBoundaryInfo(maxEndTimeMs);
+    updateTimeBoundaryInfo(getMaxEndTimeMs());
+    _minStartTimeMs = getMinStartTimeMsFromSegments();
   }
 
   private void updateExplicitlySetTimeBoundary(IdealState idealState) {
@@ -141,6 +156,23 @@ public class TimeBoundaryManager {
     }
   }
 
+  private void updateSegmentTimes(String segment, @Nullable ZNRecord znRecord) {
+    _endTimeMsMap.put(segment, extractEndTimeMsFromSegmentZKMetadataZNRecord(segment, znRecord));
+    _startTimeMsMap.put(segment, extractStartTimeMsFromSegmentZKMetadataZNRecord(znRecord));
+  }
+
+  private static long extractStartTimeMsFromSegmentZKMetadataZNRecord(@Nullable ZNRecord znRecord) {
+    if (znRecord == null) {
+      return INVALID_TIME_MS;
+    }
+    SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(znRecord);
+    if (segmentZKMetadata.getTotalDocs() == 0) {
+      return INVALID_TIME_MS;
+    }
+    long startTimeMs = segmentZKMetadata.getStartTimeMs();
+    return startTimeMs > 0 ? startTimeMs : INVALID_TIME_MS;
+  }
+
   private long extractEndTimeMsFromSegmentZKMetadataZNRecord(String segment, @Nullable ZNRecord znRecord) {
     if (znRecord == null) {
       LOGGER.warn("Failed to find segment ZK metadata for segment: {}, table: {}", segment, _offlineTableName);
@@ -211,13 +243,16 @@ public class TimeBoundaryManager {
       // NOTE: Only update the segment end time when there are ONLINE instances in the external view to prevent moving
       //       the time boundary before the new segment is picked up by the servers
       Map<String, String> instanceStateMap = externalView.getStateMap(segment);
-      if (instanceStateMap != null && instanceStateMap.containsValue(SegmentStateModel.ONLINE)) {
-        _endTimeMsMap.computeIfAbsent(segment, k -> extractEndTimeMsFromSegmentZKMetadataZNRecord(segment,
-            _propertyStore.get(_segmentZKMetadataPathPrefix + segment, null, AccessOption.PERSISTENT)));
+      if (instanceStateMap != null && instanceStateMap.containsValue(SegmentStateModel.ONLINE)
+          && !_endTimeMsMap.containsKey(segment)) {
+        updateSegmentTimes(segment,
+            _propertyStore.get(_segmentZKMetadataPathPrefix + segment, null, AccessOption.PERSISTENT));
       }
     }
     _endTimeMsMap.keySet().retainAll(onlineSegments);
+    _startTimeMsMap.keySet().retainAll(onlineSegments);
     updateTimeBoundaryInfo(getMaxEndTimeMs());
+    _minStartTimeMs = getMinStartTimeMsFromSegments();
   }
 
   private long getMaxEndTimeMs() {
@@ -228,17 +263,36 @@ public class TimeBoundaryManager {
     return maxEndTimeMs;
   }
 
+  private long getMinStartTimeMsFromSegments() {
+    long minStartTimeMs = Long.MAX_VALUE;
+    for (long startTimeMs : _startTimeMsMap.values()) {
+      if (startTimeMs > 0) {
+        minStartTimeMs = Math.min(minStartTimeMs, startTimeMs);
+      }
+    }
+    return minStartTimeMs != Long.MAX_VALUE ? minStartTimeMs : INVALID_TIME_MS;
+  }
+
   /**
    * Refreshes the metadata for the given segment (called when segment is getting refreshed).
    */
   public synchronized void refreshSegment(String segment) {
-    _endTimeMsMap.put(segment, extractEndTimeMsFromSegmentZKMetadataZNRecord(segment,
-        _propertyStore.get(_segmentZKMetadataPathPrefix + segment, null, AccessOption.PERSISTENT)));
+    updateSegmentTimes(segment,
+        _propertyStore.get(_segmentZKMetadataPathPrefix + segment, null, AccessOption.PERSISTENT));
     updateTimeBoundaryInfo(getMaxEndTimeMs());
+    _minStartTimeMs = getMinStartTimeMsFromSegments();
   }
 
   @Nullable
   public TimeBoundaryInfo getTimeBoundaryInfo() {
     return _timeBoundaryInfo;
   }
+
+  /**
+   * Returns the min start time in millis of the online segments with valid start time, or -1 if there is no such
+   * segment.
+   */
+  public long getMinStartTimeMs() {
+    return _minStartTimeMs;
+  }
 }
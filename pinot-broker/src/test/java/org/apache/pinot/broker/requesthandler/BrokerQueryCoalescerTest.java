@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.routing.SegmentsToQuery;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.sql.parsers.CalciteSqlCompiler;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.expectThrows;
+
+
+public class BrokerQueryCoalescerTest {
+  private static final ServerInstance SERVER = new ServerInstance(new InstanceConfig("server01_9000"));
+
+  @Test
+  public void testFollowersGetLeaderResponse()
+      throws Exception {
+    BrokerQueryCoalescer coalescer = new BrokerQueryCoalescer();
+    BrokerResultCache.Key key = key("SELECT COUNT(*) FROM myTable", "seg0", "seg1");
+
+    // First query becomes the leader
+    assertNull(coalescer.join(key));
+    assertEquals(coalescer.getNumInFlightQueries(), 1);
+
+    // Identical query (including the coalescing query option) becomes a follower, different query does not
+    CompletableFuture<BrokerResponseNative> follower1 = coalescer.join(key);
+    assertNotNull(follower1);
+    CompletableFuture<BrokerResponseNative> follower2 =
+        coalescer.join(key("SET useQueryCoalescing = true; SELECT COUNT(*) FROM myTable", "seg0", "seg1"));
+    assertNotNull(follower2);
+    BrokerResultCache.Key otherKey = key("SELECT COUNT(*) FROM myTable", "seg0", "seg1", "seg2");
+    assertNull(coalescer.join(otherKey));
+    coalescer.complete(otherKey, null);
+
+    BrokerResponseNative leaderResponse = response();
+    coalescer.complete(key, leaderResponse);
+    assertEquals(coalescer.getNumInFlightQueries(), 0);
+    BrokerResponseNative followerResponse1 = BrokerQueryCoalescer.getFollowerResponse(follower1, 1000);
+    BrokerResponseNative followerResponse2 = BrokerQueryCoalescer.getFollowerResponse(follower2, 1000);
+    assertNotNull(followerResponse1);
+    assertNotNull(followerResponse2);
+    assertNotSame(followerResponse1, followerResponse2);
+    assertEquals(followerResponse1.getResultTable().getRows(), leaderResponse.getResultTable().getRows());
+    assertEquals(followerResponse1.getTotalDocs(), 100L);
+    assertEquals(followerResponse1.getNumServersQueried(), 1);
+
+    // Followers get their own copy of the rows
+    followerResponse1.getResultTable().getRows().get(0)[0] = 0L;
+    assertEquals(followerResponse2.getResultTable().getRows().get(0)[0], 100L);
+    assertEquals(leaderResponse.getResultTable().getRows().get(0)[0], 100L);
+
+    // Next identical query becomes a new leader
+    assertNull(coalescer.join(key));
+  }
+
+  @Test
+  public void testLeaderFailureAndTimeout()
+      throws Exception {
+    BrokerQueryCoalescer coalescer = new BrokerQueryCoalescer();
+    BrokerResultCache.Key key = key("SELECT COUNT(*) FROM myTable", "seg0");
+    assertNull(coalescer.join(key));
+    CompletableFuture<BrokerResponseNative> follower = coalescer.join(key);
+    assertNotNull(follower);
+    expectThrows(TimeoutException.class, () -> BrokerQueryCoalescer.getFollowerResponse(follower, 10));
+
+    // Follower gets no response when the leader fails
+    coalescer.complete(key, null);
+    assertNull(BrokerQueryCoalescer.getFollowerResponse(follower, 1000));
+    assertEquals(coalescer.getNumInFlightQueries(), 0);
+  }
+
+  private static BrokerResultCache.Key key(String query, String... segments) {
+    BrokerRequest brokerRequest = CalciteSqlCompiler.compileToBrokerRequest(query);
+    brokerRequest.getPinotQuery().getDataSource().setTableName("myTable_OFFLINE");
+    return BrokerResultCache.buildKey(brokerRequest.getPinotQuery(), brokerRequest,
+        Map.of(SERVER, new SegmentsToQuery(List.of(segments), List.of())), null, null);
+  }
+
+  private static BrokerResponseNative response() {
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    brokerResponse.setResultTable(new ResultTable(
+        new DataSchema(new String[]{"count(*)"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.LONG}),
+        List.<Object[]>of(new Object[]{100L})));
+    brokerResponse.setTotalDocs(100);
+    brokerResponse.setNumServersQueried(1);
+    brokerResponse.setNumServersResponded(1);
+    return brokerResponse;
+  }
+}
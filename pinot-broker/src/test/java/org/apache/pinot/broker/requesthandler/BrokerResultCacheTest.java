@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.QueryProcessingException;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.routing.SegmentsToQuery;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.core.util.GapfillUtils;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.apache.pinot.sql.parsers.CalciteSqlCompiler;
+import org.apache.pinot.sql.parsers.CalciteSqlParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class BrokerResultCacheTest {
+  private static final ServerInstance SERVER_1 = new ServerInstance(new InstanceConfig("server01_9000"));
+  private static final ServerInstance SERVER_2 = new ServerInstance(new InstanceConfig("server02_9000"));
+
+  @Test
+  public void testCacheHitAndInvalidation() {
+    BrokerResultCache cache = new BrokerResultCache(1000, 60_000, 60_000);
+    BrokerResultCache.Key key = offlineKey("SELECT COUNT(*) FROM myTable", "seg0", "seg1");
+    assertNull(cache.get(key));
+    cache.put(key, cache.getGeneration("myTable_OFFLINE", null), response(2));
+
+    // Same query routed to the same segments, regardless of the servers
+    BrokerRequest offlineRequest = offlineRequest("SELECT COUNT(*) FROM myTable");
+    BrokerResultCache.Key sameKey = BrokerResultCache.buildKey(offlineRequest.getPinotQuery(), offlineRequest,
+        Map.of(SERVER_1, new SegmentsToQuery(List.of("seg1"), List.of()), SERVER_2,
+            new SegmentsToQuery(List.of("seg0"), List.of())), null, null);
+    BrokerResponseNative cachedResponse = cache.get(sameKey);
+    assertNotNull(cachedResponse);
+    assertEquals(cachedResponse.getNumRowsResultSet(), 2);
+    assertEquals(cachedResponse.getTotalDocs(), 100L);
+    assertEquals(cachedResponse.getNumServersQueried(), 0);
+
+    // Modifying the returned rows does not affect the cache
+    cachedResponse.getResultTable().getRows().get(0)[0] = -1L;
+    cachedResponse.getResultTable().getRows().clear();
+    assertEquals(cache.get(sameKey).getResultTable().getRows().get(0)[0], 0L);
+
+    // Different segments or different query
+    assertNull(cache.get(offlineKey("SELECT COUNT(*) FROM myTable", "seg0", "seg1", "seg2")));
+    assertNull(cache.get(offlineKey("SELECT COUNT(*) FROM myTable WHERE a = 1", "seg0", "seg1")));
+
+    // The result cache query option itself does not change the key
+    assertNotNull(cache.get(offlineKey("SET useResultCache = true; SELECT COUNT(*) FROM myTable", "seg0", "seg1")));
+
+    cache.invalidateTable("otherTable_OFFLINE");
+    assertNotNull(cache.get(key));
+    cache.invalidateTable("myTable_OFFLINE");
+    assertNull(cache.get(key));
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testRealtimeTtlAndIncompleteResponses() {
+    BrokerResultCache cache = new BrokerResultCache(1000, 60_000, 0);
+    BrokerRequest realtimeRequest = CalciteSqlCompiler.compileToBrokerRequest("SELECT COUNT(*) FROM myTable");
+    realtimeRequest.getPinotQuery().getDataSource().setTableName("myTable_REALTIME");
+    BrokerResultCache.Key realtimeKey = BrokerResultCache.buildKey(realtimeRequest.getPinotQuery(), null, null,
+        realtimeRequest,
+        Map.of(SERVER_1, new SegmentsToQuery(List.of("seg0"), List.of())));
+    cache.put(realtimeKey, cache.getGeneration(null, "myTable_REALTIME"), response(1));
+    assertNull(cache.get(realtimeKey));
+
+    BrokerResultCache.Key offlineKey = offlineKey("SELECT COUNT(*) FROM myTable", "seg0");
+    BrokerResponseNative withException = response(1);
+    withException.addException(new QueryProcessingException(QueryErrorCode.QUERY_EXECUTION, "error"));
+    cache.put(offlineKey, 0, withException);
+    assertNull(cache.get(offlineKey));
+    BrokerResponseNative missingServer = response(1);
+    missingServer.setNumServersResponded(0);
+    cache.put(offlineKey, 0, missingServer);
+    assertNull(cache.get(offlineKey));
+  }
+
+  @Test
+  public void testPutAfterInvalidation() {
+    BrokerResultCache cache = new BrokerResultCache(1000, 60_000, 60_000);
+    BrokerResultCache.Key key = offlineKey("SELECT COUNT(*) FROM myTable", "seg0");
+
+    // The query is routed, then the table is invalidated (e.g. the segment is refreshed) before the response is cached
+    long generation = cache.getGeneration("myTable_OFFLINE", null);
+    cache.invalidateTable("myTable_OFFLINE");
+    cache.put(key, generation, response(1));
+    assertNull(cache.get(key));
+    assertEquals(cache.size(), 0);
+
+    // Invalidating another table does not affect the generation
+    generation = cache.getGeneration("myTable_OFFLINE", null);
+    cache.invalidateTable("otherTable_OFFLINE");
+    cache.put(key, generation, response(1));
+    assertNotNull(cache.get(key));
+  }
+
+  @Test
+  public void testBrokerQueryInKey() {
+    BrokerResultCache cache = new BrokerResultCache(1000, 60_000, 60_000);
+    // Gapfill is processed on the broker, so the queries only differing in the fill type have the same server query
+    String gapfillQuery = "SELECT GAPFILL(DATETIMECONVERT(eventTime, '1:MILLISECONDS:EPOCH', '1:MILLISECONDS:EPOCH', "
+        + "'1:HOURS'), '1:MILLISECONDS:EPOCH', '1636257600000', '1636286400000', '1:HOURS', FILL(isOccupied, '%s'), "
+        + "TIMESERIESON(lotId)) AS time_col, lotId, isOccupied FROM myTable LIMIT 200";
+    PinotQuery brokerQuery1 = CalciteSqlParser.compileToPinotQuery(String.format(gapfillQuery, "FILL_PREVIOUS_VALUE"));
+    PinotQuery brokerQuery2 = CalciteSqlParser.compileToPinotQuery(String.format(gapfillQuery, "FILL_DEFAULT_VALUE"));
+    BrokerRequest serverRequest1 = offlineRequest(GapfillUtils.stripGapfill(brokerQuery1));
+    BrokerRequest serverRequest2 = offlineRequest(GapfillUtils.stripGapfill(brokerQuery2));
+    assertEquals(serverRequest1.getPinotQuery(), serverRequest2.getPinotQuery());
+    Map<ServerInstance, SegmentsToQuery> routingTable =
+        Map.of(SERVER_1, new SegmentsToQuery(List.of("seg0"), List.of()));
+    BrokerResultCache.Key key1 = BrokerResultCache.buildKey(brokerQuery1, serverRequest1, routingTable, null, null);
+    BrokerResultCache.Key key2 = BrokerResultCache.buildKey(brokerQuery2, serverRequest2, routingTable, null, null);
+    cache.put(key1, cache.getGeneration("myTable_OFFLINE", null), response(1));
+    assertNotNull(cache.get(key1));
+    assertNull(cache.get(key2));
+  }
+
+  private static BrokerRequest offlineRequest(PinotQuery serverQuery) {
+    BrokerRequest brokerRequest = CalciteSqlCompiler.convertToBrokerRequest(serverQuery.deepCopy());
+    brokerRequest.getPinotQuery().getDataSource().setTableName("myTable_OFFLINE");
+    return brokerRequest;
+  }
+
+  private static BrokerRequest offlineRequest(String query) {
+    BrokerRequest brokerRequest = CalciteSqlCompiler.compileToBrokerRequest(query);
+    brokerRequest.getPinotQuery().getDataSource().setTableName("myTable_OFFLINE");
+    return brokerRequest;
+  }
+
+  private static BrokerResultCache.Key offlineKey(String query, String... segments) {
+    BrokerRequest offlineRequest = offlineRequest(query);
+    return BrokerResultCache.buildKey(offlineRequest.getPinotQuery(), offlineRequest,
+        Map.of(SERVER_1, new SegmentsToQuery(List.of(segments), List.of())), null, null);
+  }
+
+  private static BrokerResponseNative response(int numRows) {
+    List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < numRows; i++) {
+      rows.add(new Object[]{(long) i});
+    }
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    brokerResponse.setResultTable(new ResultTable(
+        new DataSchema(new String[]{"count(*)"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.LONG}),
+        rows));
+    brokerResponse.setTotalDocs(100);
+    brokerResponse.setNumServersQueried(1);
+    brokerResponse.setNumServersResponded(1);
+    return brokerResponse;
+  }
+}
@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.core.routing.ImplicitHybridTableRouteInfo;
+import org.apache.pinot.core.routing.RoutingManager;
+import org.apache.pinot.core.routing.TableRouteInfo;
+import org.apache.pinot.core.routing.timeboundary.TimeBoundaryInfo;
+import org.apache.pinot.spi.config.table.QueryConfig;
+import org.apache.pinot.spi.config.table.RollupConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.apache.pinot.sql.parsers.CalciteSqlParser;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class RollupQueryRewriterTest {
+  private static final String TABLE_NAME = "events";
+  private static final String HOURLY_TABLE_NAME = "events_hourly_OFFLINE";
+  private static final String DAILY_TABLE_NAME = "events_daily_OFFLINE";
+  private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+  private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final TableConfig _offlineTableConfig =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(TABLE_NAME).setTimeColumnName("ts").build();
+  private final TableConfig _realtimeTableConfig =
+      new TableConfigBuilder(TableType.REALTIME).setTableName(TABLE_NAME).setTimeColumnName("ts").build();
+  private RollupQueryRewriter _rewriter;
+  private RoutingManager _routingManager;
+
+  @BeforeClass
+  public void setUp() {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(TABLE_NAME)
+        .addSingleValueDimension("country", DataType.STRING)
+        .addSingleValueDimension("browser", DataType.STRING)
+        .addMetric("clicks", DataType.LONG)
+        .addMetric("revenue", DataType.DOUBLE)
+        .addDateTime("ts", DataType.LONG, "1:MILLISECONDS:EPOCH", "1:MILLISECONDS")
+        .build();
+    Schema hourlySchema = new Schema.SchemaBuilder().setSchemaName("events_hourly")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addMetric("clicks", DataType.LONG)
+        .addMetric("revenue", DataType.DOUBLE)
+        .addDateTime("ts", DataType.LONG, "1:MILLISECONDS:EPOCH", "1:HOURS")
+        .build();
+    Schema dailySchema = new Schema.SchemaBuilder().setSchemaName("events_daily")
+        .addSingleValueDimension("country", DataType.STRING)
+        .addSingleValueDimension("browser", DataType.STRING)
+        .addMetric("clicks", DataType.LONG)
+        .addDateTime("ts", DataType.LONG, "1:MILLISECONDS:EPOCH", "1:DAYS")
+        .build();
+    TableConfig hourlyTableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName("events_hourly")
+        .setTimeColumnName("ts")
+        .setQueryConfig(new QueryConfig(null, null, null, null, null, null,
+            new RollupConfig(TABLE_NAME, "1h", Map.of("revenue", "MAX"), null)))
+        .build();
+    TableConfig dailyTableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName("events_daily")
+        .setTimeColumnName("ts")
+        .setQueryConfig(new QueryConfig(null, null, null, null, null, null,
+            new RollupConfig(TABLE_NAME, "1d", null, List.of("browser"))))
+        .build();
+
+    TableCache tableCache = mock(TableCache.class);
+    when(tableCache.getSchema(TABLE_NAME)).thenReturn(schema);
+    when(tableCache.getSchema("events_hourly")).thenReturn(hourlySchema);
+    when(tableCache.getSchema("events_daily")).thenReturn(dailySchema);
+    when(tableCache.getTableConfig(HOURLY_TABLE_NAME)).thenReturn(hourlyTableConfig);
+    when(tableCache.getTableConfig(DAILY_TABLE_NAME)).thenReturn(dailyTableConfig);
+    _rewriter = new RollupQueryRewriter(tableCache);
+    _rewriter.onChange(List.of(_offlineTableConfig, _realtimeTableConfig, hourlyTableConfig, dailyTableConfig));
+    List<RollupQueryRewriter.RollupTable> rollupTables = _rewriter.getRollupTablesMap().get(TABLE_NAME);
+    assertEquals(rollupTables.size(), 2);
+    assertEquals(rollupTables.get(0)._tableName, DAILY_TABLE_NAME);
+    assertEquals(rollupTables.get(1)._tableName, HOURLY_TABLE_NAME);
+
+    // Both rollups cover from day 1, hourly rollup covers up to day 10 05:00, daily rollup covers up to day 10
+    _routingManager = mock(RoutingManager.class);
+    when(_routingManager.routingExists(anyString())).thenReturn(true);
+    when(_routingManager.getMinStartTimeMs(HOURLY_TABLE_NAME)).thenReturn(day(1));
+    when(_routingManager.getMinStartTimeMs(DAILY_TABLE_NAME)).thenReturn(day(1));
+    when(_routingManager.getTimeBoundaryInfo(HOURLY_TABLE_NAME)).thenReturn(
+        new TimeBoundaryInfo("ts", Long.toString(day(10) + 5 * HOUR_MS)));
+    when(_routingManager.getTimeBoundaryInfo(DAILY_TABLE_NAME)).thenReturn(
+        new TimeBoundaryInfo("ts", Long.toString(day(10))));
+  }
+
+  @Test
+  public void testFullyCoveredQuery() {
+    // Coarsest rollup covering the time range is picked
+    String query = "SELECT country, SUM(clicks) FROM events WHERE ts >= %d AND ts < %d GROUP BY country";
+    TableRouteInfo routeInfo = rewrite(String.format(query, day(1), day(5)), offlineRouteInfo());
+    assertNotNull(routeInfo);
+    assertEquals(routeInfo.getOfflineTableName(), DAILY_TABLE_NAME);
+    assertTrue(routeInfo.isOffline());
+
+    // Time range not aligned with days
+    routeInfo = rewrite(String.format(query, day(1), day(10) + 3 * HOUR_MS), offlineRouteInfo());
+    assertNotNull(routeInfo);
+    assertEquals(routeInfo.getOfflineTableName(), HOURLY_TABLE_NAME);
+    assertTrue(routeInfo.isOffline());
+
+    // Exclusive lower bound and inclusive upper bound aligned with days after moving to the next millisecond
+    routeInfo = rewrite(String.format("SELECT MAX(revenue), DISTINCTCOUNT(country) FROM events WHERE ts > %d AND "
+        + "ts <= %d", day(1) - 1, day(3) - 1), offlineRouteInfo());
+    assertNotNull(routeInfo);
+    assertEquals(routeInfo.getOfflineTableName(), HOURLY_TABLE_NAME);
+
+    routeInfo = rewrite(String.format("SELECT DATETRUNC('DAY', ts), SUM(clicks) FROM events WHERE ts BETWEEN %d AND %d "
+        + "GROUP BY DATETRUNC('DAY', ts)", day(1), day(3) - 1), offlineRouteInfo());
+    assertNotNull(routeInfo);
+    assertEquals(routeInfo.getOfflineTableName(), DAILY_TABLE_NAME);
+    routeInfo = rewrite(String.format("SELECT DATETRUNC('HOUR', ts), SUM(clicks) FROM events WHERE ts >= %d AND "
+        + "ts < %d GROUP BY DATETRUNC('HOUR', ts)", day(1), day(3)), offlineRouteInfo());
+    assertNotNull(routeInfo);
+    assertEquals(routeInfo.getOfflineTableName(), HOURLY_TABLE_NAME);
+  }
+
+  @Test
+  public void testUncoveredHead() {
+    String query = "SELECT country, SUM(clicks) FROM events WHERE ts >= %d AND ts < %d GROUP BY country";
+
+    // Time range starting before the oldest segment of both rollups, or without lower bound
+    assertNull(rewrite(String.format(query, day(0), day(5)), offlineRouteInfo()));
+    assertNull(rewrite(String.format("SELECT SUM(clicks) FROM events WHERE ts < %d", day(5)), realtimeRouteInfo()));
+
+    // Daily rollup with a shorter retention than the hourly rollup, the hourly rollup is picked for older data
+    when(_routingManager.getMinStartTimeMs(DAILY_TABLE_NAME)).thenReturn(day(3));
+    try {
+      TableRouteInfo routeInfo = rewrite(String.format(query, day(1), day(5)), offlineRouteInfo());
+      assertNotNull(routeInfo);
+      assertEquals(routeInfo.getOfflineTableName(), HOURLY_TABLE_NAME);
+      routeInfo = rewrite(String.format(query, day(3), day(5)), offlineRouteInfo());
+      assertNotNull(routeInfo);
+      assertEquals(routeInfo.getOfflineTableName(), DAILY_TABLE_NAME);
+    } finally {
+      when(_routingManager.getMinStartTimeMs(DAILY_TABLE_NAME)).thenReturn(day(1));
+    }
+
+    // Start time not tracked for the rollup
+    when(_routingManager.getMinStartTimeMs(HOURLY_TABLE_NAME)).thenReturn(null);
+    when(_routingManager.getMinStartTimeMs(DAILY_TABLE_NAME)).thenReturn(null);
+    try {
+      assertNull(rewrite(String.format(query, day(1), day(5)), offlineRouteInfo()));
+    } finally {
+      when(_routingManager.getMinStartTimeMs(HOURLY_TABLE_NAME)).thenReturn(day(1));
+      when(_routingManager.getMinStartTimeMs(DAILY_TABLE_NAME)).thenReturn(day(1));
+    }
+  }
+
+  @Test
+  public void testUncoveredTail() {
+    String query = String.format("SELECT country, SUM(clicks) FROM events WHERE ts >= %d GROUP BY country", day(1));
+
+    // Tail answered from the REALTIME table with the time boundary at the end of the daily rollup
+    TableRouteInfo routeInfo = rewrite(query, realtimeRouteInfo());
+    assertNotNull(routeInfo);
+    assertTrue(routeInfo.isHybrid());
+    assertEquals(routeInfo.getOfflineTableName(), DAILY_TABLE_NAME);
+    assertEquals(routeInfo.getRealtimeTableName(), "events_REALTIME");
+    assertEquals(routeInfo.getTimeBoundaryInfo().getTimeValue(), Long.toString(day(10) - 1));
+
+    // Tail partially in the OFFLINE part of the source table, or OFFLINE only source table
+    ImplicitHybridTableRouteInfo hybridRouteInfo = realtimeRouteInfo();
+    hybridRouteInfo.setOfflineTableName("events_OFFLINE");
+    hybridRouteInfo.setOfflineTableConfig(_offlineTableConfig);
+    hybridRouteInfo.setOfflineRouteExists(true);
+    hybridRouteInfo.setTimeBoundaryInfo(new TimeBoundaryInfo("ts", Long.toString(day(12))));
+    assertNull(rewrite(query, hybridRouteInfo));
+    assertNull(rewrite(query, offlineRouteInfo()));
+
+    // Time range not covered by the rollup at all
+    assertNull(rewrite(String.format("SELECT SUM(clicks) FROM events WHERE ts >= %d", day(11)), realtimeRouteInfo()));
+  }
+
+  @Test
+  public void testIncompatibleQueries() {
+    String timeFilter = String.format(" WHERE ts >= %d AND ts < %d", day(1), day(5));
+    for (String query : new String[]{
+        // Selection query
+        "SELECT country, clicks FROM events" + timeFilter,
+        // Dimension not in the hourly rollup table, and erased by the daily rollup
+        "SELECT browser, SUM(clicks) FROM events" + timeFilter + " GROUP BY browser",
+        "SELECT SUM(clicks) FROM events" + timeFilter + " AND browser = 'chrome'",
+        "SELECT DISTINCTCOUNT(browser) FROM events" + timeFilter,
+        // Aggregations not preserved by the rollup tables
+        "SELECT COUNT(*) FROM events" + timeFilter,
+        "SELECT SUM(revenue) FROM events" + timeFilter,
+        "SELECT AVG(clicks) FROM events" + timeFilter,
+        "SELECT SUM(clicks) FILTER (WHERE country = 'us') FROM events" + timeFilter,
+        // Time column not aligned with the time buckets
+        "SELECT ts, SUM(clicks) FROM events" + timeFilter + " GROUP BY ts",
+        "SELECT SUM(clicks) FROM events WHERE ts = " + day(1),
+        "SELECT SUM(clicks) FROM events WHERE ts < " + (day(1) + 1),
+        "SELECT DATETRUNC('MINUTE', ts), SUM(clicks) FROM events" + timeFilter + " GROUP BY DATETRUNC('MINUTE', ts)",
+        // Disabled by query option
+        "SET useRollupTables = false; SELECT SUM(clicks) FROM events" + timeFilter
+    }) {
+      assertNull(rewrite(query, offlineRouteInfo()), query);
+    }
+
+    // Table type specified in the query
+    assertNull(rewrite("SELECT SUM(clicks) FROM events_OFFLINE" + timeFilter, offlineRouteInfo()));
+
+    // No rollup table registered
+    assertFalse(_rewriter.getRollupTablesMap().containsKey("unknown"));
+    assertNull(rewrite("SELECT SUM(clicks) FROM unknown" + timeFilter, offlineRouteInfo()));
+  }
+
+  private TableRouteInfo rewrite(String query, TableRouteInfo routeInfo) {
+    PinotQuery pinotQuery = CalciteSqlParser.compileToPinotQuery(query);
+    return _rewriter.getRollupRouteInfo(pinotQuery, routeInfo, _routingManager);
+  }
+
+  private ImplicitHybridTableRouteInfo offlineRouteInfo() {
+    ImplicitHybridTableRouteInfo routeInfo = new ImplicitHybridTableRouteInfo();
+    routeInfo.setOfflineTableName("events_OFFLINE");
+    routeInfo.setOfflineTableConfig(_offlineTableConfig);
+    routeInfo.setOfflineRouteExists(true);
+    return routeInfo;
+  }
+
+  private ImplicitHybridTableRouteInfo realtimeRouteInfo() {
+    ImplicitHybridTableRouteInfo routeInfo = new ImplicitHybridTableRouteInfo();
+    routeInfo.setRealtimeTableName("events_REALTIME");
+    routeInfo.setRealtimeTableConfig(_realtimeTableConfig);
+    routeInfo.setRealtimeRouteExists(true);
+    return routeInfo;
+  }
+
+  private static long day(int day) {
+    return (20000L + day) * DAY_MS;
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.requesthandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.sql.parsers.CalciteSqlParser;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class SampledAggregationExtrapolatorTest {
+
+  @Test
+  public void testExtrapolate() {
+    ResultTable resultTable = new ResultTable(new DataSchema(
+        new String[]{"col", "cnt", "sum(x)", "avg(x)", "sumprecision(x)", "max(x)", "filteredSum"},
+        new ColumnDataType[]{
+            ColumnDataType.STRING, ColumnDataType.LONG, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE,
+            ColumnDataType.BIG_DECIMAL, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE
+        }), new ArrayList<>(List.of(new Object[]{"a", 10L, 2.5, 0.25, "1.5", 3.0, 1.0})));
+    SampledAggregationExtrapolator.extrapolate(CalciteSqlParser.compileToPinotQuery(
+        "SELECT col, COUNT(*) AS cnt, SUM(x), AVG(x), SUMPRECISION(x), MAX(x), SUM(x) FILTER (WHERE x > 1) AS "
+            + "filteredSum FROM myTable GROUP BY col"), resultTable, 0.25);
+    assertEquals(resultTable.getRows().get(0), new Object[]{"a", 40L, 10.0, 0.25, "6", 3.0, 4.0});
+  }
+
+  @Test
+  public void testNonAggregationQuery() {
+    ResultTable resultTable = new ResultTable(
+        new DataSchema(new String[]{"x"}, new ColumnDataType[]{ColumnDataType.LONG}),
+        new ArrayList<>(List.<Object[]>of(new Object[]{10L})));
+    SampledAggregationExtrapolator.extrapolate(CalciteSqlParser.compileToPinotQuery("SELECT x FROM myTable"),
+        resultTable, 0.25);
+    assertEquals(resultTable.getRows().get(0), new Object[]{10L});
+  }
+}
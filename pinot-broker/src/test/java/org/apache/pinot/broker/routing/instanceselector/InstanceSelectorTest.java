@@ -72,6 +72,9 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 
@@ -1923,4 +1926,80 @@ public class InstanceSelectorTest {
 
     assertEquals(selectedResult.getLeft(), expectedSelection);
   }
+
+  @Test
+  public void testReuseCandidatesForUnchangedSegments() {
+    String segment0 = "segment0";
+    String segment1 = "segment1";
+    String segment2 = "segment2";
+    String instance0 = "instance0";
+    String instance1 = "instance1";
+    Set<String> enabledInstances = ImmutableSet.of(instance0, instance1);
+    Map<String, List<Pair<String, String>>> segmentState =
+        Map.of(segment0, List.of(Pair.of(instance0, ONLINE), Pair.of(instance1, ONLINE)), segment1,
+            List.of(Pair.of(instance0, ONLINE), Pair.of(instance1, ONLINE)), segment2,
+            List.of(Pair.of(instance0, ONLINE), Pair.of(instance1, ONLINE)));
+    IdealState idealState = createIdealState(segmentState);
+    ExternalView externalView = createExternalView(segmentState);
+    Set<String> onlineSegments = new HashSet<>(List.of(segment0, segment1, segment2));
+    BalancedInstanceSelector instanceSelector = new BalancedInstanceSelector();
+    instanceSelector.init(_tableConfig, _propertyStore, _brokerMetrics, null, _mutableClock, INSTANCE_SELECTOR_CONFIG,
+        enabledInstances, EMPTY_SERVER_MAP, idealState, externalView, onlineSegments);
+    List<SegmentInstanceCandidate> segment0Candidates = instanceSelector._oldSegmentCandidatesMap.get(segment0);
+    List<SegmentInstanceCandidate> segment1Candidates = instanceSelector._oldSegmentCandidatesMap.get(segment1);
+    assertEquals(segment1Candidates.size(), 2);
+
+    // Change the external view of segment1 in place, and remove segment2
+    externalView.getRecord().getMapFields().get(segment1).put(instance1, OFFLINE);
+    onlineSegments.remove(segment2);
+    instanceSelector.onAssignmentChange(idealState, externalView, onlineSegments);
+    assertSame(instanceSelector._oldSegmentCandidatesMap.get(segment0), segment0Candidates);
+    assertNotSame(instanceSelector._oldSegmentCandidatesMap.get(segment1), segment1Candidates);
+    assertEquals(instanceSelector._oldSegmentCandidatesMap.get(segment1).size(), 1);
+    assertEquals(instanceSelector._oldSegmentCandidatesMap.keySet(), Set.of(segment0, segment1));
+
+    InstanceSelector.SelectionResult selectionResult =
+        instanceSelector.select(_brokerRequest, List.of(segment0, segment1), 0);
+    assertEquals(selectionResult.getSegmentToInstanceMap().get(segment1), instance0);
+    assertTrue(selectionResult.getUnavailableSegments().isEmpty());
+  }
+
+  @Test
+  public void testSelectAlternativeInstance() {
+    String segment0 = "segment0";
+    String segment1 = "segment1";
+    String instance0 = "instance0";
+    String instance1 = "instance1";
+    String instance2 = "instance2";
+    Set<String> enabledInstances = ImmutableSet.of(instance0, instance1, instance2);
+    // instance2 only hosts segment0, and is OFFLINE for segment1
+    Map<String, List<Pair<String, String>>> segmentState =
+        Map.of(segment0, List.of(Pair.of(instance0, ONLINE), Pair.of(instance1, ONLINE), Pair.of(instance2, ONLINE)),
+            segment1, List.of(Pair.of(instance0, ONLINE), Pair.of(instance1, ONLINE), Pair.of(instance2, OFFLINE)));
+    IdealState idealState = createIdealState(segmentState);
+    ExternalView externalView = createExternalView(segmentState);
+    Set<String> onlineSegments = Set.of(segment0, segment1);
+    Map<String, ServerInstance> enabledServerMap = new HashMap<>();
+    for (String instance : enabledInstances) {
+      enabledServerMap.put(instance, mock(ServerInstance.class));
+    }
+    BalancedInstanceSelector instanceSelector = new BalancedInstanceSelector();
+    instanceSelector.init(_tableConfig, _propertyStore, _brokerMetrics, null, _mutableClock, INSTANCE_SELECTOR_CONFIG,
+        enabledInstances, enabledServerMap, idealState, externalView, onlineSegments);
+
+    assertEquals(instanceSelector.selectAlternativeInstance(List.of(segment0, segment1), Set.of(instance0)),
+        instance1);
+    assertNull(instanceSelector.selectAlternativeInstance(List.of(segment0, segment1), Set.of(instance0, instance1)));
+    assertEquals(instanceSelector.selectAlternativeInstance(List.of(segment0), Set.of(instance0, instance1)),
+        instance2);
+    assertNull(instanceSelector.selectAlternativeInstance(List.of("nonExistingSegment"), Set.of()));
+    assertNull(instanceSelector.selectAlternativeInstance(List.of(), Set.of()));
+
+    // A disabled instance is never picked, even before the segment states are refreshed
+    enabledServerMap.remove(instance1);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(instanceSelector.selectAlternativeInstance(List.of(segment0), Set.of(instance0)), instance2);
+    }
+    assertNull(instanceSelector.selectAlternativeInstance(List.of(segment0, segment1), Set.of(instance0)));
+  }
 }
@@ -19,6 +19,7 @@
 package org.apache.pinot.broker.routing.segmentpruner;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -54,6 +55,7 @@ import org.apache.pinot.spi.data.DateTimeFormatSpec;
 import org.apache.pinot.spi.data.FieldSpec.DataType;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.stream.StreamConfigProperties;
+import org.apache.pinot.spi.utils.CommonConstants.Segment;
 import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
 import org.apache.pinot.sql.parsers.CalciteSqlCompiler;
 import org.mockito.Mockito;
@@ -71,9 +73,13 @@ public class SegmentPrunerTest extends ControllerTest {
   private static final String RAW_TABLE_NAME = "testTable";
   private static final String OFFLINE_TABLE_NAME = "testTable_OFFLINE";
   private static final String REALTIME_TABLE_NAME = "testTable_REALTIME";
+  private static final String MIN_MAX_RAW_TABLE_NAME = "minMaxTable";
+  private static final String MIN_MAX_OFFLINE_TABLE_NAME = "minMaxTable_OFFLINE";
   private static final String PARTITION_COLUMN_1 = "memberId";
   private static final String PARTITION_COLUMN_2 = "memberName";
   private static final String TIME_COLUMN = "timeColumn";
+  private static final String MIN_MAX_COLUMN_1 = "userId";
+  private static final String MIN_MAX_COLUMN_2 = "country";
   private static final String SDF_PATTERN = "yyyyMMdd";
 
   private static final String QUERY_1 = "SELECT * FROM testTable";
@@ -117,6 +123,15 @@ public class SegmentPrunerTest extends ControllerTest {
           Timestamp.valueOf("2020-01-01 00:00:00").getTime(), Timestamp.valueOf("2020-02-01 00:00:00").getTime(),
           Timestamp.valueOf("2020-04-01 00:00:00").getTime());
 
+  private static final String MIN_MAX_QUERY_1 = "SELECT * FROM testTable WHERE userId = 15";
+  private static final String MIN_MAX_QUERY_2 = "SELECT * FROM testTable WHERE userId IN (5, 100)";
+  private static final String MIN_MAX_QUERY_3 = "SELECT * FROM testTable WHERE userId > 20 AND userId <= 50";
+  private static final String MIN_MAX_QUERY_4 = "SELECT * FROM testTable WHERE userId < 10 OR country = 'us'";
+  private static final String MIN_MAX_QUERY_5 = "SELECT * FROM testTable WHERE userId BETWEEN 31 AND 39";
+  private static final String MIN_MAX_QUERY_6 = "SELECT * FROM testTable WHERE NOT userId = 15";
+  private static final String MIN_MAX_QUERY_7 = "SELECT * FROM testTable WHERE userId = 'abc'";
+  private static final String MIN_MAX_QUERY_8 = "SELECT * FROM testTable WHERE country = 'ca' AND memberId = 0";
+
   // this is duplicate with KinesisConfig.STREAM_TYPE, while instead of use KinesisConfig.STREAM_TYPE directly, we
   // hardcode the value here to avoid pulling the entire pinot-kinesis module as dependency.
   private static final String KINESIS_STREAM_TYPE = "kinesis";
@@ -672,6 +687,123 @@ public class SegmentPrunerTest extends ControllerTest {
     assertEquals(segmentPruner.prune(brokerRequest1, onlineSegments), Set.of(segment0));
   }
 
+  @Test
+  public void testSegmentPrunerFactoryForMinMaxValuePruner() {
+    TableConfig tableConfig = mock(TableConfig.class);
+    when(tableConfig.getTableName()).thenReturn(MIN_MAX_OFFLINE_TABLE_NAME);
+    IndexingConfig indexingConfig = mock(IndexingConfig.class);
+    when(tableConfig.getIndexingConfig()).thenReturn(indexingConfig);
+
+    // Routing config is missing
+    List<SegmentPruner> segmentPruners = SegmentPrunerFactory.getSegmentPruners(tableConfig, _propertyStore);
+    assertEquals(segmentPruners.size(), 0);
+
+    // Min/max value pruner type is configured
+    RoutingConfig routingConfig = mock(RoutingConfig.class);
+    when(routingConfig.getSegmentPrunerTypes()).thenReturn(List.of(RoutingConfig.MIN_MAX_VALUE_SEGMENT_PRUNER_TYPE));
+    when(tableConfig.getRoutingConfig()).thenReturn(routingConfig);
+
+    // Broker pruning columns are missing
+    segmentPruners = SegmentPrunerFactory.getSegmentPruners(tableConfig, _propertyStore);
+    assertEquals(segmentPruners.size(), 0);
+
+    // Schema is missing
+    when(indexingConfig.getBrokerPruningColumns()).thenReturn(List.of(MIN_MAX_COLUMN_1, MIN_MAX_COLUMN_2));
+    segmentPruners = SegmentPrunerFactory.getSegmentPruners(tableConfig, _propertyStore);
+    assertEquals(segmentPruners.size(), 0);
+
+    // Columns are missing from the schema
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(MIN_MAX_RAW_TABLE_NAME)
+        .addSingleValueDimension(PARTITION_COLUMN_1, DataType.INT).build();
+    ZKMetadataProvider.setSchema(_propertyStore, schema);
+    segmentPruners = SegmentPrunerFactory.getSegmentPruners(tableConfig, _propertyStore);
+    assertEquals(segmentPruners.size(), 0);
+
+    // Valid columns
+    schema = new Schema.SchemaBuilder().setSchemaName(MIN_MAX_RAW_TABLE_NAME)
+        .addSingleValueDimension(MIN_MAX_COLUMN_1, DataType.INT)
+        .addSingleValueDimension(MIN_MAX_COLUMN_2, DataType.STRING).build();
+    ZKMetadataProvider.setSchema(_propertyStore, schema);
+    segmentPruners = SegmentPrunerFactory.getSegmentPruners(tableConfig, _propertyStore);
+    assertEquals(segmentPruners.size(), 1);
+    assertTrue(segmentPruners.get(0) instanceof MinMaxValueSegmentPruner);
+  }
+
+  @Test
+  public void testMinMaxValueSegmentPruner() {
+    BrokerRequest brokerRequest1 = CalciteSqlCompiler.compileToBrokerRequest(QUERY_1);
+    BrokerRequest brokerRequest2 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_1);
+    BrokerRequest brokerRequest3 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_2);
+    BrokerRequest brokerRequest4 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_3);
+    BrokerRequest brokerRequest5 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_4);
+    BrokerRequest brokerRequest6 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_5);
+    BrokerRequest brokerRequest7 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_6);
+    BrokerRequest brokerRequest8 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_7);
+    BrokerRequest brokerRequest9 = CalciteSqlCompiler.compileToBrokerRequest(MIN_MAX_QUERY_8);
+
+    // NOTE: Ideal state and external view are not used in the current implementation
+    IdealState idealState = Mockito.mock(IdealState.class);
+    ExternalView externalView = Mockito.mock(ExternalView.class);
+
+    MinMaxValueSegmentPruner segmentPruner = new MinMaxValueSegmentPruner(MIN_MAX_OFFLINE_TABLE_NAME,
+        Map.of(MIN_MAX_COLUMN_1, DataType.INT, MIN_MAX_COLUMN_2, DataType.STRING));
+    SegmentZkMetadataFetcher segmentZkMetadataFetcher =
+        new SegmentZkMetadataFetcher(MIN_MAX_OFFLINE_TABLE_NAME, _propertyStore);
+    segmentZkMetadataFetcher.register(segmentPruner);
+    Set<String> onlineSegments = new HashSet<>();
+    segmentZkMetadataFetcher.init(idealState, externalView, onlineSegments);
+
+    // Segments without metadata (not updated yet) should not be pruned
+    String newSegment = "newSegment";
+    onlineSegments.add(newSegment);
+    segmentZkMetadataFetcher.onAssignmentChange(idealState, externalView, onlineSegments);
+    Set<String> input = Set.of(newSegment);
+    for (BrokerRequest brokerRequest : Arrays.asList(brokerRequest1, brokerRequest2, brokerRequest3, brokerRequest4,
+        brokerRequest5, brokerRequest6, brokerRequest7, brokerRequest8, brokerRequest9)) {
+      assertEquals(segmentPruner.prune(brokerRequest, input), input);
+    }
+
+    // Prune segments based on the min/max values
+    String segment0 = "segment0";
+    setSegmentZKMinMaxValueMetadata(MIN_MAX_OFFLINE_TABLE_NAME, segment0, "10", "20", "ca", "ca");
+    onlineSegments.add(segment0);
+    String segment1 = "segment1";
+    setSegmentZKMinMaxValueMetadata(MIN_MAX_OFFLINE_TABLE_NAME, segment1, "30", "40", "jp", "us");
+    onlineSegments.add(segment1);
+    String segment2 = "segment2";
+    setSegmentZKMinMaxValueMetadata(MIN_MAX_OFFLINE_TABLE_NAME, segment2, "50", "100", "br", "mx");
+    onlineSegments.add(segment2);
+    segmentZkMetadataFetcher.onAssignmentChange(idealState, externalView, onlineSegments);
+    input = Set.of(segment0, segment1, segment2);
+    assertEquals(segmentPruner.prune(brokerRequest1, input), input);
+    assertEquals(segmentPruner.prune(brokerRequest2, input), Set.of(segment0));
+    assertEquals(segmentPruner.prune(brokerRequest3, input), Set.of(segment2));
+    assertEquals(segmentPruner.prune(brokerRequest4, input), Set.of(segment1, segment2));
+    assertEquals(segmentPruner.prune(brokerRequest5, input), Set.of(segment1));
+    assertEquals(segmentPruner.prune(brokerRequest6, input), Set.of(segment1));
+    assertEquals(segmentPruner.prune(brokerRequest7, input), input);
+    assertEquals(segmentPruner.prune(brokerRequest8, input), input);
+    assertEquals(segmentPruner.prune(brokerRequest9, input), Set.of(segment0, segment2));
+
+    // Update metadata without external view change or refreshing should have no effect
+    setSegmentZKMinMaxValueMetadata(MIN_MAX_OFFLINE_TABLE_NAME, segment2, "0", "5", "aa", "bb");
+    assertEquals(segmentPruner.prune(brokerRequest3, input), Set.of(segment2));
+    assertEquals(segmentPruner.prune(brokerRequest9, input), Set.of(segment0, segment2));
+
+    // Refresh the changed segment should update the segment pruner
+    segmentZkMetadataFetcher.refreshSegment(segment2);
+    assertEquals(segmentPruner.prune(brokerRequest3, input), Set.of(segment2));
+    assertEquals(segmentPruner.prune(brokerRequest4, input), Set.of(segment1));
+    assertEquals(segmentPruner.prune(brokerRequest5, input), Set.of(segment1, segment2));
+    assertEquals(segmentPruner.prune(brokerRequest9, input), Set.of(segment0));
+
+    // Removed segments should be dropped
+    onlineSegments.remove(segment2);
+    segmentZkMetadataFetcher.onAssignmentChange(idealState, externalView, onlineSegments);
+    input = Set.of(segment0, segment1);
+    assertEquals(segmentPruner.prune(brokerRequest2, input), Set.of(segment0));
+  }
+
   private void setSegmentZKPartitionMetadata(String tableNameWithType, String segment, String partitionFunction,
       int numPartitions, int partitionId) {
     SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
@@ -696,6 +828,16 @@ public class SegmentPrunerTest extends ControllerTest {
     ZKMetadataProvider.setSegmentZKMetadata(_propertyStore, tableNameWithType, segmentZKMetadata);
   }
 
+  private void setSegmentZKMinMaxValueMetadata(String tableNameWithType, String segment, String minValue1,
+      String maxValue1, String minValue2, String maxValue2) {
+    SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
+    segmentZKMetadata.setCustomMap(Map.of(Segment.PRUNING_MIN_VALUE_KEY_PREFIX + MIN_MAX_COLUMN_1, minValue1,
+        Segment.PRUNING_MAX_VALUE_KEY_PREFIX + MIN_MAX_COLUMN_1, maxValue1,
+        Segment.PRUNING_MIN_VALUE_KEY_PREFIX + MIN_MAX_COLUMN_2, minValue2,
+        Segment.PRUNING_MAX_VALUE_KEY_PREFIX + MIN_MAX_COLUMN_2, maxValue2));
+    ZKMetadataProvider.setSegmentZKMetadata(_propertyStore, tableNameWithType, segmentZKMetadata);
+  }
+
   private void setSegmentZKTotalDocsMetadata(String tableNameWithType, String segment, long totalDocs) {
     SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
     segmentZKMetadata.setTotalDocs(totalDocs);
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.tablesampler;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pinot.spi.config.table.sampler.TableSamplerConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class UniformSegmentsTableSamplerTest {
+
+  @Test
+  public void testSampleSegments() {
+    UniformSegmentsTableSampler sampler = createSampler(Map.of("samplingPercentage", "10"));
+    Assert.assertEquals(sampler.getSamplingRate(), 0.1);
+
+    Set<String> onlineSegments = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      onlineSegments.add("segment_" + i);
+    }
+    Set<String> sampledSegments = sampler.sampleSegments(onlineSegments);
+    Assert.assertTrue(onlineSegments.containsAll(sampledSegments));
+    Assert.assertTrue(sampledSegments.size() > 800 && sampledSegments.size() < 1200, "" + sampledSegments.size());
+
+    // Selection of a segment does not depend on the other segments
+    Set<String> moreOnlineSegments = new HashSet<>(onlineSegments);
+    for (int i = 10000; i < 20000; i++) {
+      moreOnlineSegments.add("segment_" + i);
+    }
+    Set<String> moreSampledSegments = sampler.sampleSegments(moreOnlineSegments);
+    for (String segment : onlineSegments) {
+      Assert.assertEquals(moreSampledSegments.contains(segment), sampledSegments.contains(segment));
+    }
+
+    // Different seed selects different segments
+    UniformSegmentsTableSampler seededSampler =
+        createSampler(Map.of("samplingPercentage", "10", "seed", "1"));
+    Assert.assertNotEquals(seededSampler.sampleSegments(onlineSegments), sampledSegments);
+
+    // All segments are selected with 100%
+    UniformSegmentsTableSampler fullSampler = createSampler(Map.of("samplingPercentage", "100"));
+    Assert.assertEquals(fullSampler.sampleSegments(onlineSegments), onlineSegments);
+  }
+
+  @Test
+  public void testInvalidConfig() {
+    Assert.expectThrows(IllegalArgumentException.class, () -> createSampler(null));
+    Assert.expectThrows(IllegalArgumentException.class, () -> createSampler(Map.of("samplingPercentage", "0")));
+    Assert.expectThrows(IllegalArgumentException.class, () -> createSampler(Map.of("samplingPercentage", "101")));
+  }
+
+  private static UniformSegmentsTableSampler createSampler(Map<String, String> properties) {
+    UniformSegmentsTableSampler sampler = new UniformSegmentsTableSampler();
+    sampler.init(null, new TableSamplerConfig("uniform10", UniformSegmentsTableSampler.TYPE, properties), null);
+    return sampler;
+  }
+}
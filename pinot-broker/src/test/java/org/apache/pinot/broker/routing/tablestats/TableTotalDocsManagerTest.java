@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.routing.tablestats;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.common.metadata.segment.SegmentZKMetadata;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class TableTotalDocsManagerTest {
+  private static final String OFFLINE_TABLE_NAME = "testTable_OFFLINE";
+
+  @Test
+  public void testTotalDocs() {
+    // NOTE: Ideal state and external view are not used in the current implementation.
+    IdealState idealState = new IdealState(OFFLINE_TABLE_NAME);
+    ExternalView externalView = new ExternalView(OFFLINE_TABLE_NAME);
+    TableTotalDocsManager totalDocsManager = new TableTotalDocsManager(OFFLINE_TABLE_NAME);
+
+    // Segments without ZK metadata or total docs are not counted
+    totalDocsManager.init(idealState, externalView, List.of("s0", "s1", "s2", "s3"),
+        Arrays.asList(getZNRecord("s0", 100), getZNRecord("s1", 200), getZNRecord("s2", -1), null));
+    assertEquals(totalDocsManager.getTotalDocs(), 300);
+
+    // Removed segments are not counted, and pulled segments are added
+    totalDocsManager.onAssignmentChange(idealState, externalView, Set.of("s1", "s2", "s4"), List.of("s4"),
+        List.of(getZNRecord("s4", 400)));
+    assertEquals(totalDocsManager.getTotalDocs(), 600);
+
+    // Refreshed segments are updated
+    totalDocsManager.refreshSegment("s2", getZNRecord("s2", 50));
+    assertEquals(totalDocsManager.getTotalDocs(), 650);
+    totalDocsManager.refreshSegment("s4", getZNRecord("s4", 40));
+    assertEquals(totalDocsManager.getTotalDocs(), 290);
+  }
+
+  private static ZNRecord getZNRecord(String segment, long totalDocs) {
+    SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
+    if (totalDocs >= 0) {
+      segmentZKMetadata.setTotalDocs(totalDocs);
+    }
+    return segmentZKMetadata.toZNRecord();
+  }
+}
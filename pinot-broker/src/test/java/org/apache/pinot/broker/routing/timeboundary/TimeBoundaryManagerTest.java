@@ -106,6 +106,48 @@ public class TimeBoundaryManagerTest extends ControllerTest {
     }
   }
 
+  @Test
+  public void testMinStartTime() {
+    String rawTableName = "testTableMinStartTime";
+    TableConfig tableConfig = getTableConfig(rawTableName, "DAILY");
+    setSchemaDateTimeFieldSpec(rawTableName, TimeUnit.DAYS);
+    ExternalView externalView = new ExternalView(tableConfig.getTableName());
+    Map<String, Map<String, String>> segmentAssignment = externalView.getRecord().getMapFields();
+    Map<String, String> onlineInstanceStateMap = Collections.singletonMap("server", ONLINE);
+    IdealState idealState = new IdealState("");
+
+    String segment0 = "segment0";
+    String segment1 = "segment1";
+    setSegmentZKMetadata(rawTableName, segment0, 3, 5, TimeUnit.DAYS);
+    setSegmentZKMetadata(rawTableName, segment1, 1, 2, TimeUnit.DAYS);
+    segmentAssignment.put(segment0, onlineInstanceStateMap);
+    segmentAssignment.put(segment1, onlineInstanceStateMap);
+    Set<String> onlineSegments = new HashSet<>();
+    onlineSegments.add(segment0);
+    onlineSegments.add(segment1);
+    TimeBoundaryManager timeBoundaryManager =
+        new TimeBoundaryManager(tableConfig, _propertyStore, Mockito.mock(BrokerMetrics.class), 0L);
+    timeBoundaryManager.init(idealState, externalView, onlineSegments);
+    assertEquals(timeBoundaryManager.getMinStartTimeMs(), TimeUnit.DAYS.toMillis(1));
+
+    // Removing the oldest segment (e.g. by the retention) should move the min start time
+    onlineSegments.remove(segment1);
+    segmentAssignment.remove(segment1);
+    timeBoundaryManager.onAssignmentChange(idealState, externalView, onlineSegments);
+    assertEquals(timeBoundaryManager.getMinStartTimeMs(), TimeUnit.DAYS.toMillis(3));
+
+    // Refreshing the segment should pick up the new start time
+    setSegmentZKMetadata(rawTableName, segment0, 4, 5, TimeUnit.DAYS);
+    timeBoundaryManager.refreshSegment(segment0);
+    assertEquals(timeBoundaryManager.getMinStartTimeMs(), TimeUnit.DAYS.toMillis(4));
+
+    // No segment with valid start time
+    onlineSegments.clear();
+    segmentAssignment.clear();
+    timeBoundaryManager.onAssignmentChange(idealState, externalView, onlineSegments);
+    assertEquals(timeBoundaryManager.getMinStartTimeMs(), -1L);
+  }
+
   private void testDailyPushTable(String rawTableName, TableConfig tableConfig, TimeUnit timeUnit) {
     ExternalView externalView = new ExternalView(tableConfig.getTableName());
     Map<String, Map<String, String>> segmentAssignment = externalView.getRecord().getMapFields();
@@ -250,6 +292,16 @@ public class TimeBoundaryManagerTest extends ControllerTest {
         segmentZKMetadata);
   }
 
+  private void setSegmentZKMetadata(String rawTableName, String segment, int startTimeInDays, int endTimeInDays,
+      TimeUnit timeUnit) {
+    SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
+    segmentZKMetadata.setStartTime(timeUnit.convert(startTimeInDays, TimeUnit.DAYS));
+    segmentZKMetadata.setEndTime(timeUnit.convert(endTimeInDays, TimeUnit.DAYS));
+    segmentZKMetadata.setTimeUnit(timeUnit);
+    ZKMetadataProvider.setSegmentZKMetadata(_propertyStore, TableNameBuilder.OFFLINE.tableNameWithType(rawTableName),
+        segmentZKMetadata);
+  }
+
   private void setSegmentZKMetadataWithTotalDocs(String rawTableName, String segment, int endTimeInDays,
       TimeUnit timeUnit, long totalDocs) {
     SegmentZKMetadata segmentZKMetadata = new SegmentZKMetadata(segment);
@@ -187,11 +187,14 @@ public class SegmentZKMetadataUtils {
         !columnPartitionMap.isEmpty() ? new SegmentPartitionMetadata(columnPartitionMap) : null);
 
     // Update custom metadata
-    // NOTE: Do not remove existing keys because they can be set by the HTTP header from the segment upload request
+    // NOTE: Do not remove existing keys because they can be set by the HTTP header from the segment upload request,
+    //       except for the pruning min/max values which always come from the segment metadata
     Map<String, String> customMap = segmentZKMetadata.getCustomMap();
     if (customMap == null) {
       customMap = segmentMetadata.getCustomMap();
     } else {
+      customMap.keySet().removeIf(key -> key.startsWith(CommonConstants.Segment.PRUNING_MIN_VALUE_KEY_PREFIX)
+          || key.startsWith(CommonConstants.Segment.PRUNING_MAX_VALUE_KEY_PREFIX));
       customMap.putAll(segmentMetadata.getCustomMap());
     }
     segmentZKMetadata.setCustomMap(customMap);
@@ -300,6 +300,34 @@ public class BrokerMeter implements AbstractMetrics.Meter {
   public static final BrokerMeter QUERY_CRITICAL_ERROR = create("QUERY_CRITICAL_ERROR", "queries", true);
   public static final BrokerMeter QUERY_NON_CRITICAL_ERROR = create("QUERY_NON_CRITICAL_ERROR", "queries", true);
 
+  /**
+   * Number of single-stage queries served from the broker result cache, number of cacheable queries that missed it,
+   * and number of cacheable queries that missed it but were served by an identical in-flight query.
+   */
+  public static final BrokerMeter RESULT_CACHE_HITS = create("RESULT_CACHE_HITS", "queries", true);
+  public static final BrokerMeter RESULT_CACHE_MISSES = create("RESULT_CACHE_MISSES", "queries", true);
+  public static final BrokerMeter RESULT_CACHE_COALESCED = create("RESULT_CACHE_COALESCED", "queries", true);
+
+  /**
+   * Number of coalescable single-stage queries executed as the leader, and number of identical queries that waited for
+   * the response of an in-flight leader instead of being executed.
+   */
+  public static final BrokerMeter QUERY_COALESCING_LEADERS = create("QUERY_COALESCING_LEADERS", "queries", true);
+  public static final BrokerMeter QUERY_COALESCING_FOLLOWERS = create("QUERY_COALESCING_FOLLOWERS", "queries", true);
+
+  /**
+   * Number of hedged requests re-issued to another replica for slow servers, and number of hedged requests not sent
+   * because the hedging budget was exhausted.
+   */
+  public static final BrokerMeter HEDGED_REQUESTS = create("HEDGED_REQUESTS", "requests", false);
+  public static final BrokerMeter HEDGED_REQUESTS_BUDGET_EXHAUSTED =
+      create("HEDGED_REQUESTS_BUDGET_EXHAUSTED", "requests", true);
+
+  /**
+   * Number of queries answered from a rollup table instead of (or in addition to) the raw table.
+   */
+  public static final BrokerMeter ROLLUP_QUERIES = create("ROLLUP_QUERIES", "queries", false);
+
   private static final Map<QueryErrorCode, BrokerMeter> QUERY_ERROR_CODE_METER_MAP;
 
   // Iterate through all query error codes from QueryErrorCode.getAllValues() and create a metric for each
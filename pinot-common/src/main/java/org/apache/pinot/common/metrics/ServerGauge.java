@@ -153,7 +153,15 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
 
   // ThrottleOnCriticalHeapUsageExecutor metrics
   THROTTLE_EXECUTOR_QUEUE_SIZE("count", true,
-      "Current number of tasks in the throttle executor queue");
+      "Current number of tasks in the throttle executor queue"),
+
+  // Multi-stage engine opchain scheduler metrics
+  MSE_OPCHAINS_QUEUED("opchains", true,
+      "Current number of opchains that have been scheduled but have not started executing yet"),
+  MSE_OPCHAINS_RUNNING("opchains", true,
+      "Current number of opchains that are executing, including the ones parked on a blocking wait"),
+  MSE_OPCHAINS_PARKED("opchains", true,
+      "Current number of opchains parked waiting for data from a mailbox or a leaf stage");
 
   private final String _gaugeName;
   private final String _unit;
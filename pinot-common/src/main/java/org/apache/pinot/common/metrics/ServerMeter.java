@@ -73,6 +73,8 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   UPSERT_MISSED_VALID_DOC_ID_SNAPSHOT_COUNT("segments", false),
   UPSERT_MISSED_QUERYABLE_DOC_ID_SNAPSHOT_COUNT("segments", false),
   UPSERT_PRELOAD_FAILURE("count", false),
+  UPSERT_BOOTSTRAP_SEGMENTS_READ("segments", false),
+  UPSERT_BOOTSTRAP_ROWS_READ("rows", false),
   ROWS_WITH_ERRORS("rows", false),
   LLC_CONTROLLER_RESPONSE_NOT_SENT("messages", true),
   LLC_CONTROLLER_RESPONSE_COMMIT("messages", true),
@@ -196,6 +198,16 @@ public enum ServerMeter implements AbstractMetrics.Meter {
    * This is the sum of all bytes sent by all workers in the stage.
    */
   MULTI_STAGE_RAW_BYTES("bytes", true),
+  /**
+   * The number of bytes of the blocks sent compressed to the next stage, before compression.
+   * This is the sum of all bytes sent by all workers in the stage.
+   */
+  MULTI_STAGE_UNCOMPRESSED_BYTES("bytes", true),
+  /**
+   * The number of bytes of the blocks sent compressed to the next stage, after compression.
+   * This is the sum of all bytes sent by all workers in the stage.
+   */
+  MULTI_STAGE_COMPRESSED_BYTES("bytes", true),
   /**
    * Number of times the max number of rows in window has been reached.
    * It is increased at most one by one each time per stage.
@@ -203,6 +215,10 @@ public enum ServerMeter implements AbstractMetrics.Meter {
    * But if a single query has 2 different window operators and each one reaches the limit, this will be increased by 2.
    */
   WINDOW_TIMES_MAX_ROWS_REACHED("times", true),
+  /**
+   * Number of bytes written into local spill files by multi-stage operators that exceeded their in-memory budget.
+   */
+  MULTI_STAGE_SPILLED_BYTES("bytes", true),
 
   /// Number of tasks started by the MSE query runner
   MULTI_STAGE_RUNNER_STARTED_TASKS("tasks", true),
@@ -272,7 +288,21 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   MSE_MEMORY_ALLOCATED_BYTES("bytes", true),
   /// Total number of rows emitted by multi-stage execution.
   /// This is equal to the sum of the emittedRows reported by the root of all the opchains executed in the server.
-  MSE_EMITTED_ROWS("rows", true);
+  MSE_EMITTED_ROWS("rows", true),
+
+  /// Number of segments whose aggregation result was served from the segment result cache.
+  SEGMENT_RESULT_CACHE_HITS("segments", true),
+  /// Number of cacheable segments whose aggregation result was not in the segment result cache.
+  SEGMENT_RESULT_CACHE_MISSES("segments", true),
+  /// Number of segment result cache entries evicted because of the size limit.
+  SEGMENT_RESULT_CACHE_EVICTIONS("entries", true),
+
+  /// Number of filter predicates served from the filter bitmap cache.
+  FILTER_BITMAP_CACHE_HITS("predicates", true),
+  /// Number of cacheable filter predicates not in the filter bitmap cache.
+  FILTER_BITMAP_CACHE_MISSES("predicates", true),
+  /// Number of filter bitmap cache entries evicted because of the size limit.
+  FILTER_BITMAP_CACHE_EVICTIONS("entries", true);
 
   private final String _meterName;
   private final String _unit;
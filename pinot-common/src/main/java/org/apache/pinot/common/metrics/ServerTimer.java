@@ -51,6 +51,8 @@ public enum ServerTimer implements AbstractMetrics.Timer {
 
   UPSERT_PRELOAD_TIME_MS("milliseconds", false,
       "Total time taken to preload a table partition of an upsert table with upsert snapshot"),
+  UPSERT_BOOTSTRAP_TIME_MS("milliseconds", false,
+      "Total time taken to resolve and add the segments without upsert snapshot when preloading a table partition"),
   UPSERT_REMOVE_EXPIRED_PRIMARY_KEYS_TIME_MS("milliseconds", false,
       "Total time taken to delete expired upsert primary keys based on metadataTTL or deletedKeysTTL"),
   GRPC_QUERY_EXECUTION_MS("milliseconds", false, "Total execution time of a successful query over gRPC"),
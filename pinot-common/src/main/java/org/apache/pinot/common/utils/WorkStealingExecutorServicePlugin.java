@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.common.utils;
+
+import com.google.auto.service.AutoService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.spi.executor.ExecutorServicePlugin;
+import org.apache.pinot.spi.executor.ExecutorServiceProvider;
+import org.apache.pinot.spi.utils.CommonConstants;
+
+
+/**
+ * This is the plugin for the work-stealing executor service.
+ *
+ * The work-stealing executor service plugin creates a new {@link ForkJoinPool} in FIFO (async) mode.
+ * The target parallelism is defined in the configuration with the {@code <prefix>.numThreads} property and defaults to
+ * the number of cores. Tasks that block through {@link ForkJoinPool#managedBlock} are parked and the pool activates a
+ * spare thread in the meantime, so the number of threads actively running tasks stays close to the parallelism while
+ * tasks waiting on each other cannot deadlock the pool. The total number of threads (including spare ones) is capped
+ * by the {@code <prefix>.maxPoolSize} property. Once the cap is reached, blocked tasks keep their threads without
+ * compensation.
+ *
+ * This executor service is recommended for CPU bound tasks that may wait on each other, like multi-stage engine
+ * opchains.
+ *
+ * @see org.apache.pinot.spi.executor.ExecutorServiceUtils
+ */
+@AutoService(ExecutorServicePlugin.class)
+public class WorkStealingExecutorServicePlugin implements ExecutorServicePlugin {
+  public static final String ID = "workStealing";
+  public static final String MAX_POOL_SIZE_SUFFIX = ".maxPoolSize";
+  public static final int DEFAULT_MAX_POOL_SIZE = 4096;
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  @Override
+  public String id() {
+    return ID;
+  }
+
+  @Override
+  public ExecutorServiceProvider provider() {
+    return (conf, confPrefix, baseName) -> {
+      String defaultFixedThreadsStr = conf.getProperty(
+          CommonConstants.CONFIG_OF_EXECUTORS_FIXED_NUM_THREADS, CommonConstants.DEFAULT_EXECUTORS_FIXED_NUM_THREADS);
+      int defaultFixedThreads = Integer.parseInt(defaultFixedThreadsStr);
+      if (defaultFixedThreads < 0) {
+        defaultFixedThreads = Runtime.getRuntime().availableProcessors();
+      }
+      int parallelism = conf.getProperty(confPrefix + ".numThreads", defaultFixedThreads);
+      int maxPoolSize = Math.max(conf.getProperty(confPrefix + MAX_POOL_SIZE_SUFFIX, DEFAULT_MAX_POOL_SIZE),
+          parallelism);
+      return new ForkJoinPool(parallelism, new NamedForkJoinWorkerThreadFactory(baseName), null, true, 0,
+          maxPoolSize, 1, pool -> true, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    };
+  }
+
+  private static class NamedForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+    private final AtomicInteger _threadNumber = new AtomicInteger(1);
+    private final String _baseName;
+
+    NamedForkJoinWorkerThreadFactory(String baseName) {
+      _baseName = baseName;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(_baseName + "-" + _threadNumber.getAndIncrement());
+      return thread;
+    }
+  }
+}
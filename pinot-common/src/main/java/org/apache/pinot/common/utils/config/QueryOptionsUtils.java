@@ -236,6 +236,45 @@ public class QueryOptionsUtils {
     return useFixedReplica != null ? Boolean.parseBoolean(useFixedReplica) : null;
   }
 
+  public static boolean isUseResultCache(Map<String, String> queryOptions, boolean defaultValue) {
+    String useResultCache = queryOptions.get(QueryOptionKey.USE_RESULT_CACHE);
+    return useResultCache != null ? Boolean.parseBoolean(useResultCache) : defaultValue;
+  }
+
+  public static boolean isUseQueryCoalescing(Map<String, String> queryOptions, boolean defaultValue) {
+    String useQueryCoalescing = queryOptions.get(QueryOptionKey.USE_QUERY_COALESCING);
+    return useQueryCoalescing != null ? Boolean.parseBoolean(useQueryCoalescing) : defaultValue;
+  }
+
+  public static boolean isUseSegmentResultCache(Map<String, String> queryOptions) {
+    String useSegmentResultCache = queryOptions.get(QueryOptionKey.USE_SEGMENT_RESULT_CACHE);
+    return useSegmentResultCache == null || Boolean.parseBoolean(useSegmentResultCache);
+  }
+
+  public static boolean isUseFilterBitmapCache(Map<String, String> queryOptions) {
+    String useFilterBitmapCache = queryOptions.get(QueryOptionKey.USE_FILTER_BITMAP_CACHE);
+    return useFilterBitmapCache == null || Boolean.parseBoolean(useFilterBitmapCache);
+  }
+
+  public static boolean isExtrapolateSampledAggregations(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.EXTRAPOLATE_SAMPLED_AGGREGATIONS));
+  }
+
+  public static boolean isUseIncrementalGroupByReduce(Map<String, String> queryOptions, boolean defaultValue) {
+    String useIncrementalGroupByReduce = queryOptions.get(QueryOptionKey.USE_INCREMENTAL_GROUP_BY_REDUCE);
+    return useIncrementalGroupByReduce != null ? Boolean.parseBoolean(useIncrementalGroupByReduce) : defaultValue;
+  }
+
+  public static boolean isUseRollupTables(Map<String, String> queryOptions, boolean defaultValue) {
+    String useRollupTables = queryOptions.get(QueryOptionKey.USE_ROLLUP_TABLES);
+    return useRollupTables != null ? Boolean.parseBoolean(useRollupTables) : defaultValue;
+  }
+
+  public static boolean isUseHedgedRequests(Map<String, String> queryOptions, boolean defaultValue) {
+    String useHedgedRequests = queryOptions.get(QueryOptionKey.USE_HEDGED_REQUESTS);
+    return useHedgedRequests != null ? Boolean.parseBoolean(useHedgedRequests) : defaultValue;
+  }
+
   @Nullable
   public static Integer getNumReplicaGroupsToQuery(Map<String, String> queryOptions) {
     String numReplicaGroupsToQuery = queryOptions.get(QueryOptionKey.NUM_REPLICA_GROUPS_TO_QUERY);
@@ -362,6 +401,10 @@ public class QueryOptionsUtils {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ERROR_ON_NUM_GROUPS_LIMIT));
   }
 
+  public static boolean getSpillOnNumGroupsLimit(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.SPILL_ON_NUM_GROUPS_LIMIT));
+  }
+
   @Nullable
   public static Integer getNumGroupsLimit(Map<String, String> queryOptions) {
     String maxNumGroupLimit = queryOptions.get(QueryOptionKey.NUM_GROUPS_LIMIT);
@@ -443,6 +486,12 @@ public class QueryOptionsUtils {
     return windowOverflowModeStr != null ? WindowOverFlowMode.valueOf(windowOverflowModeStr) : null;
   }
 
+  @Nullable
+  public static Integer getMaxRowsInSort(Map<String, String> queryOptions) {
+    String maxRowsInSort = queryOptions.get(QueryOptionKey.MAX_ROWS_IN_SORT);
+    return checkedParseIntPositive(QueryOptionKey.MAX_ROWS_IN_SORT, maxRowsInSort);
+  }
+
   public static boolean isSkipUnavailableServers(Map<String, String> queryOptions) {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.SKIP_UNAVAILABLE_SERVERS));
   }
@@ -620,4 +669,17 @@ public class QueryOptionsUtils {
     }
     return i;
   }
+
+  public static long getBroadcastJoinRowCountThreshold(Map<String, String> options, long defaultValue) {
+    String broadcastJoinRowCountThreshold = options.get(QueryOptionKey.BROADCAST_JOIN_ROW_COUNT_THRESHOLD);
+    if (broadcastJoinRowCountThreshold != null) {
+      try {
+        return Long.parseLong(broadcastJoinRowCountThreshold);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("%s must be a long, got: %s",
+            QueryOptionKey.BROADCAST_JOIN_ROW_COUNT_THRESHOLD, broadcastJoinRowCountThreshold));
+      }
+    }
+    return defaultValue;
+  }
 }
@@ -19,9 +19,13 @@
 package org.apache.pinot.core.data.manager.provider;
 
 import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
@@ -54,6 +58,7 @@ public class DefaultTableDataManagerProvider implements TableDataManagerProvider
   private HelixManager _helixManager;
   private SegmentLocks _segmentLocks;
   private Semaphore _segmentBuildSemaphore;
+  private ExecutorService _realtimeDecodeExecutor;
   private SegmentOperationsThrottlerSet _segmentOperationsThrottlerSet;
   private ServerReloadJobStatusCache _reloadJobStatusCache;
 
@@ -66,6 +71,18 @@ public class DefaultTableDataManagerProvider implements TableDataManagerProvider
     _segmentLocks = segmentLocks;
     int maxParallelSegmentBuilds = instanceDataManagerConfig.getMaxParallelSegmentBuilds();
     _segmentBuildSemaphore = maxParallelSegmentBuilds > 0 ? new Semaphore(maxParallelSegmentBuilds, true) : null;
+    int maxRealtimeDecodeThreads = instanceDataManagerConfig.getMaxRealtimeDecodeThreads();
+    if (maxRealtimeDecodeThreads > 0) {
+      // The threads are daemon and time out when idle, so the executor does not need to be shut down
+      ThreadPoolExecutor realtimeDecodeExecutor =
+          new ThreadPoolExecutor(maxRealtimeDecodeThreads, maxRealtimeDecodeThreads, 1, TimeUnit.MINUTES,
+              new LinkedBlockingQueue<>(),
+              new ThreadFactoryBuilder().setNameFormat("realtime-decode-thread-%d").setDaemon(true).build());
+      realtimeDecodeExecutor.allowCoreThreadTimeOut(true);
+      _realtimeDecodeExecutor = realtimeDecodeExecutor;
+    } else {
+      _realtimeDecodeExecutor = null;
+    }
     _segmentOperationsThrottlerSet = segmentOperationsThrottlerSet;
     _reloadJobStatusCache = requireNonNull(reloadJobStatusCache, "reloadJobStatusCache cannot be null");
   }
@@ -94,7 +111,8 @@ public class DefaultTableDataManagerProvider implements TableDataManagerProvider
                   + "configured the segmentstore uri. Configure the server config %s",
               StreamConfigProperties.SERVER_UPLOAD_TO_DEEPSTORE, CommonConstants.Server.CONFIG_OF_SEGMENT_STORE_URI));
         }
-        tableDataManager = new RealtimeTableDataManager(_segmentBuildSemaphore, isServerReadyToServeQueries);
+        tableDataManager = new RealtimeTableDataManager(_segmentBuildSemaphore, isServerReadyToServeQueries,
+            _realtimeDecodeExecutor);
         break;
       default:
         throw new IllegalStateException();
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamDataDecoderImpl;
+import org.apache.pinot.spi.stream.StreamDataDecoderResult;
+import org.apache.pinot.spi.stream.StreamMessageDecoder;
+
+
+/**
+ * Decodes and transforms the messages of a {@link MessageBatch} on the decode threads shared by the server, so that the
+ * consumer thread only needs to index the already transformed rows. The messages are split into fixed size chunks
+ * which are processed in parallel by up to the given number of workers, and handed back to the consumer thread in the
+ * original order. At most {@link #MAX_PENDING_CHUNKS_PER_THREAD} chunks per worker are decoded ahead of the indexing,
+ * which bounds the memory held by the decoded rows.
+ *
+ * Each worker owns its own {@link StreamDataDecoderImpl} and {@link TransformPipeline} because neither of them is
+ * thread-safe. The chunks are assigned to the workers in a round-robin manner, and each chunk is chained after the
+ * previous chunk of the same worker, so that a worker never runs concurrently, and the shared threads never block
+ * waiting for a worker. The methods of this class should only be invoked by the consumer thread.
+ */
+class PipelinedMessageDecoder implements Closeable {
+  static final int CHUNK_SIZE = 64;
+  static final int MAX_PENDING_CHUNKS_PER_THREAD = 4;
+
+  private final Executor _executor;
+  private final Worker[] _workers;
+  private final int _maxPendingChunks;
+  private final ArrayDeque<CompletableFuture<DecodedMessage[]>> _pendingChunks = new ArrayDeque<>();
+  private int _nextWorkerIndex;
+
+  // State of the current message batch
+  private MessageBatch<?> _messageBatch;
+  // Set when the current batch is finished, so that its chunks not yet decoded are skipped
+  private AtomicBoolean _batchFinished;
+  private int _numMessages;
+  private int _nextChunkStartIndex;
+  private int _currentChunkStartIndex;
+  private DecodedMessage[] _currentChunk;
+
+  PipelinedMessageDecoder(Executor executor, int numThreads, Supplier<StreamMessageDecoder> decoderSupplier,
+      Supplier<TransformPipeline> transformPipelineSupplier) {
+    Preconditions.checkArgument(numThreads > 0, "Number of decode threads must be positive, got: %s", numThreads);
+    _executor = executor;
+    _workers = new Worker[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      _workers[i] = new Worker(new StreamDataDecoderImpl(decoderSupplier.get()), transformPipelineSupplier.get());
+    }
+    _maxPendingChunks = numThreads * MAX_PENDING_CHUNKS_PER_THREAD;
+  }
+
+  /**
+   * Starts decoding the given message batch. Decoded messages of the previous batch that are not yet consumed are
+   * discarded.
+   */
+  void startBatch(MessageBatch<?> messageBatch) {
+    finishBatch();
+    _messageBatch = messageBatch;
+    _batchFinished = new AtomicBoolean();
+    _numMessages = messageBatch.getMessageCount();
+    submitChunks();
+  }
+
+  /**
+   * Returns the decoded message at the given index of the current batch, blocking until it is decoded. Messages must
+   * be fetched in order.
+   */
+  DecodedMessage get(int index)
+      throws InterruptedException {
+    if (_currentChunk == null || index >= _currentChunkStartIndex + _currentChunk.length) {
+      _currentChunkStartIndex = _currentChunk != null ? _currentChunkStartIndex + _currentChunk.length : 0;
+      CompletableFuture<DecodedMessage[]> future = _pendingChunks.poll();
+      Preconditions.checkState(future != null, "No pending chunk for message: %s", index);
+      try {
+        _currentChunk = future.get();
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Caught exception while decoding stream messages", e.getCause());
+      }
+      submitChunks();
+    }
+    return _currentChunk[index - _currentChunkStartIndex];
+  }
+
+  /**
+   * Discards the decoded messages that are not yet consumed, and skips the chunks that are not yet decoded.
+   */
+  void finishBatch() {
+    if (_batchFinished != null) {
+      _batchFinished.set(true);
+      _batchFinished = null;
+    }
+    _pendingChunks.clear();
+    _messageBatch = null;
+    _numMessages = 0;
+    _nextChunkStartIndex = 0;
+    _currentChunkStartIndex = 0;
+    _currentChunk = null;
+  }
+
+  private void submitChunks() {
+    while (_pendingChunks.size() < _maxPendingChunks && _nextChunkStartIndex < _numMessages) {
+      MessageBatch<?> messageBatch = _messageBatch;
+      AtomicBoolean batchFinished = _batchFinished;
+      int startIndex = _nextChunkStartIndex;
+      int endIndex = Math.min(startIndex + CHUNK_SIZE, _numMessages);
+      Worker worker = _workers[_nextWorkerIndex];
+      _nextWorkerIndex = (_nextWorkerIndex + 1) % _workers.length;
+      // Chain after the previous chunk of the worker regardless of its result, which is consumed separately
+      CompletableFuture<DecodedMessage[]> chunk = worker._lastChunk.handleAsync(
+          (previousChunk, previousException) -> batchFinished.get() ? null
+              : worker.decode(messageBatch, startIndex, endIndex), _executor);
+      worker._lastChunk = chunk;
+      _pendingChunks.add(chunk);
+      _nextChunkStartIndex = endIndex;
+    }
+  }
+
+  @Override
+  public void close() {
+    finishBatch();
+    // Report the stats after the last chunk of the worker is processed to not race with the decode threads
+    for (Worker worker : _workers) {
+      worker._lastChunk.whenComplete((chunk, exception) -> worker._transformPipeline.reportStats());
+    }
+  }
+
+  private static class Worker {
+    final StreamDataDecoderImpl _decoder;
+    final TransformPipeline _transformPipeline;
+    // Last chunk assigned to the worker, only accessed by the consumer thread
+    CompletableFuture<DecodedMessage[]> _lastChunk = CompletableFuture.completedFuture(null);
+
+    Worker(StreamDataDecoderImpl decoder, TransformPipeline transformPipeline) {
+      _decoder = decoder;
+      _transformPipeline = transformPipeline;
+    }
+
+    DecodedMessage[] decode(MessageBatch<?> messageBatch, int startIndex, int endIndex) {
+      DecodedMessage[] decodedMessages = new DecodedMessage[endIndex - startIndex];
+      for (int i = startIndex; i < endIndex; i++) {
+        // Decode into a new row for each message because the rows are indexed after the whole chunk is decoded
+        StreamDataDecoderResult decoderResult = _decoder.decode(messageBatch.getStreamMessage(i), new GenericRow());
+        decodedMessages[i - startIndex] = DecodedMessage.of(decoderResult, _transformPipeline);
+      }
+      return decodedMessages;
+    }
+  }
+
+  /**
+   * The result of decoding and transforming a single stream message. Exception from the transform is captured so that
+   * it can be reported by the consumer thread in the message order.
+   */
+  static class DecodedMessage {
+    private final StreamDataDecoderResult _decoderResult;
+    private final TransformPipeline.Result _transformResult;
+    private final Exception _transformException;
+
+    private DecodedMessage(StreamDataDecoderResult decoderResult, @Nullable TransformPipeline.Result transformResult,
+        @Nullable Exception transformException) {
+      _decoderResult = decoderResult;
+      _transformResult = transformResult;
+      _transformException = transformException;
+    }
+
+    static DecodedMessage of(StreamDataDecoderResult decoderResult, TransformPipeline transformPipeline) {
+      if (decoderResult.getException() != null) {
+        return new DecodedMessage(decoderResult, null, null);
+      }
+      try {
+        return new DecodedMessage(decoderResult, transformPipeline.processRow(decoderResult.getResult()), null);
+      } catch (Exception e) {
+        return new DecodedMessage(decoderResult, null, e);
+      }
+    }
+
+    StreamDataDecoderResult getDecoderResult() {
+      return _decoderResult;
+    }
+
+    @Nullable
+    TransformPipeline.Result getTransformResult() {
+      return _transformResult;
+    }
+
+    @Nullable
+    Exception getTransformException() {
+      return _transformException;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,6 +56,7 @@ import org.apache.pinot.common.utils.PauselessConsumptionUtils;
 import org.apache.pinot.common.utils.TarCompressionUtils;
 import org.apache.pinot.core.data.manager.SegmentOperationsTaskContext;
 import org.apache.pinot.core.data.manager.SegmentOperationsTaskType;
+import org.apache.pinot.core.data.manager.realtime.PipelinedMessageDecoder.DecodedMessage;
 import org.apache.pinot.core.data.manager.realtime.RealtimeConsumptionRateManager.ConsumptionRateLimiter;
 import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
 import org.apache.pinot.segment.local.dedup.DedupContext;
@@ -308,6 +310,8 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
   private final PartitionGroupConsumptionStatus _partitionGroupConsumptionStatus;
   final String _clientId;
   private final TransformPipeline _transformPipeline;
+  // Decodes and transforms the messages on separate threads when pipelined consumption is enabled
+  private final PipelinedMessageDecoder _pipelinedMessageDecoder;
   private PartitionGroupConsumer _partitionGroupConsumer = null;
   private StreamMetadataProvider _partitionMetadataProvider = null;
   private final File _resourceTmpDir;
@@ -575,10 +579,14 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
    * @return returns <code>true</code> if the process loop ended before processing the batch, <code>false</code>
    * otherwise
    */
-  private boolean processStreamEvents(MessageBatch messageBatch, long idlePipeSleepTimeMillis) {
+  private boolean processStreamEvents(MessageBatch messageBatch, long idlePipeSleepTimeMillis)
+      throws InterruptedException {
     int messageCount = messageBatch.getMessageCount();
     _partitionRateLimiter.throttle(messageBatch);
     _serverRateLimiter.throttle(messageBatch);
+    if (_pipelinedMessageDecoder != null) {
+      _pipelinedMessageDecoder.startBatch(messageBatch);
+    }
 
     PinotMeter realtimeBytesIngestedMeter = null;
     PinotMeter realtimeBytesDroppedMeter = null;
@@ -622,9 +630,19 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         throw new RuntimeException("Realtime segment full");
       }
 
-      // Decode message
+      // Decode message, which is also transformed when decoded by the pipelined message decoder
       StreamMessage<?> streamMessage = messageBatch.getStreamMessage(index);
-      StreamDataDecoderResult decodedRow = _streamDataDecoder.decode(streamMessage);
+      StreamDataDecoderResult decodedRow;
+      TransformPipeline.Result result = null;
+      Exception transformException = null;
+      if (_pipelinedMessageDecoder != null) {
+        DecodedMessage decodedMessage = _pipelinedMessageDecoder.get(index);
+        decodedRow = decodedMessage.getDecoderResult();
+        result = decodedMessage.getTransformResult();
+        transformException = decodedMessage.getTransformException();
+      } else {
+        decodedRow = _streamDataDecoder.decode(streamMessage);
+      }
       StreamMessageMetadata metadata = streamMessage.getMetadata();
       StreamPartitionMsgOffset offset = metadata.getOffset();
       StreamPartitionMsgOffset nextOffset = metadata.getNextOffset();
@@ -638,16 +656,21 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         _numRowsErrored++;
         _numBytesDropped += rowSizeInBytes;
       } else {
-        TransformPipeline.Result result = null;
-        try {
-          result = _transformPipeline.processRow(decodedRow.getResult());
-        } catch (Exception e) {
+        if (_pipelinedMessageDecoder == null) {
+          try {
+            result = _transformPipeline.processRow(decodedRow.getResult());
+          } catch (Exception e) {
+            transformException = e;
+          }
+        }
+        if (transformException != null) {
           _numRowsErrored++;
           _numBytesDropped += rowSizeInBytes;
           String errorMessage = "Caught exception while transforming the record at offset: " + offset + " , row: "
               + decodedRow.getResult();
-          _segmentLogger.error(errorMessage, e);
-          _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(), errorMessage, e));
+          _segmentLogger.error(errorMessage, transformException);
+          _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+              new SegmentErrorInfo(now(), errorMessage, transformException));
         }
         if (result != null) {
           if (result.getSkippedRowCount() > 0) {
@@ -703,6 +726,10 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _numRowsConsumed++;
       streamMessageCount++;
     }
+    if (_pipelinedMessageDecoder != null) {
+      // Drop the messages decoded ahead when exiting the batch early
+      _pipelinedMessageDecoder.finishBatch();
+    }
 
     updateCurrentDocumentCountMetrics();
     if (messageBatch.getUnfilteredMessageCount() > 0) {
@@ -1348,6 +1375,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       closePartitionMetadataProvider();
       releaseConsumerSemaphore();
       _transformPipeline.reportStats();
+      if (_pipelinedMessageDecoder != null) {
+        _pipelinedMessageDecoder.close();
+      }
     }
   }
 
@@ -1822,6 +1852,29 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       throw e;
     }
 
+    // Create the decoders for pipelined consumption, which run on the decode threads shared by the server
+    int numDecodeThreads = ingestionConfig != null && ingestionConfig.getStreamIngestionConfig() != null
+        ? ingestionConfig.getStreamIngestionConfig().getNumDecodeThreads() : 0;
+    ExecutorService decodeExecutor = realtimeTableDataManager.getDecodeExecutor();
+    if (numDecodeThreads > 0 && decodeExecutor == null) {
+      _segmentLogger.warn("Decode threads are disabled on the server, ignoring {} decode threads configured for the "
+          + "table", numDecodeThreads);
+      _pipelinedMessageDecoder = null;
+    } else if (numDecodeThreads > 0) {
+      try {
+        _pipelinedMessageDecoder =
+            new PipelinedMessageDecoder(decodeExecutor, numDecodeThreads, () -> createMessageDecoder(fieldsToRead),
+                () -> new TransformPipeline(tableConfig, schema));
+      } catch (Exception e) {
+        _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+            new SegmentErrorInfo(now(), "Failed to initialize the pipelined message decoder", e));
+        throw e;
+      }
+      _segmentLogger.info("Pipelined consumption enabled with {} decode threads", numDecodeThreads);
+    } else {
+      _pipelinedMessageDecoder = null;
+    }
+
     try {
       _startOffset = _partitionGroupConsumptionStatus.getStartOffset();
       _currentOffset = _streamPartitionMsgOffsetFactory.create(_startOffset);
@@ -1839,6 +1892,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _segmentCommitterFactory =
           new SegmentCommitterFactory(_segmentLogger, _protocolHandler, tableConfig, indexLoadingConfig, serverMetrics);
     } catch (Throwable t) {
+      if (_pipelinedMessageDecoder != null) {
+        _pipelinedMessageDecoder.close();
+      }
       _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(),
           "Failed to initialize segment data manager", t));
       _segmentLogger.warn(
@@ -36,6 +36,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -98,6 +99,8 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
   private SegmentBuildTimeLeaseExtender _leaseExtender;
   private RealtimeSegmentStatsHistory _statsHistory;
   private final Semaphore _segmentBuildSemaphore;
+  // Executor shared by the server to decode and transform the stream messages for pipelined consumption
+  private final ExecutorService _decodeExecutor;
 
   // Maintains a map from partition id to consumer coordinator. The consumer coordinator uses a semaphore to ensure that
   // exactly one PartitionConsumer instance consumes from any stream partition.
@@ -151,8 +154,14 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
   }
 
   public RealtimeTableDataManager(Semaphore segmentBuildSemaphore, BooleanSupplier isServerReadyToServeQueries) {
+    this(segmentBuildSemaphore, isServerReadyToServeQueries, null);
+  }
+
+  public RealtimeTableDataManager(Semaphore segmentBuildSemaphore, BooleanSupplier isServerReadyToServeQueries,
+      @Nullable ExecutorService decodeExecutor) {
     _segmentBuildSemaphore = segmentBuildSemaphore;
     _isServerReadyToServeQueries = isServerReadyToServeQueries;
+    _decodeExecutor = decodeExecutor;
   }
 
   @Override
@@ -402,6 +411,11 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     return _segmentBuildSemaphore;
   }
 
+  @Nullable
+  public ExecutorService getDecodeExecutor() {
+    return _decodeExecutor;
+  }
+
   public String getConsumerDir() {
     File consumerDir = getConsumerDirPath();
     if (!consumerDir.exists()) {
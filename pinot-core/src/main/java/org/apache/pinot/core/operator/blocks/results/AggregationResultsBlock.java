@@ -78,13 +78,16 @@ public class AggregationResultsBlock extends BaseResultsBlock {
 
   @Override
   public DataSchema getDataSchema() {
+    return getDataSchema(_queryContext.isServerReturnFinalResult());
+  }
+
+  private DataSchema getDataSchema(boolean returnFinalResult) {
     List<Pair<AggregationFunction, FilterContext>> filteredAggregationFunctions =
         _queryContext.getFilteredAggregationFunctions();
     assert filteredAggregationFunctions != null;
     int numColumns = filteredAggregationFunctions.size();
     String[] columnNames = new String[numColumns];
     ColumnDataType[] columnDataTypes = new ColumnDataType[numColumns];
-    boolean returnFinalResult = _queryContext.isServerReturnFinalResult();
     for (int i = 0; i < numColumns; i++) {
       Pair<AggregationFunction, FilterContext> pair = filteredAggregationFunctions.get(i);
       AggregationFunction aggregationFunction = pair.getLeft();
@@ -103,7 +106,17 @@ public class AggregationResultsBlock extends BaseResultsBlock {
   @Override
   public DataTable getDataTable()
       throws IOException {
-    DataSchema dataSchema = getDataSchema();
+    return getDataTable(_queryContext.isServerReturnFinalResult());
+  }
+
+  /**
+   * Returns the data table holding either the final results or the intermediate results, regardless of the query
+   * option. The intermediate results can be read back with
+   * {@link org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils#getIntermediateResult}.
+   */
+  public DataTable getDataTable(boolean returnFinalResult)
+      throws IOException {
+    DataSchema dataSchema = getDataSchema(returnFinalResult);
     assert dataSchema != null;
     ColumnDataType[] columnDataTypes = dataSchema.getColumnDataTypes();
     int numColumns = columnDataTypes.length;
@@ -114,7 +127,6 @@ public class AggregationResultsBlock extends BaseResultsBlock {
       return dataTableBuilder.build();
     }
 
-    boolean returnFinalResult = _queryContext.isServerReturnFinalResult();
     if (_queryContext.isNullHandlingEnabled()) {
       RoaringBitmap[] nullBitmaps = new RoaringBitmap[numColumns];
       for (int i = 0; i < numColumns; i++) {
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.datatable.DataTableFactory;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.plan.SegmentResultCache;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The <code>SegmentResultCacheOperator</code> class serves keyless aggregation results of a single segment from the
+ * {@link SegmentResultCache}. On a cache hit it rebuilds the intermediate results from the cached entry, otherwise it
+ * runs the child operator and caches its results.
+ */
+@SuppressWarnings("rawtypes")
+public class SegmentResultCacheOperator extends BaseOperator<AggregationResultsBlock> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCacheOperator.class);
+  private static final String EXPLAIN_NAME = "SEGMENT_RESULT_CACHE";
+
+  private final QueryContext _queryContext;
+  private final IndexSegment _indexSegment;
+  private final SegmentResultCache.Entry _cachedEntry;
+  private final Operator<AggregationResultsBlock> _childOperator;
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _cacheKey;
+
+  /**
+   * Constructor for a cache hit.
+   */
+  public SegmentResultCacheOperator(QueryContext queryContext, IndexSegment indexSegment,
+      SegmentResultCache.Entry cachedEntry) {
+    this(queryContext, indexSegment, cachedEntry, null, null, null);
+  }
+
+  /**
+   * Constructor for a cache miss, where results of the child operator are cached under the given key.
+   */
+  public SegmentResultCacheOperator(QueryContext queryContext, IndexSegment indexSegment,
+      Operator<AggregationResultsBlock> childOperator, SegmentResultCache segmentResultCache,
+      SegmentResultCache.Key cacheKey) {
+    this(queryContext, indexSegment, null, childOperator, segmentResultCache, cacheKey);
+  }
+
+  private SegmentResultCacheOperator(QueryContext queryContext, IndexSegment indexSegment,
+      @Nullable SegmentResultCache.Entry cachedEntry, @Nullable Operator<AggregationResultsBlock> childOperator,
+      @Nullable SegmentResultCache segmentResultCache, @Nullable SegmentResultCache.Key cacheKey) {
+    _queryContext = queryContext;
+    _indexSegment = indexSegment;
+    _cachedEntry = cachedEntry;
+    _childOperator = childOperator;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+  }
+
+  @Override
+  protected AggregationResultsBlock getNextBlock() {
+    if (_cachedEntry != null) {
+      return getCachedResultsBlock();
+    }
+    AggregationResultsBlock resultsBlock = _childOperator.nextBlock();
+    try {
+      byte[] dataTableBytes = resultsBlock.getDataTable(false).toBytes();
+      _segmentResultCache.put(_cacheKey, _indexSegment, dataTableBytes,
+          _childOperator.getExecutionStatistics().getNumDocsScanned());
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while caching results for segment: {}", _indexSegment.getSegmentName(), e);
+    }
+    return resultsBlock;
+  }
+
+  private AggregationResultsBlock getCachedResultsBlock() {
+    DataTable dataTable;
+    try {
+      dataTable = DataTableFactory.getDataTable(_cachedEntry.getDataTableBytes());
+    } catch (IOException e) {
+      throw new RuntimeException("Caught exception while deserializing cached results for segment: "
+          + _indexSegment.getSegmentName(), e);
+    }
+    AggregationFunction[] aggregationFunctions = _queryContext.getAggregationFunctions();
+    assert aggregationFunctions != null;
+    if (dataTable.getNumberOfRows() == 0) {
+      return new AggregationResultsBlock(aggregationFunctions, Collections.emptyList(), _queryContext);
+    }
+    DataSchema dataSchema = dataTable.getDataSchema();
+    int numAggregationFunctions = aggregationFunctions.length;
+    List<Object> results = new ArrayList<>(numAggregationFunctions);
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      ColumnDataType columnDataType = dataSchema.getColumnDataType(i);
+      if (_queryContext.isNullHandlingEnabled()) {
+        RoaringBitmap nullBitmap = dataTable.getNullRowIds(i);
+        if (nullBitmap != null && nullBitmap.contains(0)) {
+          results.add(null);
+          continue;
+        }
+      }
+      results.add(
+          AggregationFunctionUtils.getIntermediateResult(aggregationFunctions[i], dataTable, columnDataType, 0, i));
+    }
+    return new AggregationResultsBlock(aggregationFunctions, results, _queryContext);
+  }
+
+  @Override
+  public List<Operator> getChildOperators() {
+    return _childOperator != null ? Collections.singletonList(_childOperator) : Collections.emptyList();
+  }
+
+  @Override
+  public IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    if (_childOperator != null) {
+      return _childOperator.getExecutionStatistics();
+    }
+    // Nothing is scanned on a cache hit, but keep the matched docs so that the segment is still counted as matched
+    return new ExecutionStatistics(_cachedEntry.getNumDocsScanned(), 0, 0,
+        _indexSegment.getSegmentMetadata().getTotalDocs());
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.request.context.predicate.Predicate;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentMetadata;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Server side cache of the doc ids matching a filter predicate on a segment, keyed by segment (name and CRC) and
+ * predicate. The predicate is compared structurally, so that literals containing separators cannot make different
+ * predicates share a key. The bitmaps are stored serialized in heap buffers, and the cache is bounded by a configured
+ * heap budget on their serialized size. Evicted bitmaps are reclaimed by the GC once no running query references them.
+ *
+ * <p>A predicate is only cached the second time it is seen on a segment, so that one-off predicates do not pay for
+ * materializing their full bitmap (which can be more expensive than the lazy evaluation for scan based filters).
+ *
+ * <p>Only immutable segments are cached. A replaced segment carries a different CRC and thus a different key, and each
+ * entry remembers the segment instance it was computed on, so that an entry computed on a previous (reloaded)
+ * instance is treated as a miss and dropped.
+ */
+public class FilterBitmapCache {
+  // Max number of predicates seen once to remember for admission
+  private static final int MAX_NUM_ADMISSION_CANDIDATES = 100_000;
+
+  private final Cache<Key, Entry> _cache;
+  private final Cache<Key, Boolean> _admissionCandidates;
+
+  public FilterBitmapCache(long maxHeapSizeBytes) {
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxHeapSizeBytes)
+        .<Key, Entry>weigher((key, entry) -> entry._docIdsBuffer.capacity())
+        .removalListener(notification -> {
+          if (notification.getCause() == RemovalCause.SIZE) {
+            ServerMetrics.get().addMeteredGlobalValue(ServerMeter.FILTER_BITMAP_CACHE_EVICTIONS, 1);
+          }
+        })
+        .build();
+    _admissionCandidates = CacheBuilder.newBuilder().maximumSize(MAX_NUM_ADMISSION_CANDIDATES).build();
+  }
+
+  /**
+   * Returns the cache key for the given predicate on the given segment, or {@code null} if the predicate result
+   * cannot be cached.
+   */
+  @Nullable
+  public static Key getCacheKey(IndexSegment indexSegment, QueryContext queryContext, Predicate predicate) {
+    // Null handling requires the nulls of the predicate in addition to the matching doc ids, and star-tree requires
+    // the predicate evaluators
+    if (queryContext.isNullHandlingEnabled() || queryContext.isExplain() || !(indexSegment instanceof ImmutableSegment)
+        || CollectionUtils.isNotEmpty(indexSegment.getStarTrees())) {
+      return null;
+    }
+    switch (predicate.getType()) {
+      // Already backed by a bitmap
+      case IS_NULL:
+      case IS_NOT_NULL:
+        // Result depends on the query options
+      case VECTOR_SIMILARITY:
+        return null;
+      default:
+        break;
+    }
+    SegmentMetadata segmentMetadata = indexSegment.getSegmentMetadata();
+    String crc = segmentMetadata.getCrc();
+    if (crc == null) {
+      return null;
+    }
+    return new Key(segmentMetadata.getTableName(), indexSegment.getSegmentName(), crc, predicate);
+  }
+
+  /**
+   * Returns the cached doc ids for the given key if they were computed on the given segment instance, {@code null}
+   * otherwise.
+   */
+  @Nullable
+  public ImmutableRoaringBitmap get(Key key, IndexSegment indexSegment) {
+    Entry entry = _cache.getIfPresent(key);
+    if (entry != null && entry._indexSegment.get() != indexSegment) {
+      // Segment has been reloaded since the entry was computed
+      _cache.invalidate(key);
+      entry = null;
+    }
+    if (entry != null) {
+      ServerMetrics.get().addMeteredGlobalValue(ServerMeter.FILTER_BITMAP_CACHE_HITS, 1);
+      return new ImmutableRoaringBitmap(entry._docIdsBuffer.duplicate());
+    } else {
+      ServerMetrics.get().addMeteredGlobalValue(ServerMeter.FILTER_BITMAP_CACHE_MISSES, 1);
+      return null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the result for the given key should be cached, i.e. the key has been seen before.
+   */
+  public boolean shouldAdmit(Key key) {
+    if (_admissionCandidates.getIfPresent(key) != null) {
+      _admissionCandidates.invalidate(key);
+      return true;
+    } else {
+      _admissionCandidates.put(key, Boolean.TRUE);
+      return false;
+    }
+  }
+
+  /**
+   * Caches the given doc ids, and returns the cached copy of them.
+   */
+  public ImmutableRoaringBitmap put(Key key, IndexSegment indexSegment, ImmutableRoaringBitmap docIds) {
+    MutableRoaringBitmap optimizedDocIds = docIds.toMutableRoaringBitmap();
+    optimizedDocIds.runOptimize();
+    ByteBuffer docIdsBuffer = ByteBuffer.allocate(optimizedDocIds.serializedSizeInBytes());
+    optimizedDocIds.serialize(docIdsBuffer);
+    docIdsBuffer.flip();
+    _cache.put(key, new Entry(indexSegment, docIdsBuffer));
+    return new ImmutableRoaringBitmap(docIdsBuffer.duplicate());
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  public static class Key {
+    private final String _tableName;
+    private final String _segmentName;
+    private final String _crc;
+    private final Predicate _predicate;
+    private final int _hashCode;
+
+    private Key(String tableName, String segmentName, String crc, Predicate predicate) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _crc = crc;
+      _predicate = predicate;
+      _hashCode = Objects.hash(tableName, segmentName, crc, predicate);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && _tableName.equals(that._tableName)
+          && _segmentName.equals(that._segmentName) && _crc.equals(that._crc) && _predicate.equals(that._predicate);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  private static class Entry {
+    final WeakReference<IndexSegment> _indexSegment;
+    final ByteBuffer _docIdsBuffer;
+
+    Entry(IndexSegment indexSegment, ByteBuffer docIdsBuffer) {
+      _indexSegment = new WeakReference<>(indexSegment);
+      _docIdsBuffer = docIdsBuffer;
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.apache.pinot.common.request.context.predicate.RegexpLikePredicate;
 import org.apache.pinot.common.request.context.predicate.TextContainsPredicate;
 import org.apache.pinot.common.request.context.predicate.TextMatchPredicate;
 import org.apache.pinot.common.request.context.predicate.VectorSimilarityPredicate;
+import org.apache.pinot.core.common.BlockDocIdIterator;
 import org.apache.pinot.core.geospatial.transform.function.StDistanceFunction;
 import org.apache.pinot.core.operator.filter.BaseFilterOperator;
 import org.apache.pinot.core.operator.filter.BitmapBasedFilterOperator;
@@ -56,6 +57,7 @@ import org.apache.pinot.core.operator.transform.function.ItemTransformFunction;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.segment.local.realtime.impl.invertedindex.NativeMutableTextIndex;
 import org.apache.pinot.segment.local.segment.index.readers.text.NativeTextIndexReader;
+import org.apache.pinot.segment.spi.Constants;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentContext;
 import org.apache.pinot.segment.spi.datasource.DataSource;
@@ -68,6 +70,7 @@ import org.apache.pinot.segment.spi.index.reader.TextIndexReader;
 import org.apache.pinot.segment.spi.index.reader.VectorIndexReader;
 import org.apache.pinot.spi.config.table.FieldConfig;
 import org.apache.pinot.spi.exception.BadQueryRequestException;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 
@@ -251,125 +254,168 @@ public class FilterPlanNode implements PlanNode {
         BaseFilterOperator childFilterOperator = constructPhysicalOperator(childFilters.get(0), numDocs);
         return FilterOperatorUtils.getNotFilterOperator(_queryContext, childFilterOperator, numDocs);
       case PREDICATE:
-        Predicate predicate = filter.getPredicate();
-        ExpressionContext lhs = predicate.getLhs();
-        if (lhs.getType() == ExpressionContext.Type.FUNCTION) {
-          if (canApplyH3IndexForDistanceCheck(predicate, lhs.getFunction())) {
-            return new H3IndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
-          } else if (canApplyH3IndexForInclusionCheck(predicate, lhs.getFunction())) {
-            return new H3InclusionIndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
-          } else if (canApplyMapFilter(predicate)) {
-            return new MapFilterOperator(_indexSegment, predicate, _queryContext, numDocs);
-          } else {
-            // TODO: ExpressionFilterOperator does not support predicate types without PredicateEvaluator (TEXT_MATCH)
-            return new ExpressionFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
-          }
-        } else {
-          String column = lhs.getIdentifier();
-          DataSource dataSource = _indexSegment.getDataSource(column, _queryContext.getSchema());
-          PredicateEvaluator predicateEvaluator;
-          TextIndexReader textIndexReader;
-          switch (predicate.getType()) {
-            case TEXT_CONTAINS:
-              textIndexReader = dataSource.getTextIndex();
-              if (!(textIndexReader instanceof NativeTextIndexReader)
-                  && !(textIndexReader instanceof NativeMutableTextIndex)) {
-                throw new UnsupportedOperationException("TEXT_CONTAINS is supported only on native text index");
-              }
-              return new TextContainsFilterOperator(textIndexReader, (TextContainsPredicate) predicate, numDocs);
-            case TEXT_MATCH:
-              textIndexReader = dataSource.getTextIndex();
-              if (textIndexReader == null) {
-                MultiColumnTextMetadata meta = _indexSegment.getSegmentMetadata().getMultiColumnTextMetadata();
-                if (meta != null && meta.getColumns().contains(column)) {
-                  textIndexReader = _indexSegment.getMultiColumnTextIndex();
-                }
-              }
+        return constructPredicateFilterOperator(filter.getPredicate(), numDocs);
+      case CONSTANT:
+        return filter.isConstantTrue() ? new MatchAllFilterOperator(numDocs) : EmptyFilterOperator.getInstance();
+      default:
+        throw new IllegalStateException();
+    }
+  }
 
-              Preconditions.checkState(textIndexReader != null,
-                  "Cannot apply TEXT_MATCH on column: %s without text index", column);
-              // We could check for real time and segment Lucene reader, but easier to check the other way round
-              if (textIndexReader instanceof NativeTextIndexReader
-                  || textIndexReader instanceof NativeMutableTextIndex) {
-                throw new UnsupportedOperationException("TEXT_MATCH is not supported on native text index");
-              }
+  /**
+   * Helper method to build the filter operator for a predicate, using the filter bitmap cache when configured.
+   */
+  private BaseFilterOperator constructPredicateFilterOperator(Predicate predicate, int numDocs) {
+    FilterBitmapCache filterBitmapCache = _queryContext.getFilterBitmapCache();
+    FilterBitmapCache.Key cacheKey =
+        filterBitmapCache != null ? FilterBitmapCache.getCacheKey(_indexSegment, _queryContext, predicate) : null;
+    if (cacheKey == null) {
+      return constructLeafFilterOperator(predicate, numDocs);
+    }
+    ImmutableRoaringBitmap docIds = filterBitmapCache.get(cacheKey, _indexSegment);
+    if (docIds != null) {
+      return new BitmapBasedFilterOperator(docIds, false, numDocs);
+    }
+    BaseFilterOperator filterOperator = constructLeafFilterOperator(predicate, numDocs);
+    if (filterOperator.isResultEmpty() || filterOperator.isResultMatchingAll()
+        || !filterBitmapCache.shouldAdmit(cacheKey)) {
+      return filterOperator;
+    }
+    docIds = filterBitmapCache.put(cacheKey, _indexSegment, getMatchingDocIds(filterOperator));
+    return new BitmapBasedFilterOperator(docIds, false, numDocs);
+  }
+
+  private static ImmutableRoaringBitmap getMatchingDocIds(BaseFilterOperator filterOperator) {
+    if (filterOperator.canProduceBitmaps()) {
+      return filterOperator.getBitmaps().reduce();
+    }
+    MutableRoaringBitmap docIds = new MutableRoaringBitmap();
+    try (BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator()) {
+      int docId;
+      while ((docId = iterator.next()) != Constants.EOF) {
+        docIds.add(docId);
+      }
+    }
+    return docIds;
+  }
 
-              if (textIndexReader.isMultiColumn()) {
-                return new TextMatchFilterOperator(column, textIndexReader, (TextMatchPredicate) predicate, numDocs);
-              } else {
-                return new TextMatchFilterOperator(textIndexReader, (TextMatchPredicate) predicate, numDocs);
-              }
-            case REGEXP_LIKE:
-              // Check if case-insensitive flag is present
-              RegexpLikePredicate regexpLikePredicate = (RegexpLikePredicate) predicate;
-              boolean caseInsensitive = regexpLikePredicate.isCaseInsensitive();
-              if (caseInsensitive) {
-                if (dataSource.getIFSTIndex() != null) {
-                  predicateEvaluator =
-                      IFSTBasedRegexpPredicateEvaluatorFactory.newIFSTBasedEvaluator(regexpLikePredicate,
-                          dataSource.getIFSTIndex(), dataSource.getDictionary());
-                } else {
-                  predicateEvaluator =
-                      PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource.getDictionary(),
-                          dataSource.getDataSourceMetadata().getDataType(), _queryContext);
-                }
-              } else {
-                if (dataSource.getFSTIndex() != null) {
-                  predicateEvaluator = FSTBasedRegexpPredicateEvaluatorFactory.newFSTBasedEvaluator(regexpLikePredicate,
-                      dataSource.getFSTIndex(), dataSource.getDictionary());
-                } else {
-                  predicateEvaluator =
-                      PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource.getDictionary(),
-                          dataSource.getDataSourceMetadata().getDataType(), _queryContext);
-                }
-              }
-              _predicateEvaluators.add(Pair.of(predicate, predicateEvaluator));
-              return FilterOperatorUtils.getLeafFilterOperator(_queryContext, predicateEvaluator, dataSource, numDocs);
-            case JSON_MATCH:
-              JsonIndexReader jsonIndex = dataSource.getJsonIndex();
-              if (jsonIndex == null) { //TODO: rework
-                Optional<IndexType<?, ?, ?>> compositeIndex =
-                    IndexService.getInstance().getOptional("composite_json_index");
-                if (compositeIndex.isPresent()) {
-                  jsonIndex =
-                      (JsonIndexReader) dataSource.getIndex(compositeIndex.get());
-                }
-              }
-              Preconditions.checkState(jsonIndex != null, "Cannot apply JSON_MATCH on column: %s without json index",
-                  column);
-              return new JsonMatchFilterOperator(jsonIndex, (JsonMatchPredicate) predicate, numDocs);
-            case VECTOR_SIMILARITY:
-              VectorIndexReader vectorIndex = dataSource.getVectorIndex();
-              Preconditions.checkState(vectorIndex != null,
-                  "Cannot apply VECTOR_SIMILARITY on column: %s without vector index", column);
-              return new VectorSimilarityFilterOperator(vectorIndex, (VectorSimilarityPredicate) predicate, numDocs);
-            case IS_NULL: {
-              NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
-              if (nullValueVector != null) {
-                return new BitmapBasedFilterOperator(nullValueVector.getNullBitmap(), false, numDocs);
-              } else {
-                return EmptyFilterOperator.getInstance();
-              }
+  /**
+   * Helper method to build the filter operator for a predicate.
+   */
+  private BaseFilterOperator constructLeafFilterOperator(Predicate predicate, int numDocs) {
+    ExpressionContext lhs = predicate.getLhs();
+    if (lhs.getType() == ExpressionContext.Type.FUNCTION) {
+      if (canApplyH3IndexForDistanceCheck(predicate, lhs.getFunction())) {
+        return new H3IndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
+      } else if (canApplyH3IndexForInclusionCheck(predicate, lhs.getFunction())) {
+        return new H3InclusionIndexFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
+      } else if (canApplyMapFilter(predicate)) {
+        return new MapFilterOperator(_indexSegment, predicate, _queryContext, numDocs);
+      } else {
+        // TODO: ExpressionFilterOperator does not support predicate types without PredicateEvaluator (TEXT_MATCH)
+        return new ExpressionFilterOperator(_indexSegment, _queryContext, predicate, numDocs);
+      }
+    } else {
+      String column = lhs.getIdentifier();
+      DataSource dataSource = _indexSegment.getDataSource(column, _queryContext.getSchema());
+      PredicateEvaluator predicateEvaluator;
+      TextIndexReader textIndexReader;
+      switch (predicate.getType()) {
+        case TEXT_CONTAINS:
+          textIndexReader = dataSource.getTextIndex();
+          if (!(textIndexReader instanceof NativeTextIndexReader)
+              && !(textIndexReader instanceof NativeMutableTextIndex)) {
+            throw new UnsupportedOperationException("TEXT_CONTAINS is supported only on native text index");
+          }
+          return new TextContainsFilterOperator(textIndexReader, (TextContainsPredicate) predicate, numDocs);
+        case TEXT_MATCH:
+          textIndexReader = dataSource.getTextIndex();
+          if (textIndexReader == null) {
+            MultiColumnTextMetadata meta = _indexSegment.getSegmentMetadata().getMultiColumnTextMetadata();
+            if (meta != null && meta.getColumns().contains(column)) {
+              textIndexReader = _indexSegment.getMultiColumnTextIndex();
             }
-            case IS_NOT_NULL: {
-              NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
-              if (nullValueVector != null) {
-                return new BitmapBasedFilterOperator(nullValueVector.getNullBitmap(), true, numDocs);
-              } else {
-                return new MatchAllFilterOperator(numDocs);
-              }
+          }
+
+          Preconditions.checkState(textIndexReader != null,
+              "Cannot apply TEXT_MATCH on column: %s without text index", column);
+          // We could check for real time and segment Lucene reader, but easier to check the other way round
+          if (textIndexReader instanceof NativeTextIndexReader
+              || textIndexReader instanceof NativeMutableTextIndex) {
+            throw new UnsupportedOperationException("TEXT_MATCH is not supported on native text index");
+          }
+
+          if (textIndexReader.isMultiColumn()) {
+            return new TextMatchFilterOperator(column, textIndexReader, (TextMatchPredicate) predicate, numDocs);
+          } else {
+            return new TextMatchFilterOperator(textIndexReader, (TextMatchPredicate) predicate, numDocs);
+          }
+        case REGEXP_LIKE:
+          // Check if case-insensitive flag is present
+          RegexpLikePredicate regexpLikePredicate = (RegexpLikePredicate) predicate;
+          boolean caseInsensitive = regexpLikePredicate.isCaseInsensitive();
+          if (caseInsensitive) {
+            if (dataSource.getIFSTIndex() != null) {
+              predicateEvaluator =
+                  IFSTBasedRegexpPredicateEvaluatorFactory.newIFSTBasedEvaluator(regexpLikePredicate,
+                      dataSource.getIFSTIndex(), dataSource.getDictionary());
+            } else {
+              predicateEvaluator =
+                  PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource.getDictionary(),
+                      dataSource.getDataSourceMetadata().getDataType(), _queryContext);
             }
-            default:
+          } else {
+            if (dataSource.getFSTIndex() != null) {
+              predicateEvaluator = FSTBasedRegexpPredicateEvaluatorFactory.newFSTBasedEvaluator(regexpLikePredicate,
+                  dataSource.getFSTIndex(), dataSource.getDictionary());
+            } else {
               predicateEvaluator =
-                  PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource, _queryContext);
-              _predicateEvaluators.add(Pair.of(predicate, predicateEvaluator));
-              return FilterOperatorUtils.getLeafFilterOperator(_queryContext, predicateEvaluator, dataSource, numDocs);
+                  PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource.getDictionary(),
+                      dataSource.getDataSourceMetadata().getDataType(), _queryContext);
+            }
+          }
+          _predicateEvaluators.add(Pair.of(predicate, predicateEvaluator));
+          return FilterOperatorUtils.getLeafFilterOperator(_queryContext, predicateEvaluator, dataSource, numDocs);
+        case JSON_MATCH:
+          JsonIndexReader jsonIndex = dataSource.getJsonIndex();
+          if (jsonIndex == null) { //TODO: rework
+            Optional<IndexType<?, ?, ?>> compositeIndex =
+                IndexService.getInstance().getOptional("composite_json_index");
+            if (compositeIndex.isPresent()) {
+              jsonIndex =
+                  (JsonIndexReader) dataSource.getIndex(compositeIndex.get());
+            }
+          }
+          Preconditions.checkState(jsonIndex != null, "Cannot apply JSON_MATCH on column: %s without json index",
+              column);
+          return new JsonMatchFilterOperator(jsonIndex, (JsonMatchPredicate) predicate, numDocs);
+        case VECTOR_SIMILARITY:
+          VectorIndexReader vectorIndex = dataSource.getVectorIndex();
+          Preconditions.checkState(vectorIndex != null,
+              "Cannot apply VECTOR_SIMILARITY on column: %s without vector index", column);
+          return new VectorSimilarityFilterOperator(vectorIndex, (VectorSimilarityPredicate) predicate, numDocs);
+        case IS_NULL: {
+          NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
+          if (nullValueVector != null) {
+            return new BitmapBasedFilterOperator(nullValueVector.getNullBitmap(), false, numDocs);
+          } else {
+            return EmptyFilterOperator.getInstance();
           }
         }
-      case CONSTANT:
-        return filter.isConstantTrue() ? new MatchAllFilterOperator(numDocs) : EmptyFilterOperator.getInstance();
-      default:
-        throw new IllegalStateException();
+        case IS_NOT_NULL: {
+          NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
+          if (nullValueVector != null) {
+            return new BitmapBasedFilterOperator(nullValueVector.getNullBitmap(), true, numDocs);
+          } else {
+            return new MatchAllFilterOperator(numDocs);
+          }
+        }
+        default:
+          predicateEvaluator =
+              PredicateEvaluatorProvider.getPredicateEvaluator(predicate, dataSource, _queryContext);
+          _predicateEvaluators.add(Pair.of(predicate, predicateEvaluator));
+          return FilterOperatorUtils.getLeafFilterOperator(_queryContext, predicateEvaluator, dataSource, numDocs);
+      }
     }
   }
 }
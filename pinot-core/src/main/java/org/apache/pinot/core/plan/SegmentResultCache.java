@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.FilterContext;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+import org.apache.pinot.segment.spi.SegmentMetadata;
+
+
+/**
+ * Server side cache of per-segment aggregation results, keyed by segment (name and CRC) and query shape (filter,
+ * aggregations and null handling). The query shape is compared structurally on the filter and expression contexts, so
+ * that literals containing separators cannot make different queries share a key. The cached value is the serialized
+ * intermediate {@code DataTable} produced for the segment, so a hit skips filtering and aggregating the segment
+ * entirely and only pays for the deserialization.
+ *
+ * <p>Only immutable segments without valid doc ids (i.e. no upsert/dedup) are cached, as their content can only change
+ * by replacing or reloading the segment. A replaced segment carries a different CRC and thus a different key, and each
+ * entry remembers the segment instance it was computed on, so that an entry computed on a previous (reloaded)
+ * instance is treated as a miss and dropped.
+ */
+public class SegmentResultCache {
+  private final Cache<Key, Entry> _cache;
+
+  public SegmentResultCache(long maxSizeBytes) {
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeBytes)
+        .<Key, Entry>weigher((key, entry) -> key._estimatedSizeBytes + entry._dataTableBytes.length)
+        .removalListener(notification -> {
+          if (notification.getCause() == RemovalCause.SIZE) {
+            ServerMetrics.get().addMeteredGlobalValue(ServerMeter.SEGMENT_RESULT_CACHE_EVICTIONS, 1);
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Returns the cache key for the given aggregation-only query on the given segment, or {@code null} if the segment
+   * result cannot be cached.
+   */
+  @Nullable
+  public static Key getCacheKey(SegmentContext segmentContext, QueryContext queryContext) {
+    if (queryContext.isExplain()) {
+      return null;
+    }
+    if (!QueryOptionsUtils.isUseSegmentResultCache(queryContext.getQueryOptions())) {
+      return null;
+    }
+    IndexSegment indexSegment = segmentContext.getIndexSegment();
+    if (!(indexSegment instanceof ImmutableSegment) || indexSegment.getValidDocIds() != null
+        || indexSegment.getQueryableDocIds() != null || segmentContext.getQueryableDocIdsSnapshot() != null) {
+      return null;
+    }
+    SegmentMetadata segmentMetadata = indexSegment.getSegmentMetadata();
+    String crc = segmentMetadata.getCrc();
+    if (crc == null) {
+      return null;
+    }
+    return new Key(segmentMetadata.getTableName(), indexSegment.getSegmentName(), crc,
+        queryContext.isNullHandlingEnabled(), queryContext.getFilter(), queryContext.getSelectExpressions());
+  }
+
+  /**
+   * Returns the cached entry for the given key if it was computed on the given segment instance, {@code null}
+   * otherwise.
+   */
+  @Nullable
+  public Entry get(Key key, IndexSegment indexSegment) {
+    Entry entry = _cache.getIfPresent(key);
+    if (entry != null && entry._indexSegment.get() != indexSegment) {
+      // Segment has been reloaded since the entry was computed
+      _cache.invalidate(key);
+      entry = null;
+    }
+    ServerMetrics.get().addMeteredGlobalValue(
+        entry != null ? ServerMeter.SEGMENT_RESULT_CACHE_HITS : ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+    return entry;
+  }
+
+  public void put(Key key, IndexSegment indexSegment, byte[] dataTableBytes, long numDocsScanned) {
+    _cache.put(key, new Entry(indexSegment, dataTableBytes, numDocsScanned));
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  public static class Key {
+    private final String _tableName;
+    private final String _segmentName;
+    private final String _crc;
+    private final boolean _nullHandlingEnabled;
+    private final FilterContext _filter;
+    private final List<ExpressionContext> _selectExpressions;
+    private final int _hashCode;
+    // Approximated with the length of the string representation, only used to weigh the cache entries
+    private final int _estimatedSizeBytes;
+
+    private Key(String tableName, String segmentName, String crc, boolean nullHandlingEnabled,
+        @Nullable FilterContext filter, List<ExpressionContext> selectExpressions) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _crc = crc;
+      _nullHandlingEnabled = nullHandlingEnabled;
+      _filter = filter;
+      _selectExpressions = selectExpressions;
+      _hashCode = Objects.hash(tableName, segmentName, crc, nullHandlingEnabled, filter, selectExpressions);
+      _estimatedSizeBytes = tableName.length() + segmentName.length() + crc.length()
+          + (filter != null ? filter.toString().length() : 0) + selectExpressions.toString().length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return _hashCode == that._hashCode && _nullHandlingEnabled == that._nullHandlingEnabled
+          && _tableName.equals(that._tableName) && _segmentName.equals(that._segmentName) && _crc.equals(that._crc)
+          && Objects.equals(_filter, that._filter) && _selectExpressions.equals(that._selectExpressions);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+  }
+
+  public static class Entry {
+    private final WeakReference<IndexSegment> _indexSegment;
+    private final byte[] _dataTableBytes;
+    private final long _numDocsScanned;
+
+    private Entry(IndexSegment indexSegment, byte[] dataTableBytes, long numDocsScanned) {
+      _indexSegment = new WeakReference<>(indexSegment);
+      _dataTableBytes = dataTableBytes;
+      _numDocsScanned = numDocsScanned;
+    }
+
+    public byte[] getDataTableBytes() {
+      return _dataTableBytes;
+    }
+
+    public long getNumDocsScanned() {
+      return _numDocsScanned;
+    }
+  }
+}
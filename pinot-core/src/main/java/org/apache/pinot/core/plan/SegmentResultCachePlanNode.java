@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.query.SegmentResultCacheOperator;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+
+
+/**
+ * The <code>SegmentResultCachePlanNode</code> class wraps the plan node of an aggregation only query on a single
+ * segment, and only runs it when the segment results are not present in the {@link SegmentResultCache}.
+ */
+public class SegmentResultCachePlanNode implements PlanNode {
+  private final AggregationPlanNode _childPlanNode;
+  private final SegmentResultCache _segmentResultCache;
+  private final SegmentResultCache.Key _cacheKey;
+  private final IndexSegment _indexSegment;
+  private final QueryContext _queryContext;
+
+  public SegmentResultCachePlanNode(AggregationPlanNode childPlanNode, SegmentResultCache segmentResultCache,
+      SegmentResultCache.Key cacheKey, SegmentContext segmentContext, QueryContext queryContext) {
+    _childPlanNode = childPlanNode;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+    _indexSegment = segmentContext.getIndexSegment();
+    _queryContext = queryContext;
+  }
+
+  @Override
+  public Operator<AggregationResultsBlock> run() {
+    SegmentResultCache.Entry cachedEntry = _segmentResultCache.get(_cacheKey, _indexSegment);
+    if (cachedEntry != null) {
+      return new SegmentResultCacheOperator(_queryContext, _indexSegment, cachedEntry);
+    }
+    return new SegmentResultCacheOperator(_queryContext, _indexSegment,
+        _childPlanNode.run(), _segmentResultCache, _cacheKey);
+  }
+}
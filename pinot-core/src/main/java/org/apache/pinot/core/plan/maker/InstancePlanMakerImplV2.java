@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -37,11 +38,14 @@ import org.apache.pinot.core.plan.AcquireReleaseColumnsSegmentPlanNode;
 import org.apache.pinot.core.plan.AggregationPlanNode;
 import org.apache.pinot.core.plan.CombinePlanNode;
 import org.apache.pinot.core.plan.DistinctPlanNode;
+import org.apache.pinot.core.plan.FilterBitmapCache;
 import org.apache.pinot.core.plan.GlobalPlanImplV0;
 import org.apache.pinot.core.plan.GroupByPlanNode;
 import org.apache.pinot.core.plan.InstanceResponsePlanNode;
 import org.apache.pinot.core.plan.Plan;
 import org.apache.pinot.core.plan.PlanNode;
+import org.apache.pinot.core.plan.SegmentResultCache;
+import org.apache.pinot.core.plan.SegmentResultCachePlanNode;
 import org.apache.pinot.core.plan.SelectionPlanNode;
 import org.apache.pinot.core.plan.StreamingInstanceResponsePlanNode;
 import org.apache.pinot.core.plan.StreamingSelectionPlanNode;
@@ -115,6 +119,12 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   private int _minSegmentGroupTrimSize = Server.DEFAULT_QUERY_EXECUTOR_MIN_SEGMENT_GROUP_TRIM_SIZE;
   private int _minServerGroupTrimSize = Server.DEFAULT_QUERY_EXECUTOR_MIN_SERVER_GROUP_TRIM_SIZE;
   private int _groupByTrimThreshold = Server.DEFAULT_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD;
+  // Cache of aggregation only segment results, null when disabled
+  @Nullable
+  private SegmentResultCache _segmentResultCache;
+  // Cache of filter predicate bitmaps, null when disabled
+  @Nullable
+  private FilterBitmapCache _filterBitmapCache;
 
   @Override
   public void init(PinotConfiguration queryExecutorConfig) {
@@ -146,6 +156,18 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
             + "numGroupsLimit: {}, minSegmentGroupTrimSize: {}, minServerGroupTrimSize: {}, groupByTrimThreshold: {}",
         _maxExecutionThreads, _maxInitialResultHolderCapacity, _numGroupsLimit, _minSegmentGroupTrimSize,
         _minServerGroupTrimSize, _groupByTrimThreshold);
+    long segmentResultCacheMaxSizeBytes = queryExecutorConfig.getProperty(Server.SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES,
+        Server.DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES);
+    if (segmentResultCacheMaxSizeBytes > 0) {
+      _segmentResultCache = new SegmentResultCache(segmentResultCacheMaxSizeBytes);
+      LOGGER.info("Enabled segment result cache with max size: {} bytes", segmentResultCacheMaxSizeBytes);
+    }
+    long filterBitmapCacheMaxSizeBytes = queryExecutorConfig.getProperty(Server.FILTER_BITMAP_CACHE_MAX_SIZE_BYTES,
+        Server.DEFAULT_QUERY_EXECUTOR_FILTER_BITMAP_CACHE_MAX_SIZE_BYTES);
+    if (filterBitmapCacheMaxSizeBytes > 0) {
+      _filterBitmapCache = new FilterBitmapCache(filterBitmapCacheMaxSizeBytes);
+      LOGGER.info("Enabled filter bitmap cache with max heap size: {} bytes", filterBitmapCacheMaxSizeBytes);
+    }
   }
 
   @VisibleForTesting
@@ -221,6 +243,11 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     queryContext.setAccurateGroupByWithoutOrderBy(
         QueryOptionsUtils.isAccurateGroupByWithoutOrderBy(queryOptions));
 
+    // Set filterBitmapCache
+    if (_filterBitmapCache != null && QueryOptionsUtils.isUseFilterBitmapCache(queryOptions)) {
+      queryContext.setFilterBitmapCache(_filterBitmapCache);
+    }
+
     // Set skipScanFilterReorder
     queryContext.setSkipScanFilterReorder(QueryOptionsUtils.isSkipScanFilterReorder(queryOptions));
 
@@ -316,7 +343,15 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         return new GroupByPlanNode(segmentContext, queryContext);
       } else {
         // Aggregation query
-        return new AggregationPlanNode(segmentContext, queryContext);
+        AggregationPlanNode aggregationPlanNode = new AggregationPlanNode(segmentContext, queryContext);
+        if (_segmentResultCache != null) {
+          SegmentResultCache.Key cacheKey = SegmentResultCache.getCacheKey(segmentContext, queryContext);
+          if (cacheKey != null) {
+            return new SegmentResultCachePlanNode(aggregationPlanNode, _segmentResultCache, cacheKey, segmentContext,
+                queryContext);
+          }
+        }
+        return aggregationPlanNode;
       }
     } else if (QueryContextUtils.isSelectionQuery(queryContext)) {
       return new SelectionPlanNode(segmentContext, queryContext);
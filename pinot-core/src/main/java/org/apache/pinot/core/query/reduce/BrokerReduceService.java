@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.pinot.common.datatable.DataTable;
 import org.apache.pinot.common.metrics.BrokerMeter;
@@ -34,6 +35,7 @@ import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
 import org.apache.pinot.core.transport.ServerRoutingInstance;
 import org.apache.pinot.core.util.GapfillUtils;
 import org.apache.pinot.spi.env.PinotConfiguration;
@@ -55,13 +57,50 @@ import org.slf4j.LoggerFactory;
 public class BrokerReduceService extends BaseReduceService {
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerReduceService.class);
 
+  private final boolean _enableIncrementalGroupByReduce;
+
   public BrokerReduceService(PinotConfiguration config) {
     super(config);
+    _enableIncrementalGroupByReduce =
+        config.getProperty(CommonConstants.Broker.CONFIG_OF_ENABLE_INCREMENTAL_GROUP_BY_REDUCE,
+            CommonConstants.Broker.DEFAULT_ENABLE_INCREMENTAL_GROUP_BY_REDUCE);
+  }
+
+  /// Returns an [IncrementalGroupByReducer] to merge the server responses of the given group-by query as they arrive,
+  /// or `null` if the query is not a group-by query, the incremental reduce is disabled, or there are less than 2
+  /// servers queried.
+  /// [org.apache.pinot.spi.query.QueryThreadContext] must already be set up before calling this method.
+  @Nullable
+  public IncrementalGroupByReducer getIncrementalGroupByReducer(BrokerRequest serverBrokerRequest, int numServers,
+      long timeoutMs) {
+    Map<String, String> queryOptions = serverBrokerRequest.getPinotQuery().getQueryOptions();
+    boolean useIncrementalGroupByReduce = queryOptions != null
+        ? QueryOptionsUtils.isUseIncrementalGroupByReduce(queryOptions, _enableIncrementalGroupByReduce)
+        : _enableIncrementalGroupByReduce;
+    if (numServers < 2 || !useIncrementalGroupByReduce) {
+      return null;
+    }
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(serverBrokerRequest.getPinotQuery());
+    if (queryContext.isExplain() || !QueryContextUtils.isAggregationQuery(queryContext)
+        || queryContext.getGroupByExpressions() == null) {
+      return null;
+    }
+    return new IncrementalGroupByReducer(queryContext, getDataTableReducerContext(queryOptions, timeoutMs),
+        numServers);
   }
 
   /// [org.apache.pinot.spi.query.QueryThreadContext] must already be set up before calling this method.
   public BrokerResponseNative reduceOnDataTable(BrokerRequest brokerRequest, BrokerRequest serverBrokerRequest,
       Map<ServerRoutingInstance, DataTable> dataTableMap, long reduceTimeOutMs, BrokerMetrics brokerMetrics) {
+    return reduceOnDataTable(brokerRequest, serverBrokerRequest, dataTableMap, reduceTimeOutMs, brokerMetrics, null);
+  }
+
+  /// Reduces the data tables with the [IncrementalGroupByReducer] (see [#getIncrementalGroupByReducer]) where the data
+  /// tables are already merged as they arrive when provided.
+  /// [org.apache.pinot.spi.query.QueryThreadContext] must already be set up before calling this method.
+  public BrokerResponseNative reduceOnDataTable(BrokerRequest brokerRequest, BrokerRequest serverBrokerRequest,
+      Map<ServerRoutingInstance, DataTable> dataTableMap, long reduceTimeOutMs, BrokerMetrics brokerMetrics,
+      @Nullable IncrementalGroupByReducer incrementalGroupByReducer) {
     if (dataTableMap.isEmpty()) {
       // Empty response.
       return BrokerResponseNative.empty();
@@ -148,27 +187,12 @@ public class BrokerReduceService extends BaseReduceService {
     }
 
     QueryContext serverQueryContext = QueryContextConverterUtils.getQueryContext(serverBrokerRequest.getPinotQuery());
-    DataTableReducer dataTableReducer = ResultReducerFactory.getResultReducer(serverQueryContext);
-
-    Integer minGroupTrimSizeQueryOption = null;
-    Integer groupTrimThresholdQueryOption = null;
-    Integer minInitialIndexedTableCapacityQueryOption = null;
-    if (queryOptions != null) {
-      minGroupTrimSizeQueryOption = QueryOptionsUtils.getMinBrokerGroupTrimSize(queryOptions);
-      groupTrimThresholdQueryOption = QueryOptionsUtils.getGroupTrimThreshold(queryOptions);
-      minInitialIndexedTableCapacityQueryOption = QueryOptionsUtils.getMinInitialIndexedTableCapacity(queryOptions);
-    }
-    int minGroupTrimSize = minGroupTrimSizeQueryOption != null ? minGroupTrimSizeQueryOption : _minGroupTrimSize;
-    int groupTrimThreshold =
-        groupTrimThresholdQueryOption != null ? groupTrimThresholdQueryOption : _groupByTrimThreshold;
-    int minInitialIndexedTableCapacity =
-        minInitialIndexedTableCapacityQueryOption != null ? minInitialIndexedTableCapacityQueryOption
-            : _minInitialIndexedTableCapacity;
+    DataTableReducer dataTableReducer = incrementalGroupByReducer != null ? incrementalGroupByReducer
+        : ResultReducerFactory.getResultReducer(serverQueryContext);
 
     try {
       dataTableReducer.reduceAndSetResults(rawTableName, cachedDataSchema, dataTableMap, brokerResponseNative,
-          new DataTableReducerContext(_reduceExecutorService, _maxReduceThreadsPerQuery, reduceTimeOutMs,
-              groupTrimThreshold, minGroupTrimSize, minInitialIndexedTableCapacity), brokerMetrics);
+          getDataTableReducerContext(queryOptions, reduceTimeOutMs), brokerMetrics);
     } catch (RuntimeException e) {
       // First check terminate exception and use it as the results block if exists. We want to return the termination
       // reason when query is explicitly terminated.
@@ -203,6 +227,26 @@ public class BrokerReduceService extends BaseReduceService {
     return brokerResponseNative;
   }
 
+  private DataTableReducerContext getDataTableReducerContext(@Nullable Map<String, String> queryOptions,
+      long reduceTimeOutMs) {
+    Integer minGroupTrimSizeQueryOption = null;
+    Integer groupTrimThresholdQueryOption = null;
+    Integer minInitialIndexedTableCapacityQueryOption = null;
+    if (queryOptions != null) {
+      minGroupTrimSizeQueryOption = QueryOptionsUtils.getMinBrokerGroupTrimSize(queryOptions);
+      groupTrimThresholdQueryOption = QueryOptionsUtils.getGroupTrimThreshold(queryOptions);
+      minInitialIndexedTableCapacityQueryOption = QueryOptionsUtils.getMinInitialIndexedTableCapacity(queryOptions);
+    }
+    int minGroupTrimSize = minGroupTrimSizeQueryOption != null ? minGroupTrimSizeQueryOption : _minGroupTrimSize;
+    int groupTrimThreshold =
+        groupTrimThresholdQueryOption != null ? groupTrimThresholdQueryOption : _groupByTrimThreshold;
+    int minInitialIndexedTableCapacity =
+        minInitialIndexedTableCapacityQueryOption != null ? minInitialIndexedTableCapacityQueryOption
+            : _minInitialIndexedTableCapacity;
+    return new DataTableReducerContext(_reduceExecutorService, _maxReduceThreadsPerQuery, reduceTimeOutMs,
+        groupTrimThreshold, minGroupTrimSize, minInitialIndexedTableCapacity);
+  }
+
   public void shutDown() {
     _reduceExecutorService.shutdownNow();
   }
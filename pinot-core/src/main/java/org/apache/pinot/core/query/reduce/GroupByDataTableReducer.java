@@ -111,7 +111,9 @@ public class GroupByDataTableReducer implements DataTableReducer {
     if (_queryContext.isServerReturnFinalResult() && dataTables.size() == 1) {
       processSingleFinalResult(dataSchema, dataTables.iterator().next(), brokerResponse);
     } else {
-      reduceResult(brokerResponse, dataSchema, dataTables, reducerContext, tableName, brokerMetrics);
+      // NOTE: This step will modify the data schema and also return final aggregate results.
+      IndexedTable indexedTable = getIndexedTable(dataSchema, dataTables, reducerContext);
+      reduceResult(brokerResponse, dataSchema, indexedTable, tableName, brokerMetrics);
     }
 
     if (brokerMetrics != null && brokerResponse.getResultTable() != null) {
@@ -120,12 +122,29 @@ public class GroupByDataTableReducer implements DataTableReducer {
     }
   }
 
+  /**
+   * Reduces and sets group by results into ResultTable from the given {@link IndexedTable} where the data tables are
+   * already merged (see {@link IncrementalGroupByReducer}). The indexed table must be finished with the final results
+   * stored.
+   */
+  void reduceAndSetResults(String tableName, DataSchema dataSchema, IndexedTable indexedTable,
+      BrokerResponseNative brokerResponse, BrokerMetrics brokerMetrics) {
+    // NOTE: Finishing the indexed table sets the final result column data types into the data schema of the indexed
+    //       table, which might not be the same instance as the given data schema.
+    String[] columnNames =
+        ReducerDataSchemaUtils.canonicalizeDataSchemaForGroupBy(_queryContext, dataSchema).getColumnNames();
+    dataSchema = new DataSchema(columnNames, indexedTable.getDataSchema().getColumnDataTypes());
+    reduceResult(brokerResponse, dataSchema, indexedTable, tableName, brokerMetrics);
+
+    if (brokerMetrics != null && brokerResponse.getResultTable() != null) {
+      brokerMetrics.addMeteredTableValue(tableName, BrokerMeter.GROUP_BY_SIZE,
+          brokerResponse.getResultTable().getRows().size());
+    }
+  }
+
   /// Reduces group-by results into a [ResultTable] and set it into the [BrokerResponseNative].
   private void reduceResult(BrokerResponseNative brokerResponseNative, DataSchema dataSchema,
-      Collection<DataTable> dataTables, DataTableReducerContext reducerContext, String rawTableName,
-      BrokerMetrics brokerMetrics) {
-    // NOTE: This step will modify the data schema and also return final aggregate results.
-    IndexedTable indexedTable = getIndexedTable(dataSchema, dataTables, reducerContext);
+      IndexedTable indexedTable, String rawTableName, BrokerMetrics brokerMetrics) {
     if (indexedTable.isTrimmed() && _queryContext.isUnsafeTrim()) {
       brokerResponseNative.setGroupsTrimmed(true);
     }
@@ -244,84 +263,7 @@ public class GroupByDataTableReducer implements DataTableReducer {
         public void runJob() {
           try {
             for (DataTable dataTable : reduceGroup) {
-              boolean nullHandlingEnabled = _queryContext.isNullHandlingEnabled();
-              RoaringBitmap[] nullBitmaps = null;
-              if (nullHandlingEnabled) {
-                nullBitmaps = new RoaringBitmap[_numColumns];
-                for (int i = 0; i < _numColumns; i++) {
-                  nullBitmaps[i] = dataTable.getNullRowIds(i);
-                }
-              }
-
-              int numRows = dataTable.getNumberOfRows();
-              for (int rowId = 0; rowId < numRows; rowId++) {
-                // Terminate when thread is interrupted.
-                // This is expected when the query already fails in the main thread.
-                // The first check will always be performed when rowId = 0
-                QueryThreadContext.checkTerminationAndSampleUsagePeriodically(rowId, "GroupByDataTableReducer");
-                Object[] values = new Object[_numColumns];
-                for (int colId = 0; colId < _numColumns; colId++) {
-                  // NOTE: We need to handle data types for group key, intermediate and final aggregate result.
-                  switch (storedColumnDataTypes[colId]) {
-                    case INT:
-                      values[colId] = dataTable.getInt(rowId, colId);
-                      break;
-                    case LONG:
-                      values[colId] = dataTable.getLong(rowId, colId);
-                      break;
-                    case FLOAT:
-                      values[colId] = dataTable.getFloat(rowId, colId);
-                      break;
-                    case DOUBLE:
-                      values[colId] = dataTable.getDouble(rowId, colId);
-                      break;
-                    case BIG_DECIMAL:
-                      values[colId] = dataTable.getBigDecimal(rowId, colId);
-                      break;
-                    case STRING:
-                      values[colId] = dataTable.getString(rowId, colId);
-                      break;
-                    case BYTES:
-                      values[colId] = dataTable.getBytes(rowId, colId);
-                      break;
-                    case INT_ARRAY:
-                      values[colId] = IntArrayList.wrap(dataTable.getIntArray(rowId, colId));
-                      break;
-                    case LONG_ARRAY:
-                      values[colId] = LongArrayList.wrap(dataTable.getLongArray(rowId, colId));
-                      break;
-                    case FLOAT_ARRAY:
-                      values[colId] = FloatArrayList.wrap(dataTable.getFloatArray(rowId, colId));
-                      break;
-                    case DOUBLE_ARRAY:
-                      values[colId] = DoubleArrayList.wrap(dataTable.getDoubleArray(rowId, colId));
-                      break;
-                    case STRING_ARRAY:
-                      values[colId] = ObjectArrayList.wrap(dataTable.getStringArray(rowId, colId));
-                      break;
-                    case OBJECT:
-                      CustomObject customObject = dataTable.getCustomObject(rowId, colId);
-                      if (customObject != null) {
-                        assert _aggregationFunctions != null;
-                        values[colId] =
-                            _aggregationFunctions[colId - _numGroupByExpressions].deserializeIntermediateResult(
-                                customObject);
-                      }
-                      break;
-                    // Add other aggregation intermediate result / group-by column type supports here
-                    default:
-                      throw new IllegalStateException();
-                  }
-                }
-                if (nullHandlingEnabled) {
-                  for (int colId = 0; colId < _numColumns; colId++) {
-                    if (nullBitmaps[colId] != null && nullBitmaps[colId].contains(rowId)) {
-                      values[colId] = null;
-                    }
-                  }
-                }
-                indexedTable.upsert(new Record(values));
-              }
+              upsertDataTable(indexedTable, dataTable, storedColumnDataTypes);
             }
           } catch (Throwable t) {
             exception.compareAndSet(null, t);
@@ -355,6 +297,89 @@ public class GroupByDataTableReducer implements DataTableReducer {
     return indexedTable;
   }
 
+  /**
+   * Upserts the rows of the given data table into the indexed table.
+   */
+  void upsertDataTable(IndexedTable indexedTable, DataTable dataTable, ColumnDataType[] storedColumnDataTypes) {
+    boolean nullHandlingEnabled = _queryContext.isNullHandlingEnabled();
+    RoaringBitmap[] nullBitmaps = null;
+    if (nullHandlingEnabled) {
+      nullBitmaps = new RoaringBitmap[_numColumns];
+      for (int i = 0; i < _numColumns; i++) {
+        nullBitmaps[i] = dataTable.getNullRowIds(i);
+      }
+    }
+
+    int numRows = dataTable.getNumberOfRows();
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      // Terminate when thread is interrupted.
+      // This is expected when the query already fails in the main thread.
+      // The first check will always be performed when rowId = 0
+      QueryThreadContext.checkTerminationAndSampleUsagePeriodically(rowId, "GroupByDataTableReducer");
+      Object[] values = new Object[_numColumns];
+      for (int colId = 0; colId < _numColumns; colId++) {
+        // NOTE: We need to handle data types for group key, intermediate and final aggregate result.
+        switch (storedColumnDataTypes[colId]) {
+          case INT:
+            values[colId] = dataTable.getInt(rowId, colId);
+            break;
+          case LONG:
+            values[colId] = dataTable.getLong(rowId, colId);
+            break;
+          case FLOAT:
+            values[colId] = dataTable.getFloat(rowId, colId);
+            break;
+          case DOUBLE:
+            values[colId] = dataTable.getDouble(rowId, colId);
+            break;
+          case BIG_DECIMAL:
+            values[colId] = dataTable.getBigDecimal(rowId, colId);
+            break;
+          case STRING:
+            values[colId] = dataTable.getString(rowId, colId);
+            break;
+          case BYTES:
+            values[colId] = dataTable.getBytes(rowId, colId);
+            break;
+          case INT_ARRAY:
+            values[colId] = IntArrayList.wrap(dataTable.getIntArray(rowId, colId));
+            break;
+          case LONG_ARRAY:
+            values[colId] = LongArrayList.wrap(dataTable.getLongArray(rowId, colId));
+            break;
+          case FLOAT_ARRAY:
+            values[colId] = FloatArrayList.wrap(dataTable.getFloatArray(rowId, colId));
+            break;
+          case DOUBLE_ARRAY:
+            values[colId] = DoubleArrayList.wrap(dataTable.getDoubleArray(rowId, colId));
+            break;
+          case STRING_ARRAY:
+            values[colId] = ObjectArrayList.wrap(dataTable.getStringArray(rowId, colId));
+            break;
+          case OBJECT:
+            CustomObject customObject = dataTable.getCustomObject(rowId, colId);
+            if (customObject != null) {
+              assert _aggregationFunctions != null;
+              values[colId] = _aggregationFunctions[colId - _numGroupByExpressions].deserializeIntermediateResult(
+                  customObject);
+            }
+            break;
+          // Add other aggregation intermediate result / group-by column type supports here
+          default:
+            throw new IllegalStateException();
+        }
+      }
+      if (nullHandlingEnabled) {
+        for (int colId = 0; colId < _numColumns; colId++) {
+          if (nullBitmaps[colId] != null && nullBitmaps[colId].contains(rowId)) {
+            values[colId] = null;
+          }
+        }
+      }
+      indexedTable.upsert(new Record(values));
+    }
+  }
+
   /**
    * Computes the number of reduce threads to use per query.
    * <ul>
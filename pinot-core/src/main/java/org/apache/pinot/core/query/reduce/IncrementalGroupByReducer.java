@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.reduce;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.Utils;
+import org.apache.pinot.common.datatable.DataTable;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.transport.ServerRoutingInstance;
+import org.apache.pinot.core.util.GroupByUtils;
+import org.apache.pinot.core.util.trace.TraceRunnable;
+import org.apache.pinot.spi.exception.EarlyTerminationException;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+
+
+/**
+ * Group-by reducer that merges the data tables into the {@link IndexedTable} as the server responses arrive, instead of
+ * after all the servers responded, so that the merge work overlaps with waiting for the slower servers.
+ * <p>{@link #reduce(ServerRoutingInstance, DataTable)} is invoked from the query thread for each received data table,
+ * and only queues the data table to be merged by up to {@code maxReduceThreadsPerQuery} reduce threads. Once all the
+ * responses are gathered, {@link #reduceAndSetResults} waits for the pending merges and finishes the indexed table. If
+ * the merged data tables don't match the data tables to be reduced (e.g. some data tables are dropped because of
+ * conflicting data schema), it falls back to the regular {@link GroupByDataTableReducer}.
+ */
+@ThreadSafe
+public class IncrementalGroupByReducer implements DataTableReducer {
+  private final GroupByDataTableReducer _groupByDataTableReducer;
+  private final QueryContext _queryContext;
+  private final DataTableReducerContext _reducerContext;
+  private final int _numMergeThreads;
+
+  // All the fields below are guarded by this
+  private final Set<ServerRoutingInstance> _mergedServers = new HashSet<>();
+  private final ArrayDeque<DataTable> _dataTablesToMerge = new ArrayDeque<>();
+  private final List<Future<?>> _futures = new ArrayList<>();
+  private IndexedTable _indexedTable;
+  private ColumnDataType[] _columnDataTypes;
+  private ColumnDataType[] _storedColumnDataTypes;
+  private int _numRunningMergeThreads;
+  private int _numPendingMerges;
+  private Throwable _mergeException;
+  private boolean _sealed;
+
+  public IncrementalGroupByReducer(QueryContext queryContext, DataTableReducerContext reducerContext, int numServers) {
+    _groupByDataTableReducer = new GroupByDataTableReducer(queryContext);
+    _queryContext = queryContext;
+    _reducerContext = reducerContext;
+    _numMergeThreads = Math.max(1, Math.min(numServers, reducerContext.getMaxReduceThreadsPerQuery()));
+  }
+
+  /**
+   * Queues the data table received from the given server to be merged. Data tables without data rows are not merged
+   * because they are dropped before the reduce.
+   */
+  public synchronized void reduce(ServerRoutingInstance serverRoutingInstance, @Nullable DataTable dataTable) {
+    if (_sealed || dataTable == null || dataTable.getDataSchema() == null || dataTable.getNumberOfRows() == 0
+        || _mergedServers.contains(serverRoutingInstance)) {
+      return;
+    }
+    DataSchema dataSchema = dataTable.getDataSchema();
+    if (_indexedTable == null) {
+      _indexedTable = GroupByUtils.createIndexedTableForDataTableReducer(dataTable, _queryContext, _reducerContext,
+          _numMergeThreads, _reducerContext.getExecutorService());
+      // NOTE: Clone the column data types because the data schema is modified when the indexed table is finished
+      _columnDataTypes = dataSchema.getColumnDataTypes().clone();
+      _storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
+    } else if (!Arrays.equals(dataSchema.getColumnDataTypes(), _columnDataTypes)) {
+      // Data table with conflicting data schema will be dropped before the reduce
+      return;
+    }
+    _mergedServers.add(serverRoutingInstance);
+    _dataTablesToMerge.add(dataTable);
+    _numPendingMerges++;
+    if (_numRunningMergeThreads < _numMergeThreads) {
+      _numRunningMergeThreads++;
+      _futures.add(_reducerContext.getExecutorService().submit(new TraceRunnable() {
+        @Override
+        public void runJob() {
+          mergeDataTables();
+        }
+      }));
+    }
+  }
+
+  private void mergeDataTables() {
+    while (true) {
+      DataTable dataTable;
+      synchronized (this) {
+        dataTable = _dataTablesToMerge.poll();
+        if (dataTable == null) {
+          _numRunningMergeThreads--;
+          return;
+        }
+        if (_mergeException != null) {
+          // Skip merging the remaining data tables after hitting exception
+          completeMerge();
+          continue;
+        }
+      }
+      try {
+        _groupByDataTableReducer.upsertDataTable(_indexedTable, dataTable, _storedColumnDataTypes);
+      } catch (Throwable t) {
+        synchronized (this) {
+          if (_mergeException == null) {
+            _mergeException = t;
+          }
+        }
+      } finally {
+        synchronized (this) {
+          completeMerge();
+        }
+      }
+    }
+  }
+
+  private void completeMerge() {
+    if (--_numPendingMerges == 0) {
+      notifyAll();
+    }
+  }
+
+  @Override
+  public void reduceAndSetResults(String tableName, DataSchema dataSchema,
+      Map<ServerRoutingInstance, DataTable> dataTableMap, BrokerResponseNative brokerResponse,
+      DataTableReducerContext reducerContext, BrokerMetrics brokerMetrics) {
+    IndexedTable indexedTable = seal(dataTableMap.keySet(), reducerContext.getReduceTimeOutMs());
+    if (indexedTable != null) {
+      indexedTable.finish(true, true);
+      _groupByDataTableReducer.reduceAndSetResults(tableName, dataSchema, indexedTable, brokerResponse,
+          brokerMetrics);
+    } else {
+      _groupByDataTableReducer.reduceAndSetResults(tableName, dataSchema, dataTableMap, brokerResponse,
+          reducerContext, brokerMetrics);
+    }
+  }
+
+  /**
+   * Stops accepting new data tables and waits for the pending merges. Returns the indexed table if it contains exactly
+   * the data tables from the given servers, or {@code null} otherwise.
+   */
+  @Nullable
+  private synchronized IndexedTable seal(Set<ServerRoutingInstance> servers, long timeoutMs) {
+    _sealed = true;
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    try {
+      while (_numPendingMerges > 0) {
+        long remainingTimeMs = deadlineMs - System.currentTimeMillis();
+        if (remainingTimeMs <= 0) {
+          throw QueryErrorCode.BROKER_TIMEOUT.asException("Timed out reducing group-by results");
+        }
+        wait(remainingTimeMs);
+      }
+    } catch (InterruptedException e) {
+      throw new EarlyTerminationException("Interrupted while reducing group-by results");
+    } finally {
+      if (_numPendingMerges > 0) {
+        _dataTablesToMerge.clear();
+        for (Future<?> future : _futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    if (_mergeException != null) {
+      Utils.rethrowException(_mergeException);
+    }
+    return _indexedTable != null && _mergedServers.equals(servers) ? _indexedTable : null;
+  }
+}
@@ -36,6 +36,7 @@ import org.apache.pinot.common.request.context.FunctionContext;
 import org.apache.pinot.common.request.context.OrderByExpressionContext;
 import org.apache.pinot.common.request.context.RequestContextUtils;
 import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.plan.FilterBitmapCache;
 import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunctionFactory;
@@ -112,6 +113,8 @@ public class QueryContext {
   private boolean _skipStarTree;
   // Whether to skip reordering scan filters for the query
   private boolean _skipScanFilterReorder;
+  // Server side cache of filter predicate bitmaps, null when disabled for the query
+  private FilterBitmapCache _filterBitmapCache;
   // Maximum number of threads used to execute the query
   private int _maxExecutionThreads = Server.DEFAULT_QUERY_EXECUTOR_MAX_EXECUTION_THREADS;
   // The following properties apply to group-by queries
@@ -401,6 +404,15 @@ public class QueryContext {
     _skipScanFilterReorder = skipScanFilterReorder;
   }
 
+  @Nullable
+  public FilterBitmapCache getFilterBitmapCache() {
+    return _filterBitmapCache;
+  }
+
+  public void setFilterBitmapCache(@Nullable FilterBitmapCache filterBitmapCache) {
+    _filterBitmapCache = filterBitmapCache;
+  }
+
   public int getMaxExecutionThreads() {
     return _maxExecutionThreads;
   }
@@ -109,6 +109,15 @@ public interface RoutingManager {
   @Nullable
   TimeBoundaryInfo getTimeBoundaryInfo(String offlineTableName);
 
+  /**
+   * Returns the min start time in millis of the online segments of the given OFFLINE table, or {@code null} if it is
+   * not tracked for the table (only tracked along with the time boundary) or no segment has a valid start time.
+   */
+  @Nullable
+  default Long getMinStartTimeMs(String offlineTableName) {
+    return null;
+  }
+
   /**
    * Returns the {@link TablePartitionInfo} for a given table.
    */
@@ -126,4 +135,34 @@ public interface RoutingManager {
    */
   @Nullable
   Set<String> getServingInstances(String tableNameWithType);
+
+  /**
+   * Returns the total number of documents of the online segments of the given table, as recorded in the segment ZK
+   * metadata. Consuming segments are not counted because their number of documents is unknown until committed.
+   * Returns {@code null} if the table does not exist or the statistics are not tracked.
+   */
+  @Nullable
+  default Long getTableTotalDocs(String tableNameWithType) {
+    return null;
+  }
+
+  /**
+   * Returns the probability of each segment of the given table to be selected by the given table sampler, or
+   * {@code null} if the table or the sampler does not exist, or the sampler does not select segments with a fixed
+   * probability.
+   */
+  @Nullable
+  default Double getSamplingRate(String tableNameWithType, String samplerName) {
+    return null;
+  }
+
+  /**
+   * Returns an enabled server instance, other than the excluded instances, hosting all the given segments of the given
+   * table, or {@code null} if there is no such instance. This is used to send hedged requests for slow servers.
+   */
+  @Nullable
+  default ServerInstance getAlternativeServerInstance(String tableNameWithType, List<String> segments,
+      Set<String> excludedInstances) {
+    return null;
+  }
 }
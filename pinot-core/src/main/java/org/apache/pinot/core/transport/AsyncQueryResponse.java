@@ -22,9 +22,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.pinot.common.datatable.DataTable;
@@ -38,8 +40,12 @@ import org.apache.pinot.spi.exception.QueryErrorCode;
  */
 @ThreadSafe
 public class AsyncQueryResponse implements QueryResponse {
+  // Marker put into the response queue to wake up the consumer when the query is failed or a server is skipped
+  private static final Object WAKE_UP_MARKER = new Object();
+
   private final QueryRouter _queryRouter;
   private final long _requestId;
+  private final String _rawTableName;
   private final AtomicReference<Status> _status = new AtomicReference<>(Status.IN_PROGRESS);
   private final AtomicInteger _numServersResponded = new AtomicInteger();
   private final ConcurrentHashMap<ServerRoutingInstance, ServerResponse> _responseMap;
@@ -47,14 +53,36 @@ public class AsyncQueryResponse implements QueryResponse {
   private final long _maxEndTimeMs;
   private final long _timeoutMs;
   private final ServerRoutingStatsManager _serverRoutingStatsManager;
+  // Servers in the order their responses are received, interleaved with WAKE_UP_MARKER
+  private final LinkedBlockingQueue<Object> _responseQueue = new LinkedBlockingQueue<>();
+  // Hedged requests re-issued to other replicas for slow servers, keyed by the server the hedged request is sent to.
+  // The response of the hedged request is recorded for the primary server if it arrives first without exceptions.
+  private final ConcurrentHashMap<ServerRoutingInstance, ServerRoutingInstance> _hedgedToPrimaryServerMap =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<ServerRoutingInstance, ServerResponse> _hedgedResponseMap = new ConcurrentHashMap<>();
+
+  // Task to send the hedged requests, invoked from the thread waiting for the final responses at _hedgeTimeMs
+  private volatile Runnable _hedgeTask;
+  private volatile long _hedgeTimeMs;
 
   private volatile ServerRoutingInstance _failedServer;
   private volatile Exception _exception;
 
   public AsyncQueryResponse(QueryRouter queryRouter, long requestId, Set<ServerRoutingInstance> serversQueried,
       long startTimeMs, long timeoutMs, ServerRoutingStatsManager serverRoutingStatsManager) {
+    this(queryRouter, requestId, null, serversQueried, startTimeMs, timeoutMs, serverRoutingStatsManager);
+  }
+
+  /**
+   * Creates an asynchronous query response for a query on the given table. Response latencies are recorded for the
+   * table in the {@link ServerRoutingStatsManager} once the query is done.
+   */
+  public AsyncQueryResponse(QueryRouter queryRouter, long requestId, @Nullable String rawTableName,
+      Set<ServerRoutingInstance> serversQueried, long startTimeMs, long timeoutMs,
+      ServerRoutingStatsManager serverRoutingStatsManager) {
     _queryRouter = queryRouter;
     _requestId = requestId;
+    _rawTableName = rawTableName;
     int numServersQueried = serversQueried.size();
     _responseMap = new ConcurrentHashMap<>(HashUtil.getHashMapCapacity(numServersQueried));
     _serverRoutingStatsManager = serverRoutingStatsManager;
@@ -89,27 +117,122 @@ public class AsyncQueryResponse implements QueryResponse {
   public Map<ServerRoutingInstance, ServerResponse> getFinalResponses()
       throws InterruptedException {
     try {
-      boolean finish = _countDownLatch.await(_maxEndTimeMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      boolean finish;
+      do {
+        finish = _countDownLatch.await(getWaitEndTimeMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      } while (!finish && sendHedgedRequests());
       _status.compareAndSet(Status.IN_PROGRESS, finish ? Status.COMPLETED : Status.TIMED_OUT);
       return _responseMap;
     } finally {
-      // Update ServerRoutingStats for query completion. This is done here to ensure that the stats are updated for
-      // servers even if the query times out or if servers have not responded.
-      for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _responseMap.entrySet()) {
-        ServerResponse response = entry.getValue();
-        long latency;
-
-        // If server has not responded or if the server response has exceptions, the latency is set to timeout
-        if (hasServerNotResponded(response) || hasServerReturnedExceptions(response)) {
-          latency = _timeoutMs;
-        } else {
-          latency = response.getResponseDelayMs();
+      markQueryDone();
+    }
+  }
+
+  /**
+   * Same as {@link #getFinalResponses()}, but also passes each received {@link DataTable} to the given consumer in the
+   * order the responses arrive, so that the caller can process the responses while waiting for the other servers. The
+   * consumer is invoked from the calling thread.
+   */
+  public Map<ServerRoutingInstance, ServerResponse> getFinalResponses(
+      BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer)
+      throws InterruptedException {
+    try {
+      boolean finish;
+      while (true) {
+        // NOTE: Server is added to the response queue before the latch is counted down, so all the responses are
+        //       consumed when the latch is observed as released before draining the queue.
+        finish = _countDownLatch.getCount() == 0;
+        Object next;
+        while ((next = _responseQueue.poll()) != null) {
+          consumeResponse(next, dataTableConsumer);
+        }
+        if (finish) {
+          break;
+        }
+        next = _responseQueue.poll(getWaitEndTimeMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        if (next != null) {
+          consumeResponse(next, dataTableConsumer);
+        } else if (!sendHedgedRequests()) {
+          break;
         }
-        _serverRoutingStatsManager.recordStatsUponResponseArrival(_requestId, entry.getKey().getInstanceId(), latency);
       }
+      _status.compareAndSet(Status.IN_PROGRESS, finish ? Status.COMPLETED : Status.TIMED_OUT);
+      return _responseMap;
+    } finally {
+      markQueryDone();
+    }
+  }
+
+  /**
+   * Schedules the given task to send hedged requests (see {@link #addHedgedRequest}) at the given time if the query is
+   * still waiting for server responses by then. The task is invoked from the thread waiting for the final responses.
+   */
+  public void scheduleHedgedRequests(long hedgeTimeMs, Runnable hedgeTask) {
+    _hedgeTimeMs = hedgeTimeMs;
+    _hedgeTask = hedgeTask;
+  }
+
+  private long getWaitEndTimeMs() {
+    return _hedgeTask != null ? Math.min(_hedgeTimeMs, _maxEndTimeMs) : _maxEndTimeMs;
+  }
+
+  /**
+   * Sends the scheduled hedged requests if the query has not timed out yet, returns whether they were sent.
+   */
+  private boolean sendHedgedRequests() {
+    Runnable hedgeTask = _hedgeTask;
+    if (hedgeTask == null || System.currentTimeMillis() >= _maxEndTimeMs) {
+      return false;
+    }
+    _hedgeTask = null;
+    hedgeTask.run();
+    return true;
+  }
+
+  private void consumeResponse(Object next, BiConsumer<ServerRoutingInstance, DataTable> dataTableConsumer) {
+    if (next != WAKE_UP_MARKER) {
+      ServerRoutingInstance serverRoutingInstance = (ServerRoutingInstance) next;
+      dataTableConsumer.accept(serverRoutingInstance, _responseMap.get(serverRoutingInstance).getDataTable());
+    }
+  }
 
-      _queryRouter.markQueryDone(_requestId);
+  private void markQueryDone() {
+    // Update ServerRoutingStats for query completion. This is done here to ensure that the stats are updated for
+    // servers even if the query times out or if servers have not responded.
+    for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _responseMap.entrySet()) {
+      recordStatsUponQueryDone(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<ServerRoutingInstance, ServerResponse> entry : _hedgedResponseMap.entrySet()) {
+      recordStatsUponQueryDone(entry.getKey(), entry.getValue());
+    }
+
+    _queryRouter.markQueryDone(_requestId);
+  }
+
+  private void recordStatsUponQueryDone(ServerRoutingInstance serverRoutingInstance, ServerResponse response) {
+    String instanceId = serverRoutingInstance.getInstanceId();
+    // If server has not responded (including the response being received from the replica of a hedged request) or if
+    // the server response has exceptions, the latency is set to timeout
+    if (hasServerNotResponded(response) || isRespondedByHedgedRequest(serverRoutingInstance, response)
+        || hasServerReturnedExceptions(response)) {
+      _serverRoutingStatsManager.recordStatsUponResponseArrival(_requestId, instanceId, _timeoutMs);
+    } else {
+      _serverRoutingStatsManager.recordStatsUponResponseArrival(_requestId, instanceId, _rawTableName,
+          response.getResponseDelayMs());
+    }
+  }
+
+  private boolean isRespondedByHedgedRequest(ServerRoutingInstance serverRoutingInstance, ServerResponse response) {
+    if (_hedgedToPrimaryServerMap.isEmpty()) {
+      return false;
     }
+    for (Map.Entry<ServerRoutingInstance, ServerRoutingInstance> entry : _hedgedToPrimaryServerMap.entrySet()) {
+      if (entry.getValue().equals(serverRoutingInstance)
+          && _hedgedResponseMap.get(entry.getKey()).getDataTable() == response.getDataTable()) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private boolean hasServerReturnedExceptions(ServerResponse response) {
@@ -171,20 +294,53 @@ public class AsyncQueryResponse implements QueryResponse {
     return _timeoutMs;
   }
 
+  /**
+   * Registers a hedged request sent to the given server for the segments queried on the given primary server. Returns
+   * {@code false} if the given server is already queried.
+   */
+  boolean addHedgedRequest(ServerRoutingInstance serverRoutingInstance, ServerRoutingInstance primaryServer) {
+    if (_responseMap.containsKey(serverRoutingInstance) || _hedgedResponseMap.containsKey(serverRoutingInstance)) {
+      return false;
+    }
+    _serverRoutingStatsManager.recordStatsForQuerySubmission(_requestId, serverRoutingInstance.getInstanceId());
+    // NOTE: Add the response before the mapping so that it is available when the mapping is looked up
+    _hedgedResponseMap.put(serverRoutingInstance, new ServerResponse(System.currentTimeMillis()));
+    _hedgedToPrimaryServerMap.put(serverRoutingInstance, primaryServer);
+    return true;
+  }
+
+  private ServerResponse getServerResponse(ServerRoutingInstance serverRoutingInstance) {
+    ServerResponse response = _responseMap.get(serverRoutingInstance);
+    return response != null ? response : _hedgedResponseMap.get(serverRoutingInstance);
+  }
+
   void markRequestSubmitted(ServerRoutingInstance serverRoutingInstance) {
-    _responseMap.get(serverRoutingInstance).markRequestSubmitted();
+    getServerResponse(serverRoutingInstance).markRequestSubmitted();
   }
 
   void markRequestSent(ServerRoutingInstance serverRoutingInstance, int requestSentLatencyMs) {
-    _responseMap.get(serverRoutingInstance).markRequestSent(requestSentLatencyMs);
+    getServerResponse(serverRoutingInstance).markRequestSent(requestSentLatencyMs);
   }
 
   void receiveDataTable(ServerRoutingInstance serverRoutingInstance, DataTable dataTable, int responseSize,
       int deserializationTimeMs) {
+    ServerRoutingInstance primaryServer = _hedgedToPrimaryServerMap.get(serverRoutingInstance);
+    if (primaryServer != null) {
+      _hedgedResponseMap.get(serverRoutingInstance).receiveDataTable(dataTable, responseSize, deserializationTimeMs);
+      if (!dataTable.getExceptions().isEmpty()) {
+        // Keep waiting for the primary server instead of failing the query because of the replica
+        return;
+      }
+      serverRoutingInstance = primaryServer;
+    }
     ServerResponse response = _responseMap.get(serverRoutingInstance);
-    response.receiveDataTable(dataTable, responseSize, deserializationTimeMs);
+    if (!response.receiveDataTable(dataTable, responseSize, deserializationTimeMs)) {
+      // Already received from the other replica
+      return;
+    }
 
     _numServersResponded.getAndIncrement();
+    _responseQueue.offer(serverRoutingInstance);
     _countDownLatch.countDown();
   }
 
@@ -196,6 +352,7 @@ public class AsyncQueryResponse implements QueryResponse {
     for (int i = 0; i < count; i++) {
       _countDownLatch.countDown();
     }
+    _responseQueue.offer(WAKE_UP_MARKER);
   }
 
   /**
@@ -215,5 +372,6 @@ public class AsyncQueryResponse implements QueryResponse {
    */
   void skipServerResponse() {
     _countDownLatch.countDown();
+    _responseQueue.offer(WAKE_UP_MARKER);
   }
 }
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport;
+
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.routing.RoutingManager;
+import org.apache.pinot.core.transport.server.routing.stats.ServerRoutingStatsManager;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Broker;
+
+
+/**
+ * The {@code QueryHedger} decides when and where to send hedged requests for single-stage queries.
+ * <p>When a server has not responded within the configured latency percentile of the table (tracked by the
+ * {@link ServerRoutingStatsManager}), the request for its segments is re-issued to another replica hosting all of them,
+ * and whichever response arrives first is used.
+ * <p>The extra load is capped by a budget: each regular server request deposits a fraction (the budget percentage) of a
+ * token, and each hedged request withdraws a whole token. The balance is capped so that only a short burst of hedged
+ * requests can be sent after a quiet period.
+ */
+@ThreadSafe
+public class QueryHedger {
+  // The budget is tracked in milli-tokens
+  private static final long TOKEN = 1000L;
+  private static final long MAX_BALANCE = 10 * TOKEN;
+
+  private final RoutingManager _routingManager;
+  private final ServerRoutingStatsManager _serverRoutingStatsManager;
+  private final double _latencyPercentile;
+  private final long _minDelayMs;
+  private final int _maxHedgedRequestsPerQuery;
+  private final long _depositPerRequest;
+  private final AtomicLong _balance = new AtomicLong();
+
+  public QueryHedger(RoutingManager routingManager, ServerRoutingStatsManager serverRoutingStatsManager,
+      double latencyPercentile, long minDelayMs, int maxHedgedRequestsPerQuery, double budgetPercent) {
+    Preconditions.checkArgument(latencyPercentile > 0 && latencyPercentile <= 100,
+        "Latency percentile must be in (0, 100], got: %s", latencyPercentile);
+    Preconditions.checkArgument(budgetPercent >= 0 && budgetPercent <= 100,
+        "Budget percent must be in [0, 100], got: %s", budgetPercent);
+    _routingManager = routingManager;
+    _serverRoutingStatsManager = serverRoutingStatsManager;
+    _latencyPercentile = latencyPercentile;
+    _minDelayMs = minDelayMs;
+    _maxHedgedRequestsPerQuery = maxHedgedRequestsPerQuery;
+    _depositPerRequest = (long) (budgetPercent / 100 * TOKEN);
+  }
+
+  /**
+   * Returns the query hedger configured for the broker, or {@code null} if hedged requests are not enabled.
+   */
+  @Nullable
+  public static QueryHedger fromConfig(PinotConfiguration config, RoutingManager routingManager,
+      ServerRoutingStatsManager serverRoutingStatsManager) {
+    if (!config.getProperty(Broker.CONFIG_OF_ENABLE_HEDGED_REQUESTS, Broker.DEFAULT_ENABLE_HEDGED_REQUESTS)) {
+      return null;
+    }
+    return new QueryHedger(routingManager, serverRoutingStatsManager,
+        config.getProperty(Broker.CONFIG_OF_HEDGED_REQUESTS_LATENCY_PERCENTILE,
+            Broker.DEFAULT_HEDGED_REQUESTS_LATENCY_PERCENTILE),
+        config.getProperty(Broker.CONFIG_OF_HEDGED_REQUESTS_MIN_DELAY_MS, Broker.DEFAULT_HEDGED_REQUESTS_MIN_DELAY_MS),
+        config.getProperty(Broker.CONFIG_OF_MAX_HEDGED_REQUESTS_PER_QUERY,
+            Broker.DEFAULT_MAX_HEDGED_REQUESTS_PER_QUERY),
+        config.getProperty(Broker.CONFIG_OF_HEDGED_REQUESTS_BUDGET_PERCENT,
+            Broker.DEFAULT_HEDGED_REQUESTS_BUDGET_PERCENT));
+  }
+
+  /**
+   * Returns the time in milliseconds to wait for the server responses before sending the hedged requests for a query
+   * on the given table, or -1 if the query should not be hedged (disabled by query option, or not enough latencies
+   * recorded for the table).
+   */
+  public long getHedgeDelayMs(String rawTableName, @Nullable Map<String, String> queryOptions) {
+    if (_maxHedgedRequestsPerQuery <= 0 || (queryOptions != null && !QueryOptionsUtils.isUseHedgedRequests(
+        queryOptions, true))) {
+      return -1;
+    }
+    Long latencyMs = _serverRoutingStatsManager.fetchTableLatencyPercentile(rawTableName, _latencyPercentile);
+    return latencyMs != null ? Math.max(latencyMs, _minDelayMs) : -1;
+  }
+
+  public int getMaxHedgedRequestsPerQuery() {
+    return _maxHedgedRequestsPerQuery;
+  }
+
+  /**
+   * Returns an enabled server instance, other than the excluded instances, hosting all the given segments of the given
+   * table, or {@code null} if there is no such instance.
+   */
+  @Nullable
+  public ServerInstance getAlternativeServerInstance(String tableNameWithType, List<String> segments,
+      Set<String> excludedInstances) {
+    return _routingManager.getAlternativeServerInstance(tableNameWithType, segments, excludedInstances);
+  }
+
+  /**
+   * Adds the budget for the given number of regular server requests.
+   */
+  public void depositBudget(int numRequests) {
+    _balance.accumulateAndGet(numRequests * _depositPerRequest, (balance, deposit) -> Math.min(balance + deposit,
+        MAX_BALANCE));
+  }
+
+  /**
+   * Withdraws the budget for a hedged request, returns {@code false} if the budget is exhausted.
+   */
+  public boolean tryAcquireBudget() {
+    while (true) {
+      long balance = _balance.get();
+      if (balance < TOKEN) {
+        return false;
+      }
+      if (_balance.compareAndSet(balance, balance - TOKEN)) {
+        return true;
+      }
+    }
+  }
+}
@@ -18,7 +18,10 @@
  */
 package org.apache.pinot.core.transport;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
@@ -55,6 +58,7 @@ public class QueryRouter {
   private final ServerChannels _serverChannels;
   private final ServerChannels _serverChannelsTls;
   private final ServerRoutingStatsManager _serverRoutingStatsManager;
+  private final QueryHedger _queryHedger;
 
   private final BrokerMetrics _brokerMetrics = BrokerMetrics.get();
   private final ConcurrentHashMap<Long, AsyncQueryResponse> _asyncQueryResponseMap = new ConcurrentHashMap<>();
@@ -68,10 +72,26 @@ public class QueryRouter {
    */
   public QueryRouter(String brokerId, @Nullable NettyConfig nettyConfig, @Nullable TlsConfig tlsConfig,
       ServerRoutingStatsManager serverRoutingStatsManager, ThreadAccountant threadAccountant) {
+    this(brokerId, nettyConfig, tlsConfig, serverRoutingStatsManager, threadAccountant, null);
+  }
+
+  /**
+   * Creates a query router with TLS config, which sends hedged requests for slow servers when the query hedger is
+   * provided.
+   *
+   * @param brokerId broker id
+   * @param nettyConfig configurations for netty library
+   * @param tlsConfig TLS config
+   * @param queryHedger query hedger, or {@code null} if hedged requests are not enabled
+   */
+  public QueryRouter(String brokerId, @Nullable NettyConfig nettyConfig, @Nullable TlsConfig tlsConfig,
+      ServerRoutingStatsManager serverRoutingStatsManager, ThreadAccountant threadAccountant,
+      @Nullable QueryHedger queryHedger) {
     _brokerId = brokerId;
     _serverChannels = new ServerChannels(this, nettyConfig, null, threadAccountant);
     _serverChannelsTls = tlsConfig != null ? new ServerChannels(this, nettyConfig, tlsConfig, threadAccountant) : null;
     _serverRoutingStatsManager = serverRoutingStatsManager;
+    _queryHedger = queryHedger;
   }
 
   public AsyncQueryResponse submitQuery(long requestId, String rawTableName,
@@ -101,8 +121,9 @@ public class QueryRouter {
     Map<ServerRoutingInstance, InstanceRequest> requestMap = route.getRequestMap(requestId, _brokerId, preferTls);
 
     // Create the asynchronous query response with the request map
+    long startTimeMs = System.currentTimeMillis();
     AsyncQueryResponse asyncQueryResponse =
-        new AsyncQueryResponse(this, requestId, requestMap.keySet(), System.currentTimeMillis(), timeoutMs,
+        new AsyncQueryResponse(this, requestId, rawTableName, requestMap.keySet(), startTimeMs, timeoutMs,
             _serverRoutingStatsManager);
     _asyncQueryResponseMap.put(requestId, asyncQueryResponse);
     for (Map.Entry<ServerRoutingInstance, InstanceRequest> entry : requestMap.entrySet()) {
@@ -129,9 +150,75 @@ public class QueryRouter {
       }
     }
 
+    if (_queryHedger != null && asyncQueryResponse.getStatus() == QueryResponse.Status.IN_PROGRESS) {
+      _queryHedger.depositBudget(requestMap.size());
+      BrokerRequest brokerRequest = offlineBrokerRequest != null ? offlineBrokerRequest : realtimeBrokerRequest;
+      long hedgeDelayMs = _queryHedger.getHedgeDelayMs(rawTableName, brokerRequest.getPinotQuery().getQueryOptions());
+      if (hedgeDelayMs >= 0) {
+        asyncQueryResponse.scheduleHedgedRequests(startTimeMs + hedgeDelayMs,
+            () -> sendHedgedRequests(rawTableName, asyncQueryResponse, requestMap, preferTls, timeoutMs));
+      }
+    }
+
     return asyncQueryResponse;
   }
 
+  /**
+   * Re-issues the requests of the servers that have not responded yet to other replicas hosting all the queried
+   * segments. The first response received for each server is used. Failures of the hedged requests are ignored because
+   * the original requests are still in flight.
+   */
+  private void sendHedgedRequests(String rawTableName, AsyncQueryResponse asyncQueryResponse,
+      Map<ServerRoutingInstance, InstanceRequest> requestMap, boolean preferTls, long timeoutMs) {
+    Map<ServerRoutingInstance, ServerResponse> responseMap = asyncQueryResponse.getCurrentResponses();
+    Set<String> excludedInstances = new HashSet<>();
+    for (ServerRoutingInstance serverRoutingInstance : requestMap.keySet()) {
+      excludedInstances.add(serverRoutingInstance.getInstanceId());
+    }
+    int numHedgedRequests = 0;
+    int maxHedgedRequests = _queryHedger.getMaxHedgedRequestsPerQuery();
+    for (Map.Entry<ServerRoutingInstance, InstanceRequest> entry : requestMap.entrySet()) {
+      if (numHedgedRequests >= maxHedgedRequests) {
+        break;
+      }
+      ServerRoutingInstance primaryServer = entry.getKey();
+      if (responseMap.get(primaryServer).getDataTable() != null) {
+        continue;
+      }
+      InstanceRequest instanceRequest = entry.getValue();
+      List<String> segments = instanceRequest.getSearchSegments();
+      if (segments == null || segments.isEmpty()) {
+        continue;
+      }
+      String tableNameWithType = instanceRequest.getQuery().getQuerySource().getTableName();
+      ServerInstance alternativeServer =
+          _queryHedger.getAlternativeServerInstance(tableNameWithType, segments, excludedInstances);
+      if (alternativeServer == null) {
+        continue;
+      }
+      if (!_queryHedger.tryAcquireBudget()) {
+        _brokerMetrics.addMeteredGlobalValue(BrokerMeter.HEDGED_REQUESTS_BUDGET_EXHAUSTED, 1);
+        break;
+      }
+      excludedInstances.add(alternativeServer.getInstanceId());
+      ServerRoutingInstance hedgedServer =
+          alternativeServer.toServerRoutingInstance(primaryServer.getTableType(), preferTls);
+      if (!asyncQueryResponse.addHedgedRequest(hedgedServer, primaryServer)) {
+        continue;
+      }
+      ServerChannels serverChannels = hedgedServer.isTlsEnabled() ? _serverChannelsTls : _serverChannels;
+      try {
+        serverChannels.sendRequest(rawTableName, asyncQueryResponse, hedgedServer, instanceRequest, timeoutMs);
+        asyncQueryResponse.markRequestSubmitted(hedgedServer);
+        _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.HEDGED_REQUESTS, 1);
+        numHedgedRequests++;
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while sending hedged request {} to server: {} for server: {}",
+            asyncQueryResponse.getRequestId(), hedgedServer, primaryServer, e);
+      }
+    }
+  }
+
   private boolean isSkipUnavailableServers(@Nullable BrokerRequest offlineBrokerRequest,
       @Nullable BrokerRequest realtimeBrokerRequest) {
     if (offlineBrokerRequest != null && QueryOptionsUtils.isSkipUnavailableServers(
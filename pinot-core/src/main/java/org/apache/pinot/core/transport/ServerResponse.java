@@ -93,10 +93,17 @@ public class ServerResponse {
     _requestSentLatencyMs = requestSentLatencyMs;
   }
 
-  void receiveDataTable(DataTable dataTable, int responseSize, int deserializationTimeMs) {
+  /**
+   * Returns {@code false} if a response has already been received, e.g. from the replica a hedged request is sent to.
+   */
+  synchronized boolean receiveDataTable(DataTable dataTable, int responseSize, int deserializationTimeMs) {
+    if (_dataTable != null) {
+      return false;
+    }
     _receiveDataTableTimeMs = System.currentTimeMillis();
     _dataTable = dataTable;
     _responseSize = responseSize;
     _deserializationTimeMs = deserializationTimeMs;
+    return true;
   }
 }
@@ -28,6 +28,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.common.metrics.BrokerGauge;
@@ -51,6 +52,7 @@ public class ServerRoutingStatsManager {
   private final BrokerMetrics _brokerMetrics;
   private volatile boolean _isEnabled;
   private ConcurrentHashMap<String, ServerRoutingStatsEntry> _serverQueryStatsMap;
+  private ConcurrentHashMap<String, TableLatencyStatsEntry> _tableLatencyStatsMap;
 
   // Main executor service for collecting and aggregating stats for all servers.
   private ExecutorService _executorService;
@@ -99,6 +101,7 @@ public class ServerRoutingStatsManager {
     // Entries in this map are never deleted unless the broker process restarts. This is okay for now because the
     // number of servers will be finite and should not cause memory bloat.
     _serverQueryStatsMap = new ConcurrentHashMap<>();
+    _tableLatencyStatsMap = new ConcurrentHashMap<>();
   }
 
   public boolean isEnabled() {
@@ -169,6 +172,15 @@ public class ServerRoutingStatsManager {
    * Called when a query response is received from the server. Updates stats related to query completion.
    */
   public void recordStatsUponResponseArrival(long requestId, String serverInstanceId, long latency) {
+    recordStatsUponResponseArrival(requestId, serverInstanceId, null, latency);
+  }
+
+  /**
+   * Same as above, but also records the latency for the given table (if provided), which is used to compute the
+   * latency percentiles of the table.
+   */
+  public void recordStatsUponResponseArrival(long requestId, String serverInstanceId, @Nullable String rawTableName,
+      long latency) {
     if (!_isEnabled) {
       return;
     }
@@ -176,6 +188,9 @@ public class ServerRoutingStatsManager {
     _executorService.execute(() -> {
       try {
         updateStatsUponResponseArrival(serverInstanceId, latency);
+        if (rawTableName != null) {
+          _tableLatencyStatsMap.computeIfAbsent(rawTableName, k -> new TableLatencyStatsEntry()).addLatency(latency);
+        }
       } catch (Exception e) {
         LOGGER.error("Exception caught while updating stats. requestId={}, exception={}", requestId, e);
       }
@@ -198,6 +213,24 @@ public class ServerRoutingStatsManager {
     }
   }
 
+  /**
+   * Returns the server response latency at the given percentile (0-100) for the table, or {@code null} if stats
+   * collection is not enabled or there are not enough responses recorded for the table.
+   */
+  @Nullable
+  public Long fetchTableLatencyPercentile(String rawTableName, double percentile) {
+    if (!_isEnabled) {
+      return null;
+    }
+
+    TableLatencyStatsEntry stats = _tableLatencyStatsMap.get(rawTableName);
+    if (stats == null) {
+      return null;
+    }
+    long latencyMs = stats.getLatencyPercentile(percentile);
+    return latencyMs >= 0 ? latencyMs : null;
+  }
+
   public Map<String, ServerRoutingStatsEntry> getServerRoutingStats() {
     return _serverQueryStatsMap;
   }
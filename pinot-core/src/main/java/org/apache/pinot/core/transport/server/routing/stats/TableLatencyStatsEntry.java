@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.transport.server.routing.stats;
+
+import java.util.Arrays;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * {@code TableLatencyStatsEntry} keeps the most recent server response latencies of a table and computes latency
+ * percentiles over them. All access to TableLatencyStatsEntry should be made through ServerRoutingStatsManager.
+ */
+@ThreadSafe
+public class TableLatencyStatsEntry {
+  // Number of most recent latencies kept
+  static final int MAX_NUM_SAMPLES = 1024;
+  // Minimum number of latencies required to compute the percentiles
+  static final int MIN_NUM_SAMPLES = 100;
+  // The cached percentile is re-computed after this number of new latencies
+  static final int PERCENTILE_REFRESH_INTERVAL = 64;
+
+  private final long[] _latenciesMs = new long[MAX_NUM_SAMPLES];
+  private long _numSamples;
+
+  private double _cachedPercentile = -1;
+  private long _cachedPercentileLatencyMs;
+  private long _numSamplesForCachedPercentile;
+
+  public synchronized void addLatency(long latencyMs) {
+    _latenciesMs[(int) (_numSamples++ % MAX_NUM_SAMPLES)] = latencyMs;
+  }
+
+  /**
+   * Returns the latency at the given percentile (0-100) of the most recent latencies, or -1 if there are not enough
+   * latencies recorded.
+   */
+  public synchronized long getLatencyPercentile(double percentile) {
+    if (_numSamples < MIN_NUM_SAMPLES) {
+      return -1;
+    }
+    if (percentile != _cachedPercentile
+        || _numSamples - _numSamplesForCachedPercentile >= PERCENTILE_REFRESH_INTERVAL) {
+      int numSamples = (int) Math.min(_numSamples, MAX_NUM_SAMPLES);
+      long[] sortedLatenciesMs = Arrays.copyOf(_latenciesMs, numSamples);
+      Arrays.sort(sortedLatenciesMs);
+      int index = (int) Math.ceil(percentile / 100 * numSamples) - 1;
+      _cachedPercentileLatencyMs = sortedLatenciesMs[Math.max(0, Math.min(index, numSamples - 1))];
+      _cachedPercentile = percentile;
+      _numSamplesForCachedPercentile = _numSamples;
+    }
+    return _cachedPercentileLatencyMs;
+  }
+}
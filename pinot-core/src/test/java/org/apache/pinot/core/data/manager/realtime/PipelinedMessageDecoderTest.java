@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.pinot.core.data.manager.realtime.PipelinedMessageDecoder.DecodedMessage;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.recordtransformer.RecordTransformer;
+import org.apache.pinot.spi.stream.BytesStreamMessage;
+import org.apache.pinot.spi.stream.LongMsgOffset;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamMessageDecoder;
+import org.apache.pinot.spi.stream.StreamMessageMetadata;
+import org.apache.pinot.spi.stream.StreamPartitionMsgOffset;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class PipelinedMessageDecoderTest {
+  private static final String TABLE_NAME = "testTable_REALTIME";
+
+  // Use fewer threads than the workers of a decoder to ensure the workers do not block the shared threads
+  private final ExecutorService _executor = Executors.newFixedThreadPool(2);
+
+  @AfterClass
+  public void tearDown() {
+    _executor.shutdownNow();
+  }
+
+  @Test
+  public void testDecodeInOrder()
+      throws Exception {
+    try (PipelinedMessageDecoder decoder = createDecoder(4)) {
+      // Cover multiple batches with enough chunks to exceed the pending chunks limit
+      for (int batch = 0; batch < 3; batch++) {
+        int numMessages = 4 * PipelinedMessageDecoder.MAX_PENDING_CHUNKS_PER_THREAD * PipelinedMessageDecoder.CHUNK_SIZE
+            + batch * 10;
+        decoder.startBatch(new IntMessageBatch(numMessages));
+        for (int i = 0; i < numMessages; i++) {
+          DecodedMessage decodedMessage = decoder.get(i);
+          if (i % 100 == 1) {
+            // Decode failure
+            assertNotNull(decodedMessage.getDecoderResult().getException());
+            assertNull(decodedMessage.getTransformResult());
+          } else if (i % 100 == 2) {
+            // Transform failure
+            assertNull(decodedMessage.getDecoderResult().getException());
+            assertNull(decodedMessage.getTransformResult());
+            assertNotNull(decodedMessage.getTransformException());
+          } else {
+            List<GenericRow> rows = decodedMessage.getTransformResult().getTransformedRows();
+            assertEquals(rows.size(), 1);
+            assertEquals(rows.get(0).getValue("value"), i);
+          }
+        }
+        decoder.finishBatch();
+      }
+
+      // Exit the batch early and start a new one
+      decoder.startBatch(new IntMessageBatch(1000));
+      assertEquals(decoder.get(0).getTransformResult().getTransformedRows().get(0).getValue("value"), 0);
+      decoder.startBatch(new IntMessageBatch(10));
+      for (int i = 3; i < 10; i++) {
+        assertEquals(decoder.get(i).getTransformResult().getTransformedRows().get(0).getValue("value"), i);
+      }
+    }
+  }
+
+  @Test
+  public void testShareExecutor()
+      throws Exception {
+    try (PipelinedMessageDecoder decoder1 = createDecoder(2); PipelinedMessageDecoder decoder2 = createDecoder(3)) {
+      int numMessages = 1000;
+      decoder1.startBatch(new IntMessageBatch(numMessages));
+      decoder2.startBatch(new IntMessageBatch(numMessages));
+      for (int i = 0; i < numMessages; i++) {
+        if (i % 100 != 1 && i % 100 != 2) {
+          assertEquals(decoder1.get(i).getTransformResult().getTransformedRows().get(0).getValue("value"), i);
+          assertEquals(decoder2.get(i).getTransformResult().getTransformedRows().get(0).getValue("value"), i);
+        }
+      }
+    }
+  }
+
+  private PipelinedMessageDecoder createDecoder(int numThreads) {
+    return new PipelinedMessageDecoder(_executor, numThreads, IntDecoder::new,
+        () -> new TransformPipeline(TABLE_NAME, List.of(new FailingTransformer())));
+  }
+
+  /**
+   * Decodes the message into a row with the message index as value, and fails every 100 messages.
+   */
+  private static class IntDecoder implements StreamMessageDecoder<byte[]> {
+    @Override
+    public GenericRow decode(byte[] payload, GenericRow destination) {
+      return decode(payload, 0, payload.length, destination);
+    }
+
+    @Override
+    public GenericRow decode(byte[] payload, int offset, int length, GenericRow destination) {
+      int value = Integer.parseInt(new String(payload, offset, length, StandardCharsets.UTF_8));
+      if (value % 100 == 1) {
+        throw new IllegalStateException("Failed to decode: " + value);
+      }
+      destination.putValue("value", value);
+      return destination;
+    }
+  }
+
+  private static class FailingTransformer implements RecordTransformer {
+    @Override
+    public void transform(GenericRow record) {
+      if ((int) record.getValue("value") % 100 == 2) {
+        throw new IllegalStateException("Failed to transform: " + record);
+      }
+    }
+  }
+
+  private static class IntMessageBatch implements MessageBatch<byte[]> {
+    private final int _numMessages;
+
+    IntMessageBatch(int numMessages) {
+      _numMessages = numMessages;
+    }
+
+    @Override
+    public int getMessageCount() {
+      return _numMessages;
+    }
+
+    @Override
+    public BytesStreamMessage getStreamMessage(int index) {
+      return new BytesStreamMessage(Integer.toString(index).getBytes(StandardCharsets.UTF_8),
+          new StreamMessageMetadata.Builder().setOffset(new LongMsgOffset(index), new LongMsgOffset(index + 1))
+              .build());
+    }
+
+    @Override
+    public StreamPartitionMsgOffset getOffsetOfNextBatch() {
+      return new LongMsgOffset(_numMessages);
+    }
+
+    @Override
+    public long getSizeInBytes() {
+      return 0;
+    }
+  }
+}
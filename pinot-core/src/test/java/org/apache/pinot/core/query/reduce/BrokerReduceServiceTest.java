@@ -43,6 +43,8 @@ import org.testng.annotations.Test;
 
 import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 
 
 public class BrokerReduceServiceTest {
@@ -121,6 +123,65 @@ public class BrokerReduceServiceTest {
     brokerReduceService.shutDown();
   }
 
+  @Test
+  public void testIncrementalGroupByReduce() {
+    BrokerReduceService brokerReduceService = new BrokerReduceService(new PinotConfiguration(
+        Map.of(Broker.CONFIG_OF_MAX_REDUCE_THREADS_PER_QUERY, 2, Broker.CONFIG_OF_ENABLE_INCREMENTAL_GROUP_BY_REDUCE,
+            true)));
+    BrokerRequest brokerRequest = CalciteSqlCompiler.compileToBrokerRequest(
+        "SELECT col1, COUNT(*) FROM testTable GROUP BY col1 ORDER BY col1 LIMIT 100");
+    DataSchema dataSchema =
+        new DataSchema(new String[]{"col1", "count(*)"}, new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.LONG});
+    Map<ServerRoutingInstance, DataTable> dataTableMap = new HashMap<>();
+    int numInstances = 10;
+    for (int i = 0; i < numInstances; i++) {
+      // Each server returns groups [i, i + 10)
+      DataTableBuilder dataTableBuilder = DataTableBuilderFactory.getDataTableBuilder(dataSchema);
+      for (int j = i; j < i + 10; j++) {
+        dataTableBuilder.startRow();
+        dataTableBuilder.setColumn(0, j);
+        dataTableBuilder.setColumn(1, 1L);
+        dataTableBuilder.finishRow();
+      }
+      dataTableMap.put(new ServerRoutingInstance("localhost", i, TableType.OFFLINE), dataTableBuilder.build());
+    }
+    BrokerResponseNative expectedResponse = reduce(brokerReduceService, brokerRequest, new HashMap<>(dataTableMap),
+        10_000L);
+    assertEquals(expectedResponse.getResultTable().getRows().size(), 19);
+
+    try (QueryThreadContext ignore = QueryThreadContext.openForSseTest()) {
+      // Disabled by query option
+      BrokerRequest disabledBrokerRequest = CalciteSqlCompiler.compileToBrokerRequest(
+          "SET useIncrementalGroupByReduce = false; SELECT col1, COUNT(*) FROM testTable GROUP BY col1");
+      assertNull(brokerReduceService.getIncrementalGroupByReducer(disabledBrokerRequest, numInstances, 10_000L));
+      // Not a group-by query
+      assertNull(brokerReduceService.getIncrementalGroupByReducer(
+          CalciteSqlCompiler.compileToBrokerRequest("SELECT COUNT(*) FROM testTable"), numInstances, 10_000L));
+
+      // All data tables merged as they arrive
+      IncrementalGroupByReducer incrementalGroupByReducer =
+          brokerReduceService.getIncrementalGroupByReducer(brokerRequest, numInstances, 10_000L);
+      assertNotNull(incrementalGroupByReducer);
+      dataTableMap.forEach(incrementalGroupByReducer::reduce);
+      BrokerResponseNative brokerResponse =
+          brokerReduceService.reduceOnDataTable(brokerRequest, brokerRequest, new HashMap<>(dataTableMap), 10_000L,
+              mock(BrokerMetrics.class), incrementalGroupByReducer);
+      assertEquals(brokerResponse.getResultTable().getRows(), expectedResponse.getResultTable().getRows());
+
+      // Fall back to the regular reduce when not all the data tables are merged
+      incrementalGroupByReducer =
+          brokerReduceService.getIncrementalGroupByReducer(brokerRequest, numInstances, 10_000L);
+      assertNotNull(incrementalGroupByReducer);
+      ServerRoutingInstance firstInstance = new ServerRoutingInstance("localhost", 0, TableType.OFFLINE);
+      incrementalGroupByReducer.reduce(firstInstance, dataTableMap.get(firstInstance));
+      brokerResponse =
+          brokerReduceService.reduceOnDataTable(brokerRequest, brokerRequest, new HashMap<>(dataTableMap), 10_000L,
+              mock(BrokerMetrics.class), incrementalGroupByReducer);
+      assertEquals(brokerResponse.getResultTable().getRows(), expectedResponse.getResultTable().getRows());
+    }
+    brokerReduceService.shutDown();
+  }
+
   private BrokerResponseNative reduce(BrokerReduceService brokerReduceService, BrokerRequest brokerRequest,
       Map<ServerRoutingInstance, DataTable> dataTableMap, long reduceTimeoutMs) {
     try (QueryThreadContext ignore = QueryThreadContext.openForSseTest()) {
@@ -22,7 +22,9 @@ import com.google.common.util.concurrent.Futures;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.pinot.common.datatable.DataTable;
 import org.apache.pinot.common.datatable.DataTable.MetadataKey;
 import org.apache.pinot.common.metrics.BrokerMetrics;
@@ -32,6 +34,7 @@ import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.datatable.DataTableBuilder;
 import org.apache.pinot.core.common.datatable.DataTableBuilderFactory;
 import org.apache.pinot.core.query.scheduler.QueryScheduler;
+import org.apache.pinot.core.routing.RoutingManager;
 import org.apache.pinot.core.routing.SegmentsToQuery;
 import org.apache.pinot.core.transport.server.routing.stats.ServerRoutingStatsManager;
 import org.apache.pinot.server.access.AccessControl;
@@ -47,6 +50,7 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.*;
@@ -531,6 +535,130 @@ public class QueryRoutingTest {
         _serverRoutingStatsManager.fetchNumInFlightRequestsForServer(serverInstance2.getInstanceId()).intValue(), 0);
   }
 
+  @Test
+  public void testHedgedRequest()
+      throws Exception {
+    int slowServerPort = 12346;
+    int fastServerPort = 12347;
+    ServerInstance slowServerInstance = new ServerInstance("localhost", slowServerPort);
+    ServerInstance fastServerInstance = new ServerInstance("localhost", fastServerPort);
+    ServerRoutingInstance slowServerRoutingInstance =
+        slowServerInstance.toServerRoutingInstance(TableType.OFFLINE, ServerInstance.RoutingType.NETTY);
+    Map<ServerInstance, SegmentsToQuery> routingTable =
+        Map.of(slowServerInstance, new SegmentsToQuery(List.of("segment0"), Collections.emptyList()));
+
+    long requestId = 123;
+    DataTable dataTable = DataTableBuilderFactory.getEmptyDataTable();
+    dataTable.getMetadata().put(MetadataKey.REQUEST_ID.getName(), Long.toString(requestId));
+    byte[] responseBytes = dataTable.toBytes();
+    QueryServer slowQueryServer = getQueryServer(2000, responseBytes, slowServerPort);
+    slowQueryServer.start();
+    QueryServer fastQueryServer = getQueryServer(0, responseBytes, fastServerPort);
+    fastQueryServer.start();
+
+    // Hedge after 10ms to the fast server, with enough budget for a hedged request per server request
+    RoutingManager routingManager = mock(RoutingManager.class);
+    when(routingManager.getAlternativeServerInstance(eq("testTable"), eq(List.of("segment0")),
+        eq(Set.of(slowServerInstance.getInstanceId())))).thenReturn(fastServerInstance);
+    ServerRoutingStatsManager serverRoutingStatsManager = mock(ServerRoutingStatsManager.class);
+    when(serverRoutingStatsManager.fetchTableLatencyPercentile("testTable", 95.0)).thenReturn(1L);
+    QueryHedger queryHedger = new QueryHedger(routingManager, serverRoutingStatsManager, 95.0, 10L, 1, 100.0);
+    QueryRouter queryRouter = new QueryRouter("testBroker", null, null, serverRoutingStatsManager,
+        ThreadAccountantUtils.getNoOpAccountant(), queryHedger);
+    try {
+      long startTime = System.currentTimeMillis();
+      AsyncQueryResponse asyncQueryResponse =
+          queryRouter.submitQuery(requestId, "testTable", BROKER_REQUEST, routingTable, null, null, 10_000L);
+      Map<ServerRoutingInstance, ServerResponse> response = asyncQueryResponse.getFinalResponses();
+      assertEquals(asyncQueryResponse.getStatus(), QueryResponse.Status.COMPLETED);
+      assertTrue(System.currentTimeMillis() - startTime < 2000);
+      // Response of the hedged request is recorded for the slow server
+      assertEquals(response.size(), 1);
+      assertNotNull(response.get(slowServerRoutingInstance).getDataTable());
+
+      // Query option to disable hedged requests
+      BrokerRequest brokerRequest =
+          CalciteSqlCompiler.compileToBrokerRequest("SET useHedgedRequests = false; SELECT * FROM testTable");
+      startTime = System.currentTimeMillis();
+      asyncQueryResponse =
+          queryRouter.submitQuery(requestId, "testTable", brokerRequest, routingTable, null, null, 10_000L);
+      response = asyncQueryResponse.getFinalResponses();
+      assertEquals(asyncQueryResponse.getStatus(), QueryResponse.Status.COMPLETED);
+      assertTrue(System.currentTimeMillis() - startTime >= 2000);
+      assertNotNull(response.get(slowServerRoutingInstance).getDataTable());
+    } finally {
+      queryRouter.shutDown();
+      slowQueryServer.shutDown();
+      fastQueryServer.shutDown();
+    }
+  }
+
+  @Test
+  public void testHedgedRequestWithException()
+      throws Exception {
+    int slowServerPort = 12348;
+    int fastServerPort = 12349;
+    ServerInstance slowServerInstance = new ServerInstance("localhost", slowServerPort);
+    ServerInstance fastServerInstance = new ServerInstance("localhost", fastServerPort);
+    ServerRoutingInstance slowServerRoutingInstance =
+        slowServerInstance.toServerRoutingInstance(TableType.OFFLINE, ServerInstance.RoutingType.NETTY);
+    Map<ServerInstance, SegmentsToQuery> routingTable =
+        Map.of(slowServerInstance, new SegmentsToQuery(List.of("segment0"), Collections.emptyList()));
+
+    long requestId = 123;
+    DataTable dataTable = DataTableBuilderFactory.getEmptyDataTable();
+    dataTable.getMetadata().put(MetadataKey.REQUEST_ID.getName(), Long.toString(requestId));
+    QueryServer slowQueryServer = getQueryServer(500, dataTable.toBytes(), slowServerPort);
+    slowQueryServer.start();
+    DataTable exceptionDataTable = DataTableBuilderFactory.getEmptyDataTable();
+    exceptionDataTable.getMetadata().put(MetadataKey.REQUEST_ID.getName(), Long.toString(requestId));
+    exceptionDataTable.addException(QueryErrorCode.SERVER_SEGMENT_MISSING, "Test error message");
+    QueryServer fastQueryServer = getQueryServer(0, exceptionDataTable.toBytes(), fastServerPort);
+    fastQueryServer.start();
+
+    RoutingManager routingManager = mock(RoutingManager.class);
+    when(routingManager.getAlternativeServerInstance(eq("testTable"), eq(List.of("segment0")),
+        eq(Set.of(slowServerInstance.getInstanceId())))).thenReturn(fastServerInstance);
+    ServerRoutingStatsManager serverRoutingStatsManager = mock(ServerRoutingStatsManager.class);
+    when(serverRoutingStatsManager.fetchTableLatencyPercentile("testTable", 95.0)).thenReturn(1L);
+    QueryHedger queryHedger = new QueryHedger(routingManager, serverRoutingStatsManager, 95.0, 10L, 1, 100.0);
+    QueryRouter queryRouter = new QueryRouter("testBroker", null, null, serverRoutingStatsManager,
+        ThreadAccountantUtils.getNoOpAccountant(), queryHedger);
+    try {
+      long startTime = System.currentTimeMillis();
+      AsyncQueryResponse asyncQueryResponse =
+          queryRouter.submitQuery(requestId, "testTable", BROKER_REQUEST, routingTable, null, null, 10_000L);
+      Map<ServerRoutingInstance, ServerResponse> response = asyncQueryResponse.getFinalResponses();
+      assertEquals(asyncQueryResponse.getStatus(), QueryResponse.Status.COMPLETED);
+      // Response of the hedged request has exceptions, so the response of the slow server is recorded
+      assertTrue(System.currentTimeMillis() - startTime >= 500);
+      assertEquals(response.size(), 1);
+      assertTrue(response.get(slowServerRoutingInstance).getDataTable().getExceptions().isEmpty());
+    } finally {
+      queryRouter.shutDown();
+      slowQueryServer.shutDown();
+      fastQueryServer.shutDown();
+    }
+  }
+
+  @Test
+  public void testHedgingBudget() {
+    QueryHedger queryHedger =
+        new QueryHedger(mock(RoutingManager.class), mock(ServerRoutingStatsManager.class), 95.0, 10L, 1, 10.0);
+    assertFalse(queryHedger.tryAcquireBudget());
+    // 10% budget, 1 hedged request per 10 server requests
+    queryHedger.depositBudget(25);
+    assertTrue(queryHedger.tryAcquireBudget());
+    assertTrue(queryHedger.tryAcquireBudget());
+    assertFalse(queryHedger.tryAcquireBudget());
+    // Balance is capped
+    queryHedger.depositBudget(1000);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(queryHedger.tryAcquireBudget());
+    }
+    assertFalse(queryHedger.tryAcquireBudget());
+  }
+
   private void waitForStatsUpdate(long taskCount) {
     TestUtils.waitForCondition(aVoid -> {
       return (_serverRoutingStatsManager.getCompletedTaskCount() == taskCount);
@@ -313,6 +313,40 @@ public class ServerRoutingStatsManagerTest {
     assertEquals(score, 54.0);
   }
 
+  @Test
+  public void testTableLatencyPercentile() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(CommonConstants.Broker.AdaptiveServerSelector.CONFIG_OF_ENABLE_STATS_COLLECTION, true);
+    ServerRoutingStatsManager manager = new ServerRoutingStatsManager(new PinotConfiguration(properties),
+        _brokerMetrics);
+    manager.init();
+
+    // Not enough latencies recorded
+    int requestId = 0;
+    for (int i = 1; i < TableLatencyStatsEntry.MIN_NUM_SAMPLES; i++) {
+      manager.recordStatsUponResponseArrival(requestId++, "server1", "testTable", i);
+    }
+    // Latency without table is not recorded for the table
+    manager.recordStatsUponResponseArrival(requestId++, "server1", 1000);
+    waitForStatsUpdate(manager, requestId);
+    assertNull(manager.fetchTableLatencyPercentile("testTable", 95));
+
+    // Latencies 1 to 100
+    manager.recordStatsUponResponseArrival(requestId++, "server2", "testTable", TableLatencyStatsEntry.MIN_NUM_SAMPLES);
+    waitForStatsUpdate(manager, requestId);
+    assertEquals(manager.fetchTableLatencyPercentile("testTable", 95).longValue(), 95L);
+    assertEquals(manager.fetchTableLatencyPercentile("testTable", 50).longValue(), 50L);
+    assertEquals(manager.fetchTableLatencyPercentile("testTable", 100).longValue(), 100L);
+    assertNull(manager.fetchTableLatencyPercentile("otherTable", 95));
+
+    // Only the most recent latencies are kept
+    for (int i = 0; i < TableLatencyStatsEntry.MAX_NUM_SAMPLES; i++) {
+      manager.recordStatsUponResponseArrival(requestId++, "server1", "testTable", 10);
+    }
+    waitForStatsUpdate(manager, requestId);
+    assertEquals(manager.fetchTableLatencyPercentile("testTable", 95).longValue(), 10L);
+  }
+
   private void waitForStatsUpdate(ServerRoutingStatsManager serverRoutingStatsManager, long taskCount) {
     TestUtils.waitForCondition(aVoid -> {
       return (serverRoutingStatsManager.getCompletedTaskCount() == taskCount);
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Server;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class FilterBitmapCacheQueriesTest extends BaseQueriesTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "FilterBitmapCacheQueriesTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final int NUM_RECORDS = 1000;
+  private static final String INT_COLUMN = "intColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addSingleValueDimension(INT_COLUMN, DataType.INT)
+      .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+      .build();
+  private static final TableConfig TABLE_CONFIG =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+
+  private IndexSegment _indexSegment;
+  private List<IndexSegment> _indexSegments;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return _indexSegments;
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    List<GenericRow> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue(INT_COLUMN, i);
+      record.putValue(STRING_COLUMN, "value" + i % 10);
+      records.add(record);
+    }
+
+    SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(TABLE_CONFIG, SCHEMA);
+    segmentGeneratorConfig.setTableName(RAW_TABLE_NAME);
+    segmentGeneratorConfig.setSegmentName(SEGMENT_NAME);
+    segmentGeneratorConfig.setOutDir(INDEX_DIR.getPath());
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(segmentGeneratorConfig, new GenericRowRecordReader(records));
+    driver.build();
+
+    ImmutableSegment immutableSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME), ReadMode.mmap);
+    _indexSegment = immutableSegment;
+    _indexSegments = Arrays.asList(immutableSegment, immutableSegment);
+  }
+
+  @Test
+  public void testCachedFilterMatchesEvaluatedFilter() {
+    String[] queries = new String[]{
+        "SELECT COUNT(*), SUM(intColumn) FROM testTable WHERE stringColumn = 'value3'",
+        "SELECT COUNT(*), SUM(intColumn) FROM testTable WHERE REGEXP_LIKE(stringColumn, 'value[1-3]')",
+        "SELECT COUNT(*), SUM(intColumn) FROM testTable WHERE stringColumn IN ('value1', 'value2') "
+            + "AND intColumn BETWEEN 100 AND 500",
+        "SELECT COUNT(*), SUM(intColumn) FROM testTable WHERE NOT REGEXP_LIKE(stringColumn, 'value[1-3]') "
+            + "OR intColumn < 10",
+        "SELECT stringColumn, MAX(intColumn) FROM testTable WHERE intColumn % 7 = 0 GROUP BY stringColumn "
+            + "ORDER BY stringColumn"
+    };
+    for (String query : queries) {
+      InstancePlanMakerImplV2 planMaker = new InstancePlanMakerImplV2();
+      planMaker.init(new PinotConfiguration(Map.of(Server.FILTER_BITMAP_CACHE_MAX_SIZE_BYTES, 1024 * 1024)));
+      BrokerResponseNative expected = getBrokerResponse(query);
+      // Predicates are cached the second time they are seen, then served from the cache
+      for (int i = 0; i < 3; i++) {
+        BrokerResponseNative brokerResponse = getBrokerResponse(query, planMaker);
+        List<Object[]> rows = brokerResponse.getResultTable().getRows();
+        List<Object[]> expectedRows = expected.getResultTable().getRows();
+        assertEquals(rows.size(), expectedRows.size(), query);
+        for (int j = 0; j < rows.size(); j++) {
+          assertEquals(rows.get(j), expectedRows.get(j), query);
+        }
+        assertEquals(brokerResponse.getNumDocsScanned(), expected.getNumDocsScanned(), query);
+      }
+      assertEquals(getBrokerResponse(query, planMaker).getNumEntriesScannedInFilter(), 0L, query);
+    }
+  }
+
+  @Test
+  public void testLiteralsWithSeparators() {
+    InstancePlanMakerImplV2 planMaker = new InstancePlanMakerImplV2();
+    planMaker.init(new PinotConfiguration(Map.of(Server.FILTER_BITMAP_CACHE_MAX_SIZE_BYTES, 1024 * 1024)));
+    // Both predicates have the same string representation
+    String query = "SELECT COUNT(*) FROM testTable WHERE stringColumn IN ('value1','value2')";
+    for (int i = 0; i < 3; i++) {
+      assertEquals(getBrokerResponse(query, planMaker).getResultTable().getRows().get(0)[0], 800L);
+    }
+    String queryWithSeparatorInLiteral = "SELECT COUNT(*) FROM testTable WHERE stringColumn IN ('value1'',''value2')";
+    assertEquals(getBrokerResponse(queryWithSeparatorInLiteral, planMaker).getResultTable().getRows().get(0)[0], 0L);
+  }
+
+  @Test
+  public void testCacheCanBeSkipped() {
+    String query = "SELECT COUNT(*) FROM testTable WHERE REGEXP_LIKE(stringColumn, 'value[1-3]')";
+    InstancePlanMakerImplV2 planMaker = new InstancePlanMakerImplV2();
+    planMaker.init(new PinotConfiguration(Map.of(Server.FILTER_BITMAP_CACHE_MAX_SIZE_BYTES, 1024 * 1024)));
+    for (int i = 0; i < 3; i++) {
+      getBrokerResponse(query, planMaker);
+    }
+    BrokerResponseNative brokerResponse = getBrokerResponse("SET useFilterBitmapCache = false; " + query, planMaker);
+    assertEquals(brokerResponse.getResultTable().getRows().get(0)[0], 1200L);
+    assertTrue(brokerResponse.getNumEntriesScannedInFilter() > 0);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.query.GroupByOperator;
+import org.apache.pinot.core.operator.query.SegmentResultCacheOperator;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Server;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class SegmentResultCacheQueriesTest extends BaseQueriesTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "SegmentResultCacheQueriesTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final int NUM_RECORDS = 1000;
+  private static final String INT_COLUMN = "intColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+  private static final String AGGREGATION_QUERY =
+      "SELECT COUNT(*), SUM(intColumn), MAX(intColumn), DISTINCTCOUNT(stringColumn) FROM testTable "
+          + "WHERE intColumn >= 100";
+
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addSingleValueDimension(INT_COLUMN, DataType.INT)
+      .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+      .build();
+  private static final TableConfig TABLE_CONFIG =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+
+  private final InstancePlanMakerImplV2 _planMaker = new InstancePlanMakerImplV2();
+  private IndexSegment _indexSegment;
+  private List<IndexSegment> _indexSegments;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return _indexSegments;
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    List<GenericRow> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue(INT_COLUMN, i);
+      record.putValue(STRING_COLUMN, "value" + i % 10);
+      records.add(record);
+    }
+
+    SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(TABLE_CONFIG, SCHEMA);
+    segmentGeneratorConfig.setTableName(RAW_TABLE_NAME);
+    segmentGeneratorConfig.setSegmentName(SEGMENT_NAME);
+    segmentGeneratorConfig.setOutDir(INDEX_DIR.getPath());
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(segmentGeneratorConfig, new GenericRowRecordReader(records));
+    driver.build();
+
+    ImmutableSegment immutableSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME), ReadMode.mmap);
+    _indexSegment = immutableSegment;
+    _indexSegments = Arrays.asList(immutableSegment, immutableSegment);
+
+    _planMaker.init(new PinotConfiguration(Map.of(Server.SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES, 1024 * 1024)));
+  }
+
+  @Test
+  public void testCachedResultsMatchComputedResults() {
+    BrokerResponseNative expected = getBrokerResponse(AGGREGATION_QUERY);
+    ResultTable expectedResultTable = expected.getResultTable();
+
+    // First query populates the cache, the following ones are served from it
+    for (int i = 0; i < 3; i++) {
+      BrokerResponseNative brokerResponse = getBrokerResponse(AGGREGATION_QUERY, _planMaker);
+      assertEquals(brokerResponse.getResultTable().getRows().get(0), expectedResultTable.getRows().get(0));
+      assertEquals(brokerResponse.getNumDocsScanned(), expected.getNumDocsScanned());
+      assertEquals(brokerResponse.getNumSegmentsMatched(), expected.getNumSegmentsMatched());
+      assertEquals(brokerResponse.getTotalDocs(), expected.getTotalDocs());
+    }
+
+    Operator<AggregationResultsBlock> operator = getOperator(_indexSegment, AGGREGATION_QUERY);
+    assertTrue(operator instanceof SegmentResultCacheOperator);
+    assertTrue(operator.getChildOperators().isEmpty());
+    List<Object> results = operator.nextBlock().getResults();
+    assertEquals(((Number) results.get(0)).longValue(), 900L);
+    assertEquals(((Number) results.get(1)).doubleValue(), 494550.0);
+    assertEquals(((Number) results.get(2)).doubleValue(), 999.0);
+    assertEquals(operator.getExecutionStatistics().getNumDocsScanned(), 900L);
+    assertEquals(operator.getExecutionStatistics().getNumEntriesScannedPostFilter(), 0L);
+  }
+
+  @Test
+  public void testReloadedSegmentIsRecomputed()
+      throws Exception {
+    getBrokerResponse(AGGREGATION_QUERY, _planMaker);
+    ImmutableSegment reloadedSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME), ReadMode.mmap);
+    try {
+      Operator<AggregationResultsBlock> operator = getOperator(reloadedSegment, AGGREGATION_QUERY);
+      assertTrue(operator instanceof SegmentResultCacheOperator);
+      assertFalse(operator.getChildOperators().isEmpty());
+      assertEquals(((Number) operator.nextBlock().getResults().get(0)).longValue(), 900L);
+
+      // Results computed on the reloaded segment are cached for it
+      operator = getOperator(reloadedSegment, AGGREGATION_QUERY);
+      assertTrue(operator.getChildOperators().isEmpty());
+    } finally {
+      reloadedSegment.destroy();
+    }
+  }
+
+  @Test
+  public void testLiteralsWithSeparators() {
+    // The filters of both queries have the same string representation
+    String query = "SELECT COUNT(*) FROM testTable WHERE stringColumn IN ('value1','value2')";
+    String queryWithSeparatorInLiteral = "SELECT COUNT(*) FROM testTable WHERE stringColumn IN ('value1'',''value2')";
+    assertEquals(getBrokerResponse(query, _planMaker).getResultTable().getRows().get(0)[0], 800L);
+    assertEquals(getBrokerResponse(queryWithSeparatorInLiteral, _planMaker).getResultTable().getRows().get(0)[0], 0L);
+  }
+
+  @Test
+  public void testNonCacheableQueries() {
+    // Opted out by query option
+    assertFalse(getOperator(_indexSegment,
+        "SET useSegmentResultCache = false; " + AGGREGATION_QUERY) instanceof SegmentResultCacheOperator);
+    // Group-by results are not cached
+    assertTrue(getOperator(_indexSegment,
+        "SELECT COUNT(*) FROM testTable GROUP BY stringColumn") instanceof GroupByOperator);
+    // Explain queries are not cached
+    assertFalse(getOperator(_indexSegment, "EXPLAIN PLAN FOR " + AGGREGATION_QUERY)
+        instanceof SegmentResultCacheOperator);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends Operator> T getOperator(IndexSegment indexSegment, String query) {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(query);
+    return (T) _planMaker.makeSegmentPlanNode(new SegmentContext(indexSegment), queryContext).run();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.broker.routing.instanceselector.BalancedInstanceSelector;
+import org.apache.pinot.broker.routing.instanceselector.InstanceSelectorConfig;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.apache.pinot.spi.utils.CommonConstants.Helix.StateModel.SegmentStateModel.OFFLINE;
+import static org.apache.pinot.spi.utils.CommonConstants.Helix.StateModel.SegmentStateModel.ONLINE;
+
+
+/**
+ * Benchmark for processing a segment assignment change in the broker instance selector, where each change only touches
+ * a subset of the segments of the table. Changing all the segments is equivalent to rebuilding the routing from
+ * scratch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkInstanceSelectorAssignmentChange {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final int NUM_INSTANCES = 30;
+  private static final int NUM_REPLICAS = 3;
+
+  @Param({"100000"})
+  private int _numSegments;
+  @Param({"1", "100", "100000"})
+  private int _numChangedSegments;
+
+  private BalancedInstanceSelector _instanceSelector;
+  private IdealState _idealState;
+  private ExternalView _externalView;
+  private Set<String> _onlineSegments;
+  private List<String> _changedSegments;
+  private List<Map<String, String>> _onlineInstanceStateMaps;
+  private List<Map<String, String>> _partiallyOfflineInstanceStateMaps;
+  private boolean _partiallyOffline;
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt =
+        new OptionsBuilder().include(BenchmarkInstanceSelectorAssignmentChange.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  @Setup
+  public void setUp() {
+    List<String> instances = new ArrayList<>(NUM_INSTANCES);
+    Set<String> enabledInstances = new HashSet<>();
+    Map<String, ServerInstance> enabledServerMap = new HashMap<>();
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      String instance = "Server_localhost_" + i;
+      instances.add(instance);
+      enabledInstances.add(instance);
+      enabledServerMap.put(instance, new ServerInstance(new InstanceConfig(instance)));
+    }
+
+    _idealState = new IdealState(TABLE_NAME);
+    _externalView = new ExternalView(TABLE_NAME);
+    _onlineSegments = new HashSet<>();
+    _changedSegments = new ArrayList<>(_numChangedSegments);
+    _onlineInstanceStateMaps = new ArrayList<>(_numChangedSegments);
+    _partiallyOfflineInstanceStateMaps = new ArrayList<>(_numChangedSegments);
+    Map<String, Map<String, String>> idealStateAssignment = _idealState.getRecord().getMapFields();
+    Map<String, Map<String, String>> externalViewAssignment = _externalView.getRecord().getMapFields();
+    for (int i = 0; i < _numSegments; i++) {
+      String segment = "segment_" + i;
+      Map<String, String> instanceStateMap = new TreeMap<>();
+      for (int j = 0; j < NUM_REPLICAS; j++) {
+        instanceStateMap.put(instances.get((i + j) % NUM_INSTANCES), ONLINE);
+      }
+      idealStateAssignment.put(segment, instanceStateMap);
+      externalViewAssignment.put(segment, new TreeMap<>(instanceStateMap));
+      _onlineSegments.add(segment);
+      if (i < _numChangedSegments) {
+        _changedSegments.add(segment);
+        _onlineInstanceStateMaps.add(new TreeMap<>(instanceStateMap));
+        Map<String, String> partiallyOfflineInstanceStateMap = new TreeMap<>(instanceStateMap);
+        partiallyOfflineInstanceStateMap.put(instances.get(i % NUM_INSTANCES), OFFLINE);
+        _partiallyOfflineInstanceStateMaps.add(partiallyOfflineInstanceStateMap);
+      }
+    }
+
+    TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(TABLE_NAME).build();
+    @SuppressWarnings("unchecked")
+    ZkHelixPropertyStore<ZNRecord> propertyStore = Mockito.mock(ZkHelixPropertyStore.class);
+    _instanceSelector = new BalancedInstanceSelector();
+    _instanceSelector.init(tableConfig, propertyStore, Mockito.mock(BrokerMetrics.class), null, Clock.systemUTC(),
+        new InstanceSelectorConfig(false, 300, false), enabledInstances, enabledServerMap, _idealState,
+        _externalView, _onlineSegments);
+  }
+
+  @Benchmark
+  public Set<String> processAssignmentChange() {
+    // Toggle one replica of the changed segments between ONLINE and OFFLINE in the external view
+    _partiallyOffline = !_partiallyOffline;
+    List<Map<String, String>> instanceStateMaps =
+        _partiallyOffline ? _partiallyOfflineInstanceStateMaps : _onlineInstanceStateMaps;
+    Map<String, Map<String, String>> externalViewAssignment = _externalView.getRecord().getMapFields();
+    for (int i = 0; i < _numChangedSegments; i++) {
+      externalViewAssignment.put(_changedSegments.get(i), instanceStateMaps.get(i));
+    }
+    _instanceSelector.onAssignmentChange(_idealState, _externalView, _onlineSegments);
+    return _instanceSelector.getServingInstances();
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.upsert.BasePartitionUpsertMetadataManager;
+import org.apache.pinot.segment.local.upsert.ConcurrentMapPartitionUpsertMetadataManager;
+import org.apache.pinot.segment.local.upsert.OffHeapPartitionUpsertMetadataManager;
+import org.apache.pinot.segment.local.upsert.RecordInfo;
+import org.apache.pinot.segment.local.upsert.UpsertContext;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for ingesting upsert records into the partition upsert metadata managers backed by the on-heap
+ * {@code ConcurrentHashMap} and the off-heap open-addressing map, with a mix of new and existing primary keys.
+ * <p>Run with {@code -prof gc} to also compare the allocation rate and the GC time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms8G", "-Xmx8G", "-XX:MaxDirectMemorySize=8G"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkUpsertPrimaryKeyMap {
+  private static final String TABLE_NAME = "testTable_REALTIME";
+  private static final String PRIMARY_KEY_COLUMN = "pk";
+  private static final String COMPARISON_COLUMN = "ts";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "BenchmarkUpsertPrimaryKeyMap");
+  private static final int NUM_RECORDS_PER_INVOCATION = 100_000;
+
+  @Param({"CONCURRENT_MAP", "OFF_HEAP"})
+  private String _metadataManagerType;
+  @Param({"10000000"})
+  private int _numPrimaryKeys;
+  @Param({"NONE", "MURMUR3"})
+  private String _hashFunction;
+
+  private BasePartitionUpsertMetadataManager _metadataManager;
+  private MutableSegment _segment;
+  private PrimaryKey[] _primaryKeys;
+  private final Random _random = new Random(42);
+  private int _nextDocId;
+  private long _nextTimestamp;
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkUpsertPrimaryKeyMap.class.getSimpleName()).build()).run();
+  }
+
+  @Setup
+  public void setUp()
+      throws Exception {
+    FileUtils.forceMkdir(INDEX_DIR);
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension(PRIMARY_KEY_COLUMN, DataType.LONG)
+        .addDateTimeField(COMPARISON_COLUMN, DataType.LONG, "1:MILLISECONDS:EPOCH", "1:MILLISECONDS")
+        .setPrimaryKeyColumns(List.of(PRIMARY_KEY_COLUMN))
+        .build();
+    TableConfig tableConfig =
+        new TableConfigBuilder(TableType.REALTIME).setTableName("testTable").setTimeColumnName(COMPARISON_COLUMN)
+            .build();
+    TableDataManager tableDataManager = Mockito.mock(TableDataManager.class);
+    Mockito.when(tableDataManager.getTableDataDir()).thenReturn(INDEX_DIR);
+    UpsertContext context = new UpsertContext.Builder()
+        .setTableConfig(tableConfig)
+        .setSchema(schema)
+        .setTableDataManager(tableDataManager)
+        .setPrimaryKeyColumns(List.of(PRIMARY_KEY_COLUMN))
+        .setComparisonColumns(List.of(COMPARISON_COLUMN))
+        .setHashFunction(HashFunction.valueOf(_hashFunction))
+        .build();
+    _metadataManager = "OFF_HEAP".equals(_metadataManagerType)
+        ? new OffHeapPartitionUpsertMetadataManager(TABLE_NAME, 0, context)
+        : new ConcurrentMapPartitionUpsertMetadataManager(TABLE_NAME, 0, context);
+
+    _segment = Mockito.mock(MutableSegment.class);
+    Mockito.when(_segment.getSegmentName()).thenReturn("testTable__0__0__20240101T0000Z");
+    Mockito.when(_segment.getValidDocIds()).thenReturn(new ThreadSafeMutableRoaringBitmap());
+
+    _primaryKeys = new PrimaryKey[_numPrimaryKeys];
+    for (int i = 0; i < _numPrimaryKeys; i++) {
+      _primaryKeys[i] = new PrimaryKey(new Object[]{(long) i});
+    }
+    // Load half of the primary keys so that the benchmark ingests a mix of new and existing keys
+    for (int i = 0; i < _numPrimaryKeys / 2; i++) {
+      addRecord(_primaryKeys[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown()
+      throws Exception {
+    _metadataManager.stop();
+    _metadataManager.close();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Benchmark
+  public int addRecords() {
+    int numUpdated = 0;
+    for (int i = 0; i < NUM_RECORDS_PER_INVOCATION; i++) {
+      if (addRecord(_primaryKeys[_random.nextInt(_numPrimaryKeys)])) {
+        numUpdated++;
+      }
+    }
+    return numUpdated;
+  }
+
+  private boolean addRecord(PrimaryKey primaryKey) {
+    return _metadataManager.addRecord(_segment, new RecordInfo(primaryKey, _nextDocId++, _nextTimestamp++, false));
+  }
+}
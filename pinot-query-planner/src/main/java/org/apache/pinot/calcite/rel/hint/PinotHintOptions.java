@@ -59,6 +59,9 @@ public class PinotHintOptions {
     /** Throw an exception on reaching num_groups_limit instead of just setting a flag. */
     public static final String ERROR_ON_NUM_GROUPS_LIMIT = "error_on_num_groups_limit";
 
+    /** Spill the groups to local disk on reaching num_groups_limit instead of dropping the new groups. */
+    public static final String SPILL_ON_NUM_GROUPS_LIMIT = "spill_on_num_groups_limit";
+
     /** Max number of keys produced by MSQE aggregation. */
     public static final String NUM_GROUPS_LIMIT = "num_groups_limit";
 
@@ -72,9 +75,10 @@ public class PinotHintOptions {
      */
     public static final String MAX_ROWS_IN_WINDOW = "max_rows_in_window";
     /**
-     * Mode when window overflow happens, supported values: THROW or BREAK.
+     * Mode when window overflow happens, supported values: THROW, BREAK or SPILL.
      *   THROW(default): Break window cache build process, and throw exception, no further WINDOW operation performed.
      *   BREAK: Break window cache build process, continue to perform WINDOW operation, results might be partial.
+     *   SPILL: Spill the window cache to local disk partitioned on the window keys, results are complete.
      */
     public static final String WINDOW_OVERFLOW_MODE = "window_overflow_mode";
   }
@@ -87,6 +91,9 @@ public class PinotHintOptions {
     public static final String DYNAMIC_BROADCAST_JOIN_STRATEGY = "dynamic_broadcast";
     // "lookup" can be used when the right table is a dimension table replicated to all workers
     public static final String LOOKUP_JOIN_STRATEGY = "lookup";
+    // "sort_merge" can be used to sort both inputs on the join keys instead of building a hash table on the right
+    // input. The inputs are sorted by the receivers, which hold up to "maxRowsInSort" rows and spill the rest.
+    public static final String SORT_MERGE_JOIN_STRATEGY = "sort_merge";
 
     public static final String LEFT_DISTRIBUTION_TYPE = "left_distribution_type";
     public static final String RIGHT_DISTRIBUTION_TYPE = "right_distribution_type";
@@ -97,9 +104,10 @@ public class PinotHintOptions {
     public static final String MAX_ROWS_IN_JOIN = "max_rows_in_join";
 
     /**
-     * Mode when join overflow happens, supported values: THROW or BREAK.
+     * Mode when join overflow happens, supported values: THROW, BREAK or SPILL.
      *   THROW(default): Break right table build process, and throw exception, no JOIN with left table performed.
      *   BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
+     *   SPILL: Spill both inputs to local disk and join them partition by partition (only for hash joins).
      */
     public static final String JOIN_OVERFLOW_MODE = "join_overflow_mode";
 
@@ -113,6 +121,12 @@ public class PinotHintOptions {
      */
     public static final String APPEND_DISTINCT_TO_SEMI_JOIN_PROJECT = "append_distinct_to_semi_join_project";
 
+    /**
+     * Push a dynamic filter built from the join keys of the right input into the left leaf stage of an INNER join, so
+     * that the left rows (and segments) without a matching key are pruned before being sent to the join.
+     */
+    public static final String DYNAMIC_FILTER = "dynamic_filter";
+
     @Nullable
     public static Map<String, String> getJoinHintOptions(Join join) {
       return PinotHintStrategyTable.getHintOptions(join.getHints(), JOIN_HINT_OPTIONS);
@@ -128,6 +142,10 @@ public class PinotHintOptions {
       return LOOKUP_JOIN_STRATEGY.equalsIgnoreCase(getJoinStrategyHint(join));
     }
 
+    public static boolean useSortMergeJoinStrategy(Join join) {
+      return SORT_MERGE_JOIN_STRATEGY.equalsIgnoreCase(getJoinStrategyHint(join));
+    }
+
     @Nullable
     public static DistributionType getLeftDistributionType(Map<String, String> joinHintOptions) {
       return DistributionType.fromHint(joinHintOptions.get(LEFT_DISTRIBUTION_TYPE));
@@ -338,7 +338,7 @@ public class PinotEnrichedJoinRule {
   }
 
   /**
-   * Temporarily disable conversion of lookup join and non-equijoin to EnrichedJoin
+   * Temporarily disable conversion of lookup join, sort merge join and non-equijoin to EnrichedJoin
    */
   private static boolean canConvertJoin(LogicalJoin join) {
     // Disable lookup join for now
@@ -346,6 +346,11 @@ public class PinotEnrichedJoinRule {
       return false;
     }
 
+    // Disable sort merge join for now
+    if (PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join)) {
+      return false;
+    }
+
     // Disable non-equijoin for now
     if (join.analyzeCondition().leftKeys.isEmpty()) {
       return false;
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.calcite.rel.rules;
+
+import com.google.common.collect.ImmutableList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.hint.PinotHintStrategyTable;
+
+
+/**
+ * Special rule for Pinot, this rule adds a runtime dynamic filter to an INNER JOIN hinted with
+ * {@link PinotHintOptions.JoinHintOptions#DYNAMIC_FILTER}.
+ *
+ * <p>The left input of the join is reduced with a redundant SEMI JOIN on the first pair of join keys, where the right
+ * input of the SEMI JOIN only projects the right join key:
+ *
+ *             [ Inner Join ]                               [ Inner Join ]
+ *             /            \                               /            \
+ *     [Proj/Filter]     [ ... ]          ==>        [ Semi Join ]      [ ... ]
+ *          |                                        /           \
+ *     [Table Scan ]                         [Proj/Filter]   [ Project (key) ]
+ *                                                 |                |
+ *                                           [Table Scan ]       [ ... ]
+ *
+ * <p>The SEMI JOIN is then converted into a dynamic broadcast join by {@link PinotJoinToDynamicBroadcastRule}: the
+ * right join keys are computed first and attached to the left leaf stage as an IN filter, which prunes the left rows
+ * (and the segments through the segment pruners) before they are sent to the INNER JOIN. The rewrite is exact because
+ * every left row joined by the INNER JOIN has a matching key on the right side.
+ *
+ * <p>The right input is computed twice, so this rule should only be used when the right input is cheap to compute and
+ * selective, e.g. a filtered dimension table joined with a fact table.
+ */
+public class PinotJoinDynamicFilterRule extends RelOptRule {
+  public static final PinotJoinDynamicFilterRule INSTANCE =
+      new PinotJoinDynamicFilterRule(PinotRuleUtils.PINOT_REL_FACTORY);
+
+  public PinotJoinDynamicFilterRule(RelBuilderFactory factory) {
+    super(operand(Join.class, any()), factory, null);
+  }
+
+  @Override
+  public boolean matches(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    if (join.getJoinType() != JoinRelType.INNER || !PinotHintStrategyTable.isHintOptionTrue(join.getHints(),
+        PinotHintOptions.JOIN_HINT_OPTIONS, PinotHintOptions.JoinHintOptions.DYNAMIC_FILTER)) {
+      return false;
+    }
+    if (PinotHintOptions.JoinHintOptions.useLookupJoinStrategy(join)) {
+      return false;
+    }
+    JoinInfo joinInfo = join.analyzeCondition();
+    return !joinInfo.leftKeys.isEmpty() && isLeafInput(join.getLeft());
+  }
+
+  /**
+   * Returns whether the given input can be fully executed in a leaf stage, so that the dynamic filter can be attached
+   * to the leaf query.
+   */
+  private static boolean isLeafInput(RelNode relNode) {
+    relNode = PinotRuleUtils.unboxRel(relNode);
+    if (relNode instanceof TableScan) {
+      return true;
+    } else if (relNode instanceof Project || relNode instanceof Filter) {
+      return isLeafInput(relNode.getInput(0));
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    JoinInfo joinInfo = join.analyzeCondition();
+    int leftKey = joinInfo.leftKeys.get(0);
+    int rightKey = joinInfo.rightKeys.get(0);
+
+    RelBuilder relBuilder = call.builder();
+    relBuilder.push(join.getLeft());
+    relBuilder.push(join.getRight());
+    relBuilder.project(relBuilder.field(rightKey));
+    relBuilder.semiJoin(relBuilder.equals(relBuilder.field(2, 0, leftKey), relBuilder.field(2, 1, 0)));
+    relBuilder.hints(getSemiJoinHint(join));
+    RelNode semiJoin = relBuilder.build();
+
+    Join newJoin =
+        join.copy(join.getTraitSet(), join.getCondition(), semiJoin, join.getRight(), join.getJoinType(),
+            join.isSemiJoinDone());
+    call.transformTo(newJoin.withHints(removeDynamicFilterHint(join.getHints())));
+  }
+
+  /**
+   * The SEMI JOIN always uses the dynamic broadcast join strategy, and follows the colocation of the INNER JOIN.
+   */
+  private static RelHint getSemiJoinHint(Join join) {
+    Map<String, String> options = new HashMap<>();
+    options.put(PinotHintOptions.JoinHintOptions.JOIN_STRATEGY,
+        PinotHintOptions.JoinHintOptions.DYNAMIC_BROADCAST_JOIN_STRATEGY);
+    if (Boolean.TRUE.equals(PinotHintOptions.JoinHintOptions.isColocatedByJoinKeys(join))) {
+      options.put(PinotHintOptions.JoinHintOptions.IS_COLOCATED_BY_JOIN_KEYS, "true");
+    }
+    return RelHint.builder(PinotHintOptions.JOIN_HINT_OPTIONS).hintOptions(options).build();
+  }
+
+  /**
+   * Removes the dynamic filter hint option so that the rule is not applied again on the rewritten join.
+   */
+  private static List<RelHint> removeDynamicFilterHint(List<RelHint> hints) {
+    ImmutableList.Builder<RelHint> newHints = ImmutableList.builder();
+    for (RelHint hint : hints) {
+      if (hint.hintName.equals(PinotHintOptions.JOIN_HINT_OPTIONS)
+          && hint.kvOptions.containsKey(PinotHintOptions.JoinHintOptions.DYNAMIC_FILTER)) {
+        Map<String, String> options = new HashMap<>(hint.kvOptions);
+        options.remove(PinotHintOptions.JoinHintOptions.DYNAMIC_FILTER);
+        newHints.add(RelHint.builder(hint.hintName).inheritPath(hint.inheritPath).hintOptions(options).build());
+      } else {
+        newHints.add(hint);
+      }
+    }
+    return newHints.build();
+  }
+}
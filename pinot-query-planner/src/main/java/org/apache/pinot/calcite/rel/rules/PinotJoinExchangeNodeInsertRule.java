@@ -28,21 +28,37 @@ import org.apache.calcite.rel.RelDistributions;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.logical.LogicalAsofJoin;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.tools.RelBuilderFactory;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.calcite.rel.logical.PinotLogicalExchange;
+import org.apache.pinot.query.catalog.PinotTable;
 
 
 /**
  * Special rule for Pinot, this rule is fixed to always insert exchange after JOIN node.
+ *
+ * <p>When a positive broadcast row count threshold is configured, an INNER or LEFT join without distribution hints
+ * broadcasts its right input (and randomly distributes its left input) if the estimated row count of the right input is
+ * backed by table statistics and does not exceed the threshold. Otherwise, both inputs are hash distributed on the join
+ * keys.
  */
 public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
   public static final PinotJoinExchangeNodeInsertRule INSTANCE =
       new PinotJoinExchangeNodeInsertRule(PinotRuleUtils.PINOT_REL_FACTORY);
 
+  private final long _broadcastRowCountThreshold;
+
   public PinotJoinExchangeNodeInsertRule(RelBuilderFactory factory) {
+    this(factory, -1L);
+  }
+
+  public PinotJoinExchangeNodeInsertRule(RelBuilderFactory factory, long broadcastRowCountThreshold) {
     super(operand(Join.class, any()), factory, null);
+    _broadcastRowCountThreshold = broadcastRowCountThreshold;
   }
 
   @Override
@@ -83,6 +99,11 @@ public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
       // Force pre-partitioned exchange when colocated join hint is provided
       Boolean prePartitioned = PinotHintOptions.JoinHintOptions.isColocatedByJoinKeys(join);
       // TODO: Validate if the configured distribution types are valid
+      if (leftDistributionType == null && rightDistributionType == null && prePartitioned == null
+          && shouldBroadcastRight(join, joinInfo, right, call.getMetadataQuery())) {
+        leftDistributionType = PinotHintOptions.DistributionType.RANDOM;
+        rightDistributionType = PinotHintOptions.DistributionType.BROADCAST;
+      }
       if (leftDistributionType == null) {
         // By default, hash distribute the left side if there are join keys, otherwise randomly distribute
         leftDistributionType = !joinInfo.leftKeys.isEmpty() ? PinotHintOptions.DistributionType.HASH
@@ -108,6 +129,43 @@ public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
     }
   }
 
+  /**
+   * Returns whether the right input is small enough to be broadcast based on its estimated row count. Only applies to
+   * INNER and LEFT joins because broadcasting the right input would duplicate the unmatched right rows otherwise.
+   */
+  private boolean shouldBroadcastRight(Join join, JoinInfo joinInfo, RelNode right, RelMetadataQuery mq) {
+    if (_broadcastRowCountThreshold <= 0 || joinInfo.leftKeys.isEmpty()) {
+      return false;
+    }
+    JoinRelType joinType = join.getJoinType();
+    if ((joinType != JoinRelType.INNER && joinType != JoinRelType.LEFT) || join instanceof LogicalAsofJoin) {
+      return false;
+    }
+    if (!hasTableRowCount(right)) {
+      return false;
+    }
+    Double rowCount = mq.getRowCount(right);
+    return rowCount != null && rowCount <= _broadcastRowCountThreshold;
+  }
+
+  /**
+   * Returns whether all the tables scanned by the given node have a known row count. Otherwise, the estimated row count
+   * is based on the Calcite default estimate, which cannot be used to pick the join distribution.
+   */
+  private static boolean hasTableRowCount(RelNode node) {
+    node = PinotRuleUtils.unboxRel(node);
+    if (node instanceof TableScan) {
+      PinotTable table = node.getTable().unwrap(PinotTable.class);
+      return table != null && table.hasRowCount();
+    }
+    for (RelNode input : node.getInputs()) {
+      if (!hasTableRowCount(input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static PinotLogicalExchange createExchangeForLookupJoin(PinotHintOptions.DistributionType distributionType,
       List<Integer> keys, RelNode child) {
     switch (distributionType) {
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.calcite.rel.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.logical.LogicalAsofJoin;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalExchange;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalSortExchange;
+import org.apache.pinot.calcite.rel.logical.PinotRelExchangeType;
+
+
+/**
+ * Special rule for Pinot, this rule applies to the JOINs hinted with {@code joinOptions(join_strategy='sort_merge')},
+ * and replaces the exchanges below the JOIN with sort exchanges on the join keys so that both inputs are received
+ * sorted on the join keys:
+ *
+ *            [ Join ]                                          [ Join ]
+ *           /        \                                        /        \
+ *   [ Exchange ]  [ Exchange ]      ==>     [ SortExchange(keys) ]  [ SortExchange(keys) ]
+ *        |             |                             |                        |
+ *     [ ... ]       [ ... ]                       [ ... ]                  [ ... ]
+ *
+ * <p>The sort merge join strategy is opt-in only. When the collation of an input already satisfies the join keys (e.g.
+ * input sorted by an ORDER BY on the join keys), its exchange is marked as sorted on the sender.
+ *
+ * <p>Both inputs are always sorted on the receiver: the sorted mailbox receive collects all the blocks of its input
+ * before emitting the first row, and marking the exchange as sorted on the sender only saves sorting the blocks that
+ * are already sorted runs. The memory cost is therefore not constant: each receiver holds up to {@code maxRowsInSort}
+ * rows of each input in memory and spills the rest to disk as sorted runs (all the rows when the option is not set).
+ * What the sort merge join saves compared to the hash join is the hash table on the right input.
+ *
+ * <p>The rule must be applied after {@link PinotJoinExchangeNodeInsertRule}. Exchanges that are pre-partitioned or
+ * local are not converted because sort exchanges don't carry this information, and the join falls back to the hash
+ * join strategy.
+ */
+public class PinotJoinSortExchangeRule extends RelOptRule {
+  public static final PinotJoinSortExchangeRule INSTANCE =
+      new PinotJoinSortExchangeRule(PinotRuleUtils.PINOT_REL_FACTORY);
+
+  public PinotJoinSortExchangeRule(RelBuilderFactory factory) {
+    super(operand(Join.class, any()), factory, null);
+  }
+
+  @Override
+  public boolean matches(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    if (join instanceof LogicalAsofJoin || !PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join)) {
+      return false;
+    }
+    JoinInfo joinInfo = join.analyzeCondition();
+    if (joinInfo.leftKeys.isEmpty()) {
+      return false;
+    }
+    RelNode left = PinotRuleUtils.unboxRel(join.getLeft());
+    RelNode right = PinotRuleUtils.unboxRel(join.getRight());
+    return canSortExchange(left) && canSortExchange(right);
+  }
+
+  private static boolean canSortExchange(RelNode relNode) {
+    if (!(relNode instanceof PinotLogicalExchange)) {
+      return false;
+    }
+    PinotLogicalExchange exchange = (PinotLogicalExchange) relNode;
+    return exchange.getExchangeType() == PinotRelExchangeType.STREAMING
+        && exchange.getDistribution().getType() != RelDistribution.Type.SINGLETON
+        && !Boolean.TRUE.equals(exchange.getPrePartitioned());
+  }
+
+  /**
+   * Returns whether the given input is already sorted on the given keys, in the order used by the sort merge join.
+   */
+  private static boolean isSorted(RelMetadataQuery mq, RelNode input, List<Integer> keys) {
+    List<RelCollation> collations = mq.collations(input);
+    if (collations == null) {
+      return false;
+    }
+    RelCollation joinKeyCollation = getJoinKeyCollation(keys);
+    for (RelCollation collation : collations) {
+      if (collation.satisfies(joinKeyCollation)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the collation on the given join keys used by the sort merge join, which is ascending with nulls last for
+   * each key.
+   */
+  public static RelCollation getJoinKeyCollation(List<Integer> keys) {
+    List<RelFieldCollation> fieldCollations = new ArrayList<>(keys.size());
+    for (int key : keys) {
+      fieldCollations.add(
+          new RelFieldCollation(key, RelFieldCollation.Direction.ASCENDING, RelFieldCollation.NullDirection.LAST));
+    }
+    return RelCollations.of(fieldCollations);
+  }
+
+  /**
+   * Returns whether both inputs of the given JOIN are sort exchanges on its join keys, i.e. whether the sort merge
+   * join strategy can be used for it.
+   */
+  public static boolean hasSortedInputs(Join join) {
+    JoinInfo joinInfo = join.analyzeCondition();
+    return !joinInfo.leftKeys.isEmpty() && isSortExchange(join.getLeft(), joinInfo.leftKeys) && isSortExchange(
+        join.getRight(), joinInfo.rightKeys);
+  }
+
+  private static boolean isSortExchange(RelNode relNode, List<Integer> keys) {
+    relNode = PinotRuleUtils.unboxRel(relNode);
+    return relNode instanceof PinotLogicalSortExchange && ((PinotLogicalSortExchange) relNode).getCollation()
+        .satisfies(getJoinKeyCollation(keys));
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    JoinInfo joinInfo = join.analyzeCondition();
+    RelMetadataQuery mq = call.getMetadataQuery();
+    RelNode newLeft = createSortExchange(mq, (PinotLogicalExchange) PinotRuleUtils.unboxRel(join.getLeft()),
+        joinInfo.leftKeys);
+    RelNode newRight = createSortExchange(mq, (PinotLogicalExchange) PinotRuleUtils.unboxRel(join.getRight()),
+        joinInfo.rightKeys);
+    call.transformTo(join.copy(join.getTraitSet(), join.getCondition(), newLeft, newRight, join.getJoinType(),
+        join.isSemiJoinDone()));
+  }
+
+  private static PinotLogicalSortExchange createSortExchange(RelMetadataQuery mq, PinotLogicalExchange exchange,
+      List<Integer> keys) {
+    RelNode input = exchange.getInput();
+    // The receiver still collects and sorts the whole input. When the input is already sorted, the received blocks
+    // are sorted runs that the receiver can merge without sorting them first.
+    boolean sortedOnSender = isSorted(mq, input, keys);
+    return PinotLogicalSortExchange.create(input, exchange.getDistribution(), exchange.getExchangeType(),
+        getJoinKeyCollation(keys), sortedOnSender, true);
+  }
+}
@@ -20,6 +20,9 @@ package org.apache.pinot.calcite.rel.rules;
 
 import java.util.List;
 import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.logical.LogicalJoin;
 import org.apache.calcite.rel.rules.AggregateCaseToFilterRule;
 import org.apache.calcite.rel.rules.AggregateJoinTransposeRule;
 import org.apache.calcite.rel.rules.AggregateProjectMergeRule;
@@ -31,6 +34,7 @@ import org.apache.calcite.rel.rules.FilterMergeRule;
 import org.apache.calcite.rel.rules.FilterProjectTransposeRule;
 import org.apache.calcite.rel.rules.FilterSetOpTransposeRule;
 import org.apache.calcite.rel.rules.JoinPushExpressionsRule;
+import org.apache.calcite.rel.rules.JoinToMultiJoinRule;
 import org.apache.calcite.rel.rules.ProjectFilterTransposeRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
@@ -218,6 +222,22 @@ public class PinotQueryRuleSets {
           .withDescription(PlannerRuleNames.PRUNE_EMPTY_UNION).toRule()
   );
 
+  // Join reordering rules, disabled by default. They run bottom-up using a single HepInstruction to merge the INNER
+  // joins without hints into a MultiJoin, which is then reordered by MULTI_JOIN_OPTIMIZE based on the estimated row
+  // counts.
+  public static final List<RelOptRule> JOIN_TO_MULTI_JOIN_RULES = List.of(
+      CoreRules.MULTI_JOIN_BOTH_PROJECT,
+      CoreRules.MULTI_JOIN_LEFT_PROJECT,
+      CoreRules.MULTI_JOIN_RIGHT_PROJECT,
+      JoinToMultiJoinRule.Config.DEFAULT
+          .withOperandSupplier(b0 -> b0.operand(LogicalJoin.class)
+              .predicate(join -> join.getJoinType() == JoinRelType.INNER && join.getHints().isEmpty())
+              .inputs(b1 -> b1.operand(RelNode.class).anyInputs(), b2 -> b2.operand(RelNode.class).anyInputs()))
+          .as(JoinToMultiJoinRule.Config.class).toRule(),
+      CoreRules.PROJECT_MULTI_JOIN_MERGE,
+      CoreRules.FILTER_MULTI_JOIN_MERGE
+  );
+
   public static final List<RelOptRule> PINOT_POST_RULES_V2 = List.of(
       PinotTableScanConverterRule.INSTANCE,
       PinotLogicalAggregateRule.SortProjectAggregate.INSTANCE,
@@ -230,7 +250,7 @@ public class PinotQueryRuleSets {
   //@formatter:on
 
   /// Pinot specific rules that should be run AFTER all other rules
-  public static List<RelOptRule> getPinotPostRules(int sortExchangeCopyLimit) {
+  public static List<RelOptRule> getPinotPostRules(int sortExchangeCopyLimit, long broadcastJoinRowCountThreshold) {
 
     // copy exchanges down, this must be done after SortExchangeNodeInsertRule
     PinotSortExchangeCopyRule sortExchangeCopyRule;
@@ -243,6 +263,15 @@ public class PinotQueryRuleSets {
     } else {
       sortExchangeCopyRule = PinotSortExchangeCopyRule.SORT_EXCHANGE_COPY;
     }
+
+    // pick the join distribution based on the estimated row count of the join inputs when the threshold is configured
+    PinotJoinExchangeNodeInsertRule joinExchangeNodeInsertRule;
+    if (broadcastJoinRowCountThreshold > 0) {
+      joinExchangeNodeInsertRule =
+          new PinotJoinExchangeNodeInsertRule(PinotRuleUtils.PINOT_REL_FACTORY, broadcastJoinRowCountThreshold);
+    } else {
+      joinExchangeNodeInsertRule = PinotJoinExchangeNodeInsertRule.INSTANCE;
+    }
     return List.of(
         // TODO: Merge the following 2 rules into a single rule
         // add an extra exchange for sort
@@ -250,7 +279,11 @@ public class PinotQueryRuleSets {
         sortExchangeCopyRule,
 
         PinotSingleValueAggregateRemoveRule.INSTANCE,
-        PinotJoinExchangeNodeInsertRule.INSTANCE,
+        // add a dynamic filter SEMI JOIN to the left input of the hinted joins before exchange is inserted
+        PinotJoinDynamicFilterRule.INSTANCE,
+        joinExchangeNodeInsertRule,
+        // sort the join inputs on the join keys for sort merge join
+        PinotJoinSortExchangeRule.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.SortProjectAggregate.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.SortAggregate.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.WithoutSort.INSTANCE,
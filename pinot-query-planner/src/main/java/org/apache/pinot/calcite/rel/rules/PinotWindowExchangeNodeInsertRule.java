@@ -28,7 +28,10 @@ import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Exchange;
 import org.apache.calcite.rel.core.Project;
@@ -126,13 +129,15 @@ public class PinotWindowExchangeNodeInsertRule extends RelOptRule {
         exchange = PinotLogicalExchange.create(input, RelDistributions.hash(windowGroup.keys.toList()));
       } else {
         // PARTITION BY and ORDER BY on different key(s)
-        // Add a LogicalSortExchange hashed on the partition by keys and collation based on order by keys
+        // Add a LogicalSortExchange hashed on the partition by keys and collation based on the partition by keys
+        // followed by the order by keys, so that the rows of each partition are contiguous and the window operator can
+        // process one partition at a time
         // TODO: ORDER BY only type queries need to be sorted only on the receiver side unless a hint is set indicating
         //       that the data is already partitioned and sorting can be done on the sender side instead. This way
         //       sorting on the receiver side can be a no-op. Add support for this hint and pass it on. Until sender
         //       side sorting is implemented, setting this hint will throw an error on execution.
         exchange = PinotLogicalSortExchange.create(input, RelDistributions.hash(windowGroup.keys.toList()),
-            windowGroup.orderKeys, false, true);
+            getPartitionedCollation(windowGroup), false, true);
       }
     }
     // NOTE: Need to create a new LogicalWindow to use the modified window group.
@@ -140,6 +145,23 @@ public class PinotWindowExchangeNodeInsertRule extends RelOptRule {
         List.of(windowGroup)));
   }
 
+  /**
+   * Returns the collation on the partition by keys followed by the order by keys not already in the partition by keys.
+   */
+  private static RelCollation getPartitionedCollation(Window.Group windowGroup) {
+    List<Integer> partitionKeys = windowGroup.keys.asList();
+    List<RelFieldCollation> fieldCollations = new ArrayList<>();
+    for (int partitionKey : partitionKeys) {
+      fieldCollations.add(new RelFieldCollation(partitionKey));
+    }
+    for (RelFieldCollation orderKey : windowGroup.orderKeys.getFieldCollations()) {
+      if (!partitionKeys.contains(orderKey.getFieldIndex())) {
+        fieldCollations.add(orderKey);
+      }
+    }
+    return RelCollations.of(fieldCollations);
+  }
+
   private boolean isPartitionByOnlyQuery(Window.Group windowGroup) {
     boolean isPartitionByOnly = false;
     if (windowGroup.orderKeys.getKeys().isEmpty()) {
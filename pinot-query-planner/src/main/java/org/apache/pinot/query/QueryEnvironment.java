@@ -43,6 +43,7 @@ import org.apache.calcite.plan.hep.HepProgramBuilder;
 import org.apache.calcite.prepare.CalciteCatalogReader;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.CalciteContextException;
 import org.apache.calcite.sql.SqlExplain;
@@ -59,6 +60,7 @@ import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.calcite.rel.rules.PinotEnrichedJoinRule;
 import org.apache.pinot.calcite.rel.rules.PinotImplicitTableHintRule;
+import org.apache.pinot.calcite.rel.rules.PinotJoinDynamicFilterRule;
 import org.apache.pinot.calcite.rel.rules.PinotJoinToDynamicBroadcastRule;
 import org.apache.pinot.calcite.rel.rules.PinotQueryRuleSets;
 import org.apache.pinot.calcite.rel.rules.PinotRelDistributionTraitRule;
@@ -156,7 +158,9 @@ public class QueryEnvironment {
   public QueryEnvironment(Config config, MultiClusterRoutingContext multiClusterRoutingContext) {
     _envConfig = config;
     String database = config.getDatabase();
-    _catalog = new PinotCatalog(config.getTableCache(), database);
+    WorkerManager workerManager = config.getWorkerManager();
+    _catalog = new PinotCatalog(config.getTableCache(), database,
+        workerManager != null ? workerManager.getRoutingManager() : null);
     CalciteSchema rootSchema = CalciteSchema.createRootSchema(false, false, database, _catalog);
     _config = Frameworks.newConfigBuilder()
         .traitDefs()
@@ -213,8 +217,10 @@ public class QueryEnvironment {
         _envConfig.defaultSortExchangeCopyLimit());
     boolean usePhysicalOptimizer = QueryOptionsUtils.isUsePhysicalOptimizer(options,
         _envConfig.defaultUsePhysicalOptimizer());
-    HepProgram traitProgram = getTraitProgram(
-        workerManager, _envConfig, usePhysicalOptimizer, useRuleSet, sortExchangeCopyLimit);
+    long broadcastJoinRowCountThreshold = QueryOptionsUtils.getBroadcastJoinRowCountThreshold(options,
+        _envConfig.defaultBroadcastJoinRowCountThreshold());
+    HepProgram traitProgram = getTraitProgram(workerManager, _envConfig, usePhysicalOptimizer, useRuleSet,
+        sortExchangeCopyLimit, broadcastJoinRowCountThreshold);
     SqlExplainFormat format = SqlExplainFormat.DOT;
     if (sqlNodeAndOptions.getSqlNode().getKind().equals(SqlKind.EXPLAIN)) {
       SqlExplain explain = (SqlExplain) sqlNodeAndOptions.getSqlNode();
@@ -530,6 +536,8 @@ public class QueryEnvironment {
    * - In the first phase, it prunes the applies BASIC_RULES that are almost always helpful to simplify logical plan
    * - In the second phase, it performs predicate pushdown -> projection pushdown -> predicate pushdown.
    * - In the third phase, the logical plan is prune with PRUNE_RULES.
+   * - In the optional fourth phase, the INNER joins are reordered based on the estimated row counts, then the projects
+   *   are pushed down and the logical plan is pruned again.
    *
    * @param skipRuleSet parsed skipped rule name set from query options
    * @param useRuleSet parsed use rule set from query options
@@ -576,6 +584,19 @@ public class QueryEnvironment {
     // TODO: We can consider using HepMatchOrder.TOP_DOWN if we find cases where it would help.
     hepProgramBuilder.addRuleCollection(pruneRules);
 
+    // ----
+    // Reorder joins, disabled by default.
+    if (!isRuleSkipped(CommonConstants.Broker.PlannerRuleNames.JOIN_REORDER, skipRuleSet, useRuleSet,
+        defaultDisabledRuleSet)) {
+      // Merge the joins into MultiJoin bottom-up so that the whole join tree is merged into a single MultiJoin.
+      hepProgramBuilder.addMatchOrder(HepMatchOrder.BOTTOM_UP);
+      hepProgramBuilder.addRuleCollection(PinotQueryRuleSets.JOIN_TO_MULTI_JOIN_RULES);
+      hepProgramBuilder.addMatchOrder(HepMatchOrder.DEPTH_FIRST);
+      hepProgramBuilder.addRuleInstance(CoreRules.MULTI_JOIN_OPTIMIZE);
+      hepProgramBuilder.addRuleCollection(projectPushdownRules);
+      hepProgramBuilder.addRuleCollection(pruneRules);
+    }
+
     return hepProgramBuilder.build();
   }
 
@@ -626,7 +647,8 @@ public class QueryEnvironment {
   }
 
   private static HepProgram getTraitProgram(@Nullable WorkerManager workerManager, Config config,
-      boolean usePhysicalOptimizer, Set<String> useRuleSet, int sortExchangeCopyLimit) {
+      boolean usePhysicalOptimizer, Set<String> useRuleSet, int sortExchangeCopyLimit,
+      long broadcastJoinRowCountThreshold) {
     HepProgramBuilder hepProgramBuilder = new HepProgramBuilder();
 
     // Set the match order as BOTTOM_UP.
@@ -635,7 +657,8 @@ public class QueryEnvironment {
     // ----
     // Run pinot specific rules that should run after all other rules, using 1 HepInstruction per rule.
     if (!usePhysicalOptimizer) {
-      for (RelOptRule relOptRule : PinotQueryRuleSets.getPinotPostRules(sortExchangeCopyLimit)) {
+      for (RelOptRule relOptRule : PinotQueryRuleSets.getPinotPostRules(sortExchangeCopyLimit,
+          broadcastJoinRowCountThreshold)) {
         if (isEligibleQueryPostRule(relOptRule, config)) {
           hepProgramBuilder.addRuleInstance(relOptRule);
         }
@@ -664,7 +687,8 @@ public class QueryEnvironment {
 
   // This method is used to filter out post rules that are not eligible to run based on the config.
   private static boolean isEligibleQueryPostRule(RelOptRule relOptRule, Config config) {
-    if (relOptRule instanceof PinotJoinToDynamicBroadcastRule && !config.defaultEnableDynamicFilteringSemiJoin()) {
+    if ((relOptRule instanceof PinotJoinToDynamicBroadcastRule || relOptRule instanceof PinotJoinDynamicFilterRule)
+        && !config.defaultEnableDynamicFilteringSemiJoin()) {
       return false;
     }
     return true;
@@ -862,6 +886,12 @@ public class QueryEnvironment {
     default int defaultSortExchangeCopyLimit() {
       return PinotSortExchangeCopyRule.SORT_EXCHANGE_COPY.config.getFetchLimitThreshold();
     }
+
+    /// See [CommonConstants.Broker#CONFIG_OF_BROADCAST_JOIN_ROW_COUNT_THRESHOLD]
+    @Value.Default
+    default long defaultBroadcastJoinRowCountThreshold() {
+      return CommonConstants.Broker.DEFAULT_BROADCAST_JOIN_ROW_COUNT_THRESHOLD;
+    }
   }
 
   /// A query that have been parsed, validates, transformed into a [RelNode] and optimized with Calcite.
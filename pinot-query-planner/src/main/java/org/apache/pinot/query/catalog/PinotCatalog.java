@@ -33,6 +33,7 @@ import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.pinot.common.config.provider.TableCache;
 import org.apache.pinot.common.utils.DatabaseUtils;
+import org.apache.pinot.core.routing.RoutingManager;
 import org.apache.pinot.spi.utils.builder.TableNameBuilder;
 
 import static java.util.Objects.requireNonNull;
@@ -48,6 +49,8 @@ public class PinotCatalog implements Schema {
 
   private final TableCache _tableCache;
   private final String _databaseName;
+  @Nullable
+  private final RoutingManager _routingManager;
   private boolean _excludeVirtualColumns = false;
 
   /**
@@ -55,8 +58,17 @@ public class PinotCatalog implements Schema {
    * table available for query and processes table/segment metadata updates when cluster status changes.
    */
   public PinotCatalog(TableCache tableCache, String databaseName) {
+    this(tableCache, databaseName, null);
+  }
+
+  /**
+   * When the {@link RoutingManager} is provided, the tables are created with the row count estimated from the total
+   * docs tracked by the routing manager, which enables the cost-based optimizations in the planner.
+   */
+  public PinotCatalog(TableCache tableCache, String databaseName, @Nullable RoutingManager routingManager) {
     _tableCache = tableCache;
     _databaseName = databaseName;
+    _routingManager = routingManager;
   }
 
   /**
@@ -79,9 +91,11 @@ public class PinotCatalog implements Schema {
     String rawTableName = TableNameBuilder.extractRawTableName(name);
     String physicalTableName = DatabaseUtils.translateTableName(rawTableName, _databaseName);
     String tableName = _tableCache.getActualTableName(physicalTableName);
+    boolean isLogicalTable = false;
 
     if (tableName == null) {
       tableName = _tableCache.getActualLogicalTableName(physicalTableName);
+      isLogicalTable = true;
     }
 
     if (tableName == null) {
@@ -92,7 +106,47 @@ public class PinotCatalog implements Schema {
       return null;
     }
 
-    return new PinotTable(schema, _excludeVirtualColumns);
+    Double rowCount = isLogicalTable ? null : getRowCount(tableName);
+    return new PinotTable(schema, _excludeVirtualColumns, rowCount);
+  }
+
+  /**
+   * Returns the total docs of the online segments of the given physical table (summing up the OFFLINE and REALTIME
+   * tables for a hybrid table), or {@code null} if it is not tracked by the routing manager for any of the existing
+   * table types. Consuming segments are not counted, so this is a lower bound of the rows of a REALTIME table.
+   */
+  @Nullable
+  private Double getRowCount(String tableName) {
+    if (_routingManager == null) {
+      return null;
+    }
+    if (TableNameBuilder.isTableResource(tableName)) {
+      Long totalDocs = _routingManager.getTableTotalDocs(tableName);
+      return totalDocs != null ? totalDocs.doubleValue() : null;
+    }
+    String offlineTableName = TableNameBuilder.OFFLINE.tableNameWithType(tableName);
+    String realtimeTableName = TableNameBuilder.REALTIME.tableNameWithType(tableName);
+    boolean hasOfflineTable = _tableCache.getTableConfig(offlineTableName) != null;
+    boolean hasRealtimeTable = _tableCache.getTableConfig(realtimeTableName) != null;
+    if (!hasOfflineTable && !hasRealtimeTable) {
+      return null;
+    }
+    long totalDocs = 0;
+    if (hasOfflineTable) {
+      Long offlineTotalDocs = _routingManager.getTableTotalDocs(offlineTableName);
+      if (offlineTotalDocs == null) {
+        return null;
+      }
+      totalDocs += offlineTotalDocs;
+    }
+    if (hasRealtimeTable) {
+      Long realtimeTotalDocs = _routingManager.getTableTotalDocs(realtimeTableName);
+      if (realtimeTotalDocs == null) {
+        return null;
+      }
+      totalDocs += realtimeTotalDocs;
+    }
+    return (double) totalDocs;
   }
 
   /**
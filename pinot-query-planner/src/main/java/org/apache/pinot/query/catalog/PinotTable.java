@@ -18,11 +18,15 @@
  */
 package org.apache.pinot.query.catalog;
 
+import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.pinot.query.type.TypeFactory;
 import org.apache.pinot.query.validate.Validator;
@@ -38,6 +42,8 @@ import org.apache.pinot.spi.data.Schema;
 public class PinotTable extends AbstractTable implements ScannableTable {
   private Schema _schema;
   private boolean _excludeVirtualColumns = false;
+  @Nullable
+  private final Double _rowCount;
 
   public PinotTable(Schema schema) {
     this(schema, false);
@@ -49,8 +55,30 @@ public class PinotTable extends AbstractTable implements ScannableTable {
    * should not participate in join condition matching.
    */
   public PinotTable(Schema schema, boolean excludeVirtualColumns) {
+    this(schema, excludeVirtualColumns, null);
+  }
+
+  /**
+   * Constructor with the estimated row count of the table, which is surfaced to Calcite through
+   * {@link #getStatistic()} and used for cost-based join ordering and join distribution selection.
+   */
+  public PinotTable(Schema schema, boolean excludeVirtualColumns, @Nullable Double rowCount) {
     _schema = schema;
     _excludeVirtualColumns = excludeVirtualColumns;
+    _rowCount = rowCount;
+  }
+
+  /**
+   * Returns whether the row count of the table is known, i.e. whether the statistic is backed by the actual table
+   * metadata instead of the Calcite default estimate.
+   */
+  public boolean hasRowCount() {
+    return _rowCount != null;
+  }
+
+  @Override
+  public Statistic getStatistic() {
+    return _rowCount != null ? Statistics.of(_rowCount, List.of()) : Statistics.UNKNOWN;
   }
 
   @Override
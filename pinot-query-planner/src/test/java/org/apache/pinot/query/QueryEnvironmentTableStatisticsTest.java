@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.core.routing.MockRoutingManagerFactory;
+import org.apache.pinot.core.routing.RoutingManager;
+import org.apache.pinot.query.routing.WorkerManager;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.utils.CommonConstants;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Tests the cost-based optimizations that rely on the table statistics provided by the {@link RoutingManager}.
+ */
+public class QueryEnvironmentTableStatisticsTest {
+  private static final long BROADCAST_JOIN_ROW_COUNT_THRESHOLD = 10_000L;
+
+  private QueryEnvironment _queryEnvironment;
+
+  @BeforeClass
+  public void setUp() {
+    MockRoutingManagerFactory factory = new MockRoutingManagerFactory(1, 2);
+    for (Map.Entry<String, Schema> entry : QueryEnvironmentTestBase.TABLE_SCHEMAS.entrySet()) {
+      factory.registerTable(entry.getValue(), entry.getKey());
+    }
+    for (Map.Entry<String, List<String>> entry : QueryEnvironmentTestBase.SERVER1_SEGMENTS.entrySet()) {
+      for (String segment : entry.getValue()) {
+        factory.registerSegment(1, entry.getKey(), segment);
+      }
+    }
+    for (Map.Entry<String, List<String>> entry : QueryEnvironmentTestBase.SERVER2_SEGMENTS.entrySet()) {
+      for (String segment : entry.getValue()) {
+        factory.registerSegment(2, entry.getKey(), segment);
+      }
+    }
+    // Table b does not have statistics
+    factory.registerTableTotalDocs("a_REALTIME", 10_000_000L);
+    factory.registerTableTotalDocs("c_OFFLINE", 1_000L);
+    factory.registerTableTotalDocs("d_OFFLINE", 1_000_000L);
+    factory.registerTableTotalDocs("d_REALTIME", 100_000L);
+    RoutingManager routingManager = factory.buildRoutingManager(null);
+    TableCache tableCache = factory.buildTableCache();
+    _queryEnvironment = new QueryEnvironment(QueryEnvironment.configBuilder()
+        .requestId(-1L)
+        .database(CommonConstants.DEFAULT_DATABASE)
+        .tableCache(tableCache)
+        .workerManager(new WorkerManager("Broker_localhost", "localhost", 3, routingManager))
+        .defaultBroadcastJoinRowCountThreshold(BROADCAST_JOIN_ROW_COUNT_THRESHOLD)
+        .build());
+  }
+
+  @Test
+  public void testBroadcastSmallRightInput() {
+    String explain = explain("SELECT a.col1, c.col2 FROM a JOIN c ON a.col1 = c.col1");
+    assertTrue(explain.contains("distribution=[broadcast]"), explain);
+    assertTrue(explain.contains("distribution=[random]"), explain);
+    assertFalse(explain.contains("distribution=[hash"), explain);
+  }
+
+  @Test
+  public void testHashDistributeLargeRightInput() {
+    // Hybrid table d has 1.1M docs in total
+    String explain = explain("SELECT a.col1, d.col2 FROM a JOIN d ON a.col1 = d.col1");
+    assertFalse(explain.contains("distribution=[broadcast]"), explain);
+  }
+
+  @Test
+  public void testHashDistributeRightInputWithoutStatistics() {
+    String explain = explain("SELECT a.col1, b.col2 FROM a JOIN b ON a.col1 = b.col1");
+    assertFalse(explain.contains("distribution=[broadcast]"), explain);
+  }
+
+  @Test
+  public void testHashDistributeRightJoin() {
+    String explain = explain("SELECT a.col1, c.col2 FROM a RIGHT JOIN c ON a.col1 = c.col1");
+    assertFalse(explain.contains("distribution=[broadcast]"), explain);
+  }
+
+  @Test
+  public void testBroadcastThresholdQueryOption() {
+    String explain = explain("SET broadcastJoinRowCountThreshold = 0; "
+        + "SELECT a.col1, c.col2 FROM a JOIN c ON a.col1 = c.col1");
+    assertFalse(explain.contains("distribution=[broadcast]"), explain);
+  }
+
+  @Test
+  public void testJoinReorder() {
+    String query = "SELECT c.col1, a.col2, d.col2 FROM c JOIN d ON c.col1 = d.col1 JOIN a ON d.col2 = a.col2";
+    String explain = explain(query);
+    assertTableScanOrder(explain, "c", "d", "a");
+    assertFalse(explain.contains("distribution=[broadcast]"), explain);
+
+    // With join reordering, the largest table d of the first join is moved to the probe side so that the smallest
+    // table c can be broadcast
+    String reorderedExplain = explain("SET usePlannerRules = 'JoinReorder'; " + query);
+    assertTableScanOrder(reorderedExplain, "d", "c", "a");
+    assertTrue(reorderedExplain.contains("distribution=[broadcast]"), reorderedExplain);
+  }
+
+  private static void assertTableScanOrder(String explain, String... tables) {
+    int lastIndex = -1;
+    for (String table : tables) {
+      int index = explain.indexOf("table=[[default, " + table + "]]");
+      assertTrue(index > lastIndex, explain);
+      lastIndex = index;
+    }
+  }
+
+  private String explain(String query) {
+    int setEnd = query.lastIndexOf(';');
+    String explainQuery = query.substring(0, setEnd + 1) + " EXPLAIN PLAN FOR " + query.substring(setEnd + 1);
+    return _queryEnvironment.explainQuery(explainQuery, 1L);
+  }
+}
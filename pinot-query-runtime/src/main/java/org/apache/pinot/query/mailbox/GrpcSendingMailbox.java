@@ -39,6 +39,7 @@ import org.apache.pinot.common.proto.Mailbox.MailboxContent;
 import org.apache.pinot.common.proto.PinotMailboxGrpc;
 import org.apache.pinot.query.mailbox.channel.ChannelManager;
 import org.apache.pinot.query.mailbox.channel.ChannelUtils;
+import org.apache.pinot.query.mailbox.channel.MailboxCompression;
 import org.apache.pinot.query.mailbox.channel.MailboxStatusObserver;
 import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
@@ -60,6 +61,9 @@ public class GrpcSendingMailbox implements SendingMailbox {
   private static final Logger LOGGER = LoggerFactory.getLogger(GrpcSendingMailbox.class);
 
   private static final List<ByteString> EMPTY_BYTEBUFFER_LIST = Collections.emptyList();
+  // Number of blocks sent uncompressed after a block that does not compress well, before trying to compress again
+  private static final int NUM_BLOCKS_TO_SKIP_COMPRESSION = 8;
+
   private final String _id;
   private final ChannelManager _channelManager;
   private final String _hostname;
@@ -68,6 +72,8 @@ public class GrpcSendingMailbox implements SendingMailbox {
   private final StatMap<MailboxSendOperator.StatKey> _statMap;
   private final MailboxStatusObserver _statusObserver = new MailboxStatusObserver();
   private final int _maxByteStringSize;
+  private final MailboxCompression _compression;
+  private int _numBlocksToSkipCompression;
   /// Indicates whether the sending side has attempted to close the mailbox (either via complete() or cancel()).
   private volatile boolean _senderSideClosed;
 
@@ -75,6 +81,11 @@ public class GrpcSendingMailbox implements SendingMailbox {
 
   public GrpcSendingMailbox(String id, ChannelManager channelManager, String hostname, int port, long deadlineMs,
       StatMap<MailboxSendOperator.StatKey> statMap, int maxInboundMessageSize) {
+    this(id, channelManager, hostname, port, deadlineMs, statMap, maxInboundMessageSize, MailboxCompression.DISABLED);
+  }
+
+  public GrpcSendingMailbox(String id, ChannelManager channelManager, String hostname, int port, long deadlineMs,
+      StatMap<MailboxSendOperator.StatKey> statMap, int maxInboundMessageSize, MailboxCompression compression) {
     _id = id;
     _channelManager = channelManager;
     _hostname = hostname;
@@ -85,6 +96,7 @@ public class GrpcSendingMailbox implements SendingMailbox {
     //  but we want to leave some room for extra stuff for other fields like metadata, mailbox id, etc, whose size
     //  we don't know at the time of writing into the stream as it is serialized by protobuf.
     _maxByteStringSize = Math.max(maxInboundMessageSize / 2, 1);
+    _compression = compression;
   }
 
   @Override
@@ -150,11 +162,35 @@ public class GrpcSendingMailbox implements SendingMailbox {
 
   /**
    * Process the data block to split it into multiple ByteStrings that fit into the maxByteStringSize, and send them
-   * one by one.
+   * one by one. The block is compressed first when compression is enabled and accepted by the receiver.
    */
   protected int processAndSend(DataBlock dataBlock)
       throws IOException {
-    List<ByteString> byteStrings = toByteStrings(dataBlock, _maxByteStringSize);
+    List<ByteBuffer> bytes = dataBlock.serialize();
+    Map<String, String> metadata = Map.of();
+    if (_compression.isEnabled() && _statusObserver.isCompressionAccepted()) {
+      int uncompressedSize = 0;
+      for (ByteBuffer bb : bytes) {
+        uncompressedSize += bb.remaining();
+      }
+      if (_compression.shouldCompress(uncompressedSize)) {
+        if (_numBlocksToSkipCompression > 0) {
+          _numBlocksToSkipCompression--;
+        } else {
+          ByteBuffer compressed = _compression.compress(bytes, uncompressedSize);
+          if (compressed != null) {
+            _statMap.merge(MailboxSendOperator.StatKey.UNCOMPRESSED_BYTES, uncompressedSize);
+            _statMap.merge(MailboxSendOperator.StatKey.COMPRESSED_BYTES, compressed.remaining());
+            bytes = List.of(compressed);
+            metadata = _compression.getMetadata(uncompressedSize);
+          } else {
+            // The data does not compress well, skip compression for a while
+            _numBlocksToSkipCompression = NUM_BLOCKS_TO_SKIP_COMPRESSION;
+          }
+        }
+      }
+    }
+    List<ByteString> byteStrings = toByteStrings(bytes, _maxByteStringSize);
     int sizeInBytes = 0;
     for (ByteString byteString : byteStrings) {
       sizeInBytes += byteString.size();
@@ -163,7 +199,7 @@ public class GrpcSendingMailbox implements SendingMailbox {
     while (byteStringIt.hasNext()) {
       ByteString byteString = byteStringIt.next();
       boolean waitForMore = byteStringIt.hasNext();
-      sendContent(byteString, waitForMore);
+      sendContent(byteString, waitForMore, waitForMore ? Map.of() : metadata);
     }
     return sizeInBytes;
   }
@@ -215,11 +251,12 @@ public class GrpcSendingMailbox implements SendingMailbox {
         .open(_statusObserver);
   }
 
-  protected void sendContent(ByteString byteString, boolean waitForMore) {
+  protected void sendContent(ByteString byteString, boolean waitForMore, Map<String, String> metadata) {
     MailboxContent content = MailboxContent.newBuilder()
         .setMailboxId(_id)
         .setPayload(byteString)
         .setWaitForMore(waitForMore)
+        .putAllMetadata(metadata)
         .build();
     _contentObserver.onNext(content);
   }
@@ -38,6 +38,7 @@ import org.apache.pinot.core.transport.grpc.GrpcQueryServer;
 import org.apache.pinot.query.access.QueryAccessControlFactory;
 import org.apache.pinot.query.mailbox.channel.ChannelManager;
 import org.apache.pinot.query.mailbox.channel.GrpcMailboxServer;
+import org.apache.pinot.query.mailbox.channel.MailboxCompression;
 import org.apache.pinot.query.runtime.operator.MailboxSendOperator;
 import org.apache.pinot.spi.config.instance.InstanceType;
 import org.apache.pinot.spi.env.PinotConfiguration;
@@ -96,6 +97,10 @@ public class MailboxService {
    * bloating is added by gRPC and protobuf.
    */
   private final int _maxInboundMessageSize;
+  /**
+   * Compression applied to the data blocks sent through gRPC mailboxes, see {@link MailboxCompression}.
+   */
+  private final MailboxCompression _compression;
 
   private GrpcMailboxServer _grpcMailboxServer;
 
@@ -121,6 +126,7 @@ public class MailboxService {
         CommonConstants.MultiStageQueryRunner.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES,
         CommonConstants.MultiStageQueryRunner.DEFAULT_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES
     );
+    _compression = MailboxCompression.fromConfig(config);
     _channelManager = new ChannelManager(_clientSslContext, _maxInboundMessageSize, getIdleTimeout(config));
     _accessControlFactory = accessControlFactory;
     LOGGER.info("Initialized MailboxService with hostname: {}, port: {}", hostname, port);
@@ -166,7 +172,7 @@ public class MailboxService {
       return new InMemorySendingMailbox(mailboxId, this, deadlineMs, statMap);
     } else {
       return new GrpcSendingMailbox(mailboxId, _channelManager, hostname, port, deadlineMs, statMap,
-          _maxInboundMessageSize);
+          _maxInboundMessageSize, _compression);
     }
   }
 
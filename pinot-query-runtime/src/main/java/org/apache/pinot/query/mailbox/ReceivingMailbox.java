@@ -39,6 +39,7 @@ import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.SerializedDataBlock;
 import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
+import org.apache.pinot.query.runtime.executor.ManagedBlockers;
 import org.apache.pinot.segment.spi.memory.DataBuffer;
 import org.apache.pinot.spi.accounting.ThreadAccountant;
 import org.apache.pinot.spi.accounting.ThreadResourceSnapshot;
@@ -594,7 +595,8 @@ public class ReceivingMailbox {
       _pendingData++;
       try {
         while (_count == items.length && nanos > 0L) {
-          nanos = _notFull.awaitNanos(nanos);
+          long remainingNanos = nanos;
+          nanos = ManagedBlockers.block(() -> _notFull.awaitNanos(remainingNanos));
 
           switch (_state) {
             case FULL_OPEN: // we are in the same state, continue waiting for space
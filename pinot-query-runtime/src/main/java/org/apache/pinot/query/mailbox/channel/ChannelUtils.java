@@ -27,6 +27,11 @@ public class ChannelUtils {
 
   public static final String MAILBOX_METADATA_BUFFER_SIZE_KEY = "buffer.size";
   public static final String MAILBOX_METADATA_REQUEST_EARLY_TERMINATE = "request.early.terminate";
+  // Sent by the receiver to advertise that it can decompress blocks (see MailboxCompression)
+  public static final String MAILBOX_METADATA_ACCEPT_COMPRESSION_KEY = "accept.compression";
+  // Sent by the sender with the last message of a compressed block
+  public static final String MAILBOX_METADATA_COMPRESSION_CODEC_KEY = "compression.codec";
+  public static final String MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY = "uncompressed.size";
 
   public static final Metadata.Key<String> MAILBOX_ID_METADATA_KEY =
     Metadata.Key.of("mailboxId", Metadata.ASCII_STRING_MARSHALLER);
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox.channel;
+
+import com.github.luben.zstd.Zstd;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner;
+
+
+/// Compression of the serialized data blocks sent through gRPC mailboxes.
+///
+/// Compression is negotiated per mailbox: the receiving side advertises that it can decompress blocks in the status
+/// it sends back (see [ChannelUtils#MAILBOX_METADATA_ACCEPT_COMPRESSION_KEY]), and the sending side only compresses
+/// blocks once the receiver has advertised it, so that senders never compress blocks for receivers that cannot read
+/// them. Each compressed block carries the codec and the uncompressed size in the metadata of its last message, so
+/// compressed and uncompressed blocks can be mixed in the same stream.
+///
+/// Blocks smaller than the configured min size are not compressed, and blocks whose compressed size exceeds the
+/// configured max ratio of the uncompressed size are sent uncompressed.
+public class MailboxCompression {
+  public static final MailboxCompression DISABLED = new MailboxCompression(null, Integer.MAX_VALUE, 0);
+  private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+  @Nullable
+  private final ChunkCompressionType _compressionType;
+  private final int _minBlockSizeBytes;
+  private final double _maxCompressionRatio;
+
+  public MailboxCompression(@Nullable ChunkCompressionType compressionType, int minBlockSizeBytes,
+      double maxCompressionRatio) {
+    Preconditions.checkArgument(compressionType == null || compressionType == ChunkCompressionType.LZ4
+            || compressionType == ChunkCompressionType.ZSTANDARD,
+        "Unsupported mailbox compression codec: %s, supported codecs: LZ4, ZSTANDARD", compressionType);
+    _compressionType = compressionType;
+    _minBlockSizeBytes = minBlockSizeBytes;
+    _maxCompressionRatio = maxCompressionRatio;
+  }
+
+  public static MailboxCompression fromConfig(PinotConfiguration config) {
+    String codec = config.getProperty(MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_CODEC,
+        MultiStageQueryRunner.DEFAULT_MAILBOX_COMPRESSION_CODEC);
+    if (codec.equalsIgnoreCase("NONE")) {
+      return DISABLED;
+    }
+    int minBlockSizeBytes = config.getProperty(MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_MIN_BLOCK_SIZE_BYTES,
+        MultiStageQueryRunner.DEFAULT_MAILBOX_COMPRESSION_MIN_BLOCK_SIZE_BYTES);
+    double maxCompressionRatio = config.getProperty(MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_MAX_RATIO,
+        MultiStageQueryRunner.DEFAULT_MAILBOX_COMPRESSION_MAX_RATIO);
+    return new MailboxCompression(ChunkCompressionType.valueOf(codec.toUpperCase()), minBlockSizeBytes,
+        maxCompressionRatio);
+  }
+
+  public boolean isEnabled() {
+    return _compressionType != null;
+  }
+
+  @Nullable
+  public ChunkCompressionType getCompressionType() {
+    return _compressionType;
+  }
+
+  /// Returns whether a block of the given serialized size should be compressed.
+  public boolean shouldCompress(int sizeInBytes) {
+    return _compressionType != null && sizeInBytes >= _minBlockSizeBytes;
+  }
+
+  /// Compresses the given serialized block, or returns `null` if the compressed size exceeds the max compression
+  /// ratio, in which case the block should be sent uncompressed. The given buffers are not consumed.
+  ///
+  /// Heap byte arrays are used instead of direct buffers, because direct memory is only released on GC and would
+  /// accumulate on busy mailboxes.
+  @Nullable
+  public ByteBuffer compress(List<ByteBuffer> buffers, int sizeInBytes)
+      throws IOException {
+    assert _compressionType != null;
+    byte[] uncompressed = toByteArray(buffers, sizeInBytes);
+    byte[] compressed;
+    int compressedSize;
+    if (_compressionType == ChunkCompressionType.LZ4) {
+      LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+      compressed = new byte[compressor.maxCompressedLength(sizeInBytes)];
+      compressedSize = compressor.compress(uncompressed, 0, sizeInBytes, compressed, 0, compressed.length);
+    } else {
+      compressed = new byte[(int) Zstd.compressBound(sizeInBytes)];
+      long result = Zstd.compressByteArray(compressed, 0, compressed.length, uncompressed, 0, sizeInBytes,
+          Zstd.defaultCompressionLevel());
+      if (Zstd.isError(result)) {
+        throw new IOException("Failed to compress block with ZSTANDARD: " + Zstd.getErrorName(result));
+      }
+      compressedSize = (int) result;
+    }
+    return compressedSize <= sizeInBytes * _maxCompressionRatio ? ByteBuffer.wrap(compressed, 0, compressedSize)
+        : null;
+  }
+
+  /// Returns the metadata to attach to the last message of a block compressed with [#compress].
+  public Map<String, String> getMetadata(int uncompressedSize) {
+    assert _compressionType != null;
+    return Map.of(ChannelUtils.MAILBOX_METADATA_COMPRESSION_CODEC_KEY, _compressionType.name(),
+        ChannelUtils.MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY, Integer.toString(uncompressedSize));
+  }
+
+  /// Decompresses the received messages of a block if it is compressed according to the given message metadata,
+  /// otherwise returns the messages as is.
+  public static List<ByteBuffer> decompressIfNeeded(List<ByteBuffer> buffers, Map<String, String> metadata)
+      throws IOException {
+    String codec = metadata.get(ChannelUtils.MAILBOX_METADATA_COMPRESSION_CODEC_KEY);
+    if (codec == null) {
+      return buffers;
+    }
+    String uncompressedSize = metadata.get(ChannelUtils.MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY);
+    Preconditions.checkState(uncompressedSize != null, "Missing uncompressed size for compressed block");
+    int compressedSize = 0;
+    for (ByteBuffer buffer : buffers) {
+      compressedSize += buffer.remaining();
+    }
+    byte[] compressed = toByteArray(buffers, compressedSize);
+    int decompressedSize = Integer.parseInt(uncompressedSize);
+    byte[] decompressed = new byte[decompressedSize];
+    ChunkCompressionType compressionType = ChunkCompressionType.valueOf(codec);
+    if (compressionType == ChunkCompressionType.LZ4) {
+      int numBytes = LZ4_FACTORY.safeDecompressor()
+          .decompress(compressed, 0, compressedSize, decompressed, 0, decompressedSize);
+      Preconditions.checkState(numBytes == decompressedSize, "Decompressed size mismatch, expected: %s, got: %s",
+          decompressedSize, numBytes);
+    } else if (compressionType == ChunkCompressionType.ZSTANDARD) {
+      long result = Zstd.decompressByteArray(decompressed, 0, decompressedSize, compressed, 0, compressedSize);
+      if (Zstd.isError(result)) {
+        throw new IOException("Failed to decompress block with ZSTANDARD: " + Zstd.getErrorName(result));
+      }
+      Preconditions.checkState(result == decompressedSize, "Decompressed size mismatch, expected: %s, got: %s",
+          decompressedSize, result);
+    } else {
+      throw new IllegalStateException("Unsupported mailbox compression codec: " + codec);
+    }
+    return List.of(ByteBuffer.wrap(decompressed));
+  }
+
+  private static byte[] toByteArray(List<ByteBuffer> buffers, int sizeInBytes) {
+    byte[] bytes = new byte[sizeInBytes];
+    int offset = 0;
+    for (ByteBuffer buffer : buffers) {
+      int numBytes = buffer.remaining();
+      buffer.duplicate().get(bytes, offset, numBytes);
+      offset += numBytes;
+    }
+    return bytes;
+  }
+}
@@ -76,12 +76,15 @@ public class MailboxContentObserver implements StreamObserver<MailboxContent> {
     }
     try {
       long timeoutMs = Context.current().getDeadline().timeRemaining(TimeUnit.MILLISECONDS);
-      ReceivingMailbox.ReceivingMailboxStatus status = _mailbox.offerRaw(_mailboxBuffers, timeoutMs);
+      List<ByteBuffer> buffers =
+          MailboxCompression.decompressIfNeeded(_mailboxBuffers, mailboxContent.getMetadataMap());
+      ReceivingMailbox.ReceivingMailboxStatus status = _mailbox.offerRaw(buffers, timeoutMs);
       switch (status) {
         case SUCCESS:
           _responseObserver.onNext(MailboxStatus.newBuilder().setMailboxId(mailboxId)
               .putMetadata(ChannelUtils.MAILBOX_METADATA_BUFFER_SIZE_KEY,
-                  Integer.toString(_mailbox.getNumPendingBlocks())).build());
+                  Integer.toString(_mailbox.getNumPendingBlocks()))
+              .putMetadata(ChannelUtils.MAILBOX_METADATA_ACCEPT_COMPRESSION_KEY, "true").build());
           break;
         case WAITING_EOS:
           // The receiving mailbox is early terminated, inform the sender to stop sending more data. Only EOS block is
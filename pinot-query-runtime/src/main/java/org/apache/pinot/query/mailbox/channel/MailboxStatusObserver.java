@@ -37,6 +37,7 @@ public class MailboxStatusObserver implements StreamObserver<MailboxStatus> {
   private final AtomicInteger _bufferSize = new AtomicInteger(DEFAULT_MAILBOX_QUEUE_CAPACITY);
   private final AtomicBoolean _finished = new AtomicBoolean();
   private volatile boolean _isEarlyTerminated;
+  private volatile boolean _isCompressionAccepted;
 
   @Override
   public void onNext(MailboxStatus mailboxStatus) {
@@ -48,6 +49,11 @@ public class MailboxStatusObserver implements StreamObserver<MailboxStatus> {
         mailboxStatus.getMetadataMap().get(ChannelUtils.MAILBOX_METADATA_REQUEST_EARLY_TERMINATE))) {
       _isEarlyTerminated = true;
     }
+    // -- handle compression negotiation
+    if (Boolean.parseBoolean(
+        mailboxStatus.getMetadataMap().get(ChannelUtils.MAILBOX_METADATA_ACCEPT_COMPRESSION_KEY))) {
+      _isCompressionAccepted = true;
+    }
     // -- handling buffer size back-pressure
     // TODO: this feedback info is not used to throttle the send speed. it is currently being discarded.
     if (mailboxStatus.getMetadataMap().containsKey(ChannelUtils.MAILBOX_METADATA_BUFFER_SIZE_KEY)) {
@@ -62,6 +68,11 @@ public class MailboxStatusObserver implements StreamObserver<MailboxStatus> {
     return _isEarlyTerminated;
   }
 
+  /// Returns whether the receiver has advertised that it can decompress blocks.
+  public boolean isCompressionAccepted() {
+    return _isCompressionAccepted;
+  }
+
   public int getBufferSize() {
     return _bufferSize.get();
   }
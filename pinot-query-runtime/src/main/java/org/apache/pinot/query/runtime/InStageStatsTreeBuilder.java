@@ -277,8 +277,11 @@ public class InStageStatsTreeBuilder implements PlanNodeVisitor<ObjectNode, InSt
 
   @Override
   public ObjectNode visitJoin(JoinNode node, Context context) {
-    if (node.getJoinStrategy() == JoinNode.JoinStrategy.HASH) {
+    JoinNode.JoinStrategy joinStrategy = node.getJoinStrategy();
+    if (joinStrategy == JoinNode.JoinStrategy.HASH) {
       return recursiveCase(node, MultiStageOperator.Type.HASH_JOIN, context);
+    } else if (joinStrategy == JoinNode.JoinStrategy.SORT_MERGE) {
+      return recursiveCase(node, MultiStageOperator.Type.SORT_MERGE_JOIN, context);
     } else {
       assert node.getJoinStrategy() == JoinNode.JoinStrategy.LOOKUP;
       return recursiveCase(node, MultiStageOperator.Type.LOOKUP_JOIN, context);
@@ -138,6 +138,18 @@ public class QueryRunner {
   private Integer _maxRowsInWindow;
   @Nullable
   private WindowOverFlowMode _windowOverflowMode;
+
+  // Sort overflow settings
+  @Nullable
+  private Integer _maxRowsInSort;
+
+  // Local directory where operators spill rows that do not fit in memory
+  @Nullable
+  private String _spillDir;
+
+  // Max number of values of an IN predicate pruned by the segment pruners, used to build the leaf dynamic filters
+  @Nullable
+  private Integer _inPredicateThreshold;
   @Nullable
   private PhysicalTimeSeriesServerPlanVisitor _timeSeriesPhysicalPlanVisitor;
   private BooleanSupplier _sendStats;
@@ -197,6 +209,14 @@ public class QueryRunner {
     String windowOverflowModeStr = serverConf.getProperty(MultiStageQueryRunner.KEY_OF_WINDOW_OVERFLOW_MODE);
     _windowOverflowMode = windowOverflowModeStr != null ? WindowOverFlowMode.valueOf(windowOverflowModeStr) : null;
 
+    String maxRowsInSortStr = serverConf.getProperty(MultiStageQueryRunner.KEY_OF_MAX_ROWS_IN_SORT);
+    _maxRowsInSort = maxRowsInSortStr != null ? Integer.parseInt(maxRowsInSortStr) : null;
+
+    _spillDir = serverConf.getProperty(MultiStageQueryRunner.KEY_OF_SPILL_DIR);
+
+    String inPredicateThresholdStr = serverConf.getProperty(Server.CONFIG_OF_VALUE_PRUNER_IN_PREDICATE_THRESHOLD);
+    _inPredicateThreshold = inPredicateThresholdStr != null ? Integer.parseInt(inPredicateThresholdStr) : null;
+
     ExecutorService baseExecutorService =
         ExecutorServiceUtils.create(serverConf, Server.MULTISTAGE_EXECUTOR_CONFIG_PREFIX, "query-runner-on-" + port,
             Server.DEFAULT_MULTISTAGE_EXECUTOR_TYPE);
@@ -466,6 +486,17 @@ public class QueryRunner {
     // 2. put all stageMetadata.customProperties.
     opChainMetadata.putAll(customProperties);
     // 3. put some config not allowed through query options but propagated that way
+    if (_spillDir != null) {
+      opChainMetadata.put(MultiStageQueryRunner.KEY_OF_SPILL_DIR, _spillDir);
+    } else {
+      opChainMetadata.remove(MultiStageQueryRunner.KEY_OF_SPILL_DIR);
+    }
+    if (_inPredicateThreshold != null) {
+      opChainMetadata.put(Server.CONFIG_OF_VALUE_PRUNER_IN_PREDICATE_THRESHOLD,
+          Integer.toString(_inPredicateThreshold));
+    } else {
+      opChainMetadata.remove(Server.CONFIG_OF_VALUE_PRUNER_IN_PREDICATE_THRESHOLD);
+    }
     if (_numGroupsWarningLimit != null) {
       opChainMetadata.put(QueryOptionKey.NUM_GROUPS_WARNING_LIMIT, Integer.toString(_numGroupsWarningLimit));
     }
@@ -545,6 +576,14 @@ public class QueryRunner {
       opChainMetadata.put(QueryOptionKey.WINDOW_OVERFLOW_MODE, windowOverflowMode.name());
     }
 
+    Integer maxRowsInSort = QueryOptionsUtils.getMaxRowsInSort(opChainMetadata);
+    if (maxRowsInSort == null) {
+      maxRowsInSort = _maxRowsInSort;
+    }
+    if (maxRowsInSort != null) {
+      opChainMetadata.put(QueryOptionKey.MAX_ROWS_IN_SORT, Integer.toString(maxRowsInSort));
+    }
+
     return opChainMetadata;
   }
 
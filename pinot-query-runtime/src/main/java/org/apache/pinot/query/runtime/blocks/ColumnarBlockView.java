@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.blocks;
+
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.operator.docvalsets.DataBlockValSet;
+import org.apache.pinot.core.operator.docvalsets.RowBasedBlockValSet;
+
+
+/// A column oriented view over a [MseBlock.Data], used to evaluate expressions a block at a time instead of a row at a
+/// time.
+///
+/// Columns are exposed as [BlockValSet]s, which return the values as primitive arrays plus a null bitmap, and are
+/// created lazily the first time they are accessed:
+/// - For a [SerializedDataBlock], the values are read directly from the serialized data block (either row or columnar
+///   format) without materializing the rows.
+/// - For a [RowHeapDataBlock], the values are unboxed from the rows once per column.
+///
+/// The rows themselves are also lazily materialized (see [#getRows()]) for the operators that need to produce row
+/// based output.
+public class ColumnarBlockView {
+  private final MseBlock.Data _block;
+  private final DataSchema _dataSchema;
+  private final int _numRows;
+  private final BlockValSet[] _blockValSets;
+  private List<Object[]> _rows;
+
+  public ColumnarBlockView(MseBlock.Data block) {
+    _block = block;
+    _dataSchema = block.getDataSchema();
+    _numRows = block.getNumRows();
+    _blockValSets = new BlockValSet[_dataSchema.size()];
+    if (block.isRowHeap()) {
+      _rows = block.asRowHeap().getRows();
+    }
+  }
+
+  public MseBlock.Data getBlock() {
+    return _block;
+  }
+
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  public int getNumRows() {
+    return _numRows;
+  }
+
+  /// Returns the values of the given column. Null values are tracked in [BlockValSet#getNullBitmap()].
+  public BlockValSet getBlockValSet(int colId) {
+    BlockValSet blockValSet = _blockValSets[colId];
+    if (blockValSet == null) {
+      DataSchema.ColumnDataType columnDataType = _dataSchema.getColumnDataType(colId);
+      if (_block.isRowHeap()) {
+        blockValSet = new RowBasedBlockValSet(columnDataType, _rows, colId, true);
+      } else {
+        blockValSet = new DataBlockValSet(columnDataType, _block.asSerialized().getDataBlock(), colId);
+      }
+      _blockValSets[colId] = blockValSet;
+    }
+    return blockValSet;
+  }
+
+  /// Returns the rows of the block, materializing them if the block is serialized.
+  public List<Object[]> getRows() {
+    if (_rows == null) {
+      _rows = _block.asRowHeap().getRows();
+    }
+    return _rows;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+
+/// Utilities used by opchains to wait for data without pinning a worker of the opchain executor.
+///
+/// Every wait is executed through [ForkJoinPool#managedBlock]. When the opchain runs on a [ForkJoinPool] (see the
+/// `workStealing` executor type) the pool parks the opchain and activates a spare worker while it waits, which keeps
+/// the number of actively running opchains close to the pool parallelism while opchains that wait on each other cannot
+/// starve the pool. On any other executor the wait is executed as-is on the calling thread.
+///
+/// The number of opchains currently parked (i.e. waiting on a [ForkJoinWorkerThread], where the pool compensates for
+/// the blocked worker) is tracked and exported through [#getNumParked()].
+public class ManagedBlockers {
+  private static final AtomicInteger NUM_PARKED = new AtomicInteger();
+
+  private ManagedBlockers() {
+  }
+
+  /// Returns the number of [ForkJoinPool] workers that are currently parked in one of the methods of this class. Waits
+  /// on other threads are not counted as the pool does not compensate for them.
+  public static int getNumParked() {
+    return NUM_PARKED.get();
+  }
+
+  /// Waits up to the given timeout for an element to be available in the queue.
+  ///
+  /// @return the head of the queue, or null if the timeout elapsed before an element was available.
+  @Nullable
+  public static <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    E element = queue.poll();
+    if (element != null) {
+      return element;
+    }
+    return block(() -> queue.poll(timeout, unit));
+  }
+
+  /// Executes the given blocking action, notifying the pool of the calling thread (if any) that the thread is blocked.
+  public static <T> T block(BlockingAction<T> action)
+      throws InterruptedException {
+    Blocker<T> blocker = new Blocker<>(action);
+    if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+      ForkJoinPool.managedBlock(blocker);
+      return blocker._result;
+    }
+    NUM_PARKED.incrementAndGet();
+    try {
+      ForkJoinPool.managedBlock(blocker);
+    } finally {
+      NUM_PARKED.decrementAndGet();
+    }
+    return blocker._result;
+  }
+
+  @FunctionalInterface
+  public interface BlockingAction<T> {
+    T run()
+        throws InterruptedException;
+  }
+
+  private static class Blocker<T> implements ForkJoinPool.ManagedBlocker {
+    private final BlockingAction<T> _action;
+    private boolean _done;
+    private T _result;
+
+    Blocker(BlockingAction<T> action) {
+      _action = action;
+    }
+
+    @Override
+    public boolean block()
+        throws InterruptedException {
+      _result = _action.run();
+      _done = true;
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return _done;
+    }
+  }
+}
@@ -30,12 +30,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.common.datatable.StatMap;
+import org.apache.pinot.common.metrics.ServerGauge;
 import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
@@ -62,6 +65,11 @@ public class OpChainSchedulerService {
   private static final int NUM_QUERY_LOCKS = 1 << 10; // 1024 locks
   private static final int QUERY_LOCK_MASK = NUM_QUERY_LOCKS - 1;
 
+  // States of a registered opchain, only moving forward through compare-and-set
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int DONE = 2;
+
   private final String _instanceId;
   /// This [ExecutorService] must be wrapped with [QueryThreadContext#contextAwareExecutorService].
   private final ExecutorService _executorService;
@@ -154,9 +162,14 @@ public class OpChainSchedulerService {
     _opChainCache.put(opChainId, Pair.of(rootOperator, executionContext));
 
     // Create a ListenableFutureTask to ensure the opChain is cancelled even if the task is not scheduled
+    AtomicInteger state = new AtomicInteger(QUEUED);
     ListenableFutureTask<Void> listenableFutureTask = ListenableFutureTask.create(new TraceRunnable() {
       @Override
       public void runJob() {
+        if (!state.compareAndSet(QUEUED, RUNNING)) {
+          // Cancelled while starting
+          return;
+        }
         _metrics.onOpChainStarted();
         LOGGER.trace("({}): Executing", operatorChain);
         MseBlock result = rootOperator.nextBlock();
@@ -179,14 +192,14 @@ public class OpChainSchedulerService {
     Futures.addCallback(listenableFutureTask, new FutureCallback<>() {
       @Override
       public void onSuccess(Void result) {
-        _metrics.onOpChainFinished(rootOperator);
+        _metrics.onOpChainFinished(rootOperator, finish(state));
         operatorChain.close();
       }
 
       @Override
       public void onFailure(Throwable t) {
         String logMsg = "Failed to execute operator chain: " + t.getMessage();
-        _metrics.onOpChainFinished(rootOperator);
+        _metrics.onOpChainFinished(rootOperator, finish(state));
         if (t instanceof QueryException) {
           switch (((QueryException) t).getErrorCode()) {
             case UNKNOWN:
@@ -205,7 +218,26 @@ public class OpChainSchedulerService {
       }
     }, MoreExecutors.directExecutor());
 
-    _executorService.submit(listenableFutureTask);
+    _metrics.onOpChainQueued();
+    try {
+      _executorService.submit(listenableFutureTask);
+    } catch (RuntimeException e) {
+      _metrics.onOpChainRejected();
+      throw e;
+    }
+  }
+
+  /**
+   * Moves the given opchain state to {@code DONE}, and returns whether the opchain started running.
+   */
+  private static boolean finish(AtomicInteger state) {
+    if (state.compareAndSet(QUEUED, DONE)) {
+      return false;
+    }
+    // Only the opchain job moves the state out of QUEUED, so the opchain is running at this point
+    boolean started = state.compareAndSet(RUNNING, DONE);
+    assert started;
+    return true;
   }
 
   public Map<Integer, MultiStageQueryStats.StageStats.Closed> cancel(long requestId) {
@@ -274,6 +306,16 @@ public class OpChainSchedulerService {
     return _queryLocks[(int) (requestId & QUERY_LOCK_MASK)];
   }
 
+  @VisibleForTesting
+  int getNumQueuedOpChains() {
+    return _metrics._numQueued.get();
+  }
+
+  @VisibleForTesting
+  int getNumRunningOpChains() {
+    return _metrics._numRunning.get();
+  }
+
   private static class Metrics {
     private final PinotMeter _startedOpchains = ServerMeter.MSE_OPCHAINS_STARTED.getGlobalMeter();
     private final PinotMeter _competedOpchains = ServerMeter.MSE_OPCHAINS_COMPLETED.getGlobalMeter();
@@ -285,11 +327,40 @@ public class OpChainSchedulerService {
     private static final String EXECUTION_TIME_MS = "EXECUTION_TIME_MS";
     private static final String ALLOCATED_MEMORY_BYTES = "ALLOCATED_MEMORY_BYTES";
 
+    /// Opchains submitted to the executor that have not started running yet
+    private final AtomicInteger _numQueued = new AtomicInteger();
+    /// Opchains running on the executor, including the ones parked in [ManagedBlockers]
+    private final AtomicInteger _numRunning = new AtomicInteger();
+
+    Metrics() {
+      ServerMetrics serverMetrics = ServerMetrics.get();
+      serverMetrics.setOrUpdateGlobalGauge(ServerGauge.MSE_OPCHAINS_QUEUED, () -> (long) _numQueued.get());
+      serverMetrics.setOrUpdateGlobalGauge(ServerGauge.MSE_OPCHAINS_RUNNING, () -> (long) _numRunning.get());
+      serverMetrics.setOrUpdateGlobalGauge(ServerGauge.MSE_OPCHAINS_PARKED,
+          () -> (long) ManagedBlockers.getNumParked());
+    }
+
+    public void onOpChainQueued() {
+      _numQueued.incrementAndGet();
+    }
+
+    public void onOpChainRejected() {
+      _numQueued.decrementAndGet();
+    }
+
     public void onOpChainStarted() {
+      _numQueued.decrementAndGet();
+      _numRunning.incrementAndGet();
       _startedOpchains.mark();
     }
 
-    public void onOpChainFinished(MultiStageOperator rootOperator) {
+    /// @param started whether the opchain started running, false when it was cancelled while still queued
+    public void onOpChainFinished(MultiStageOperator rootOperator, boolean started) {
+      if (started) {
+        _numRunning.decrementAndGet();
+      } else {
+        _numQueued.decrementAndGet();
+      }
       _competedOpchains.mark();
       StatMap<?> operatorStats = rootOperator.copyStatMaps();
       _emittedRows.mark(operatorStats.getUnsafe(EMITTED_ROWS, 0L));
@@ -51,6 +51,7 @@ import org.apache.pinot.query.planner.plannode.AggregateNode;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.exception.QueryErrorCode;
@@ -84,6 +85,8 @@ public class AggregateOperator extends MultiStageOperator {
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
 
   private final boolean _errorOnNumGroupsLimit;
+  @Nullable
+  private SpillManager _spillManager;
 
   // trimming - related members
   private final int _groupTrimSize;
@@ -144,9 +147,12 @@ public class AggregateOperator extends MultiStageOperator {
           new MultistageAggregationExecutor(_aggFunctions, filterArgIds, maxFilterArgId, aggType, _resultSchema);
       _groupByExecutor = null;
     } else {
+      if (getSpillOnNumGroupsLimit(node.getNodeHint(), context.getOpChainMetadata())) {
+        _spillManager = new SpillManager(context, EXPLAIN_NAME);
+      }
       _groupByExecutor =
           new MultistageGroupByExecutor(getGroupKeyIds(groupKeys), _aggFunctions, filterArgIds, maxFilterArgId, aggType,
-              leafReturnFinalResult, _resultSchema, context.getOpChainMetadata(), node.getNodeHint());
+              leafReturnFinalResult, _resultSchema, context.getOpChainMetadata(), node.getNodeHint(), _spillManager);
       _aggregationExecutor = null;
     }
   }
@@ -165,6 +171,11 @@ public class AggregateOperator extends MultiStageOperator {
     return option != null ? Boolean.parseBoolean(option) : QueryOptionsUtils.getErrorOnNumGroupsLimit(opChainMetadata);
   }
 
+  private static boolean getSpillOnNumGroupsLimit(PlanNode.NodeHint nodeHint, Map<String, String> opChainMetadata) {
+    String option = getOption(nodeHint, PinotHintOptions.AggregateOptions.SPILL_ON_NUM_GROUPS_LIMIT);
+    return option != null ? Boolean.parseBoolean(option) : QueryOptionsUtils.getSpillOnNumGroupsLimit(opChainMetadata);
+  }
+
   @Nullable
   private static String getOption(PlanNode.NodeHint nodeHint, String key) {
     Map<String, String> options = nodeHint.getHintOptions().get(PinotHintOptions.AGGREGATE_HINT_OPTIONS);
@@ -199,23 +210,59 @@ public class AggregateOperator extends MultiStageOperator {
     return EXPLAIN_NAME;
   }
 
+  @Override
+  public void close() {
+    super.close();
+    closeSpillManager();
+  }
+
   @Override
   protected MseBlock getNextBlock() {
     if (_eosBlock != null) {
-      return _eosBlock;
+      // Groups spilled to disk are emitted one partition at a time
+      return _groupByExecutor != null ? produceSpilledGroupByBlock() : _eosBlock;
     }
     MseBlock.Eos finalBlock = _aggregationExecutor != null ? consumeAggregation() : consumeGroupBy();
     _eosBlock = finalBlock;
 
     if (finalBlock.isError()) {
+      _aggregationExecutor = null;
+      _groupByExecutor = null;
+      closeSpillManager();
       return finalBlock;
     }
+    if (_groupByExecutor != null && _groupByExecutor.hasSpilled() && _groupTrimSize == Integer.MAX_VALUE) {
+      return produceSpilledGroupByBlock();
+    }
     MseBlock mseBlock = produceAggregatedBlock();
     _aggregationExecutor = null;
     _groupByExecutor = null;
+    closeSpillManager();
     return mseBlock;
   }
 
+  private MseBlock produceSpilledGroupByBlock() {
+    assert _groupByExecutor != null && _eosBlock != null;
+    checkTerminationAndSampleUsage();
+    List<Object[]> rows = _groupByExecutor.getNextSpilledResult();
+    if (rows != null) {
+      return new RowHeapDataBlock(rows, _resultSchema, _aggFunctions);
+    }
+    _groupByExecutor = null;
+    closeSpillManager();
+    return _eosBlock;
+  }
+
+  private void closeSpillManager() {
+    if (_spillManager == null) {
+      return;
+    }
+    _statMap.merge(StatKey.NUM_SPILLED_ROWS, _spillManager.getNumSpilledRows());
+    _statMap.merge(StatKey.SPILLED_BYTES, _spillManager.getNumSpilledBytes());
+    _spillManager.close();
+    _spillManager = null;
+  }
+
   private MseBlock produceAggregatedBlock() {
     if (_aggregationExecutor != null) {
       return new RowHeapDataBlock(_aggregationExecutor.getResult(), _resultSchema, _aggFunctions);
@@ -479,7 +526,15 @@ public class AggregateOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of groups written into spill files when spilling on reaching the num groups limit.
+     */
+    NUM_SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes written into spill files when spilling on reaching the num groups limit.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
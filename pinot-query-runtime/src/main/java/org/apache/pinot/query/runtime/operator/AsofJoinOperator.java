@@ -34,7 +34,7 @@ import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 
 
-public class AsofJoinOperator extends BaseJoinOperator {
+public class AsofJoinOperator extends BaseHashJoinOperator {
   private static final String EXPLAIN_NAME = "ASOF_JOIN";
   private static final String ADD_ROWS_TO_RIGHT_TABLE_SCOPE = "AsofJoinOperator#addRowsToRightTable";
   private static final String BUILD_JOINED_ROWS_SCOPE = "AsofJoinOperator#buildJoinedRows";
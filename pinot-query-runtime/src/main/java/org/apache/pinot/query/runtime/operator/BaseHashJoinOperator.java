@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
+import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner.JoinOverFlowMode;
+
+
+/**
+ * The {@code BaseHashJoinOperator} implements the basic join algorithm.
+ * <p>This algorithm assumes that the right table has to fit in memory unless the operator supports spilling (see
+ * {@link #spillRightTable(List, DataSchema)}). It reads the complete right table and materialize the data in memory.
+ * Then for each of the left table row, it looks up for the corresponding row(s) from the right table, applies the
+ * non-equi evaluators and creates a joint row.
+ * <p>For each of the data block received from the left table, it generates a joint data block.
+ */
+public abstract class BaseHashJoinOperator extends BaseJoinOperator {
+  protected boolean _isRightTableBuilt;
+
+  public BaseHashJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
+      MultiStageOperator rightInput, JoinNode node) {
+    super(context, leftInput, leftSchema, rightInput, node);
+  }
+
+  /// Constructor that takes the schema for NonEquiEvaluator as an argument
+  public BaseHashJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
+      MultiStageOperator rightInput, JoinNode node, DataSchema nonEquiEvaluationSchema) {
+    super(context, leftInput, leftSchema, rightInput, node, nonEquiEvaluationSchema);
+  }
+
+  @Override
+  protected MseBlock getNextBlock() {
+    if (!_isRightTableBuilt) {
+      buildRightTable();
+    }
+    if (_eos != null) {
+      LOGGER.trace("Returning eos");
+      return _eos;
+    }
+    MseBlock mseBlock = buildJoinedDataBlock();
+    LOGGER.trace("Returning {} for join operator", mseBlock);
+    if (mseBlock.isEos()) {
+      _eos = (MseBlock.Eos) mseBlock;
+      onEosProduced();
+    }
+    return mseBlock;
+  }
+
+  protected abstract void onEosProduced();
+
+  protected void buildRightTable() {
+    LOGGER.trace("Building right table for join operator");
+    long startTime = System.currentTimeMillis();
+    int numRows = 0;
+    MseBlock rightBlock = _rightInput.nextBlock();
+    while (rightBlock.isData()) {
+      List<Object[]> rows = ((MseBlock.Data) rightBlock).asRowHeap().getRows();
+      // Row based overflow check.
+      if (rows.size() + numRows > _maxRowsInJoin) {
+        if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+          throwForJoinRowLimitExceeded(
+              "Cannot build in memory hash table for join operator, reached number of rows limit: " + _maxRowsInJoin);
+        } else if (_joinOverflowMode == JoinOverFlowMode.SPILL) {
+          // The rest of the right input is consumed while spilling, so the returned block is the end of stream.
+          rightBlock = spillRightTable(rows, ((MseBlock.Data) rightBlock).getDataSchema());
+          break;
+        } else {
+          // Just fill up the buffer.
+          int remainingRows = _maxRowsInJoin - numRows;
+          rows = rows.subList(0, remainingRows);
+          _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+          // setting only the rightTableOperator to be early terminated and awaits EOS block next.
+          _rightInput.earlyTerminate();
+        }
+      }
+
+      addRowsToRightTable(rows);
+      numRows += rows.size();
+      checkTerminationAndSampleUsage();
+      rightBlock = _rightInput.nextBlock();
+    }
+
+    MseBlock.Eos eosBlock = (MseBlock.Eos) rightBlock;
+    if (eosBlock.isError()) {
+      _eos = eosBlock;
+    } else {
+      _isRightTableBuilt = true;
+      finishBuildingRightTable();
+    }
+
+    _statMap.merge(StatKey.TIME_BUILDING_HASH_TABLE_MS, System.currentTimeMillis() - startTime);
+    LOGGER.trace("Finished building right table for join operator");
+  }
+
+  protected abstract void addRowsToRightTable(List<Object[]> rows);
+
+  /**
+   * Invoked in {@link JoinOverFlowMode#SPILL} mode when adding the given rows (following the given right schema) would
+   * make the right table exceed {@link #_maxRowsInJoin} rows. Implementations must consume the rest of the right
+   * input (moving the right table out of the heap as needed) and return the block that ended it, after which
+   * {@link #finishBuildingRightTable()} is called as usual when it is not an error.
+   * <p>By default spilling is not supported, and the limit is enforced as in {@link JoinOverFlowMode#THROW} mode.
+   */
+  protected MseBlock spillRightTable(List<Object[]> rows, DataSchema rightSchema) {
+    throw QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED.asException(
+        "Cannot build in memory hash table for join operator, reached number of rows limit: " + _maxRowsInJoin
+            + ". Join overflow mode '" + JoinOverFlowMode.SPILL.name() + "' is not supported by " + toExplainString());
+  }
+
+  protected abstract void finishBuildingRightTable();
+
+  protected MseBlock buildJoinedDataBlock() {
+    LOGGER.trace("Building joined data block for join operator");
+    // Keep reading the input blocks until we find a match row or all blocks are processed.
+    // TODO: Consider batching the rows to improve performance.
+    while (true) {
+      if (_eos != null) {
+        return _eos;
+      }
+      LOGGER.trace("Processing next block on left input");
+      MseBlock leftBlock = _leftInput.nextBlock();
+      if (leftBlock.isEos()) {
+        MseBlock.Eos eosBlock = (MseBlock.Eos) leftBlock;
+        if (eosBlock.isError()) {
+          return eosBlock;
+        } else {
+          if (needUnmatchedRightRows()) {
+            List<Object[]> rows = buildNonMatchRightRows();
+            if (!rows.isEmpty()) {
+              _eos = SuccessMseBlock.INSTANCE;
+              return new RowHeapDataBlock(rows, _resultSchema);
+            }
+          }
+          return leftBlock;
+        }
+      }
+      List<Object[]> rows = buildJoinedRows((MseBlock.Data) leftBlock);
+      checkTerminationAndSampleUsage();
+      if (!rows.isEmpty()) {
+        return new RowHeapDataBlock(rows, _resultSchema);
+      }
+    }
+  }
+
+  protected abstract List<Object[]> buildJoinedRows(MseBlock.Data leftBlock);
+
+  protected abstract List<Object[]> buildNonMatchRightRows();
+}
@@ -32,8 +32,6 @@ import org.apache.pinot.query.planner.logical.RexExpression;
 import org.apache.pinot.query.planner.plannode.JoinNode;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
-import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
-import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
 import org.apache.pinot.query.runtime.operator.join.JoinedRowView;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperandFactory;
@@ -47,12 +45,10 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * The {@code BaseJoinOperator} implements the basic join algorithm.
- * <p>This algorithm assumes that the right table has to fit in memory since we are not supporting any spilling. It
- * reads the complete right table and materialize the data in memory. Then for each of the left table row, it looks up
- * for the corresponding row(s) from the right table, applies the non-equi evaluators and creates a joint row.
- * <p>For each of the data block received from the left table, it generates a joint data block. The output is in the
- * format of [left_row, right_row].
+ * The {@code BaseJoinOperator} holds the parts shared by the join algorithms: the join type, the non-equi conditions,
+ * the rows limit and the stats. The output is in the format of [left_row, right_row].
+ * <p>See {@link BaseHashJoinOperator} for the joins materializing the right table, and {@link SortMergeJoinOperator}
+ * for the join merging both inputs sorted on the join keys.
  */
 // TODO: Support memory size based resource limit.
 public abstract class BaseJoinOperator extends MultiStageOperator {
@@ -78,13 +74,15 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
    */
   protected final int _maxRowsInJoin;
   /**
-   * Mode when join overflow happens, supported values: THROW or BREAK.
+   * Mode when join overflow happens, supported values: THROW, BREAK or SPILL.
    *   THROW(default): Break right table build process, and throw exception, no JOIN with left table performed.
    *   BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
+   *   SPILL: Move the right table out of the heap and continue to perform JOIN operation, results are complete. Only
+   *          supported by operators overriding {@link BaseHashJoinOperator#spillRightTable(List, DataSchema)} and by
+   *          {@link SortMergeJoinOperator}, others behave as in THROW mode.
    */
   protected final JoinOverFlowMode _joinOverflowMode;
 
-  protected boolean _isRightTableBuilt;
   @Nullable
   protected MseBlock.Eos _eos;
 
@@ -182,107 +180,6 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
     return List.of(_leftInput, _rightInput);
   }
 
-  @Override
-  protected MseBlock getNextBlock() {
-    if (!_isRightTableBuilt) {
-      buildRightTable();
-    }
-    if (_eos != null) {
-      LOGGER.trace("Returning eos");
-      return _eos;
-    }
-    MseBlock mseBlock = buildJoinedDataBlock();
-    LOGGER.trace("Returning {} for join operator", mseBlock);
-    if (mseBlock.isEos()) {
-      _eos = (MseBlock.Eos) mseBlock;
-      onEosProduced();
-    }
-    return mseBlock;
-  }
-
-  protected abstract void onEosProduced();
-
-  protected void buildRightTable() {
-    LOGGER.trace("Building right table for join operator");
-    long startTime = System.currentTimeMillis();
-    int numRows = 0;
-    MseBlock rightBlock = _rightInput.nextBlock();
-    while (rightBlock.isData()) {
-      List<Object[]> rows = ((MseBlock.Data) rightBlock).asRowHeap().getRows();
-      // Row based overflow check.
-      if (rows.size() + numRows > _maxRowsInJoin) {
-        if (_joinOverflowMode == JoinOverFlowMode.THROW) {
-          throwForJoinRowLimitExceeded(
-              "Cannot build in memory hash table for join operator, reached number of rows limit: " + _maxRowsInJoin);
-        } else {
-          // Just fill up the buffer.
-          int remainingRows = _maxRowsInJoin - numRows;
-          rows = rows.subList(0, remainingRows);
-          _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
-          // setting only the rightTableOperator to be early terminated and awaits EOS block next.
-          _rightInput.earlyTerminate();
-        }
-      }
-
-      addRowsToRightTable(rows);
-      numRows += rows.size();
-      checkTerminationAndSampleUsage();
-      rightBlock = _rightInput.nextBlock();
-    }
-
-    MseBlock.Eos eosBlock = (MseBlock.Eos) rightBlock;
-    if (eosBlock.isError()) {
-      _eos = eosBlock;
-    } else {
-      _isRightTableBuilt = true;
-      finishBuildingRightTable();
-    }
-
-    _statMap.merge(StatKey.TIME_BUILDING_HASH_TABLE_MS, System.currentTimeMillis() - startTime);
-    LOGGER.trace("Finished building right table for join operator");
-  }
-
-  protected abstract void addRowsToRightTable(List<Object[]> rows);
-
-  protected abstract void finishBuildingRightTable();
-
-  protected MseBlock buildJoinedDataBlock() {
-    LOGGER.trace("Building joined data block for join operator");
-    // Keep reading the input blocks until we find a match row or all blocks are processed.
-    // TODO: Consider batching the rows to improve performance.
-    while (true) {
-      if (_eos != null) {
-        return _eos;
-      }
-      LOGGER.trace("Processing next block on left input");
-      MseBlock leftBlock = _leftInput.nextBlock();
-      if (leftBlock.isEos()) {
-        MseBlock.Eos eosBlock = (MseBlock.Eos) leftBlock;
-        if (eosBlock.isError()) {
-          return eosBlock;
-        } else {
-          if (needUnmatchedRightRows()) {
-            List<Object[]> rows = buildNonMatchRightRows();
-            if (!rows.isEmpty()) {
-              _eos = SuccessMseBlock.INSTANCE;
-              return new RowHeapDataBlock(rows, _resultSchema);
-            }
-          }
-          return leftBlock;
-        }
-      }
-      List<Object[]> rows = buildJoinedRows((MseBlock.Data) leftBlock);
-      checkTerminationAndSampleUsage();
-      if (!rows.isEmpty()) {
-        return new RowHeapDataBlock(rows, _resultSchema);
-      }
-    }
-  }
-
-  protected abstract List<Object[]> buildJoinedRows(MseBlock.Data leftBlock);
-
-  protected abstract List<Object[]> buildNonMatchRightRows();
-
   // TODO: Optimize this to avoid unnecessary object copy.
   protected Object[] joinRow(@Nullable Object[] leftRow, @Nullable Object[] rightRow) {
     Object[] resultRow = new Object[_resultColumnSize];
@@ -336,12 +233,13 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
 
   /**
    * Checks if we have reached the rows limit for joined rows. If the limit has been reached, either an exception is
-   * thrown or the left input is early terminated based on the {@link #_joinOverflowMode}.
+   * thrown or the left input is early terminated based on the {@link #_joinOverflowMode}. In
+   * {@link JoinOverFlowMode#SPILL} mode the joined rows are not limited, as they are emitted block by block.
    *
    * @return {@code true} if the limit has been reached, {@code false} otherwise.
    */
   protected boolean isMaxRowsLimitReached(int numJoinedRows) {
-    if (numJoinedRows == _maxRowsInJoin) {
+    if (numJoinedRows == _maxRowsInJoin && _joinOverflowMode != JoinOverFlowMode.SPILL) {
       if (_joinOverflowMode == JoinOverFlowMode.THROW) {
         throwForJoinRowLimitExceeded(
             "Cannot process join, reached number of rows limit: " + _maxRowsInJoin);
@@ -397,7 +295,15 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows (from both inputs) written into spill files when the join overflow mode is SPILL.
+     */
+    NUM_SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes written into spill files when the join overflow mode is SPILL.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
@@ -266,7 +266,15 @@ public abstract class BaseMailboxReceiveOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows spilled to local disk while merging the received rows (sorted receive only).
+     */
+    NUM_SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes spilled to local disk while merging the received rows (sorted receive only).
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
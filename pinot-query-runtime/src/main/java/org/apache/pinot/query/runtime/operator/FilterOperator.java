@@ -25,12 +25,16 @@ import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.query.planner.plannode.FilterNode;
+import org.apache.pinot.query.runtime.blocks.ColumnarBlockView;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.operands.FilterOperand;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperandFactory;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.utils.BooleanUtils;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +51,8 @@ import org.slf4j.LoggerFactory;
     2) Binary Operand: equals, notEquals, greaterThan, greaterThanOrEqual, lessThan, lessThanOrEqual
     3) All boolean scalar functions we have that take tranformOperand.
     Note: Scalar functions are the ones we have in v1 engine and only do function name and arg # matching.
+   When the filter supports it, it is evaluated a block at a time over the columns of the block (see
+   FilterOperand#applyBatch), and only the matching rows are materialized.
  */
 public class FilterOperator extends MultiStageOperator {
 
@@ -55,6 +61,7 @@ public class FilterOperator extends MultiStageOperator {
 
   private final MultiStageOperator _input;
   private final TransformOperand _filterOperand;
+  private final boolean _batchSupported;
   private final DataSchema _dataSchema;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
 
@@ -65,6 +72,8 @@ public class FilterOperator extends MultiStageOperator {
     _filterOperand = TransformOperandFactory.getTransformOperand(node.getCondition(), _dataSchema);
     Preconditions.checkState(_filterOperand.getResultType() == ColumnDataType.BOOLEAN,
         "Filter operand must return BOOLEAN, got: %s", _filterOperand.getResultType());
+    _batchSupported =
+        _filterOperand instanceof FilterOperand && ((FilterOperand) _filterOperand).isBatchSupported();
   }
 
   @Override
@@ -98,26 +107,50 @@ public class FilterOperator extends MultiStageOperator {
   @Override
   protected MseBlock getNextBlock() {
     // Keep reading the input blocks until we find a match row or all blocks are processed.
-    // TODO: Consider batching the rows to improve performance.
     while (true) {
       MseBlock block = _input.nextBlock();
       if (block.isEos()) {
         return block;
       }
       MseBlock.Data dataBlock = (MseBlock.Data) block;
-      List<Object[]> rows = new ArrayList<>();
-      for (Object[] row : dataBlock.asRowHeap().getRows()) {
-        Object filterResult = _filterOperand.apply(row);
-        if (BooleanUtils.isTrueInternalValue(filterResult)) {
-          rows.add(row);
-        }
-      }
+      List<Object[]> rows = _batchSupported ? filterBatch(dataBlock) : filterRows(dataBlock);
       if (!rows.isEmpty()) {
         return new RowHeapDataBlock(rows, _dataSchema);
       }
     }
   }
 
+  private List<Object[]> filterRows(MseBlock.Data dataBlock) {
+    List<Object[]> rows = new ArrayList<>();
+    for (Object[] row : dataBlock.asRowHeap().getRows()) {
+      Object filterResult = _filterOperand.apply(row);
+      if (BooleanUtils.isTrueInternalValue(filterResult)) {
+        rows.add(row);
+      }
+    }
+    return rows;
+  }
+
+  private List<Object[]> filterBatch(MseBlock.Data dataBlock) {
+    ColumnarBlockView blockView = new ColumnarBlockView(dataBlock);
+    RoaringBitmap matchedBitmap = ((FilterOperand) _filterOperand).applyBatch(blockView, null).getTrueBitmap();
+    int numMatchedRows = matchedBitmap.getCardinality();
+    // Avoid materializing the rows of a serialized block when none of them matches
+    if (numMatchedRows == 0) {
+      return List.of();
+    }
+    List<Object[]> inputRows = blockView.getRows();
+    if (numMatchedRows == inputRows.size()) {
+      return inputRows;
+    }
+    List<Object[]> rows = new ArrayList<>(numMatchedRows);
+    PeekableIntIterator iterator = matchedBitmap.getIntIterator();
+    while (iterator.hasNext()) {
+      rows.add(inputRows.get(iterator.next()));
+    }
+    return rows;
+  }
+
   @Override
   public StatMap<StatKey> copyStatMaps() {
     return new StatMap<>(_statMap);
@@ -19,8 +19,12 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,26 +36,46 @@ import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.planner.partitioning.KeySelectorFactory;
 import org.apache.pinot.query.planner.plannode.JoinNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.operator.join.DoubleLookupTable;
 import org.apache.pinot.query.runtime.operator.join.FloatLookupTable;
 import org.apache.pinot.query.runtime.operator.join.IntLookupTable;
 import org.apache.pinot.query.runtime.operator.join.LongLookupTable;
 import org.apache.pinot.query.runtime.operator.join.LookupTable;
 import org.apache.pinot.query.runtime.operator.join.ObjectLookupTable;
+import org.apache.pinot.query.runtime.operator.spill.PartitionedSpillWriter;
+import org.apache.pinot.query.runtime.operator.spill.SpillFile;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
+import org.apache.pinot.query.runtime.operator.spill.SpilledPartition;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner.JoinOverFlowMode;
 
 
 /**
  * This {@code HashJoinOperator} join algorithm with join keys. Right table is materialized into a hash table.
+ * <p>When the join overflow mode is {@link JoinOverFlowMode#SPILL} and the right table exceeds the max rows in join,
+ * it falls back to a grace hash join: both inputs are partitioned by the hash of the join keys into local spill files,
+ * then each partition is joined in memory like a regular hash join. Partitions whose right side still exceeds the
+ * limit are recursively re-partitioned with different hash bits.
  */
 // TODO: Support memory size based resource limit.
 @SuppressWarnings("unchecked")
-public class HashJoinOperator extends BaseJoinOperator {
+public class HashJoinOperator extends BaseHashJoinOperator {
   private static final String EXPLAIN_NAME = "HASH_JOIN";
   private static final String ADD_ROWS_TO_RIGHT_TABLE_SCOPE = "HashJoinOperator#addRowsToRightTable";
   private static final String BUILD_JOINED_ROWS_SCOPE = "HashJoinOperator#buildJoinedRows";
   private static final String BUILD_NON_MATCH_RIGHT_ROWS_SCOPE = "HashJoinOperator#buildNonMatchRightRows";
 
+  // Grace hash join settings. Each partitioning level consumes SPILL_PARTITION_BITS bits of the mixed key hash.
+  private static final int SPILL_PARTITION_BITS = 3;
+  private static final int NUM_SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+  // Partitions still exceeding the limit after this level (e.g. a single hot key) are joined in memory regardless.
+  private static final int MAX_SPILL_LEVEL = 3;
+  // Indexes of the right and left spill files within a spilled partition
+  private static final int RIGHT_SPILL_FILE = 0;
+  private static final int LEFT_SPILL_FILE = 1;
+  private static final int MAX_SPILL_ROWS_PER_BLOCK = 10_000;
+
   // Placeholder for BitSet in _matchedRightRows when all keys are unique in the right table.
   protected static final BitSet BIT_SET_PLACEHOLDER = new BitSet(0);
 
@@ -68,6 +92,25 @@ public class HashJoinOperator extends BaseJoinOperator {
   @Nullable
   private List<Object[]> _nullKeyRightRows;
 
+  // Below are only used by the grace hash join (join overflow mode SPILL).
+  private final List<Integer> _leftKeys;
+  private final DataSchema _leftSchema;
+  @Nullable
+  private SpillManager _spillManager;
+  @Nullable
+  private DataSchema _rightSchema;
+  // Right partitions spilled while building the right table, to be paired with the left partitions.
+  @Nullable
+  private SpillFile[] _rightSpillFiles;
+  @Nullable
+  private Deque<SpilledPartition> _pendingPartitions;
+  @Nullable
+  private SpilledPartition _currentPartition;
+  @Nullable
+  private SpillFile.Reader _currentLeftReader;
+  @Nullable
+  private MseBlock.Eos _leftEos;
+
   public HashJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
       MultiStageOperator rightInput, JoinNode node) {
     super(context, leftInput, leftSchema, rightInput, node);
@@ -79,6 +122,8 @@ public class HashJoinOperator extends BaseJoinOperator {
     _matchedRightRows = needUnmatchedRightRows() ? new HashMap<>() : null;
     // Initialize _nullKeyRightRows for both RIGHT and FULL JOINs
     _nullKeyRightRows = needUnmatchedRightRows() ? new ArrayList<>() : null;
+    _leftKeys = leftKeys;
+    _leftSchema = leftSchema;
   }
 
   /// Constructor that takes the schema for NonEquiEvaluator as an argument
@@ -91,6 +136,8 @@ public class HashJoinOperator extends BaseJoinOperator {
     _rightKeySelector = KeySelectorFactory.getKeySelector(node.getRightKeys());
     _rightTable = createLookupTable(leftKeys, leftSchema);
     _matchedRightRows = needUnmatchedRightRows() ? new HashMap<>() : null;
+    _leftKeys = leftKeys;
+    _leftSchema = leftSchema;
   }
 
   private static LookupTable createLookupTable(List<Integer> joinKeys, DataSchema schema) {
@@ -156,6 +203,10 @@ public class HashJoinOperator extends BaseJoinOperator {
 
   @Override
   protected void finishBuildingRightTable() {
+    if (_rightSpillFiles != null) {
+      // Right table is spilled, partitions are loaded one by one when joining
+      return;
+    }
     assert _rightTable != null : "Right table should not be null when finishing building";
     _rightTable.finish();
   }
@@ -165,6 +216,236 @@ public class HashJoinOperator extends BaseJoinOperator {
     _rightTable = null;
     _matchedRightRows = null;
     _nullKeyRightRows = null;
+    closeSpillManager();
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    closeSpillManager();
+  }
+
+  @Override
+  protected MseBlock spillRightTable(List<Object[]> rows, DataSchema rightSchema) {
+    assert _rightTable != null : "Right table should not be null when spilling";
+    LOGGER.debug("Right table reached the max rows in join: {}, spilling to disk", _maxRowsInJoin);
+    try {
+      _spillManager = new SpillManager(_context, EXPLAIN_NAME);
+      _rightSchema = rightSchema;
+      PartitionedSpillWriter rightWriter = createSpillWriter(rightSchema);
+      // Move the rows already in the right table out of the heap
+      for (Map.Entry<Object, Object> entry : _rightTable.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Object[]) {
+          rightWriter.add(getSpillPartition(entry.getKey(), 0), (Object[]) value);
+        } else {
+          for (Object[] row : (List<Object[]>) value) {
+            rightWriter.add(getSpillPartition(entry.getKey(), 0), row);
+          }
+        }
+      }
+      _rightTable = null;
+      if (_nullKeyRightRows != null) {
+        for (Object[] row : _nullKeyRightRows) {
+          rightWriter.add(0, row);
+        }
+        _nullKeyRightRows.clear();
+      }
+      spillRows(rightWriter, _rightKeySelector, rows, 0);
+      MseBlock rightBlock = _rightInput.nextBlock();
+      while (rightBlock.isData()) {
+        spillRows(rightWriter, _rightKeySelector, ((MseBlock.Data) rightBlock).asRowHeap().getRows(), 0);
+        checkTerminationAndSampleUsage();
+        rightBlock = _rightInput.nextBlock();
+      }
+      _rightSpillFiles = rightWriter.finish();
+      return rightBlock;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected MseBlock buildJoinedDataBlock() {
+    if (_rightSpillFiles == null && _pendingPartitions == null) {
+      return super.buildJoinedDataBlock();
+    }
+    try {
+      return buildSpilledJoinedDataBlock();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Joins the spilled partitions one at a time. On the first call, the whole left input is partitioned the same way as
+   * the right table.
+   */
+  private MseBlock buildSpilledJoinedDataBlock()
+      throws IOException {
+    assert _spillManager != null : "Spill manager should not be null when joining spilled partitions";
+    if (_pendingPartitions == null) {
+      assert _rightSpillFiles != null : "Right spill files should not be null when partitioning the left input";
+      PartitionedSpillWriter leftWriter = createSpillWriter(_leftSchema);
+      MseBlock leftBlock = _leftInput.nextBlock();
+      while (leftBlock.isData()) {
+        spillRows(leftWriter, _leftKeySelector, ((MseBlock.Data) leftBlock).asRowHeap().getRows(), 0);
+        checkTerminationAndSampleUsage();
+        leftBlock = _leftInput.nextBlock();
+      }
+      MseBlock.Eos leftEos = (MseBlock.Eos) leftBlock;
+      if (leftEos.isError()) {
+        return leftEos;
+      }
+      _leftEos = leftEos;
+      SpillFile[] leftSpillFiles = leftWriter.finish();
+      _pendingPartitions = new ArrayDeque<>(NUM_SPILL_PARTITIONS);
+      for (int i = 0; i < NUM_SPILL_PARTITIONS; i++) {
+        _pendingPartitions.add(new SpilledPartition(0, _rightSpillFiles[i], leftSpillFiles[i]));
+      }
+      _rightSpillFiles = null;
+    }
+
+    while (true) {
+      if (_currentLeftReader == null) {
+        SpilledPartition partition = _pendingPartitions.poll();
+        if (partition == null) {
+          assert _leftEos != null;
+          return _leftEos;
+        }
+        if (!loadPartition(partition)) {
+          continue;
+        }
+      }
+      assert _currentPartition != null;
+      List<Object[]> leftRows = _currentLeftReader.nextBlock();
+      List<Object[]> rows;
+      if (leftRows != null) {
+        rows = buildJoinedRows(new RowHeapDataBlock(leftRows, _leftSchema));
+      } else {
+        rows = needUnmatchedRightRows() ? buildNonMatchRightRows() : List.of();
+        _currentLeftReader.close();
+        _currentLeftReader = null;
+        _spillManager.release(_currentPartition.getSpillFile(LEFT_SPILL_FILE));
+        _currentPartition = null;
+      }
+      checkTerminationAndSampleUsage();
+      if (!rows.isEmpty()) {
+        return new RowHeapDataBlock(rows, _resultSchema);
+      }
+    }
+  }
+
+  /**
+   * Loads the right side of the given partition into a new lookup table, and opens the reader on its left side.
+   * Returns {@code false} when the partition is skipped, either because it cannot produce any row or because it has
+   * been re-partitioned into smaller partitions.
+   */
+  private boolean loadPartition(SpilledPartition partition)
+      throws IOException {
+    assert _spillManager != null && _pendingPartitions != null;
+    SpillFile rightFile = partition.getSpillFile(RIGHT_SPILL_FILE);
+    SpillFile leftFile = partition.getSpillFile(LEFT_SPILL_FILE);
+    long numRightRows = rightFile.getNumRows();
+    long numLeftRows = leftFile.getNumRows();
+    boolean canProduceRows = numRightRows > 0 ? numLeftRows > 0 || needUnmatchedRightRows()
+        : numLeftRows > 0 && (needUnmatchedLeftRows() || _joinType == JoinRelType.ANTI);
+    if (!canProduceRows) {
+      _spillManager.release(rightFile);
+      _spillManager.release(leftFile);
+      return false;
+    }
+    if (numRightRows > _maxRowsInJoin && partition.getLevel() < MAX_SPILL_LEVEL) {
+      assert _rightSchema != null;
+      int level = partition.getLevel() + 1;
+      SpillFile[] rightSpillFiles = respill(rightFile, _rightSchema, _rightKeySelector, level);
+      SpillFile[] leftSpillFiles = respill(leftFile, _leftSchema, _leftKeySelector, level);
+      for (int i = NUM_SPILL_PARTITIONS - 1; i >= 0; i--) {
+        _pendingPartitions.addFirst(new SpilledPartition(level, rightSpillFiles[i], leftSpillFiles[i]));
+      }
+      return false;
+    }
+
+    _rightTable = createLookupTable(_leftKeys, _leftSchema);
+    if (_matchedRightRows != null) {
+      _matchedRightRows.clear();
+    }
+    if (_nullKeyRightRows != null) {
+      _nullKeyRightRows.clear();
+    }
+    try (SpillFile.Reader reader = rightFile.openReader()) {
+      List<Object[]> rows;
+      while ((rows = reader.nextBlock()) != null) {
+        addRowsToRightTable(rows);
+      }
+    }
+    _rightTable.finish();
+    _spillManager.release(rightFile);
+    _currentLeftReader = leftFile.openReader();
+    _currentPartition = partition;
+    return true;
+  }
+
+  private SpillFile[] respill(SpillFile spillFile, DataSchema dataSchema, KeySelector<?> keySelector, int level)
+      throws IOException {
+    assert _spillManager != null;
+    PartitionedSpillWriter writer = createSpillWriter(dataSchema);
+    try (SpillFile.Reader reader = spillFile.openReader()) {
+      List<Object[]> rows;
+      while ((rows = reader.nextBlock()) != null) {
+        spillRows(writer, keySelector, rows, level);
+        checkTerminationAndSampleUsage();
+      }
+    }
+    _spillManager.release(spillFile);
+    return writer.finish();
+  }
+
+  private PartitionedSpillWriter createSpillWriter(DataSchema dataSchema)
+      throws IOException {
+    assert _spillManager != null;
+    int maxRowsPerBlock = Math.max(1, Math.min(MAX_SPILL_ROWS_PER_BLOCK, _maxRowsInJoin / NUM_SPILL_PARTITIONS));
+    return new PartitionedSpillWriter(_spillManager, dataSchema, NUM_SPILL_PARTITIONS, maxRowsPerBlock);
+  }
+
+  private static void spillRows(PartitionedSpillWriter writer, KeySelector<?> keySelector, List<Object[]> rows,
+      int level)
+      throws IOException {
+    for (Object[] row : rows) {
+      writer.add(getSpillPartition(keySelector.getKey(row), level), row);
+    }
+  }
+
+  /**
+   * Returns the spill partition of the given key on the given partitioning level. Rows with null keys can be placed in
+   * any partition as they never match, so they are all placed in the first one.
+   */
+  private static int getSpillPartition(@Nullable Object key, int level) {
+    if (key == null) {
+      return 0;
+    }
+    return SpilledPartition.getPartitionId(key.hashCode(), level, SPILL_PARTITION_BITS);
+  }
+
+  private void closeSpillManager() {
+    if (_spillManager == null) {
+      return;
+    }
+    if (_currentLeftReader != null) {
+      try {
+        _currentLeftReader.close();
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close spill file reader", e);
+      }
+      _currentLeftReader = null;
+    }
+    _statMap.merge(StatKey.NUM_SPILLED_ROWS, _spillManager.getNumSpilledRows());
+    _statMap.merge(StatKey.SPILLED_BYTES, _spillManager.getNumSpilledBytes());
+    _spillManager.close();
+    _spillManager = null;
+    _rightSpillFiles = null;
+    _pendingPartitions = null;
+    _currentPartition = null;
   }
 
   @Override
@@ -59,6 +59,7 @@ import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
+import org.apache.pinot.query.runtime.executor.ManagedBlockers;
 import org.apache.pinot.query.runtime.operator.utils.TypeUtils;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
@@ -189,8 +190,8 @@ public class LeafOperator extends MultiStageOperator {
     BaseResultsBlock resultsBlock;
     try {
       // Here we use passive deadline because we end up waiting for the SSE operators which can timeout by their own.
-      resultsBlock =
-          _blockingQueue.poll(_context.getPassiveDeadlineMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      resultsBlock = ManagedBlockers.poll(_blockingQueue,
+          _context.getPassiveDeadlineMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     } catch (InterruptedException e) {
       terminateAndClearResultsBlocks();
       return replaceWithTerminateExceptionIfAvailable(CANCELLED_BLOCK);
@@ -235,8 +236,8 @@ public class LeafOperator extends MultiStageOperator {
       BaseResultsBlock resultsBlock;
       try {
         // Here we use passive deadline because we end up waiting for the SSE operators which can timeout by their own.
-        resultsBlock =
-            _blockingQueue.poll(_context.getPassiveDeadlineMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        resultsBlock = ManagedBlockers.poll(_blockingQueue,
+            _context.getPassiveDeadlineMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
       } catch (InterruptedException e) {
         terminateAndClearResultsBlocks();
         checkTerminateException();
@@ -491,7 +492,8 @@ public class LeafOperator extends MultiStageOperator {
         });
       }
       try {
-        if (!latch.await(_context.getPassiveDeadlineMs() - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+        long timeoutMs = _context.getPassiveDeadlineMs() - System.currentTimeMillis();
+        if (!ManagedBlockers.block(() -> latch.await(timeoutMs, TimeUnit.MILLISECONDS))) {
           setErrorBlock(TIMEOUT_BLOCK);
         }
       } catch (InterruptedException e) {
@@ -401,7 +401,17 @@ public class MailboxSendOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * How many bytes were serialized by this mailbox in the blocks that were sent compressed, before compression.
+     */
+    UNCOMPRESSED_BYTES(StatMap.Type.LONG),
+    /**
+     * How many bytes were sent by this mailbox in the blocks that were sent compressed, after compression.
+     * <p>
+     * The relation between COMPRESSED_BYTES and UNCOMPRESSED_BYTES is the compression ratio of the exchange.
+     */
+    COMPRESSED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
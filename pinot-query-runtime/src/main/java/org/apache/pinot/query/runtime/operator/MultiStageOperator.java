@@ -258,7 +258,15 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
       /// So far this keys do not need to be modified from here because they are incremented in a per-worker basis:
       /// ServerMeter.AGGREGATE_TIMES_NUM_GROUPS_LIMIT_REACHED
       /// ServerMeter.AGGREGATE_TIMES_NUM_GROUPS_WARNING_LIMIT_REACHED
-      /// public void updateServerMetrics(StatMap<?> map, ServerMetrics serverMetrics);
+      @Override
+      public void updateServerMetrics(StatMap<?> map, ServerMetrics serverMetrics) {
+        @SuppressWarnings("unchecked")
+        StatMap<AggregateOperator.StatKey> stats = (StatMap<AggregateOperator.StatKey>) map;
+        long spilledBytes = stats.getLong(AggregateOperator.StatKey.SPILLED_BYTES);
+        if (spilledBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_SPILLED_BYTES, spilledBytes);
+        }
+      }
     },
     FILTER(1, FilterOperator.StatKey.class) {
       @Override
@@ -288,6 +296,10 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
         }
         serverMetrics.addTimedValue(ServerTimer.HASH_JOIN_BUILD_TABLE_CPU_TIME_MS,
             stats.getLong(HashJoinOperator.StatKey.TIME_BUILDING_HASH_TABLE_MS), TimeUnit.MILLISECONDS);
+        long spilledBytes = stats.getLong(HashJoinOperator.StatKey.SPILLED_BYTES);
+        if (spilledBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_SPILLED_BYTES, spilledBytes);
+        }
       }
     },
     INTERSECT(3, SetOperator.StatKey.class) {
@@ -338,6 +350,10 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
             stats.getInt(BaseMailboxReceiveOperator.StatKey.RAW_MESSAGES));
         serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_RAW_BYTES,
             stats.getLong(BaseMailboxReceiveOperator.StatKey.DESERIALIZED_BYTES));
+        long spilledBytes = stats.getLong(BaseMailboxReceiveOperator.StatKey.SPILLED_BYTES);
+        if (spilledBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_SPILLED_BYTES, spilledBytes);
+        }
 
         serverMetrics.addTimedValue(ServerTimer.MULTI_STAGE_DESERIALIZATION_CPU_TIME_MS,
             stats.getLong(BaseMailboxReceiveOperator.StatKey.DESERIALIZATION_TIME_MS), TimeUnit.MILLISECONDS);
@@ -361,6 +377,12 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
         StatMap<MailboxSendOperator.StatKey> stats = (StatMap<MailboxSendOperator.StatKey>) map;
         serverMetrics.addTimedValue(ServerTimer.MULTI_STAGE_SERIALIZATION_CPU_TIME_MS,
             stats.getLong(MailboxSendOperator.StatKey.SERIALIZATION_TIME_MS), TimeUnit.MILLISECONDS);
+        long compressedBytes = stats.getLong(MailboxSendOperator.StatKey.COMPRESSED_BYTES);
+        if (compressedBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_UNCOMPRESSED_BYTES,
+              stats.getLong(MailboxSendOperator.StatKey.UNCOMPRESSED_BYTES));
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_COMPRESSED_BYTES, compressedBytes);
+        }
       }
     },
     MINUS(8, SetOperator.StatKey.class) {
@@ -386,6 +408,17 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
         StatMap<SortOperator.StatKey> stats = (StatMap<SortOperator.StatKey>) map;
         response.mergeMaxRowsInOperator(stats.getLong(SortOperator.StatKey.EMITTED_ROWS));
       }
+
+      @Override
+      public void updateServerMetrics(StatMap<?> map, ServerMetrics serverMetrics) {
+        super.updateServerMetrics(map, serverMetrics);
+        @SuppressWarnings("unchecked")
+        StatMap<SortOperator.StatKey> stats = (StatMap<SortOperator.StatKey>) map;
+        long spilledBytes = stats.getLong(SortOperator.StatKey.SPILLED_BYTES);
+        if (spilledBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_SPILLED_BYTES, spilledBytes);
+        }
+      }
     },
     TRANSFORM(11, TransformOperator.StatKey.class) {
       @Override
@@ -420,6 +453,10 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
         if (stats.getBoolean(WindowAggregateOperator.StatKey.MAX_ROWS_IN_WINDOW_REACHED)) {
           serverMetrics.addMeteredGlobalValue(ServerMeter.WINDOW_TIMES_MAX_ROWS_REACHED, 1);
         }
+        long spilledBytes = stats.getLong(WindowAggregateOperator.StatKey.SPILLED_BYTES);
+        if (spilledBytes > 0) {
+          serverMetrics.addMeteredGlobalValue(ServerMeter.MULTI_STAGE_SPILLED_BYTES, spilledBytes);
+        }
       }
     },
     LOOKUP_JOIN(14, LookupJoinOperator.StatKey.class) {
@@ -437,10 +474,19 @@ public abstract class MultiStageOperator implements Operator<MseBlock>, AutoClos
         StatMap<UnnestOperator.StatKey> stats = (StatMap<UnnestOperator.StatKey>) map;
         response.mergeMaxRowsInOperator(stats.getLong(UnnestOperator.StatKey.EMITTED_ROWS));
       }
+    },
+    SORT_MERGE_JOIN(16, BaseJoinOperator.StatKey.class) {
+      @Override
+      public void mergeInto(BrokerResponseNativeV2 response, StatMap<?> map) {
+        @SuppressWarnings("unchecked")
+        StatMap<BaseJoinOperator.StatKey> stats = (StatMap<BaseJoinOperator.StatKey>) map;
+        response.mergeMaxRowsInOperator(stats.getLong(BaseJoinOperator.StatKey.EMITTED_ROWS));
+        response.mergeMaxRowsInJoinReached(stats.getBoolean(BaseJoinOperator.StatKey.MAX_ROWS_IN_JOIN_REACHED));
+      }
     };
 
     // When adding new operator types, update MAX_ID if the new ID exceeds the current max
-    private static final int MAX_ID = 15;
+    private static final int MAX_ID = 16;
     private static final Type[] ID_TO_TYPE = new Type[MAX_ID + 1];
 
     static {
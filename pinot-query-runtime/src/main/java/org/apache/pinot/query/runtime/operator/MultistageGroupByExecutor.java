@@ -18,15 +18,21 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import javax.annotation.Nullable;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.common.CustomObject;
 import org.apache.pinot.common.datablock.DataBlock;
 import org.apache.pinot.common.request.context.ExpressionContext;
 import org.apache.pinot.common.utils.DataSchema;
@@ -42,7 +48,13 @@ import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.operator.groupby.GroupIdGenerator;
 import org.apache.pinot.query.runtime.operator.groupby.GroupIdGeneratorFactory;
+import org.apache.pinot.query.runtime.operator.spill.PartitionedSpillWriter;
+import org.apache.pinot.query.runtime.operator.spill.SpillFile;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
+import org.apache.pinot.query.runtime.operator.spill.SpilledPartition;
 import org.apache.pinot.query.runtime.operator.utils.TypeUtils;
+import org.apache.pinot.spi.query.QueryThreadContext;
+import org.apache.pinot.spi.utils.ByteArray;
 import org.apache.pinot.spi.utils.CommonConstants.Server;
 import org.roaringbitmap.PeekableIntIterator;
 import org.roaringbitmap.RoaringBitmap;
@@ -50,9 +62,25 @@ import org.roaringbitmap.RoaringBitmap;
 
 /**
  * Class that executes the keyed group by aggregations for the multistage AggregateOperator.
+ * <p>When a {@link SpillManager} is provided, reaching the num groups limit does not drop the new groups. Instead, the
+ * groups kept in memory are serialized (keys and intermediate results) into hash partitioned spill files and the
+ * in-memory state is reset. Once all the input is consumed, the spilled partitions are re-aggregated one at a time,
+ * so that the results are exact while only the groups of a single partition are kept in memory. A spilled partition
+ * with more rows than the num groups limit is partitioned further on the next bits of the key hash before being
+ * re-aggregated.
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class MultistageGroupByExecutor {
+  // Spill settings. Each partitioning level consumes SPILL_PARTITION_BITS bits of the key hash, and each partition is
+  // re-aggregated in memory at once.
+  private static final int SPILL_PARTITION_BITS = 4;
+  private static final int NUM_SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+  // Partitions still exceeding the limit after this level (e.g. too many spilled copies of the same groups) are
+  // re-aggregated in memory regardless.
+  private static final int MAX_SPILL_LEVEL = 3;
+  private static final int MAX_SPILL_ROWS_PER_BLOCK = 10_000;
+  private static final String SPILL_SCOPE = "Reading spilled groups";
+
   private final int[] _groupKeyIds;
   private final AggregationFunction[] _aggFunctions;
   private final int[] _filterArgIds;
@@ -64,18 +92,36 @@ public class MultistageGroupByExecutor {
   private final int _numGroupsLimit;
   private final int _numGroupsWarningLimit;
   private final boolean _filteredAggregationsSkipEmptyGroups;
+  private final int _maxInitialResultHolderCapacity;
 
   // Group By Result holders for each mode
-  private final GroupByResultHolder[] _aggregateResultHolders;
-  private final List<Object[]> _mergeResultHolder;
+  private GroupByResultHolder[] _aggregateResultHolders;
+  private List<Object[]> _mergeResultHolder;
 
   // Mapping from the row-key to a zero based integer index. This is used when we invoke the v1 aggregation functions
   // because they use the zero based integer indexes to store results.
-  private final GroupIdGenerator _groupIdGenerator;
+  private GroupIdGenerator _groupIdGenerator;
+
+  // Below are only used when spilling the groups on reaching the num groups limit.
+  @Nullable
+  private final SpillManager _spillManager;
+  @Nullable
+  private DataSchema _spillSchema;
+  @Nullable
+  private PartitionedSpillWriter _spillWriter;
+  @Nullable
+  private Deque<SpilledPartition> _spilledPartitions;
 
   public MultistageGroupByExecutor(int[] groupKeyIds, AggregationFunction[] aggFunctions, int[] filterArgIds,
       int maxFilterArgId, AggType aggType, boolean leafReturnFinalResult, DataSchema resultSchema,
       Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
+    this(groupKeyIds, aggFunctions, filterArgIds, maxFilterArgId, aggType, leafReturnFinalResult, resultSchema,
+        opChainMetadata, nodeHint, null);
+  }
+
+  public MultistageGroupByExecutor(int[] groupKeyIds, AggregationFunction[] aggFunctions, int[] filterArgIds,
+      int maxFilterArgId, AggType aggType, boolean leafReturnFinalResult, DataSchema resultSchema,
+      Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint, @Nullable SpillManager spillManager) {
     _groupKeyIds = groupKeyIds;
     _aggFunctions = aggFunctions;
     _filterArgIds = filterArgIds;
@@ -84,7 +130,7 @@ public class MultistageGroupByExecutor {
     _leafReturnFinalResult = leafReturnFinalResult;
     _resultSchema = resultSchema;
 
-    int maxInitialResultHolderCapacity = getResolvedMaxInitialResultHolderCapacity(opChainMetadata, nodeHint);
+    _maxInitialResultHolderCapacity = getResolvedMaxInitialResultHolderCapacity(opChainMetadata, nodeHint);
 
     _numGroupsLimit = getNumGroupsLimit(opChainMetadata, nodeHint);
     _numGroupsWarningLimit = getNumGroupsWarningLimit(opChainMetadata);
@@ -93,22 +139,32 @@ public class MultistageGroupByExecutor {
     // query option for improved performance.
     _filteredAggregationsSkipEmptyGroups = QueryOptionsUtils.isFilteredAggregationsSkipEmptyGroups(opChainMetadata);
 
-    int numFunctions = aggFunctions.length;
-    if (!aggType.isInputIntermediateFormat()) {
+    _spillManager = spillManager;
+    initGroups();
+  }
+
+  /**
+   * Creates empty result holders and group id generator. When spilling is enabled, the groups are not capped while
+   * processing a block, and they are spilled once the block pushes them over the num groups limit.
+   */
+  private void initGroups() {
+    int maxNumGroups = _spillManager != null ? Integer.MAX_VALUE : _numGroupsLimit;
+    int numFunctions = _aggFunctions.length;
+    if (!_aggType.isInputIntermediateFormat()) {
       _aggregateResultHolders = new GroupByResultHolder[numFunctions];
       for (int i = 0; i < numFunctions; i++) {
         _aggregateResultHolders[i] =
-            _aggFunctions[i].createGroupByResultHolder(maxInitialResultHolderCapacity, _numGroupsLimit);
+            _aggFunctions[i].createGroupByResultHolder(_maxInitialResultHolderCapacity, maxNumGroups);
       }
       _mergeResultHolder = null;
     } else {
-      _mergeResultHolder = new ArrayList<>(maxInitialResultHolderCapacity);
+      _mergeResultHolder = new ArrayList<>(_maxInitialResultHolderCapacity);
       _aggregateResultHolders = null;
     }
 
     _groupIdGenerator =
-        GroupIdGeneratorFactory.getGroupIdGenerator(_resultSchema.getStoredColumnDataTypes(), groupKeyIds.length,
-            _numGroupsLimit, maxInitialResultHolderCapacity);
+        GroupIdGeneratorFactory.getGroupIdGenerator(_resultSchema.getStoredColumnDataTypes(), _groupKeyIds.length,
+            maxNumGroups, Math.min(_maxInitialResultHolderCapacity, _numGroupsLimit));
   }
 
   private int getNumGroupsLimit(Map<String, String> opChainMetadata, @Nullable PlanNode.NodeHint nodeHint) {
@@ -187,12 +243,22 @@ public class MultistageGroupByExecutor {
     } else {
       processMerge(block);
     }
+    if (_spillManager != null && _groupIdGenerator.getNumGroups() >= _numGroupsLimit) {
+      try {
+        spillGroups();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
   /**
    * Get aggregation result limited to first {@code maxRows} rows, ordered with {@code comparator}.
    */
   public List<Object[]> getResult(Comparator<Object[]> comparator, int maxRows) {
+    if (hasSpilled()) {
+      return getSpilledResult(comparator, maxRows);
+    }
     int numGroups = Math.min(_groupIdGenerator.getNumGroups(), maxRows);
     if (numGroups == 0) {
       return Collections.emptyList();
@@ -237,6 +303,9 @@ public class MultistageGroupByExecutor {
 
   /**  Get aggregation result limited to {@code maxRows} rows. */
   public List<Object[]> getResult(int maxRows) {
+    if (hasSpilled()) {
+      return getSpilledResult(null, maxRows);
+    }
     int numGroups = Math.min(_groupIdGenerator.getNumGroups(), maxRows);
     if (numGroups == 0) {
       return Collections.emptyList();
@@ -276,27 +345,44 @@ public class MultistageGroupByExecutor {
   }
 
   private Object getResultValue(int functionId, int groupId) {
+    return getResultValue(functionId, getMergeableValue(functionId, groupId));
+  }
+
+  /**
+   * Returns the value kept for the given group, which can be merged with values of the same group: the final result
+   * when the input is final results of the leaf stage, or the intermediate result otherwise.
+   */
+  private Object getMergeableValue(int functionId, int groupId) {
+    if (_aggregateResultHolders != null) {
+      return _aggFunctions[functionId].extractGroupByResult(_aggregateResultHolders[functionId], groupId);
+    } else {
+      return _mergeResultHolder.get(groupId)[functionId];
+    }
+  }
+
+  /**
+   * Converts the mergeable value of a group (see {@link #getMergeableValue(int, int)}) into the output value.
+   */
+  private Object getResultValue(int functionId, @Nullable Object mergeableValue) {
     AggregationFunction aggFunction = _aggFunctions[functionId];
     switch (_aggType) {
-      case LEAF: {
-        Object intermediateResult = aggFunction.extractGroupByResult(_aggregateResultHolders[functionId], groupId);
-        return _leafReturnFinalResult ? aggFunction.extractFinalResult(intermediateResult) : intermediateResult;
-      }
+      case LEAF:
+        return _leafReturnFinalResult ? aggFunction.extractFinalResult(mergeableValue) : mergeableValue;
       case INTERMEDIATE:
-        return _mergeResultHolder.get(groupId)[functionId];
-      case FINAL: {
-        Object mergedResult = _mergeResultHolder.get(groupId)[functionId];
-        return _leafReturnFinalResult ? mergedResult : aggFunction.extractFinalResult(mergedResult);
-      }
-      case DIRECT: {
-        Object intermediateResult = aggFunction.extractGroupByResult(_aggregateResultHolders[functionId], groupId);
-        return aggFunction.extractFinalResult(intermediateResult);
-      }
+        return mergeableValue;
+      case FINAL:
+        return _leafReturnFinalResult ? mergeableValue : aggFunction.extractFinalResult(mergeableValue);
+      case DIRECT:
+        return aggFunction.extractFinalResult(mergeableValue);
       default:
         throw new IllegalStateException("Unsupported aggType: " + _aggType);
     }
   }
 
+  private boolean isMergeableValueFinalResult() {
+    return _aggType == AggType.FINAL && _leafReturnFinalResult;
+  }
+
   public int getNumGroups() {
     return _groupIdGenerator.getNumGroups();
   }
@@ -306,7 +392,286 @@ public class MultistageGroupByExecutor {
   }
 
   public boolean isNumGroupsLimitReached() {
-    return _groupIdGenerator.getNumGroups() == _numGroupsLimit;
+    return _spillManager == null && _groupIdGenerator.getNumGroups() == _numGroupsLimit;
+  }
+
+  /**
+   * Returns whether the groups have been spilled to disk, in which case the results can be consumed one partition at a
+   * time with {@link #getNextSpilledResult()}.
+   */
+  public boolean hasSpilled() {
+    return _spillWriter != null || _spilledPartitions != null;
+  }
+
+  /**
+   * Returns the result rows of the next spilled partition, or {@code null} once all the partitions are consumed. The
+   * groups still in memory are spilled on the first call, so that each group belongs to exactly one partition.
+   */
+  @Nullable
+  public List<Object[]> getNextSpilledResult() {
+    assert _spillManager != null : "Spill manager should not be null when reading spilled results";
+    try {
+      if (_spilledPartitions == null) {
+        spillGroups();
+        assert _spillWriter != null;
+        _spilledPartitions = new ArrayDeque<>();
+        for (SpillFile spillFile : _spillWriter.finish()) {
+          _spilledPartitions.add(new SpilledPartition(0, spillFile));
+        }
+        _spillWriter = null;
+      }
+      SpilledPartition partition;
+      while ((partition = _spilledPartitions.pollFirst()) != null) {
+        QueryThreadContext.checkTerminationAndSampleUsage(SPILL_SCOPE);
+        SpillFile spillFile = partition.getSpillFile(0);
+        if (spillFile.getNumRows() > _numGroupsLimit && partition.getLevel() < MAX_SPILL_LEVEL) {
+          respill(partition);
+          continue;
+        }
+        List<Object[]> rows = aggregateSpilledPartition(spillFile);
+        _spillManager.release(spillFile);
+        if (!rows.isEmpty()) {
+          return rows;
+        }
+      }
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private List<Object[]> getSpilledResult(@Nullable Comparator<Object[]> comparator, int maxRows) {
+    if (maxRows <= 0) {
+      return Collections.emptyList();
+    }
+    int idx = 0;
+    if (comparator == null) {
+      List<Object[]> result = new ArrayList<>();
+      List<Object[]> rows;
+      while ((rows = getNextSpilledResult()) != null) {
+        for (Object[] row : rows) {
+          if (result.size() == maxRows) {
+            _rowsProcessed = idx + 1;
+            return result;
+          }
+          result.add(row);
+          idx++;
+        }
+      }
+      return result;
+    }
+
+    PriorityQueue<Object[]> sortedRows = new PriorityQueue<>(comparator);
+    List<Object[]> rows;
+    while ((rows = getNextSpilledResult()) != null) {
+      for (Object[] row : rows) {
+        idx++;
+        if (sortedRows.size() < maxRows) {
+          sortedRows.add(row);
+        } else if (comparator.compare(sortedRows.peek(), row) < 0) {
+          sortedRows.poll();
+          sortedRows.offer(row);
+        }
+      }
+    }
+    _rowsProcessed = idx;
+
+    int resultSize = sortedRows.size();
+    ArrayList<Object[]> result = new ArrayList<>(resultSize);
+    for (int i = resultSize - 1; i >= 0; i--) {
+      result.add(sortedRows.poll());
+    }
+    // reverse priority queue order because comparators are reversed
+    Collections.reverse(result);
+    return result;
+  }
+
+  /**
+   * Moves all the groups in memory into the spill partitions (by the hash of the group key), then resets the in-memory
+   * state. Mergeable values with custom object type are serialized with the aggregation function.
+   */
+  private void spillGroups()
+      throws IOException {
+    assert _spillManager != null;
+    int numKeys = _groupKeyIds.length;
+    int numFunctions = _aggFunctions.length;
+    if (_spillWriter == null) {
+      _spillSchema = getSpillSchema();
+      _spillWriter = createSpillWriter();
+    }
+    assert _spillSchema != null;
+    boolean finalResult = isMergeableValueFinalResult();
+    ColumnDataType[] spillStoredTypes = _spillSchema.getStoredColumnDataTypes();
+    Iterator<GroupIdGenerator.GroupKey> groupKeyIterator =
+        _groupIdGenerator.getGroupKeyIterator(numKeys + numFunctions);
+    while (groupKeyIterator.hasNext()) {
+      GroupIdGenerator.GroupKey groupKey = groupKeyIterator.next();
+      Object[] row = groupKey._row;
+      for (int i = 0; i < numFunctions; i++) {
+        Object value = getMergeableValue(i, groupKey._groupId);
+        if (value != null && !finalResult
+            && _aggFunctions[i].getIntermediateResultColumnType() == ColumnDataType.OBJECT) {
+          value = serializeIntermediateResult(_aggFunctions[i], value);
+        }
+        row[numKeys + i] = value;
+      }
+      TypeUtils.convertRow(row, spillStoredTypes);
+      _spillWriter.add(getSpillPartition(row, numKeys, 0), row);
+    }
+    initGroups();
+  }
+
+  /**
+   * Partitions the rows of a spilled partition with too many rows further on the next bits of the key hash, and puts
+   * the new partitions in front of the pending ones.
+   */
+  private void respill(SpilledPartition partition)
+      throws IOException {
+    assert _spillManager != null;
+    int numKeys = _groupKeyIds.length;
+    int level = partition.getLevel() + 1;
+    PartitionedSpillWriter writer = createSpillWriter();
+    SpillFile spillFile = partition.getSpillFile(0);
+    try (SpillFile.Reader reader = spillFile.openReader()) {
+      List<Object[]> rows;
+      while ((rows = reader.nextBlock()) != null) {
+        for (Object[] row : rows) {
+          writer.add(getSpillPartition(row, numKeys, level), row);
+        }
+        QueryThreadContext.checkTerminationAndSampleUsage(SPILL_SCOPE);
+      }
+    }
+    _spillManager.release(spillFile);
+    SpillFile[] spillFiles = writer.finish();
+    for (int i = spillFiles.length - 1; i >= 0; i--) {
+      _spilledPartitions.addFirst(new SpilledPartition(level, spillFiles[i]));
+    }
+  }
+
+  private PartitionedSpillWriter createSpillWriter()
+      throws IOException {
+    assert _spillManager != null && _spillSchema != null;
+    int maxRowsPerBlock = Math.max(1, Math.min(MAX_SPILL_ROWS_PER_BLOCK, _numGroupsLimit / NUM_SPILL_PARTITIONS));
+    return new PartitionedSpillWriter(_spillManager, _spillSchema, NUM_SPILL_PARTITIONS, maxRowsPerBlock);
+  }
+
+  /**
+   * Returns the schema of the spilled groups: the group keys followed by the mergeable value of each function, where
+   * custom objects are stored as BYTES.
+   */
+  private DataSchema getSpillSchema() {
+    int numKeys = _groupKeyIds.length;
+    int numFunctions = _aggFunctions.length;
+    int numColumns = numKeys + numFunctions;
+    String[] columnNames = new String[numColumns];
+    ColumnDataType[] columnDataTypes = new ColumnDataType[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columnNames[i] = _resultSchema.getColumnName(i);
+      if (i < numKeys || isMergeableValueFinalResult()) {
+        columnDataTypes[i] = _resultSchema.getColumnDataType(i);
+      } else {
+        ColumnDataType intermediateType = _aggFunctions[i - numKeys].getIntermediateResultColumnType();
+        columnDataTypes[i] = intermediateType == ColumnDataType.OBJECT ? ColumnDataType.BYTES : intermediateType;
+      }
+    }
+    return new DataSchema(columnNames, columnDataTypes);
+  }
+
+  /**
+   * Re-aggregates the groups of a spilled partition, and returns the result rows.
+   */
+  private List<Object[]> aggregateSpilledPartition(SpillFile spillFile)
+      throws IOException {
+    int numKeys = _groupKeyIds.length;
+    int numFunctions = _aggFunctions.length;
+    boolean finalResult = isMergeableValueFinalResult();
+    GroupIdGenerator groupIdGenerator =
+        GroupIdGeneratorFactory.getGroupIdGenerator(_resultSchema.getStoredColumnDataTypes(), numKeys,
+            Integer.MAX_VALUE, Math.min(_maxInitialResultHolderCapacity, _numGroupsLimit));
+    List<Object[]> mergedResultHolder = new ArrayList<>();
+    Object[] key = new Object[numKeys];
+    try (SpillFile.Reader reader = spillFile.openReader()) {
+      List<Object[]> rows;
+      while ((rows = reader.nextBlock()) != null) {
+        for (Object[] row : rows) {
+          int groupId;
+          if (numKeys == 1) {
+            groupId = groupIdGenerator.getGroupId(row[0]);
+          } else {
+            System.arraycopy(row, 0, key, 0, numKeys);
+            groupId = groupIdGenerator.getGroupId(key);
+          }
+          Object[] mergedResults;
+          if (mergedResultHolder.size() == groupId) {
+            mergedResults = new Object[numFunctions];
+            mergedResultHolder.add(mergedResults);
+          } else {
+            mergedResults = mergedResultHolder.get(groupId);
+          }
+          for (int i = 0; i < numFunctions; i++) {
+            Object value = row[numKeys + i];
+            if (value == null) {
+              continue;
+            }
+            AggregationFunction aggFunction = _aggFunctions[i];
+            if (!finalResult && aggFunction.getIntermediateResultColumnType() == ColumnDataType.OBJECT) {
+              value = deserializeIntermediateResult(aggFunction, (ByteArray) value);
+            }
+            if (mergedResults[i] == null) {
+              mergedResults[i] = value;
+            } else if (finalResult) {
+              mergedResults[i] = aggFunction.mergeFinalResult((Comparable) mergedResults[i], (Comparable) value);
+            } else {
+              mergedResults[i] = aggFunction.merge(mergedResults[i], value);
+            }
+          }
+        }
+        QueryThreadContext.checkTerminationAndSampleUsage(SPILL_SCOPE);
+      }
+    }
+
+    List<Object[]> result = new ArrayList<>(groupIdGenerator.getNumGroups());
+    ColumnDataType[] resultStoredTypes = _resultSchema.getStoredColumnDataTypes();
+    Iterator<GroupIdGenerator.GroupKey> groupKeyIterator = groupIdGenerator.getGroupKeyIterator(numKeys + numFunctions);
+    while (groupKeyIterator.hasNext()) {
+      GroupIdGenerator.GroupKey groupKey = groupKeyIterator.next();
+      Object[] mergedResults = mergedResultHolder.get(groupKey._groupId);
+      Object[] row = groupKey._row;
+      for (int i = 0; i < numFunctions; i++) {
+        row[numKeys + i] = getResultValue(i, mergedResults[i]);
+      }
+      TypeUtils.convertRow(row, resultStoredTypes);
+      result.add(row);
+    }
+    return result;
+  }
+
+  /**
+   * Serializes the intermediate result as the custom object type followed by the bytes of the custom object.
+   */
+  private static ByteArray serializeIntermediateResult(AggregationFunction aggFunction, Object intermediateResult) {
+    AggregationFunction.SerializedIntermediateResult serialized =
+        aggFunction.serializeIntermediateResult(intermediateResult);
+    byte[] bytes = serialized.getBytes();
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+    buffer.putInt(serialized.getType());
+    buffer.put(bytes);
+    return new ByteArray(buffer.array());
+  }
+
+  private static Object deserializeIntermediateResult(AggregationFunction aggFunction, ByteArray value) {
+    ByteBuffer buffer = ByteBuffer.wrap(value.getBytes());
+    int type = buffer.getInt();
+    return aggFunction.deserializeIntermediateResult(new CustomObject(type, buffer.slice()));
+  }
+
+  private static int getSpillPartition(Object[] row, int numKeys, int level) {
+    int hash = 1;
+    for (int i = 0; i < numKeys; i++) {
+      Object key = row[i];
+      hash = 31 * hash + (key != null ? key.hashCode() : 0);
+    }
+    return SpilledPartition.getPartitionId(hash, level, SPILL_PARTITION_BITS);
   }
 
   private void processAggregate(MseBlock.Data block) {
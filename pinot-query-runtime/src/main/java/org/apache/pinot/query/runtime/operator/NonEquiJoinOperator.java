@@ -34,7 +34,7 @@ import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
  * The {@code NonEquiJoinOperator} implements the join algorithm without join keys. Right table is materialized into a
  * list.
  */
-public class NonEquiJoinOperator extends BaseJoinOperator {
+public class NonEquiJoinOperator extends BaseHashJoinOperator {
   private static final String EXPLAIN_NAME = "NON_EQUI_JOIN";
   private static final String BUILD_JOINED_ROWS_SCOPE = "NonEquiJoinOperator#buildJoinedRows";
   private static final String BUILD_NON_MATCH_RIGHT_ROWS_SCOPE = "NonEquiJoinOperator#buildNonMatchRightRows";
@@ -0,0 +1,367 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner.JoinOverFlowMode;
+
+
+/**
+ * This {@code SortMergeJoinOperator} joins two inputs that are both sorted on the join keys (ascending, nulls last),
+ * e.g. received through sorted mailboxes.
+ * <p>Instead of building a hash table on the right input, both inputs are merged: this operator only keeps the right
+ * rows sharing the join keys of the current left row, so the max rows in join limit applies to the number of right
+ * rows with the same join keys. Rows with null join keys never match, and are only emitted as unmatched rows.
+ * <p>Note that this does not make the join run in constant memory. The sorted mailbox receives feeding this operator
+ * collect their whole input before emitting the first row, keeping up to {@code maxRowsInSort} rows in memory and
+ * spilling the rest to disk.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class SortMergeJoinOperator extends BaseJoinOperator {
+  private static final String EXPLAIN_NAME = "SORT_MERGE_JOIN";
+  private static final String BUILD_JOINED_ROWS_SCOPE = "SortMergeJoinOperator#buildJoinedRows";
+  private static final String LOAD_RIGHT_GROUP_SCOPE = "SortMergeJoinOperator#loadRightGroup";
+
+  // Joined rows are emitted once a block reaches this size, so that the output is streamed.
+  private static final int MAX_ROWS_PER_BLOCK = 10_000;
+
+  private final int[] _leftKeyIds;
+  private final int[] _rightKeyIds;
+  private final SortedInput _left;
+  private final SortedInput _right;
+
+  // Right rows sharing the same join keys, which are matched with the left rows with the same join keys.
+  private final List<Object[]> _rightGroup = new ArrayList<>();
+  // Track matched right rows in the current group for right join and full join to output non-matched right rows.
+  @Nullable
+  private final BitSet _matchedRightGroupRows;
+
+  public SortMergeJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
+      MultiStageOperator rightInput, JoinNode node) {
+    super(context, leftInput, leftSchema, rightInput, node);
+    List<Integer> leftKeys = node.getLeftKeys();
+    List<Integer> rightKeys = node.getRightKeys();
+    Preconditions.checkState(!leftKeys.isEmpty(), "Sort merge join operator requires join keys");
+    Preconditions.checkState(leftKeys.size() == rightKeys.size(),
+        "Sort merge join operator requires the same number of left and right join keys");
+    _leftKeyIds = leftKeys.stream().mapToInt(Integer::intValue).toArray();
+    _rightKeyIds = rightKeys.stream().mapToInt(Integer::intValue).toArray();
+    _left = new SortedInput(leftInput);
+    _right = new SortedInput(rightInput);
+    _matchedRightGroupRows = needUnmatchedRightRows() ? new BitSet() : null;
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+
+  @Override
+  public Type getOperatorType() {
+    return Type.SORT_MERGE_JOIN;
+  }
+
+  @Override
+  protected MseBlock getNextBlock() {
+    if (_eos != null) {
+      return _eos;
+    }
+    MseBlock mseBlock = mergeJoin();
+    if (mseBlock.isEos()) {
+      _eos = (MseBlock.Eos) mseBlock;
+      onEosProduced();
+    }
+    return mseBlock;
+  }
+
+  /**
+   * Merges both inputs until a block of joined rows is filled up, or returns the end of stream (or the first error)
+   * once both inputs are exhausted.
+   */
+  private MseBlock mergeJoin() {
+    List<Object[]> rows = new ArrayList<>();
+    while (rows.size() < MAX_ROWS_PER_BLOCK) {
+      Object[] leftRow = _left.peek();
+      if (leftRow == null) {
+        if (_left.isError()) {
+          return _left._eos;
+        }
+        // Left input is exhausted, only unmatched right rows are left
+        finishRightGroup(rows);
+        if (!needUnmatchedRightRows()) {
+          _right.drain();
+          break;
+        }
+        Object[] rightRow = _right.peek();
+        if (rightRow == null) {
+          break;
+        }
+        addUnmatchedRightRow(rightRow, rows);
+        _right.advance();
+        continue;
+      }
+      if (hasNullKey(leftRow, _leftKeyIds)) {
+        addUnmatchedLeftRow(leftRow, rows);
+        _left.advance();
+        continue;
+      }
+      if (!_rightGroup.isEmpty()) {
+        int result = compareKeys(leftRow, _leftKeyIds, _rightGroup.get(0), _rightKeyIds);
+        if (result == 0) {
+          joinWithRightGroup(leftRow, rows);
+          _left.advance();
+          continue;
+        }
+        if (result < 0) {
+          addUnmatchedLeftRow(leftRow, rows);
+          _left.advance();
+          continue;
+        }
+        finishRightGroup(rows);
+      }
+      Object[] rightRow = _right.peek();
+      if (rightRow == null) {
+        if (_right.isError()) {
+          return _right._eos;
+        }
+        // Right input is exhausted, only unmatched left rows are left
+        if (!needUnmatchedLeftRows() && _joinType != JoinRelType.ANTI) {
+          _left.drain();
+          break;
+        }
+        addUnmatchedLeftRow(leftRow, rows);
+        _left.advance();
+        continue;
+      }
+      int result = compareKeys(leftRow, _leftKeyIds, rightRow, _rightKeyIds);
+      if (result < 0) {
+        addUnmatchedLeftRow(leftRow, rows);
+        _left.advance();
+      } else if (result > 0) {
+        addUnmatchedRightRow(rightRow, rows);
+        _right.advance();
+      } else {
+        loadRightGroup();
+      }
+    }
+    checkTerminationAndSampleUsage();
+    if (!rows.isEmpty()) {
+      return new RowHeapDataBlock(rows, _resultSchema);
+    }
+    // Both inputs are exhausted (and already checked for errors, except when drained)
+    if (_right.isError()) {
+      return _right._eos;
+    }
+    assert _left._eos != null;
+    return _left._eos;
+  }
+
+  /**
+   * Reads all the right rows with the same join keys as the current right row into the right group.
+   */
+  private void loadRightGroup() {
+    Object[] firstRow = _right.peek();
+    assert firstRow != null;
+    Object[] rightRow = firstRow;
+    while (rightRow != null && compareKeys(firstRow, _rightKeyIds, rightRow, _rightKeyIds) == 0) {
+      if (_rightGroup.size() == _maxRowsInJoin && _joinOverflowMode != JoinOverFlowMode.SPILL) {
+        if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+          throwForJoinRowLimitExceeded(
+              "Cannot build in memory join keys group for sort merge join operator, reached number of rows limit: "
+                  + _maxRowsInJoin);
+        }
+        // Skip the rest of the right rows with the same join keys
+        _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+      } else {
+        checkTerminationAndSampleUsagePeriodically(_rightGroup.size(), LOAD_RIGHT_GROUP_SCOPE);
+        _rightGroup.add(rightRow);
+      }
+      _right.advance();
+      rightRow = _right.peek();
+    }
+  }
+
+  private void joinWithRightGroup(Object[] leftRow, List<Object[]> rows) {
+    boolean hasMatch = false;
+    int numRightRows = _rightGroup.size();
+    for (int i = 0; i < numRightRows; i++) {
+      List<Object> resultRowView = joinRowView(leftRow, _rightGroup.get(i));
+      if (matchNonEquiConditions(resultRowView)) {
+        hasMatch = true;
+        if (_joinType == JoinRelType.SEMI || _joinType == JoinRelType.ANTI) {
+          break;
+        }
+        checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+        rows.add(resultRowView.toArray());
+        if (_matchedRightGroupRows != null) {
+          _matchedRightGroupRows.set(i);
+        }
+      }
+    }
+    if (hasMatch) {
+      if (_joinType == JoinRelType.SEMI) {
+        rows.add(leftRow);
+      }
+    } else {
+      addUnmatchedLeftRow(leftRow, rows);
+    }
+  }
+
+  /**
+   * Emits the unmatched right rows of the current right group if needed, and clears the group.
+   */
+  private void finishRightGroup(List<Object[]> rows) {
+    if (_matchedRightGroupRows != null) {
+      int numRightRows = _rightGroup.size();
+      int unmatchedIndex = 0;
+      while ((unmatchedIndex = _matchedRightGroupRows.nextClearBit(unmatchedIndex)) < numRightRows) {
+        addUnmatchedRightRow(_rightGroup.get(unmatchedIndex++), rows);
+      }
+      _matchedRightGroupRows.clear();
+    }
+    _rightGroup.clear();
+  }
+
+  private void addUnmatchedLeftRow(Object[] leftRow, List<Object[]> rows) {
+    if (_joinType == JoinRelType.ANTI) {
+      checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+      rows.add(leftRow);
+    } else if (needUnmatchedLeftRows()) {
+      checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+      rows.add(joinRow(leftRow, null));
+    }
+  }
+
+  private void addUnmatchedRightRow(Object[] rightRow, List<Object[]> rows) {
+    if (needUnmatchedRightRows()) {
+      checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+      rows.add(joinRow(null, rightRow));
+    }
+  }
+
+  private static boolean hasNullKey(Object[] row, int[] keyIds) {
+    for (int keyId : keyIds) {
+      if (row[keyId] == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares the join keys of the given rows, in ascending order with nulls last (the order of the sorted inputs).
+   */
+  private static int compareKeys(Object[] row1, int[] keyIds1, Object[] row2, int[] keyIds2) {
+    int numKeys = keyIds1.length;
+    for (int i = 0; i < numKeys; i++) {
+      Object v1 = row1[keyIds1[i]];
+      Object v2 = row2[keyIds2[i]];
+      if (v1 == null) {
+        if (v2 == null) {
+          continue;
+        }
+        return 1;
+      }
+      if (v2 == null) {
+        return -1;
+      }
+      int result = ((Comparable) v1).compareTo(v2);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private void onEosProduced() {
+    _rightGroup.clear();
+  }
+
+  /**
+   * Cursor over the rows of a sorted input, reading the blocks on demand.
+   */
+  private static class SortedInput {
+    private final MultiStageOperator _operator;
+    private List<Object[]> _rows = List.of();
+    private int _index;
+    @Nullable
+    private MseBlock.Eos _eos;
+
+    SortedInput(MultiStageOperator operator) {
+      _operator = operator;
+    }
+
+    /**
+     * Returns the current row without consuming it, or {@code null} when the input reached the end of stream (or an
+     * error).
+     */
+    @Nullable
+    Object[] peek() {
+      while (_index == _rows.size()) {
+        if (_eos != null) {
+          return null;
+        }
+        MseBlock block = _operator.nextBlock();
+        if (block.isEos()) {
+          _eos = (MseBlock.Eos) block;
+          _rows = List.of();
+          _index = 0;
+          return null;
+        }
+        _rows = ((MseBlock.Data) block).asRowHeap().getRows();
+        _index = 0;
+      }
+      return _rows.get(_index);
+    }
+
+    void advance() {
+      _index++;
+    }
+
+    boolean isError() {
+      return _eos != null && _eos.isError();
+    }
+
+    /**
+     * Terminates the input early and consumes it until the end of stream.
+     */
+    void drain() {
+      if (_eos == null) {
+        _operator.earlyTerminate();
+        MseBlock block = _operator.nextBlock();
+        while (block.isData()) {
+          block = _operator.nextBlock();
+        }
+        _eos = (MseBlock.Eos) block;
+      }
+      _rows = List.of();
+      _index = 0;
+    }
+  }
+}
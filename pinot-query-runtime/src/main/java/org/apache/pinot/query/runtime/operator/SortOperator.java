@@ -20,17 +20,22 @@ package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.PriorityQueue;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.query.selection.SelectionOperatorUtils;
 import org.apache.pinot.query.planner.plannode.SortNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.spill.ExternalSorter;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.utils.CommonConstants;
@@ -38,6 +43,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+/**
+ * Sorts the input rows and applies the offset and limit.
+ * <p>Rows are kept in a bounded priority queue of size {@code offset + limit}. When the query sets a max number of rows
+ * in sort (see {@link QueryOptionsUtils#getMaxRowsInSort}) lower than that, an {@link ExternalSorter} is used instead,
+ * which spills sorted runs to local disk and streams the merged result block by block.
+ */
 public class SortOperator extends MultiStageOperator {
   private static final String EXPLAIN_NAME = "SORT";
   private static final Logger LOGGER = LoggerFactory.getLogger(SortOperator.class);
@@ -48,10 +59,13 @@ public class SortOperator extends MultiStageOperator {
   private final int _numRowsToKeep;
   private final PriorityQueue<Object[]> _priorityQueue;
   private final ArrayList<Object[]> _rows;
+  @Nullable
+  private final ExternalSorter _externalSorter;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
 
   private boolean _hasConstructedSortedBlock;
   private MseBlock.Eos _eosBlock;
+  private int _numRowsToSkip;
 
   public SortOperator(OpChainExecutionContext context, MultiStageOperator input, SortNode node) {
     this(context, input, node, SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY,
@@ -73,15 +87,25 @@ public class SortOperator extends MultiStageOperator {
     // - There is no collation
     // - Input is already sorted
     List<RelFieldCollation> collations = node.getCollations();
+    Integer maxRowsInSort = QueryOptionsUtils.getMaxRowsInSort(context.getOpChainMetadata());
     if (collations.isEmpty() || input instanceof SortedMailboxReceiveOperator) {
       _priorityQueue = null;
       _rows = new ArrayList<>(Math.min(defaultHolderCapacity, _numRowsToKeep));
+      _externalSorter = null;
+    } else if (maxRowsInSort != null && _numRowsToKeep > maxRowsInSort) {
+      // The priority queue might not fit in the memory budget, sort externally
+      _priorityQueue = null;
+      _rows = null;
+      _externalSorter =
+          new ExternalSorter(new SpillManager(context, EXPLAIN_NAME), _dataSchema,
+              new SortUtils.SortComparator(collations, false), maxRowsInSort, _numRowsToKeep);
     } else {
       // Use the opposite direction as specified by the collation directions since we need the PriorityQueue to decide
       // which elements to keep and which to remove based on the limits.
       _priorityQueue = new PriorityQueue<>(Math.min(defaultHolderCapacity, _numRowsToKeep),
           new SortUtils.SortComparator(collations, true));
       _rows = null;
+      _externalSorter = null;
     }
   }
 
@@ -118,7 +142,11 @@ public class SortOperator extends MultiStageOperator {
   }
 
   @Override
-  protected MseBlock getNextBlock() {
+  protected MseBlock getNextBlock()
+      throws IOException {
+    if (_externalSorter != null) {
+      return getNextExternallySortedBlock();
+    }
     if (_hasConstructedSortedBlock) {
       assert _eosBlock != null;
       return _eosBlock;
@@ -137,6 +165,47 @@ public class SortOperator extends MultiStageOperator {
     return new StatMap<>(_statMap);
   }
 
+  @Override
+  public void close() {
+    super.close();
+    if (_externalSorter != null) {
+      _externalSorter.close();
+    }
+  }
+
+  private MseBlock getNextExternallySortedBlock()
+      throws IOException {
+    assert _externalSorter != null;
+    if (_eosBlock == null) {
+      _eosBlock = consumeInputBlocks();
+      _statMap.merge(StatKey.REQUIRE_SORT, true);
+      if (_eosBlock.isError()) {
+        return _eosBlock;
+      }
+      _externalSorter.finish();
+      _numRowsToSkip = _offset;
+    } else if (_hasConstructedSortedBlock || _eosBlock.isError()) {
+      return _eosBlock;
+    }
+    List<Object[]> rows;
+    while ((rows = _externalSorter.nextBlock()) != null) {
+      if (_numRowsToSkip >= rows.size()) {
+        _numRowsToSkip -= rows.size();
+        continue;
+      }
+      if (_numRowsToSkip > 0) {
+        rows = rows.subList(_numRowsToSkip, rows.size());
+        _numRowsToSkip = 0;
+      }
+      return new RowHeapDataBlock(rows, _dataSchema);
+    }
+    _hasConstructedSortedBlock = true;
+    _statMap.merge(StatKey.NUM_SPILLED_ROWS, _externalSorter.getNumSpilledRows());
+    _statMap.merge(StatKey.SPILLED_BYTES, _externalSorter.getNumSpilledBytes());
+    _externalSorter.close();
+    return _eosBlock;
+  }
+
   private MseBlock produceSortedBlock() {
     _hasConstructedSortedBlock = true;
     if (_priorityQueue == null) {
@@ -160,11 +229,15 @@ public class SortOperator extends MultiStageOperator {
     }
   }
 
-  private MseBlock.Eos consumeInputBlocks() {
+  private MseBlock.Eos consumeInputBlocks()
+      throws IOException {
     MseBlock block = _input.nextBlock();
     while (block.isData()) {
       List<Object[]> container = ((MseBlock.Data) block).asRowHeap().getRows();
-      if (_priorityQueue == null) {
+      if (_externalSorter != null) {
+        _externalSorter.addRows(container);
+        checkTerminationAndSampleUsage();
+      } else if (_priorityQueue == null) {
         // TODO: when push-down properly, we shouldn't get more than _numRowsToKeep
         int numRows = _rows.size();
         if (numRows < _numRowsToKeep) {
@@ -214,7 +287,15 @@ public class SortOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows spilled to local disk by the external merge sort.
+     */
+    NUM_SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes spilled to local disk by the external merge sort.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
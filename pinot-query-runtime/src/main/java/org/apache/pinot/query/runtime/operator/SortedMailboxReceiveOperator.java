@@ -19,15 +19,18 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.query.mailbox.ReceivingMailbox;
 import org.apache.pinot.query.planner.plannode.MailboxReceiveNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.spill.ExternalSorter;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.slf4j.Logger;
@@ -37,9 +40,10 @@ import org.slf4j.LoggerFactory;
 /**
  * This {@code SortedMailboxReceiveOperator} receives data from a {@link ReceivingMailbox} and serve it out from the
  * {@link #nextBlock()} API in a sorted manner.
- *
- *  TODO: Once sorting on the {@code MailboxSendOperator} is available, modify this to use a k-way merge instead of
- *        resorting via the PriorityQueue.
+ * <p>Received blocks that are already sorted (e.g. when the sender sorts) are k-way merged instead of being sorted
+ * again. Each block is checked to be sorted rather than trusting the sender, as an unsorted run would silently break
+ * the merge. When the query sets a max number of rows in sort (see {@link QueryOptionsUtils#getMaxRowsInSort}), the
+ * rows beyond it are spilled to local disk as sorted runs and merged back block by block.
  */
 public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(SortedMailboxReceiveOperator.class);
@@ -47,17 +51,21 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
   private static final String EXPLAIN_NAME = "SORTED_MAILBOX_RECEIVE";
 
   private final DataSchema _dataSchema;
-  private final List<RelFieldCollation> _collations;
-  private final List<Object[]> _rows = new ArrayList<>();
+  private final SortUtils.SortComparator _comparator;
+  private final ExternalSorter _sorter;
 
   private MseBlock _eosBlock;
+  private boolean _sorted;
 
-  // TODO: Support merge sort when sender side sort is supported.
   public SortedMailboxReceiveOperator(OpChainExecutionContext context, MailboxReceiveNode node) {
     super(context, node);
-    Preconditions.checkState(!CollectionUtils.isEmpty(node.getCollations()), "Field collations must be set");
+    List<RelFieldCollation> collations = node.getCollations();
+    Preconditions.checkState(!CollectionUtils.isEmpty(collations), "Field collations must be set");
     _dataSchema = node.getDataSchema();
-    _collations = node.getCollations();
+    _comparator = new SortUtils.SortComparator(collations, false);
+    Integer maxRowsInSort = QueryOptionsUtils.getMaxRowsInSort(context.getOpChainMetadata());
+    _sorter = new ExternalSorter(new SpillManager(context, EXPLAIN_NAME), _dataSchema, _comparator,
+        maxRowsInSort != null ? maxRowsInSort : Integer.MAX_VALUE, Integer.MAX_VALUE);
   }
 
   @Override
@@ -71,44 +79,64 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
   }
 
   @Override
-  protected MseBlock getNextBlock() {
-    if (_eosBlock != null) {
-      return _eosBlock;
+  protected MseBlock getNextBlock()
+      throws IOException {
+    if (_eosBlock == null) {
+      // Collect all the rows from the mailbox and prepare the merge
+      while (true) {
+        MseBlock block = _multiConsumer.readMseBlockBlocking();
+        if (block.isData()) {
+          List<Object[]> rows = ((MseBlock.Data) block).asRowHeap().getRows();
+          if (isSorted(rows)) {
+            _sorter.addSortedRun(rows);
+          } else {
+            _sorter.addRows(rows);
+          }
+          continue;
+        }
+        MseBlock.Eos eosBlock = (MseBlock.Eos) block;
+        onEos();
+        _eosBlock = eosBlock;
+        if (eosBlock.isError()) {
+          return eosBlock;
+        }
+        _sorter.finish();
+        _sorted = true;
+        break;
+      }
     }
-    // Collect all the rows from the mailbox and sort them
-    while (true) {
-      MseBlock block = _multiConsumer.readMseBlockBlocking();
-      if (block.isData()) {
-        _rows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
-        continue;
+    if (_sorted) {
+      List<Object[]> rows = _sorter.nextBlock();
+      if (rows != null) {
+        return new RowHeapDataBlock(rows, _dataSchema);
       }
-      MseBlock.Eos eosBlock = (MseBlock.Eos) block;
-      onEos();
-      _eosBlock = eosBlock;
-      if (eosBlock.isError()) {
-        return eosBlock;
-      } else {
-        if (!_rows.isEmpty()) {
-          // TODO: This might not be efficient because we are sorting all the received rows. We should use a k-way merge
-          //       when sender side is sorted.
-          _rows.sort(new SortUtils.SortComparator(_collations, false));
-          return new RowHeapDataBlock(_rows, _dataSchema);
-        } else {
-          return block;
-        }
+      _sorted = false;
+      _statMap.merge(StatKey.NUM_SPILLED_ROWS, _sorter.getNumSpilledRows());
+      _statMap.merge(StatKey.SPILLED_BYTES, _sorter.getNumSpilledBytes());
+      _sorter.close();
+    }
+    return _eosBlock;
+  }
+
+  private boolean isSorted(List<Object[]> rows) {
+    int numRows = rows.size();
+    for (int i = 1; i < numRows; i++) {
+      if (_comparator.compare(rows.get(i - 1), rows.get(i)) > 0) {
+        return false;
       }
     }
+    return true;
   }
 
   @Override
   public void close() {
     super.close();
-    _rows.clear();
+    _sorter.close();
   }
 
   @Override
   public void cancel(Throwable t) {
     super.cancel(t);
-    _rows.clear();
+    _sorter.close();
   }
 }
@@ -19,11 +19,16 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.common.datatable.StatMap;
@@ -32,10 +37,15 @@ import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.data.table.Key;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.MailboxReceiveNode;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.planner.plannode.WindowNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.spill.PartitionedSpillWriter;
+import org.apache.pinot.query.runtime.operator.spill.SpillFile;
+import org.apache.pinot.query.runtime.operator.spill.SpillManager;
+import org.apache.pinot.query.runtime.operator.spill.SpilledPartition;
 import org.apache.pinot.query.runtime.operator.utils.AggregationUtils;
 import org.apache.pinot.query.runtime.operator.utils.TypeUtils;
 import org.apache.pinot.query.runtime.operator.window.WindowFrame;
@@ -67,6 +77,14 @@ import org.slf4j.LoggerFactory;
  * should handle adding a 'SortExchange' to do the ordering prior to pipelining the data to the upstream operators
  * wherever ordering is required.
  *
+ * When the input is also sorted on the 'PARTITION BY' keys (i.e. the rows of each partition are contiguous), the
+ * operator works in streaming mode: only the rows of the current partition are kept in memory, and the results are
+ * emitted as soon as each partition is complete. In this mode the max rows in window limit applies to each partition.
+ * Otherwise, all the input rows are cached before computing the results. With the SPILL overflow mode, once the cache
+ * reaches the max rows in window, the rows are hash partitioned on the 'PARTITION BY' keys into local spill files, and
+ * each spill file is processed on its own. Rows of the same window partition are never split across spill files, so a
+ * single window partition larger than the limit is still processed in memory.
+ *
  * Note: This class performs aggregation over the double value of input.
  * If the input is single value, the output type will be input type. Otherwise, the output type will be double.
  *
@@ -82,6 +100,12 @@ public class WindowAggregateOperator extends MultiStageOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(WindowAggregateOperator.class);
   private static final int DEFAULT_MAX_ROWS_IN_WINDOW = 1024 * 1024; // 2^20, around 1MM rows
   private static final WindowOverFlowMode DEFAULT_WINDOW_OVERFLOW_MODE = WindowOverFlowMode.THROW;
+  private static final int MAX_ROWS_PER_BLOCK = 10_000;
+
+  // Spill settings. Each partitioning level consumes SPILL_PARTITION_BITS bits of the key hash.
+  private static final int SPILL_PARTITION_BITS = 4;
+  private static final int NUM_SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+  private static final int MAX_SPILL_LEVEL = 3;
 
   // List of window functions which can only be applied as ROWS window frame type
   public static final Set<String> ROWS_ONLY_FUNCTION_NAMES = Set.of("ROW_NUMBER");
@@ -89,9 +113,11 @@ public class WindowAggregateOperator extends MultiStageOperator {
   public static final Set<String> RANKING_FUNCTION_NAMES = Set.of("RANK", "DENSE_RANK");
 
   private final MultiStageOperator _input;
+  private final DataSchema _inputSchema;
   private final DataSchema _resultSchema;
   private final int[] _keys;
   private final WindowFunction[] _windowFunctions;
+  private final boolean _streaming;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
 
   // Below are specific parameters to protect the window cache from growing too large.
@@ -101,9 +127,10 @@ public class WindowAggregateOperator extends MultiStageOperator {
    */
   private final int _maxRowsInWindowCache;
   /**
-   * Mode when window overflow happens, supported values: THROW or BREAK.
+   * Mode when window overflow happens, supported values: THROW, BREAK or SPILL.
    * THROW(default): Break window cache build process, and throw exception, no WINDOW operation performed.
    * BREAK: Break window cache build process, continue to perform WINDOW operation, results might be partial or wrong.
+   * SPILL: Spill the window cache to local disk partitioned on the window keys, results are complete.
    */
   private final WindowOverFlowMode _windowOverflowMode;
 
@@ -111,11 +138,24 @@ public class WindowAggregateOperator extends MultiStageOperator {
   private boolean _hasReturnedWindowAggregateBlock;
   private MseBlock.Eos _eosBlock;
 
+  // Streaming mode state
+  @Nullable
+  private Key _currentPartitionKey;
+  private List<Object[]> _currentPartitionRows = new ArrayList<>();
+  private boolean _maxRowsInWindowReached;
+
+  // Spill state
+  @Nullable
+  private SpillManager _spillManager;
+  @Nullable
+  private Deque<SpilledPartition> _spilledPartitions;
+
   public WindowAggregateOperator(OpChainExecutionContext context, MultiStageOperator input, DataSchema inputSchema,
       WindowNode node) {
     super(context);
 
     _input = input;
+    _inputSchema = inputSchema;
     _resultSchema = node.getDataSchema();
     List<Integer> keys = node.getKeys();
     int numKeys = keys.size();
@@ -144,6 +184,33 @@ public class WindowAggregateOperator extends MultiStageOperator {
     PlanNode.NodeHint nodeHint = node.getNodeHint();
     _maxRowsInWindowCache = getMaxRowInWindow(metadata, nodeHint);
     _windowOverflowMode = getWindowOverflowMode(metadata, nodeHint);
+    _streaming = isInputSortedOnKeys(node, keys);
+  }
+
+  /**
+   * Returns {@code true} when the input is received sorted with the window keys as the leading sort keys, in which case
+   * the rows of each window partition are contiguous. The receive must merge the sorted streams of the senders, because
+   * the blocks of the senders are interleaved when the input is sorted on the sender only.
+   */
+  private static boolean isInputSortedOnKeys(WindowNode node, List<Integer> keys) {
+    List<PlanNode> inputs = node.getInputs();
+    if (keys.isEmpty() || inputs.isEmpty() || !(inputs.get(0) instanceof MailboxReceiveNode)) {
+      return false;
+    }
+    MailboxReceiveNode receiveNode = (MailboxReceiveNode) inputs.get(0);
+    if (!receiveNode.isSort()) {
+      return false;
+    }
+    List<RelFieldCollation> collations = receiveNode.getCollations();
+    int numKeys = keys.size();
+    if (collations == null || collations.size() < numKeys) {
+      return false;
+    }
+    Set<Integer> leadingSortKeys = new HashSet<>();
+    for (int i = 0; i < numKeys; i++) {
+      leadingSortKeys.add(collations.get(i).getFieldIndex());
+    }
+    return leadingSortKeys.equals(new HashSet<>(keys));
   }
 
   @Override
@@ -199,23 +266,88 @@ public class WindowAggregateOperator extends MultiStageOperator {
   }
 
   @Override
-  protected MseBlock getNextBlock() {
+  protected MseBlock getNextBlock()
+      throws IOException {
     if (_hasReturnedWindowAggregateBlock) {
       return _eosBlock;
     }
+    if (_streaming) {
+      return computeStreamingBlock();
+    }
+    if (_spilledPartitions != null) {
+      return computeSpilledBlock();
+    }
     return computeBlocks();
   }
 
+  /**
+   * Computes the results of the window partitions completed by the next input blocks.
+   */
+  private MseBlock computeStreamingBlock() {
+    List<Object[]> rows = new ArrayList<>();
+    while (rows.size() < MAX_ROWS_PER_BLOCK) {
+      MseBlock block = _input.nextBlock();
+      if (block.isEos()) {
+        _eosBlock = (MseBlock.Eos) block;
+        _hasReturnedWindowAggregateBlock = true;
+        if (block.isError()) {
+          return block;
+        }
+        if (!_currentPartitionRows.isEmpty()) {
+          processPartition(_currentPartitionRows, rows);
+          _currentPartitionRows = new ArrayList<>();
+        }
+        break;
+      }
+      if (_maxRowsInWindowReached) {
+        // Drain the input after early termination
+        continue;
+      }
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        Key key = AggregationUtils.extractRowKey(row, _keys);
+        if (_currentPartitionKey == null || !_currentPartitionKey.equals(key)) {
+          if (!_currentPartitionRows.isEmpty()) {
+            processPartition(_currentPartitionRows, rows);
+            _currentPartitionRows = new ArrayList<>();
+          }
+          _currentPartitionKey = key;
+        }
+        // A single window partition cannot be spilled, so SPILL mode does not limit the rows in streaming mode
+        if (_currentPartitionRows.size() >= _maxRowsInWindowCache
+            && _windowOverflowMode != WindowOverFlowMode.SPILL) {
+          if (_windowOverflowMode == WindowOverFlowMode.THROW) {
+            throw QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED.asException(
+                "Cannot build in memory window cache for WINDOW operator, reach number of rows limit in partition: "
+                    + _maxRowsInWindowCache);
+          }
+          _maxRowsInWindowReached = true;
+          _statMap.merge(StatKey.MAX_ROWS_IN_WINDOW_REACHED, true);
+          // setting the inputOperator to be early terminated and awaits EOS block next.
+          _input.earlyTerminate();
+          break;
+        }
+        _currentPartitionRows.add(row);
+        _numRows++;
+      }
+      checkTerminationAndSampleUsage();
+    }
+    return rows.isEmpty() ? _eosBlock : new RowHeapDataBlock(rows, _resultSchema);
+  }
+
   /**
    * @return the final block, which must be either an end of stream or an error.
    */
-  private MseBlock computeBlocks() {
+  private MseBlock computeBlocks()
+      throws IOException {
     Map<Key, List<Object[]>> partitionRows = new HashMap<>();
     MseBlock block = _input.nextBlock();
     while (block.isData()) {
       List<Object[]> container = ((MseBlock.Data) block).asRowHeap().getRows();
       int containerSize = container.size();
       if (_numRows + containerSize > _maxRowsInWindowCache) {
+        if (_windowOverflowMode == WindowOverFlowMode.SPILL) {
+          return spillAndComputeBlocks(partitionRows, block);
+        }
         if (_windowOverflowMode == WindowOverFlowMode.THROW) {
           throw QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED.asException(
               "Cannot build in memory window cache for WINDOW operator, reach number of rows limit: "
@@ -246,32 +378,9 @@ public class WindowAggregateOperator extends MultiStageOperator {
       return block;
     }
 
-    ColumnDataType[] resultStoredTypes = _resultSchema.getStoredColumnDataTypes();
     List<Object[]> rows = new ArrayList<>(_numRows);
-    for (Map.Entry<Key, List<Object[]>> e : partitionRows.entrySet()) {
-      List<Object[]> rowList = e.getValue();
-
-      // Each window function will return a list of results for each row in the input set
-      List<List<Object>> windowFunctionResults = new ArrayList<>();
-      for (WindowFunction windowFunction : _windowFunctions) {
-        List<Object> processRows = windowFunction.processRows(rowList);
-        assert processRows.size() == rowList.size();
-        checkTerminationAndSampleUsagePeriodically(windowFunctionResults.size(), EXPLAIN_NAME);
-        windowFunctionResults.add(processRows);
-      }
-
-      for (int rowId = 0; rowId < rowList.size(); rowId++) {
-        Object[] existingRow = rowList.get(rowId);
-        Object[] row = new Object[existingRow.length + _windowFunctions.length];
-        System.arraycopy(existingRow, 0, row, 0, existingRow.length);
-        for (int i = 0; i < _windowFunctions.length; i++) {
-          row[i + existingRow.length] = windowFunctionResults.get(i).get(rowId);
-        }
-        // Convert the results from WindowFunction to the desired type
-        TypeUtils.convertRow(row, resultStoredTypes);
-        checkTerminationAndSampleUsagePeriodically(rows.size(), EXPLAIN_NAME);
-        rows.add(row);
-      }
+    for (List<Object[]> rowList : partitionRows.values()) {
+      processPartition(rowList, rows);
     }
 
     _hasReturnedWindowAggregateBlock = true;
@@ -282,6 +391,153 @@ public class WindowAggregateOperator extends MultiStageOperator {
     }
   }
 
+  /**
+   * Computes the window functions over the rows of a single window partition, and adds the result rows to the given
+   * list.
+   */
+  private void processPartition(List<Object[]> rowList, List<Object[]> rows) {
+    // Each window function will return a list of results for each row in the input set
+    List<List<Object>> windowFunctionResults = new ArrayList<>();
+    for (WindowFunction windowFunction : _windowFunctions) {
+      List<Object> processRows = windowFunction.processRows(rowList);
+      assert processRows.size() == rowList.size();
+      checkTerminationAndSampleUsagePeriodically(windowFunctionResults.size(), EXPLAIN_NAME);
+      windowFunctionResults.add(processRows);
+    }
+
+    ColumnDataType[] resultStoredTypes = _resultSchema.getStoredColumnDataTypes();
+    for (int rowId = 0; rowId < rowList.size(); rowId++) {
+      Object[] existingRow = rowList.get(rowId);
+      Object[] row = new Object[existingRow.length + _windowFunctions.length];
+      System.arraycopy(existingRow, 0, row, 0, existingRow.length);
+      for (int i = 0; i < _windowFunctions.length; i++) {
+        row[i + existingRow.length] = windowFunctionResults.get(i).get(rowId);
+      }
+      // Convert the results from WindowFunction to the desired type
+      TypeUtils.convertRow(row, resultStoredTypes);
+      checkTerminationAndSampleUsagePeriodically(rows.size(), EXPLAIN_NAME);
+      rows.add(row);
+    }
+  }
+
+  /**
+   * Spills the cached rows and the rest of the input into spill files partitioned on the window keys, then computes the
+   * results of the first spill partition.
+   */
+  private MseBlock spillAndComputeBlocks(Map<Key, List<Object[]>> partitionRows, MseBlock block)
+      throws IOException {
+    _spillManager = new SpillManager(_context, EXPLAIN_NAME);
+    PartitionedSpillWriter writer = createSpillWriter();
+    for (Map.Entry<Key, List<Object[]>> entry : partitionRows.entrySet()) {
+      int partitionId = getSpillPartition(entry.getKey(), 0);
+      for (Object[] row : entry.getValue()) {
+        writer.add(partitionId, row);
+      }
+    }
+    partitionRows.clear();
+    while (block.isData()) {
+      List<Object[]> container = ((MseBlock.Data) block).asRowHeap().getRows();
+      for (Object[] row : container) {
+        writer.add(getSpillPartition(AggregationUtils.extractRowKey(row, _keys), 0), row);
+      }
+      _numRows += container.size();
+      checkTerminationAndSampleUsage();
+      block = _input.nextBlock();
+    }
+    SpillFile[] spillFiles = writer.finish();
+    _eosBlock = (MseBlock.Eos) block;
+    if (_eosBlock.isError()) {
+      closeSpillManager();
+      return block;
+    }
+    _spilledPartitions = new ArrayDeque<>(NUM_SPILL_PARTITIONS);
+    for (SpillFile spillFile : spillFiles) {
+      _spilledPartitions.addLast(new SpilledPartition(0, spillFile));
+    }
+    return computeSpilledBlock();
+  }
+
+  /**
+   * Computes the results of the next non-empty spill partition.
+   */
+  private MseBlock computeSpilledBlock()
+      throws IOException {
+    assert _spillManager != null && _spilledPartitions != null;
+    while (!_spilledPartitions.isEmpty()) {
+      SpilledPartition partition = _spilledPartitions.pollFirst();
+      SpillFile spillFile = partition.getSpillFile(0);
+      if (spillFile.getNumRows() == 0) {
+        _spillManager.release(spillFile);
+        continue;
+      }
+      if (spillFile.getNumRows() > _maxRowsInWindowCache && partition.getLevel() < MAX_SPILL_LEVEL) {
+        // Too many rows for this partition, partition it further on the next bits of the key hash
+        int level = partition.getLevel() + 1;
+        PartitionedSpillWriter writer = createSpillWriter();
+        try (SpillFile.Reader reader = spillFile.openReader()) {
+          List<Object[]> block;
+          while ((block = reader.nextBlock()) != null) {
+            for (Object[] row : block) {
+              writer.add(getSpillPartition(AggregationUtils.extractRowKey(row, _keys), level), row);
+            }
+            checkTerminationAndSampleUsage();
+          }
+        }
+        _spillManager.release(spillFile);
+        SpillFile[] spillFiles = writer.finish();
+        for (int i = spillFiles.length - 1; i >= 0; i--) {
+          _spilledPartitions.addFirst(new SpilledPartition(level, spillFiles[i]));
+        }
+        continue;
+      }
+      Map<Key, List<Object[]>> partitionRows = new HashMap<>();
+      try (SpillFile.Reader reader = spillFile.openReader()) {
+        List<Object[]> block;
+        while ((block = reader.nextBlock()) != null) {
+          for (Object[] row : block) {
+            partitionRows.computeIfAbsent(AggregationUtils.extractRowKey(row, _keys), k -> new ArrayList<>()).add(row);
+          }
+        }
+      }
+      _spillManager.release(spillFile);
+      List<Object[]> rows = new ArrayList<>((int) spillFile.getNumRows());
+      for (List<Object[]> rowList : partitionRows.values()) {
+        processPartition(rowList, rows);
+      }
+      checkTerminationAndSampleUsage();
+      return new RowHeapDataBlock(rows, _resultSchema);
+    }
+    _hasReturnedWindowAggregateBlock = true;
+    closeSpillManager();
+    return _eosBlock;
+  }
+
+  private PartitionedSpillWriter createSpillWriter()
+      throws IOException {
+    assert _spillManager != null;
+    int maxRowsPerBlock = Math.max(1, Math.min(MAX_ROWS_PER_BLOCK, _maxRowsInWindowCache / NUM_SPILL_PARTITIONS));
+    return new PartitionedSpillWriter(_spillManager, _inputSchema, NUM_SPILL_PARTITIONS, maxRowsPerBlock);
+  }
+
+  private static int getSpillPartition(Key key, int level) {
+    return SpilledPartition.getPartitionId(key.hashCode(), level, SPILL_PARTITION_BITS);
+  }
+
+  private void closeSpillManager() {
+    if (_spillManager != null) {
+      _statMap.merge(StatKey.NUM_SPILLED_ROWS, _spillManager.getNumSpilledRows());
+      _statMap.merge(StatKey.SPILLED_BYTES, _spillManager.getNumSpilledBytes());
+      _spillManager.close();
+      _spillManager = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    closeSpillManager();
+  }
+
   @Override
   public StatMap<StatKey> copyStatMaps() {
     return new StatMap<>(_statMap);
@@ -308,7 +564,15 @@ public class WindowAggregateOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows spilled to local disk when the window cache overflows in SPILL mode.
+     */
+    NUM_SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes spilled to local disk when the window cache overflows in SPILL mode.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
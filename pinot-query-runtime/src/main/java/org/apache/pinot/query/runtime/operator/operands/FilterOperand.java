@@ -21,16 +21,27 @@ package org.apache.pinot.query.runtime.operator.operands;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Ordering;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.IntPredicate;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.ColumnarBlockView;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.RoaringBitmapWriter;
 
 
 /**
  * NOTE: All BOOLEAN values are represented as 0 (FALSE) and 1 (TRUE) internally.
+ *
+ * Besides the row at a time evaluation, filters can be evaluated a block at a time over the columns of a block (see
+ * {@link #applyBatch(ColumnarBlockView, RoaringBitmap)}). Comparisons between columns and literals are evaluated over
+ * primitive arrays without boxing, and the logical operators combine the results as bitmaps. Operands that cannot be
+ * evaluated a block at a time are evaluated a row at a time, only on the rows that can still affect the result.
  */
 public abstract class FilterOperand implements TransformOperand {
 
@@ -43,6 +54,96 @@ public abstract class FilterOperand implements TransformOperand {
   @Override
   public abstract Integer apply(List<Object> row);
 
+  /**
+   * Returns whether this filter can be evaluated a block at a time.
+   */
+  public boolean isBatchSupported() {
+    return false;
+  }
+
+  /**
+   * Evaluates this filter over the rows of the given block. By default, the filter is evaluated a row at a time, and
+   * filters returning {@code true} for {@link #isBatchSupported()} override it to evaluate a block at a time.
+   *
+   * @param block block to evaluate
+   * @param candidates rows to evaluate, or {@code null} for all rows. The result for the other rows is undefined.
+   */
+  public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+    return applyRowByRow(this, block, candidates);
+  }
+
+  private static boolean isBatchSupported(TransformOperand operand) {
+    return operand instanceof FilterOperand && ((FilterOperand) operand).isBatchSupported();
+  }
+
+  /**
+   * Evaluates the given BOOLEAN operand over the rows of the given block, a block at a time if supported, or a row at a
+   * time otherwise.
+   */
+  private static BatchResult applyBatch(TransformOperand operand, ColumnarBlockView block,
+      @Nullable RoaringBitmap candidates) {
+    if (operand instanceof FilterOperand) {
+      return ((FilterOperand) operand).applyBatch(block, candidates);
+    }
+    return applyRowByRow(operand, block, candidates);
+  }
+
+  private static BatchResult applyRowByRow(TransformOperand operand, ColumnarBlockView block,
+      @Nullable RoaringBitmap candidates) {
+    RoaringBitmapWriter<RoaringBitmap> trueBitmapWriter = RoaringBitmapWriter.writer().get();
+    RoaringBitmapWriter<RoaringBitmap> nullBitmapWriter = RoaringBitmapWriter.writer().get();
+    List<Object[]> rows = block.getRows();
+    if (candidates == null) {
+      int numRows = rows.size();
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        addResult(operand.apply(rows.get(rowId)), rowId, trueBitmapWriter, nullBitmapWriter);
+      }
+    } else {
+      PeekableIntIterator iterator = candidates.getIntIterator();
+      while (iterator.hasNext()) {
+        int rowId = iterator.next();
+        addResult(operand.apply(rows.get(rowId)), rowId, trueBitmapWriter, nullBitmapWriter);
+      }
+    }
+    return new BatchResult(trueBitmapWriter.get(), nullBitmapWriter.get());
+  }
+
+  private static void addResult(@Nullable Object result, int rowId, RoaringBitmapWriter<RoaringBitmap> trueBitmapWriter,
+      RoaringBitmapWriter<RoaringBitmap> nullBitmapWriter) {
+    if (result == null) {
+      nullBitmapWriter.add(rowId);
+    } else if ((int) result == 1) {
+      trueBitmapWriter.add(rowId);
+    }
+  }
+
+  /**
+   * Result of a filter evaluated over a block. Rows not in the TRUE or NULL bitmaps are evaluated to FALSE.
+   */
+  public static class BatchResult {
+    private final RoaringBitmap _trueBitmap;
+    private final RoaringBitmap _nullBitmap;
+
+    public BatchResult(RoaringBitmap trueBitmap, RoaringBitmap nullBitmap) {
+      _trueBitmap = trueBitmap;
+      _nullBitmap = nullBitmap;
+    }
+
+    public RoaringBitmap getTrueBitmap() {
+      return _trueBitmap;
+    }
+
+    public RoaringBitmap getNullBitmap() {
+      return _nullBitmap;
+    }
+
+    public RoaringBitmap getFalseBitmap(int numRows) {
+      RoaringBitmap falseBitmap = RoaringBitmap.or(_trueBitmap, _nullBitmap);
+      falseBitmap.flip(0L, numRows);
+      return falseBitmap;
+    }
+  }
+
   public static class And extends FilterOperand {
     List<TransformOperand> _childOperands;
 
@@ -67,6 +168,46 @@ public abstract class FilterOperand implements TransformOperand {
       }
       return hasNull ? null : 1;
     }
+
+    @Override
+    public boolean isBatchSupported() {
+      for (TransformOperand child : _childOperands) {
+        if (FilterOperand.isBatchSupported(child)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      int numRows = block.getNumRows();
+      RoaringBitmap trueBitmap = null;
+      RoaringBitmap nullBitmap = new RoaringBitmap();
+      RoaringBitmap falseBitmap = new RoaringBitmap();
+      for (TransformOperand child : _childOperands) {
+        // Rows already evaluated to FALSE do not need to be evaluated by the remaining children
+        RoaringBitmap childCandidates = null;
+        if (!falseBitmap.isEmpty()) {
+          childCandidates = candidates != null ? RoaringBitmap.andNot(candidates, falseBitmap) : falseBitmap.clone();
+          if (candidates == null) {
+            childCandidates.flip(0L, numRows);
+          }
+        } else if (candidates != null) {
+          childCandidates = candidates;
+        }
+        BatchResult childResult = FilterOperand.applyBatch(child, block, childCandidates);
+        if (trueBitmap == null) {
+          trueBitmap = childResult.getTrueBitmap().clone();
+        } else {
+          trueBitmap.and(childResult.getTrueBitmap());
+        }
+        nullBitmap.or(childResult.getNullBitmap());
+        falseBitmap.or(childResult.getFalseBitmap(numRows));
+      }
+      nullBitmap.andNot(falseBitmap);
+      return new BatchResult(trueBitmap, nullBitmap);
+    }
   }
 
   public static class Or extends FilterOperand {
@@ -93,6 +234,40 @@ public abstract class FilterOperand implements TransformOperand {
       }
       return hasNull ? null : 0;
     }
+
+    @Override
+    public boolean isBatchSupported() {
+      for (TransformOperand child : _childOperands) {
+        if (FilterOperand.isBatchSupported(child)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      int numRows = block.getNumRows();
+      RoaringBitmap trueBitmap = new RoaringBitmap();
+      RoaringBitmap nullBitmap = new RoaringBitmap();
+      for (TransformOperand child : _childOperands) {
+        // Rows already evaluated to TRUE do not need to be evaluated by the remaining children
+        RoaringBitmap childCandidates = null;
+        if (!trueBitmap.isEmpty()) {
+          childCandidates = candidates != null ? RoaringBitmap.andNot(candidates, trueBitmap) : trueBitmap.clone();
+          if (candidates == null) {
+            childCandidates.flip(0L, numRows);
+          }
+        } else if (candidates != null) {
+          childCandidates = candidates;
+        }
+        BatchResult childResult = FilterOperand.applyBatch(child, block, childCandidates);
+        trueBitmap.or(childResult.getTrueBitmap());
+        nullBitmap.or(childResult.getNullBitmap());
+      }
+      nullBitmap.andNot(trueBitmap);
+      return new BatchResult(trueBitmap, nullBitmap);
+    }
   }
 
   public static class Not extends FilterOperand {
@@ -108,6 +283,17 @@ public abstract class FilterOperand implements TransformOperand {
       Object result = _childOperand.apply(row);
       return result != null ? 1 - (int) result : null;
     }
+
+    @Override
+    public boolean isBatchSupported() {
+      return FilterOperand.isBatchSupported(_childOperand);
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      BatchResult childResult = FilterOperand.applyBatch(_childOperand, block, candidates);
+      return new BatchResult(childResult.getFalseBitmap(block.getNumRows()), childResult.getNullBitmap());
+    }
   }
 
   public static class In extends FilterOperand {
@@ -154,6 +340,17 @@ public abstract class FilterOperand implements TransformOperand {
       Object result = _childOperand.apply(row);
       return result != null ? (Integer) result : 0;
     }
+
+    @Override
+    public boolean isBatchSupported() {
+      return FilterOperand.isBatchSupported(_childOperand);
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      BatchResult childResult = FilterOperand.applyBatch(_childOperand, block, candidates);
+      return new BatchResult(childResult.getTrueBitmap(), new RoaringBitmap());
+    }
   }
 
   public static class IsNotTrue extends FilterOperand {
@@ -168,6 +365,19 @@ public abstract class FilterOperand implements TransformOperand {
       Object result = _childOperand.apply(row);
       return result != null ? 1 - (int) result : 1;
     }
+
+    @Override
+    public boolean isBatchSupported() {
+      return FilterOperand.isBatchSupported(_childOperand);
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      BatchResult childResult = FilterOperand.applyBatch(_childOperand, block, candidates);
+      RoaringBitmap trueBitmap = childResult.getTrueBitmap().clone();
+      trueBitmap.flip(0L, block.getNumRows());
+      return new BatchResult(trueBitmap, new RoaringBitmap());
+    }
   }
 
   public static class Predicate extends FilterOperand {
@@ -179,6 +389,8 @@ public abstract class FilterOperand implements TransformOperand {
     private final IntPredicate _comparisonResultPredicate;
     private final boolean _requireCasting;
     private final ColumnDataType _commonCastType;
+    // Type of the values compared in batch evaluation, or null if batch evaluation is not supported
+    private final ColumnDataType _batchType;
 
     /**
      * Predicate constructor also resolve data type,
@@ -211,6 +423,167 @@ public abstract class FilterOperand implements TransformOperand {
               String.format("Cannot compare incompatible type: %s and: %s", lhsType, rhsType));
         }
       }
+      _batchType = getBatchType(_lhs, _rhs, _requireCasting ? _commonCastType : lhsType);
+    }
+
+    @Nullable
+    private static ColumnDataType getBatchType(TransformOperand lhs, TransformOperand rhs, ColumnDataType type) {
+      boolean lhsIsColumn = lhs instanceof ReferenceOperand;
+      boolean rhsIsColumn = rhs instanceof ReferenceOperand;
+      if (!(lhsIsColumn || lhs instanceof LiteralOperand) || !(rhsIsColumn || rhs instanceof LiteralOperand)
+          || !(lhsIsColumn || rhsIsColumn)) {
+        return null;
+      }
+      switch (type) {
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case STRING:
+          return type;
+        default:
+          return null;
+      }
+    }
+
+    @Override
+    public boolean isBatchSupported() {
+      return _batchType != null;
+    }
+
+    @Override
+    public BatchResult applyBatch(ColumnarBlockView block, @Nullable RoaringBitmap candidates) {
+      assert _batchType != null;
+      int numRows = block.getNumRows();
+      RoaringBitmap nullBitmap = new RoaringBitmap();
+      Object lhsValues = getBatchValues(_lhs, block, nullBitmap);
+      Object rhsValues = getBatchValues(_rhs, block, nullBitmap);
+      if (lhsValues == null || rhsValues == null) {
+        // Comparing with NULL literal
+        nullBitmap.add(0L, numRows);
+        return new BatchResult(new RoaringBitmap(), nullBitmap);
+      }
+      RoaringBitmapWriter<RoaringBitmap> trueBitmapWriter = RoaringBitmapWriter.writer().get();
+      switch (_batchType) {
+        case INT: {
+          int[] lhs = (int[]) lhsValues;
+          int[] rhs = (int[]) rhsValues;
+          for (int i = 0; i < numRows; i++) {
+            if (_comparisonResultPredicate.test(Integer.compare(lhs[i], rhs[i]))) {
+              trueBitmapWriter.add(i);
+            }
+          }
+          break;
+        }
+        case LONG: {
+          long[] lhs = (long[]) lhsValues;
+          long[] rhs = (long[]) rhsValues;
+          for (int i = 0; i < numRows; i++) {
+            if (_comparisonResultPredicate.test(Long.compare(lhs[i], rhs[i]))) {
+              trueBitmapWriter.add(i);
+            }
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] lhs = (float[]) lhsValues;
+          float[] rhs = (float[]) rhsValues;
+          for (int i = 0; i < numRows; i++) {
+            if (_comparisonResultPredicate.test(Float.compare(lhs[i], rhs[i]))) {
+              trueBitmapWriter.add(i);
+            }
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] lhs = (double[]) lhsValues;
+          double[] rhs = (double[]) rhsValues;
+          for (int i = 0; i < numRows; i++) {
+            if (_comparisonResultPredicate.test(Double.compare(lhs[i], rhs[i]))) {
+              trueBitmapWriter.add(i);
+            }
+          }
+          break;
+        }
+        case STRING: {
+          String[] lhs = (String[]) lhsValues;
+          String[] rhs = (String[]) rhsValues;
+          for (int i = 0; i < numRows; i++) {
+            if (lhs[i] != null && rhs[i] != null && _comparisonResultPredicate.test(lhs[i].compareTo(rhs[i]))) {
+              trueBitmapWriter.add(i);
+            }
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unsupported batch type: " + _batchType);
+      }
+      RoaringBitmap trueBitmap = trueBitmapWriter.get();
+      trueBitmap.andNot(nullBitmap);
+      return new BatchResult(trueBitmap, nullBitmap);
+    }
+
+    /**
+     * Returns the values of the given column or literal operand as an array of the batch type, or {@code null} for a
+     * NULL literal. Null values of the column are added to the given null bitmap.
+     */
+    @Nullable
+    private Object getBatchValues(TransformOperand operand, ColumnarBlockView block, RoaringBitmap nullBitmap) {
+      int numRows = block.getNumRows();
+      if (operand instanceof ReferenceOperand) {
+        BlockValSet blockValSet = block.getBlockValSet(((ReferenceOperand) operand).getIndex());
+        RoaringBitmap columnNullBitmap = blockValSet.getNullBitmap();
+        if (columnNullBitmap != null) {
+          nullBitmap.or(columnNullBitmap);
+        }
+        switch (_batchType) {
+          case INT:
+            return blockValSet.getIntValuesSV();
+          case LONG:
+            return blockValSet.getLongValuesSV();
+          case FLOAT:
+            return blockValSet.getFloatValuesSV();
+          case DOUBLE:
+            return blockValSet.getDoubleValuesSV();
+          case STRING:
+            return blockValSet.getStringValuesSV();
+          default:
+            throw new IllegalStateException("Unsupported batch type: " + _batchType);
+        }
+      }
+      Object value = ((LiteralOperand) operand).getValue();
+      if (value == null) {
+        return null;
+      }
+      switch (_batchType) {
+        case INT: {
+          int[] values = new int[numRows];
+          Arrays.fill(values, ((Number) value).intValue());
+          return values;
+        }
+        case LONG: {
+          long[] values = new long[numRows];
+          Arrays.fill(values, ((Number) value).longValue());
+          return values;
+        }
+        case FLOAT: {
+          float[] values = new float[numRows];
+          Arrays.fill(values, ((Number) value).floatValue());
+          return values;
+        }
+        case DOUBLE: {
+          double[] values = new double[numRows];
+          Arrays.fill(values, ((Number) value).doubleValue());
+          return values;
+        }
+        case STRING: {
+          String[] values = new String[numRows];
+          Arrays.fill(values, (String) value);
+          return values;
+        }
+        default:
+          throw new IllegalStateException("Unsupported batch type: " + _batchType);
+      }
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
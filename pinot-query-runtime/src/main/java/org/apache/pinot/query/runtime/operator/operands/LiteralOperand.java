@@ -19,6 +19,7 @@
 package org.apache.pinot.query.runtime.operator.operands;
 
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.query.planner.logical.RexExpression;
 
@@ -32,6 +33,11 @@ public class LiteralOperand implements TransformOperand {
     _value = rexExpression.getValue();
   }
 
+  @Nullable
+  public Object getValue() {
+    return _value;
+  }
+
   @Override
   public ColumnDataType getResultType() {
     return _resultType;
@@ -0,0 +1,384 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+
+
+/**
+ * The {@code ExternalSorter} sorts an unbounded number of rows while keeping at most a configured number of rows on
+ * the heap.
+ * <p>Rows are added either as unsorted rows ({@link #addRows(List)}) or as already sorted runs
+ * ({@link #addSortedRun(List)}), which are merged instead of being sorted again. Once the rows in memory exceed the
+ * budget, they are merged into a single sorted run written into a {@link SpillFile}. After {@link #finish()}, the
+ * in-memory and spilled runs are k-way merged and the result is consumed block by block through {@link #nextBlock()}.
+ * <p>Only the first {@code numRowsToKeep} rows of the result are ever returned, so each run is truncated to that size.
+ */
+public class ExternalSorter implements Closeable {
+  // Max number of spilled runs merged at once. When there are more spilled runs, they are first merged into larger runs
+  // to bound the number of open files and the number of blocks held on the heap during the final merge.
+  public static final int MAX_MERGE_FAN_IN = 64;
+  public static final int MAX_ROWS_PER_BLOCK = 10_000;
+
+  private final SpillManager _spillManager;
+  private final DataSchema _dataSchema;
+  private final Comparator<Object[]> _comparator;
+  private final int _maxRowsInMemory;
+  private final int _numRowsToKeep;
+  private final int _maxRowsPerBlock;
+
+  private ArrayList<Object[]> _unsortedRows = new ArrayList<>();
+  private List<List<Object[]>> _sortedRuns = new ArrayList<>();
+  private int _numRowsInMemory;
+  private List<SpillFile> _spilledRuns = new ArrayList<>();
+
+  // Merge state, set on finish()
+  @Nullable
+  private PriorityQueue<RunCursor> _mergeQueue;
+  @Nullable
+  private List<Object[]> _singleRun;
+  private int _numRowsReturned;
+
+  /**
+   * @param spillManager spill manager used to create the spilled runs
+   * @param dataSchema schema of the rows to sort
+   * @param comparator comparator defining the sort order
+   * @param maxRowsInMemory max number of rows to keep in memory before spilling
+   * @param numRowsToKeep max number of rows to return from the head of the sorted result
+   */
+  public ExternalSorter(SpillManager spillManager, DataSchema dataSchema, Comparator<Object[]> comparator,
+      int maxRowsInMemory, int numRowsToKeep) {
+    Preconditions.checkArgument(maxRowsInMemory > 0, "Max rows in memory must be positive, got: %s", maxRowsInMemory);
+    _spillManager = spillManager;
+    _dataSchema = dataSchema;
+    _comparator = comparator;
+    _maxRowsInMemory = maxRowsInMemory;
+    _numRowsToKeep = numRowsToKeep;
+    // Keep the blocks of all the runs merged at once within the memory budget
+    _maxRowsPerBlock = Math.max(1, Math.min(MAX_ROWS_PER_BLOCK, maxRowsInMemory / MAX_MERGE_FAN_IN));
+  }
+
+  /**
+   * Adds rows in any order.
+   */
+  public void addRows(List<Object[]> rows)
+      throws IOException {
+    Preconditions.checkState(_mergeQueue == null, "Cannot add rows after finish()");
+    _unsortedRows.addAll(rows);
+    _numRowsInMemory += rows.size();
+    if (_unsortedRows.size() > Math.max(_numRowsToKeep, MAX_ROWS_PER_BLOCK)) {
+      // Trim the unsorted rows early when only the head of the result is needed
+      _sortedRuns.add(sortUnsortedRows());
+    }
+    if (_numRowsInMemory > _maxRowsInMemory) {
+      spill();
+    }
+  }
+
+  /**
+   * Adds rows already sorted by the comparator of this sorter. The given list must not be modified afterward.
+   */
+  public void addSortedRun(List<Object[]> rows)
+      throws IOException {
+    Preconditions.checkState(_mergeQueue == null, "Cannot add rows after finish()");
+    if (rows.isEmpty()) {
+      return;
+    }
+    List<Object[]> run = rows.size() > _numRowsToKeep ? rows.subList(0, _numRowsToKeep) : rows;
+    _sortedRuns.add(run);
+    _numRowsInMemory += run.size();
+    if (_numRowsInMemory > _maxRowsInMemory) {
+      spill();
+    }
+  }
+
+  public boolean hasSpilled() {
+    return _spillManager.getNumSpilledRows() > 0;
+  }
+
+  public long getNumSpilledRows() {
+    return _spillManager.getNumSpilledRows();
+  }
+
+  public long getNumSpilledBytes() {
+    return _spillManager.getNumSpilledBytes();
+  }
+
+  /**
+   * Finishes adding rows and prepares the merge of all the runs.
+   */
+  public void finish()
+      throws IOException {
+    Preconditions.checkState(_mergeQueue == null, "Sorter is already finished");
+    if (!_unsortedRows.isEmpty()) {
+      _sortedRuns.add(sortUnsortedRows());
+    }
+    List<RunCursor> cursors = new ArrayList<>();
+    if (!_spilledRuns.isEmpty()) {
+      mergeSpilledRuns();
+      for (SpillFile spilledRun : _spilledRuns) {
+        cursors.add(new SpilledRunCursor(spilledRun));
+      }
+    } else if (_sortedRuns.size() == 1) {
+      // Fast path: nothing to merge
+      _singleRun = _sortedRuns.get(0);
+    }
+    if (_singleRun == null) {
+      for (List<Object[]> sortedRun : _sortedRuns) {
+        cursors.add(new InMemoryRunCursor(sortedRun));
+      }
+    }
+    _sortedRuns = new ArrayList<>();
+    _mergeQueue = createMergeQueue(cursors);
+  }
+
+  /**
+   * Returns the next block of sorted rows, or {@code null} when all the rows have been returned.
+   */
+  @Nullable
+  public List<Object[]> nextBlock()
+      throws IOException {
+    Preconditions.checkState(_mergeQueue != null, "Sorter is not finished");
+    if (_singleRun != null) {
+      List<Object[]> rows = _singleRun;
+      _singleRun = null;
+      _numRowsReturned = rows.size();
+      return rows;
+    }
+    int numRowsToReturn = Math.min(_maxRowsPerBlock, _numRowsToKeep - _numRowsReturned);
+    if (numRowsToReturn <= 0 || _mergeQueue.isEmpty()) {
+      return null;
+    }
+    List<Object[]> rows = new ArrayList<>(numRowsToReturn);
+    mergeInto(_mergeQueue, rows, numRowsToReturn);
+    _numRowsReturned += rows.size();
+    return rows;
+  }
+
+  @Override
+  public void close() {
+    if (_mergeQueue != null) {
+      for (RunCursor cursor : _mergeQueue) {
+        cursor.close();
+      }
+      _mergeQueue.clear();
+    }
+    _unsortedRows = new ArrayList<>();
+    _sortedRuns = new ArrayList<>();
+    _singleRun = null;
+    _spilledRuns = new ArrayList<>();
+    _spillManager.close();
+  }
+
+  private List<Object[]> sortUnsortedRows() {
+    ArrayList<Object[]> rows = _unsortedRows;
+    _unsortedRows = new ArrayList<>();
+    rows.sort(_comparator);
+    if (rows.size() > _numRowsToKeep) {
+      _numRowsInMemory -= rows.size() - _numRowsToKeep;
+      return new ArrayList<>(rows.subList(0, _numRowsToKeep));
+    }
+    return rows;
+  }
+
+  /**
+   * Merges all the rows in memory into a single spilled run.
+   */
+  private void spill()
+      throws IOException {
+    if (!_unsortedRows.isEmpty()) {
+      _sortedRuns.add(sortUnsortedRows());
+    }
+    List<RunCursor> cursors = new ArrayList<>(_sortedRuns.size());
+    for (List<Object[]> sortedRun : _sortedRuns) {
+      cursors.add(new InMemoryRunCursor(sortedRun));
+    }
+    _spilledRuns.add(mergeIntoSpillFile(cursors));
+    _sortedRuns = new ArrayList<>();
+    _numRowsInMemory = 0;
+  }
+
+  /**
+   * Merges the spilled runs into larger runs until they can be merged at once.
+   */
+  private void mergeSpilledRuns()
+      throws IOException {
+    if (!_sortedRuns.isEmpty()) {
+      spill();
+    }
+    while (_spilledRuns.size() > MAX_MERGE_FAN_IN) {
+      int numSpilledRuns = _spilledRuns.size();
+      List<SpillFile> mergedRuns = new ArrayList<>((numSpilledRuns + MAX_MERGE_FAN_IN - 1) / MAX_MERGE_FAN_IN);
+      for (int i = 0; i < numSpilledRuns; i += MAX_MERGE_FAN_IN) {
+        List<SpillFile> runsToMerge = _spilledRuns.subList(i, Math.min(i + MAX_MERGE_FAN_IN, numSpilledRuns));
+        if (runsToMerge.size() == 1) {
+          mergedRuns.add(runsToMerge.get(0));
+          continue;
+        }
+        List<RunCursor> cursors = new ArrayList<>(runsToMerge.size());
+        for (SpillFile runToMerge : runsToMerge) {
+          cursors.add(new SpilledRunCursor(runToMerge));
+        }
+        mergedRuns.add(mergeIntoSpillFile(cursors));
+        for (SpillFile runToMerge : runsToMerge) {
+          _spillManager.release(runToMerge);
+        }
+      }
+      _spilledRuns = mergedRuns;
+    }
+  }
+
+  private SpillFile mergeIntoSpillFile(List<RunCursor> cursors)
+      throws IOException {
+    PriorityQueue<RunCursor> mergeQueue = createMergeQueue(cursors);
+    SpillFile spillFile = _spillManager.createFile(_dataSchema);
+    try {
+      int numRowsRemaining = _numRowsToKeep;
+      List<Object[]> rows = new ArrayList<>(Math.min(_maxRowsPerBlock, numRowsRemaining));
+      while (numRowsRemaining > 0 && !mergeQueue.isEmpty()) {
+        mergeInto(mergeQueue, rows, Math.min(_maxRowsPerBlock, numRowsRemaining));
+        _spillManager.write(spillFile, rows);
+        numRowsRemaining -= rows.size();
+        rows.clear();
+      }
+      spillFile.finish();
+    } finally {
+      for (RunCursor cursor : mergeQueue) {
+        cursor.close();
+      }
+    }
+    return spillFile;
+  }
+
+  private PriorityQueue<RunCursor> createMergeQueue(List<RunCursor> cursors)
+      throws IOException {
+    PriorityQueue<RunCursor> mergeQueue =
+        new PriorityQueue<>(Math.max(1, cursors.size()), (c1, c2) -> _comparator.compare(c1.peek(), c2.peek()));
+    for (RunCursor cursor : cursors) {
+      if (cursor.advance()) {
+        mergeQueue.add(cursor);
+      } else {
+        cursor.close();
+      }
+    }
+    return mergeQueue;
+  }
+
+  private static void mergeInto(PriorityQueue<RunCursor> mergeQueue, List<Object[]> rows, int numRows)
+      throws IOException {
+    while (rows.size() < numRows && !mergeQueue.isEmpty()) {
+      RunCursor cursor = mergeQueue.poll();
+      rows.add(cursor.peek());
+      if (cursor.advance()) {
+        mergeQueue.add(cursor);
+      } else {
+        cursor.close();
+      }
+    }
+  }
+
+  /**
+   * Cursor over the rows of a sorted run.
+   */
+  private interface RunCursor {
+
+    /**
+     * Moves to the next row, returns {@code false} if the run is exhausted.
+     */
+    boolean advance()
+        throws IOException;
+
+    /**
+     * Returns the current row.
+     */
+    Object[] peek();
+
+    void close();
+  }
+
+  private static class InMemoryRunCursor implements RunCursor {
+    private final List<Object[]> _rows;
+    private int _index = -1;
+
+    InMemoryRunCursor(List<Object[]> rows) {
+      _rows = rows;
+    }
+
+    @Override
+    public boolean advance() {
+      return ++_index < _rows.size();
+    }
+
+    @Override
+    public Object[] peek() {
+      return _rows.get(_index);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class SpilledRunCursor implements RunCursor {
+    private final SpillFile.Reader _reader;
+    private List<Object[]> _block = List.of();
+    private int _index = -1;
+
+    SpilledRunCursor(SpillFile spillFile)
+        throws IOException {
+      _reader = spillFile.openReader();
+    }
+
+    @Override
+    public boolean advance()
+        throws IOException {
+      while (++_index >= _block.size()) {
+        List<Object[]> block = _reader.nextBlock();
+        if (block == null) {
+          return false;
+        }
+        _block = block;
+        _index = -1;
+      }
+      return true;
+    }
+
+    @Override
+    public Object[] peek() {
+      return _block.get(_index);
+    }
+
+    @Override
+    public void close() {
+      try {
+        _reader.close();
+      } catch (IOException e) {
+        // Ignore, the spill file is deleted when the spill manager is closed
+      }
+    }
+  }
+}
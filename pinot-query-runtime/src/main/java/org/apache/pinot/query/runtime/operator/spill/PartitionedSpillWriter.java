@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+
+
+/**
+ * The {@code PartitionedSpillWriter} distributes rows into a fixed number of {@link SpillFile}s, one per partition.
+ * <p>Rows are buffered per partition and written as a block once the buffer reaches the configured number of rows, so
+ * at most {@code numPartitions * maxRowsPerBlock} rows are kept on the heap while writing.
+ */
+public class PartitionedSpillWriter {
+  private final SpillManager _spillManager;
+  private final SpillFile[] _spillFiles;
+  private final List<Object[]>[] _buffers;
+  private final int _maxRowsPerBlock;
+
+  @SuppressWarnings("unchecked")
+  public PartitionedSpillWriter(SpillManager spillManager, DataSchema dataSchema, int numPartitions,
+      int maxRowsPerBlock)
+      throws IOException {
+    _spillManager = spillManager;
+    _spillFiles = new SpillFile[numPartitions];
+    _buffers = new List[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      _spillFiles[i] = spillManager.createFile(dataSchema);
+      _buffers[i] = new ArrayList<>();
+    }
+    _maxRowsPerBlock = maxRowsPerBlock;
+  }
+
+  /**
+   * Adds a row to the given partition.
+   */
+  public void add(int partitionId, Object[] row)
+      throws IOException {
+    List<Object[]> buffer = _buffers[partitionId];
+    buffer.add(row);
+    if (buffer.size() >= _maxRowsPerBlock) {
+      _spillManager.write(_spillFiles[partitionId], buffer);
+      _buffers[partitionId] = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Flushes the buffered rows and returns the spill files indexed by partition id. Empty partitions have an empty
+   * spill file. The caller becomes responsible for releasing the returned files through the {@link SpillManager}.
+   */
+  public SpillFile[] finish()
+      throws IOException {
+    for (int i = 0; i < _spillFiles.length; i++) {
+      _spillManager.write(_spillFiles[i], _buffers[i]);
+      _buffers[i] = new ArrayList<>();
+      _spillFiles[i].finish();
+    }
+    return _spillFiles;
+  }
+}
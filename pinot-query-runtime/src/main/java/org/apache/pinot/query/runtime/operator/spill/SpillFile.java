@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.util.DataBlockExtractUtils;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * The {@code SpillFile} is an append-only file of serialized data blocks, used by multi-stage operators to move rows
+ * out of the heap once they exceed their in-memory budget.
+ * <p>Rows are appended block by block with {@link #write(List)}, using the same serialization as the mailboxes. Once
+ * all the rows are written, the blocks can be read back in the same order with {@link #openReader()}, which memory
+ * maps the file so that only one block at a time is materialized on the heap.
+ * <p>Each block is stored as a 4 bytes big-endian length followed by the serialized block.
+ */
+public class SpillFile implements Closeable {
+  private final File _file;
+  private final DataSchema _dataSchema;
+
+  @Nullable
+  private FileChannel _channel;
+  private long _numRows;
+  private long _sizeInBytes;
+
+  SpillFile(File file, DataSchema dataSchema)
+      throws IOException {
+    _file = file;
+    _dataSchema = dataSchema;
+    _channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+  }
+
+  public File getFile() {
+    return _file;
+  }
+
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  /**
+   * Returns the number of rows written into the file.
+   */
+  public long getNumRows() {
+    return _numRows;
+  }
+
+  /**
+   * Returns the number of bytes written into the file.
+   */
+  public long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  /**
+   * Appends the given rows as a single block. The rows must follow the data schema of the file.
+   */
+  public void write(List<Object[]> rows)
+      throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    Preconditions.checkState(_channel != null, "Cannot write into spill file: %s after it is finished", _file);
+    DataBlock dataBlock = new RowHeapDataBlock(rows, _dataSchema).asSerialized().getDataBlock();
+    List<ByteBuffer> buffers = DataBlockUtils.serialize(dataBlock);
+    int blockSize = 0;
+    for (ByteBuffer buffer : buffers) {
+      blockSize += buffer.remaining();
+    }
+    ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+    header.putInt(blockSize);
+    header.flip();
+    writeFully(header);
+    for (ByteBuffer buffer : buffers) {
+      writeFully(buffer);
+    }
+    _numRows += rows.size();
+    _sizeInBytes += Integer.BYTES + blockSize;
+  }
+
+  private void writeFully(ByteBuffer buffer)
+      throws IOException {
+    assert _channel != null;
+    while (buffer.hasRemaining()) {
+      _channel.write(buffer);
+    }
+  }
+
+  /**
+   * Finishes writing the file. No more rows can be written after this method is called.
+   */
+  public void finish()
+      throws IOException {
+    if (_channel != null) {
+      _channel.close();
+      _channel = null;
+    }
+  }
+
+  /**
+   * Finishes writing the file (if not yet finished) and returns a reader over the blocks in the order they were
+   * written. Multiple readers can be opened on the same file.
+   */
+  public Reader openReader()
+      throws IOException {
+    finish();
+    return new Reader();
+  }
+
+  /**
+   * Closes the file and deletes it from disk.
+   */
+  @Override
+  public void close()
+      throws IOException {
+    try {
+      finish();
+    } finally {
+      FileUtils.deleteQuietly(_file);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{\"file\": \"" + _file + "\", \"numRows\": " + _numRows + ", \"sizeInBytes\": " + _sizeInBytes + "}";
+  }
+
+  /**
+   * Sequential reader of the blocks within a {@link SpillFile}.
+   */
+  public class Reader implements Closeable {
+    @Nullable
+    private final PinotDataBuffer _dataBuffer;
+    private long _offset;
+
+    private Reader()
+        throws IOException {
+      _dataBuffer = _sizeInBytes > 0 ? PinotDataBuffer.mapFile(_file, true, 0, _sizeInBytes, ByteOrder.BIG_ENDIAN,
+          "Multi-stage spill file: " + _file.getName()) : null;
+    }
+
+    /**
+     * Returns the rows of the next block, or {@code null} if all the blocks have been read.
+     */
+    @Nullable
+    public List<Object[]> nextBlock()
+        throws IOException {
+      if (_dataBuffer == null || _offset >= _sizeInBytes) {
+        return null;
+      }
+      int blockSize = _dataBuffer.getInt(_offset);
+      long blockStart = _offset + Integer.BYTES;
+      long blockEnd = blockStart + blockSize;
+      DataBlock dataBlock = DataBlockUtils.deserialize(_dataBuffer.view(blockStart, blockEnd));
+      _offset = blockEnd;
+      return DataBlockExtractUtils.extractRows(dataBlock);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      if (_dataBuffer != null) {
+        _dataBuffer.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code SpillManager} creates and keeps track of the {@link SpillFile}s of a single multi-stage operator.
+ * <p>All the files are created within a private directory under the spill directory configured on the query runner
+ * (see {@link MultiStageQueryRunner#KEY_OF_SPILL_DIR}), which is lazily created on the first spill and removed with
+ * all its files on {@link #close()}.
+ */
+public class SpillManager implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpillManager.class);
+
+  private final File _baseDir;
+  private final String _dirPrefix;
+  private final List<SpillFile> _spillFiles = new ArrayList<>();
+
+  @Nullable
+  private File _spillDir;
+  private int _numFilesCreated;
+  private long _numSpilledRows;
+  private long _numSpilledBytes;
+
+  public SpillManager(OpChainExecutionContext context, String operatorName) {
+    this(getBaseDir(context.getOpChainMetadata()),
+        operatorName + "_" + context.getRequestId() + "_" + context.getStageId() + "_" + context.getWorkerId() + "_");
+  }
+
+  public SpillManager(File baseDir, String dirPrefix) {
+    _baseDir = baseDir;
+    _dirPrefix = dirPrefix;
+  }
+
+  private static File getBaseDir(Map<String, String> opChainMetadata) {
+    String spillDir = opChainMetadata.get(MultiStageQueryRunner.KEY_OF_SPILL_DIR);
+    return spillDir != null ? new File(spillDir)
+        : new File(FileUtils.getTempDirectory(), MultiStageQueryRunner.DEFAULT_SPILL_DIR_NAME);
+  }
+
+  /**
+   * Creates a new empty spill file for rows following the given data schema.
+   */
+  public SpillFile createFile(DataSchema dataSchema)
+      throws IOException {
+    if (_spillDir == null) {
+      FileUtils.forceMkdir(_baseDir);
+      _spillDir = Files.createTempDirectory(_baseDir.toPath(), _dirPrefix).toFile();
+      LOGGER.debug("Created spill directory: {}", _spillDir);
+    }
+    SpillFile spillFile = new SpillFile(new File(_spillDir, "spill_" + _numFilesCreated++), dataSchema);
+    _spillFiles.add(spillFile);
+    return spillFile;
+  }
+
+  /**
+   * Writes the given rows into the given spill file, keeping track of the spilled rows and bytes.
+   */
+  public void write(SpillFile spillFile, List<Object[]> rows)
+      throws IOException {
+    long sizeBefore = spillFile.getSizeInBytes();
+    spillFile.write(rows);
+    _numSpilledRows += rows.size();
+    _numSpilledBytes += spillFile.getSizeInBytes() - sizeBefore;
+  }
+
+  /**
+   * Closes and deletes the given spill file once it is no longer needed.
+   */
+  public void release(SpillFile spillFile)
+      throws IOException {
+    _spillFiles.remove(spillFile);
+    spillFile.close();
+  }
+
+  public long getNumSpilledRows() {
+    return _numSpilledRows;
+  }
+
+  public long getNumSpilledBytes() {
+    return _numSpilledBytes;
+  }
+
+  @Override
+  public void close() {
+    for (SpillFile spillFile : _spillFiles) {
+      try {
+        spillFile.close();
+      } catch (Exception e) {
+        LOGGER.warn("Failed to close spill file: {}", spillFile.getFile(), e);
+      }
+    }
+    _spillFiles.clear();
+    if (_spillDir != null) {
+      FileUtils.deleteQuietly(_spillDir);
+      _spillDir = null;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+/**
+ * The {@code SpilledPartition} holds the spill files of a partition whose rows share the same key hash bits up to the
+ * given partitioning level, e.g. the right and left rows of a grace hash join partition.
+ * <p>Each partitioning level consumes {@code partitionBits} bits of the mixed key hash (see
+ * {@link #getPartitionId(int, int, int)}), so a partition exceeding the memory budget can be re-partitioned at the next
+ * level without keeping all its rows in the same partition.
+ */
+public class SpilledPartition {
+  private final int _level;
+  private final SpillFile[] _spillFiles;
+
+  public SpilledPartition(int level, SpillFile... spillFiles) {
+    _level = level;
+    _spillFiles = spillFiles;
+  }
+
+  public int getLevel() {
+    return _level;
+  }
+
+  public SpillFile getSpillFile(int index) {
+    return _spillFiles[index];
+  }
+
+  /**
+   * Returns the id of the partition of the given key hash at the given partitioning level, within
+   * {@code [0, 1 << partitionBits)}.
+   */
+  public static int getPartitionId(int hash, int level, int partitionBits) {
+    // Mix the hash so that the partitions are independent of the hash distribution used by the exchange
+    hash *= 0x9E3779B9;
+    hash ^= hash >>> 16;
+    return (hash >>> (level * partitionBits)) & ((1 << partitionBits) - 1);
+  }
+}
@@ -29,6 +29,7 @@ import org.apache.pinot.query.mailbox.ReceivingMailbox;
 import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
+import org.apache.pinot.query.runtime.executor.ManagedBlockers;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.segment.spi.memory.DataBuffer;
@@ -219,7 +220,7 @@ public abstract class BlockingMultiStreamConsumer<E> implements AutoCloseable {
           LOGGER.debug("==[RECEIVE]== Blocked on : " + _id + ". " + System.identityHashCode(_newDataReady));
         }
         long timeoutMs = _deadlineMs - System.currentTimeMillis();
-        timeout = _newDataReady.poll(timeoutMs, TimeUnit.MILLISECONDS) == null;
+        timeout = ManagedBlockers.poll(_newDataReady, timeoutMs, TimeUnit.MILLISECONDS) == null;
         if (timeout) {
           if (LOGGER.isDebugEnabled()) {
             LOGGER.warn("==[RECEIVE]== Timeout on: " + _id);
@@ -27,6 +27,7 @@ import org.apache.pinot.core.query.request.ServerQueryRequest;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.routing.StagePlan;
 import org.apache.pinot.query.runtime.plan.pipeline.PipelineBreakerResult;
+import org.apache.pinot.spi.utils.CommonConstants.Server;
 
 
 /**
@@ -46,6 +47,7 @@ public class ServerPlanRequestContext {
   private final PinotQuery _pinotQuery;
   private PlanNode _leafStageBoundaryNode;
   private List<ServerQueryRequest> _serverQueryRequests;
+  private int _inPredicateThreshold = Server.DEFAULT_VALUE_PRUNER_IN_PREDICATE_THRESHOLD;
 
   public ServerPlanRequestContext(StagePlan stagePlan, QueryExecutor leafQueryExecutor,
       ExecutorService executorService, @Nullable PipelineBreakerResult pipelineBreakerResult) {
@@ -92,4 +94,15 @@ public class ServerPlanRequestContext {
   public void setServerQueryRequests(List<ServerQueryRequest> serverQueryRequests) {
     _serverQueryRequests = serverQueryRequests;
   }
+
+  /**
+   * Returns the max number of values of an IN predicate pruned by the segment pruners of this server.
+   */
+  public int getInPredicateThreshold() {
+    return _inPredicateThreshold;
+  }
+
+  public void setInPredicateThreshold(int inPredicateThreshold) {
+    _inPredicateThreshold = inPredicateThreshold;
+  }
 }
@@ -33,6 +33,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.ExpressionType;
 import org.apache.pinot.common.request.InstanceRequest;
 import org.apache.pinot.common.request.PinotQuery;
 import org.apache.pinot.common.request.QuerySource;
@@ -106,6 +107,11 @@ public class ServerPlanRequestUtils {
 
     ServerPlanRequestContext serverContext = new ServerPlanRequestContext(stagePlan, leafQueryExecutor, executorService,
         executionContext.getPipelineBreakerResult());
+    String inPredicateThreshold =
+        executionContext.getOpChainMetadata().get(CommonConstants.Server.CONFIG_OF_VALUE_PRUNER_IN_PREDICATE_THRESHOLD);
+    if (inPredicateThreshold != null) {
+      serverContext.setInPredicateThreshold(Integer.parseInt(inPredicateThreshold));
+    }
     // 1. Compile the PinotQuery
     constructPinotQueryPlan(serverContext, executionContext.getOpChainMetadata());
     // 2. Convert PinotQuery into InstanceRequest list (one for each physical table)
@@ -311,9 +317,13 @@ public class ServerPlanRequestUtils {
 
   /**
    * attach the dynamic filter to the given PinotQuery.
+   * <p>Besides the IN filter on the values of the right table, a redundant min/max range filter is attached for numeric
+   * column keys with more values than the IN predicate threshold of the segment pruners, so that the segments can still
+   * be pruned on their column min/max values. The range filter is not attached on other expressions, because the
+   * segment pruners only prune on columns and it would then only add a row by row evaluation.
    */
   static void attachDynamicFilter(PinotQuery pinotQuery, List<Integer> leftKeys, List<Integer> rightKeys,
-      List<Object[]> dataContainer, DataSchema dataSchema) {
+      List<Object[]> dataContainer, DataSchema dataSchema, int inPredicateThreshold) {
     List<Expression> expressions = new ArrayList<>();
     for (int i = 0; i < leftKeys.size(); i++) {
       Expression leftExpr = pinotQuery.getSelectList().get(leftKeys.get(i));
@@ -322,10 +332,17 @@ public class ServerPlanRequestUtils {
         expressions.add(RequestUtils.getLiteralExpression(false));
       } else {
         int rightIdx = rightKeys.get(i);
-        List<Expression> operands = new ArrayList<>(dataContainer.size() + 1);
+        List<Expression> inOperands = computeInOperands(dataContainer, dataSchema, rightIdx);
+        List<Expression> operands = new ArrayList<>(inOperands.size() + 1);
         operands.add(leftExpr);
-        operands.addAll(computeInOperands(dataContainer, dataSchema, rightIdx));
+        operands.addAll(inOperands);
         expressions.add(RequestUtils.getFunctionExpression(FilterKind.IN.name(), operands));
+        if (inOperands.size() > inPredicateThreshold && leftExpr.getType() == ExpressionType.IDENTIFIER
+            && dataSchema.getColumnDataType(rightIdx).getStoredType().isNumber()) {
+          // IN operands are sorted, so the first and last ones are the min and max values
+          expressions.add(RequestUtils.getFunctionExpression(FilterKind.BETWEEN.name(), leftExpr.deepCopy(),
+              inOperands.get(0), inOperands.get(inOperands.size() - 1)));
+        }
       }
     }
     Expression filterExpression = pinotQuery.getFilterExpression();
@@ -169,7 +169,7 @@ public class ServerPlanRequestVisitor implements PlanNodeVisitor<Void, ServerPla
         }
         // TODO: we should keep query stats here as well
         ServerPlanRequestUtils.attachDynamicFilter(context.getPinotQuery(), node.getLeftKeys(), node.getRightKeys(),
-            resultDataContainer, dataSchema);
+            resultDataContainer, dataSchema, context.getInPredicateThreshold());
       }
     } else {
       // For lookup join, visit the right child and set it as the leaf boundary.
@@ -208,7 +208,7 @@ public class ServerPlanRequestVisitor implements PlanNodeVisitor<Void, ServerPla
         }
         // TODO: we should keep query stats here as well
         ServerPlanRequestUtils.attachDynamicFilter(context.getPinotQuery(), node.getLeftKeys(), node.getRightKeys(),
-            resultDataContainer, dataSchema);
+            resultDataContainer, dataSchema, context.getInPredicateThreshold());
 
         PinotQuery pinotQuery = context.getPinotQuery();
         for (EnrichedJoinNode.FilterProjectRex rex : node.getFilterProjectRexes()) {
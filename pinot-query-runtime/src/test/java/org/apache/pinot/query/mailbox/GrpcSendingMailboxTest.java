@@ -25,6 +25,7 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 import org.apache.pinot.common.datablock.DataBlock;
@@ -32,6 +33,8 @@ import org.apache.pinot.common.datablock.DataBlockEquals;
 import org.apache.pinot.common.datablock.DataBlockUtils;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.query.mailbox.channel.MailboxCompression;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
 import org.apache.pinot.segment.spi.memory.CompoundDataBuffer;
 import org.apache.pinot.segment.spi.memory.DataBuffer;
 import org.apache.pinot.segment.spi.memory.PinotByteBuffer;
@@ -39,6 +42,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 
@@ -106,6 +112,56 @@ public class GrpcSendingMailboxTest {
     assertEquals(split1, split2);
   }
 
+  @Test(dataProvider = "compressionTypeProvider")
+  public void testCompressedDataBlockRoundTrip(ChunkCompressionType compressionType)
+      throws IOException {
+    DataBlock dataBlock = buildCompressibleDataBlock();
+    List<ByteBuffer> serialized = dataBlock.serialize();
+    int uncompressedSize = serialized.stream().mapToInt(ByteBuffer::remaining).sum();
+    MailboxCompression compression = new MailboxCompression(compressionType, 0, 0.9);
+    ByteBuffer compressed = compression.compress(serialized, uncompressedSize);
+    assertNotNull(compressed);
+    assertTrue(compressed.remaining() < uncompressedSize);
+
+    // Split the compressed block as it would be sent through the stream
+    List<ByteString> output = GrpcSendingMailbox.toByteStrings(List.of(compressed), 100);
+    List<ByteBuffer> received =
+        output.stream().map(byteString -> byteString.asReadOnlyByteBuffer().slice()).collect(Collectors.toList());
+    DataBlock deserialized = DataBlockUtils.deserialize(
+        MailboxCompression.decompressIfNeeded(received, compression.getMetadata(uncompressedSize)));
+    DataBlockEquals.checkSameContent(dataBlock, deserialized, "Decompressed data block does not match.");
+  }
+
+  @Test
+  public void testUncompressedDataBlockIsNotDecompressed()
+      throws IOException {
+    List<ByteBuffer> serialized = buildTestDataBlock().serialize();
+    assertEquals(MailboxCompression.decompressIfNeeded(serialized, Map.of()), serialized);
+  }
+
+  @Test(dataProvider = "compressionTypeProvider")
+  public void testPoorCompressionRatio(ChunkCompressionType compressionType)
+      throws IOException {
+    // Random bytes cannot be compressed
+    ByteBuffer input = randomByteBuffer(10_000);
+    MailboxCompression compression = new MailboxCompression(compressionType, 0, 0.9);
+    assertNull(compression.compress(List.of(input), input.remaining()));
+    // The input must not be consumed so that it can be sent uncompressed
+    assertEquals(input.remaining(), 10_000);
+
+    assertTrue(compression.shouldCompress(10_000));
+    assertFalse(new MailboxCompression(compressionType, 20_000, 0.9).shouldCompress(10_000));
+    assertFalse(MailboxCompression.DISABLED.shouldCompress(10_000));
+  }
+
+  @DataProvider(name = "compressionTypeProvider")
+  public Object[][] compressionTypeProvider() {
+    return new Object[][]{
+        {ChunkCompressionType.LZ4},
+        {ChunkCompressionType.ZSTANDARD}
+    };
+  }
+
   @DataProvider(name = "byteBuffersDataProvider")
   public Object[][] byteBuffersDataProvider() {
     // byteBufferSizes / maxByteStringSize
@@ -151,6 +207,17 @@ public class GrpcSendingMailboxTest {
     return DataBlockBuilder.buildFromRows(rows, dataSchema);
   }
 
+  private static DataBlock buildCompressibleDataBlock()
+      throws IOException {
+    DataSchema dataSchema = new DataSchema(new String[]{"valueString"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.STRING});
+    List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(new Object[]{"value_" + (i % 10)});
+    }
+    return DataBlockBuilder.buildFromRows(rows, dataSchema);
+  }
+
   private ByteBuffer concatenateBuffers(List<ByteBuffer> buffers) {
     int totalSize = buffers.stream().mapToInt(ByteBuffer::remaining).sum();
     ByteBuffer all = ByteBuffer.allocate(totalSize);
@@ -362,6 +362,54 @@ public class MailboxServiceTest {
     assertTrue(block.isSuccess());
   }
 
+  @Test
+  public void testRemoteHappyPathWithCompression()
+      throws Exception {
+    PinotConfiguration config = new PinotConfiguration(
+        Map.of(MultiStageQueryRunner.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES, MAX_DATA_BLOCK_SIZE,
+            MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_CODEC, "LZ4",
+            MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_MIN_BLOCK_SIZE_BYTES, 0,
+            MultiStageQueryRunner.KEY_OF_MAILBOX_COMPRESSION_MAX_RATIO, 1.0));
+    MailboxService compressingMailboxService =
+        new MailboxService("localhost", QueryTestUtils.getAvailablePort(), InstanceType.SERVER, config);
+    compressingMailboxService.start();
+    try {
+      String mailboxId = MailboxIdUtils.toMailboxId(_requestId++, SENDER_STAGE_ID, 0, RECEIVER_STAGE_ID, 0);
+      StatMap<MailboxSendOperator.StatKey> stats = new StatMap<>(MailboxSendOperator.StatKey.class);
+      SendingMailbox sendingMailbox =
+          compressingMailboxService.getSendingMailbox("localhost", _mailboxService1.getPort(), mailboxId,
+              Long.MAX_VALUE, stats);
+      ReceivingMailbox receivingMailbox = _mailboxService1.getReceivingMailbox(mailboxId);
+      receivingMailbox.registeredReader(() -> {
+      });
+      Object[][] rows = new Object[1000][];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = new Object[]{"value_" + (i % 10)};
+      }
+
+      // Blocks are sent uncompressed until the receiver advertises that it accepts compressed blocks
+      for (int i = 0; i < 10 && stats.getLong(MailboxSendOperator.StatKey.COMPRESSED_BYTES) == 0; i++) {
+        sendingMailbox.send(OperatorTestUtil.block(DATA_SCHEMA, rows));
+        TestUtils.waitForCondition(aVoid -> receivingMailbox.getNumPendingBlocks() == 1, 1000L,
+            "Failed to deliver mail");
+        List<Object[]> receivedRows = getRows(receivingMailbox);
+        assertEquals(receivedRows.size(), rows.length);
+        assertEquals(receivedRows.get(rows.length - 1), rows[rows.length - 1]);
+      }
+      long compressedBytes = stats.getLong(MailboxSendOperator.StatKey.COMPRESSED_BYTES);
+      assertTrue(compressedBytes > 0);
+      assertTrue(compressedBytes < stats.getLong(MailboxSendOperator.StatKey.UNCOMPRESSED_BYTES));
+
+      sendingMailbox.send(SuccessMseBlock.INSTANCE, MultiStageQueryStats.emptyStats(SENDER_STAGE_ID).serialize());
+      TestUtils.waitForCondition(aVoid -> readBlock(receivingMailbox) != null, 1000L, "Failed to deliver EOS");
+      MseBlock block = readBlock(receivingMailbox);
+      assertNotNull(block);
+      assertTrue(block.isSuccess());
+    } finally {
+      compressingMailboxService.shutdown();
+    }
+  }
+
   @Test
   public void testRemoteHappyPathReceiveFirst()
       throws Exception {
@@ -20,6 +20,8 @@ package org.apache.pinot.query.runtime.executor;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,6 +38,7 @@ import org.apache.pinot.query.runtime.operator.MultiStageOperator;
 import org.apache.pinot.query.runtime.operator.OpChain;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.exception.QueryCancelledException;
 import org.apache.pinot.spi.executor.ExecutorServiceUtils;
 import org.apache.pinot.spi.query.QueryThreadContext;
@@ -49,6 +52,7 @@ import org.testng.annotations.Test;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -287,4 +291,63 @@ public class OpChainSchedulerServiceTest {
       }
     }
   }
+
+  @Test
+  public void shouldNotReportParkedOutsideForkJoinPool()
+      throws InterruptedException {
+    // The pool only compensates for its own workers, other threads just block
+    assertEquals((int) ManagedBlockers.block(ManagedBlockers::getNumParked), 0);
+  }
+
+  @Test
+  public void shouldNotStarveWorkStealingPoolWhenOpChainIsParked()
+      throws InterruptedException {
+    // A single worker pool where the first opchain waits for data produced by the second one
+    PinotConfiguration conf = new PinotConfiguration(Map.of("test.type", "workStealing", "test.numThreads", "1"));
+    ExecutorService workStealingExecutor = QueryThreadContext.contextAwareExecutorService(
+        ExecutorServiceUtils.create(conf, "test", "work_stealing_on_" + getClass().getSimpleName(), "cached"));
+    try {
+      BlockingQueue<Boolean> queue = new ArrayBlockingQueue<>(1);
+      CountDownLatch consumerParked = new CountDownLatch(1);
+      CountDownLatch closed = new CountDownLatch(2);
+      MultiStageOperator consumer = Mockito.mock(MultiStageOperator.class);
+      Mockito.when(consumer.copyStatMaps()).thenAnswer(inv -> new StatMap<>(MailboxSendOperator.StatKey.class));
+      Mockito.when(consumer.nextBlock()).thenAnswer(inv -> {
+        Boolean value = ManagedBlockers.block(() -> {
+          consumerParked.countDown();
+          return queue.poll(10, TimeUnit.SECONDS);
+        });
+        return value != null ? SuccessMseBlock.INSTANCE : ErrorMseBlock.fromException(new RuntimeException("timeout"));
+      });
+      MultiStageOperator producer = Mockito.mock(MultiStageOperator.class);
+      Mockito.when(producer.copyStatMaps()).thenAnswer(inv -> new StatMap<>(MailboxSendOperator.StatKey.class));
+      Mockito.when(producer.nextBlock()).thenAnswer(inv -> {
+        assertTrue(consumerParked.await(10, TimeUnit.SECONDS), "Consumer should be parked");
+        assertTrue(ManagedBlockers.getNumParked() >= 1, "Consumer should be reported as parked");
+        queue.offer(true);
+        return SuccessMseBlock.INSTANCE;
+      });
+      Mockito.doAnswer(inv -> {
+        closed.countDown();
+        return null;
+      }).when(consumer).close();
+      Mockito.doAnswer(inv -> {
+        closed.countDown();
+        return null;
+      }).when(producer).close();
+
+      OpChainSchedulerService schedulerService = new OpChainSchedulerService(workStealingExecutor);
+      try (QueryThreadContext ignore = QueryThreadContext.openForMseTest()) {
+        schedulerService.register(getChain(consumer));
+        schedulerService.register(getChain(producer));
+      }
+
+      assertTrue(closed.await(10, TimeUnit.SECONDS), "Both opchains should finish");
+      Mockito.verify(consumer, Mockito.never()).cancel(Mockito.any());
+      assertEquals(schedulerService.getNumQueuedOpChains(), 0);
+      assertEquals(schedulerService.getNumRunningOpChains(), 0);
+    } finally {
+      ExecutorServiceUtils.close(workStealingExecutor);
+    }
+  }
 }
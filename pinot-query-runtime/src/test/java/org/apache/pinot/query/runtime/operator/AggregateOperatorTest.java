@@ -55,6 +55,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 
@@ -314,6 +316,103 @@ public class AggregateOperatorTest {
         "num groups warning limit should be reached");
   }
 
+  @Test
+  public void shouldSpillGroupsOnGroupLimitExceed() {
+    // Given:
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)),
+        new RexExpression.FunctionCall(DOUBLE, SqlKind.AVG.name(), List.of(new RexExpression.InputRef(1))));
+    List<Integer> filterArgs = List.of(-1, -1);
+    List<Integer> groupKeys = List.of(0);
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.AGGREGATE_HINT_OPTIONS,
+        Map.of(PinotHintOptions.AggregateOptions.NUM_GROUPS_LIMIT, "3",
+            PinotHintOptions.AggregateOptions.SPILL_ON_NUM_GROUPS_LIMIT, "true")));
+    DataSchema inSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, DOUBLE});
+    BlockListMultiStageOperator.Builder builder = new BlockListMultiStageOperator.Builder(inSchema).spied();
+    for (int i = 0; i < 4; i++) {
+      for (int group = 0; group < 10; group++) {
+        builder.addRow(group, (double) (group + i));
+      }
+      builder.finishBlock();
+    }
+    _input = builder.buildWithEos();
+    DataSchema resultSchema =
+        new DataSchema(new String[]{"group", "sum", "avg"}, new ColumnDataType[]{INT, DOUBLE, DOUBLE});
+    AggregateOperator operator = getOperator(resultSchema, aggCalls, filterArgs, groupKeys, nodeHint, Map.of());
+
+    // When:
+    Map<Integer, Object[]> resultRows = new HashMap<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        assertNull(resultRows.put((Integer) row[0], row), "Each group should be emitted once");
+      }
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess(), "Last block should be a successful EOS");
+    verify(_input, times(0)).earlyTerminate();
+    assertEquals(resultRows.size(), 10, "All the groups should be returned when spilling");
+    for (int group = 0; group < 10; group++) {
+      assertEquals(resultRows.get(group), new Object[]{group, 4.0 * group + 6, group + 1.5});
+    }
+
+    MultiStageQueryStats stats = operator.calculateStats();
+    StatMap<AggregateOperator.StatKey> statMap = OperatorTestUtil.getStatMap(AggregateOperator.StatKey.class, stats);
+    assertTrue(statMap.getLong(AggregateOperator.StatKey.NUM_SPILLED_ROWS) >= 10, "Groups should be spilled");
+    assertTrue(statMap.getLong(AggregateOperator.StatKey.SPILLED_BYTES) > 0, "Spilled bytes should be tracked");
+    assertFalse(statMap.getBoolean(AggregateOperator.StatKey.NUM_GROUPS_LIMIT_REACHED),
+        "num groups limit should not be reported when spilling");
+  }
+
+  @Test
+  public void shouldRepartitionSpilledGroupsExceedingGroupLimit() {
+    // Given:
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)));
+    List<Integer> filterArgs = List.of(-1);
+    List<Integer> groupKeys = List.of(0);
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.AGGREGATE_HINT_OPTIONS,
+        Map.of(PinotHintOptions.AggregateOptions.NUM_GROUPS_LIMIT, "3",
+            PinotHintOptions.AggregateOptions.SPILL_ON_NUM_GROUPS_LIMIT, "true")));
+    DataSchema inSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, DOUBLE});
+    BlockListMultiStageOperator.Builder builder = new BlockListMultiStageOperator.Builder(inSchema).spied();
+    // Each of the 16 spill partitions gets far more groups than the limit
+    int numGroups = 200;
+    for (int i = 0; i < 4; i++) {
+      for (int group = 0; group < numGroups; group++) {
+        builder.addRow(group, (double) (group + i));
+      }
+      builder.finishBlock();
+    }
+    _input = builder.buildWithEos();
+    DataSchema resultSchema = new DataSchema(new String[]{"group", "sum"}, new ColumnDataType[]{INT, DOUBLE});
+    AggregateOperator operator = getOperator(resultSchema, aggCalls, filterArgs, groupKeys, nodeHint, Map.of());
+
+    // When:
+    Map<Integer, Object[]> resultRows = new HashMap<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      List<Object[]> rows = ((MseBlock.Data) block).asRowHeap().getRows();
+      for (Object[] row : rows) {
+        assertNull(resultRows.put((Integer) row[0], row), "Each group should be emitted once");
+      }
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess(), "Last block should be a successful EOS");
+    assertEquals(resultRows.size(), numGroups, "All the groups should be returned when spilling");
+    for (int group = 0; group < numGroups; group++) {
+      assertEquals(resultRows.get(group), new Object[]{group, 4.0 * group + 6});
+    }
+
+    MultiStageQueryStats stats = operator.calculateStats();
+    StatMap<AggregateOperator.StatKey> statMap = OperatorTestUtil.getStatMap(AggregateOperator.StatKey.class, stats);
+    // The 4 blocks spill 800 rows, the rest is spilled again when re-partitioning
+    assertTrue(statMap.getLong(AggregateOperator.StatKey.NUM_SPILLED_ROWS) > 4 * numGroups,
+        "Spilled partitions exceeding the limit should be re-partitioned");
+  }
+
   @Test
   public void testDefaultGroupTrimSize() {
     OpChainExecutionContext context = OperatorTestUtil.getTracingContext();
@@ -218,6 +218,61 @@ public class FilterOperatorTest {
     assertEquals(resultRows.get(0), new Object[]{"starTree"});
   }
 
+  @Test
+  public void shouldHandleBatchFilterWithNulls() {
+    DataSchema inputSchema = new DataSchema(new String[]{"long0", "string1"}, new ColumnDataType[]{
+        ColumnDataType.LONG, ColumnDataType.STRING
+    });
+    when(_input.nextBlock()).thenReturn(
+        OperatorTestUtil.block(inputSchema, new Object[]{1L, "starTree"}, new Object[]{3L, "treeStar"},
+            new Object[]{null, "starTree"}, new Object[]{5L, null}, new Object[]{null, null}));
+    RexExpression.FunctionCall greaterThan =
+        new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.GREATER_THAN.name(),
+            List.of(new RexExpression.InputRef(0), new RexExpression.Literal(ColumnDataType.LONG, 2L)));
+    RexExpression.FunctionCall startsWith =
+        new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.STARTS_WITH.name(),
+            List.of(new RexExpression.InputRef(1), new RexExpression.Literal(ColumnDataType.STRING, "star")));
+    RexExpression.FunctionCall orCall = new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.OR.name(),
+        List.of(greaterThan, startsWith));
+    FilterOperator operator = getOperator(inputSchema, orCall);
+    List<Object[]> resultRows = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows.size(), 4);
+    assertEquals(resultRows.get(0), new Object[]{1L, "starTree"});
+    assertEquals(resultRows.get(1), new Object[]{3L, "treeStar"});
+    assertEquals(resultRows.get(2), new Object[]{null, "starTree"});
+    assertEquals(resultRows.get(3), new Object[]{5L, null});
+
+    when(_input.nextBlock()).thenReturn(
+        OperatorTestUtil.block(inputSchema, new Object[]{1L, "starTree"}, new Object[]{3L, "treeStar"},
+            new Object[]{null, "starTree"}, new Object[]{1L, "treeStar"}, new Object[]{null, null}));
+    // NOT(long0 > 2 OR startsWith(string1, 'star')) only matches the rows where both sides are FALSE
+    RexExpression.FunctionCall notCall = new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.NOT.name(),
+        List.of(orCall));
+    operator = getOperator(inputSchema, notCall);
+    resultRows = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows.size(), 1);
+    assertEquals(resultRows.get(0), new Object[]{1L, "treeStar"});
+  }
+
+  @Test
+  public void shouldHandleBatchFilterOnSerializedBlock() {
+    DataSchema inputSchema = new DataSchema(new String[]{"int0", "double1"}, new ColumnDataType[]{
+        ColumnDataType.INT, ColumnDataType.DOUBLE
+    });
+    when(_input.nextBlock()).thenReturn(
+        OperatorTestUtil.block(inputSchema, new Object[]{1, 2.0}, new Object[]{3, 2.5}, new Object[]{2, 2.0})
+            .asSerialized());
+    // Comparing INT and DOUBLE columns casts both sides to DOUBLE
+    RexExpression.FunctionCall lessThan =
+        new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.LESS_THAN_OR_EQUAL.name(),
+            List.of(new RexExpression.InputRef(0), new RexExpression.InputRef(1)));
+    FilterOperator operator = getOperator(inputSchema, lessThan);
+    List<Object[]> resultRows = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows.size(), 2);
+    assertEquals(resultRows.get(0), new Object[]{1, 2.0});
+    assertEquals(resultRows.get(1), new Object[]{2, 2.0});
+  }
+
   //@formatter:off
   @Test(
       expectedExceptions = IllegalArgumentException.class,
@@ -18,8 +18,11 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.common.datatable.StatMap;
@@ -41,6 +44,7 @@ import org.testng.annotations.Test;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
@@ -375,6 +379,104 @@ public class HashJoinOperatorTest {
         "Max rows in join should be reached");
   }
 
+  @Test
+  public void shouldSpillWhenHitDataRowsLimitOnRightInput() {
+    // Full join covers matched, unmatched left, unmatched right and null key rows
+    BlockListMultiStageOperator.Builder leftBuilder = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA);
+    BlockListMultiStageOperator.Builder rightBuilder = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA);
+    for (int i = 0; i < 100; i++) {
+      leftBuilder.addRow(i, "left" + i);
+      // Keys in [50, 150) with 2 rows per even key
+      rightBuilder.addRow(i + 50, "right" + i);
+      if (i % 2 == 0) {
+        rightBuilder.addRow(i + 50, "dup" + i);
+      }
+      if (i % 10 == 9) {
+        leftBuilder.finishBlock();
+        rightBuilder.finishBlock();
+      }
+    }
+    leftBuilder.addRow(null, "leftNull");
+    rightBuilder.addRow(null, "rightNull");
+    DataSchema resultSchema = new DataSchema(new String[]{"int_col1", "string_col1", "int_co2", "string_col2"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.STRING});
+    _leftInput = leftBuilder.buildWithEos();
+    _rightInput = rightBuilder.buildWithEos();
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.JOIN_OVERFLOW_MODE, "SPILL",
+            PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "16")));
+    HashJoinOperator operator =
+        getOperator(resultSchema, JoinRelType.FULL, List.of(0), List.of(0), List.of(), nodeHint);
+
+    Set<String> resultRows = new HashSet<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        assertTrue(resultRows.add(Arrays.toString(row)), "Duplicate row: " + Arrays.toString(row));
+      }
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccess());
+
+    Set<String> expectedRows = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      expectedRows.add(Arrays.toString(new Object[]{i, "left" + i, null, null}));
+    }
+    for (int i = 50; i < 100; i++) {
+      expectedRows.add(Arrays.toString(new Object[]{i, "left" + i, i, "right" + (i - 50)}));
+      if (i % 2 == 0) {
+        expectedRows.add(Arrays.toString(new Object[]{i, "left" + i, i, "dup" + (i - 50)}));
+      }
+    }
+    for (int i = 50; i < 100; i++) {
+      expectedRows.add(Arrays.toString(new Object[]{null, null, i + 50, "right" + i}));
+      if (i % 2 == 0) {
+        expectedRows.add(Arrays.toString(new Object[]{null, null, i + 50, "dup" + i}));
+      }
+    }
+    expectedRows.add(Arrays.toString(new Object[]{null, "leftNull", null, null}));
+    expectedRows.add(Arrays.toString(new Object[]{null, null, null, "rightNull"}));
+    assertEquals(resultRows, expectedRows);
+
+    StatMap<HashJoinOperator.StatKey> statMap =
+        OperatorTestUtil.getStatMap(HashJoinOperator.StatKey.class, operator.calculateStats());
+    assertFalse(statMap.getBoolean(HashJoinOperator.StatKey.MAX_ROWS_IN_JOIN_REACHED));
+    assertTrue(statMap.getLong(HashJoinOperator.StatKey.NUM_SPILLED_ROWS) >= 252,
+        "All rows from both inputs should be spilled");
+    assertTrue(statMap.getLong(HashJoinOperator.StatKey.SPILLED_BYTES) > 0);
+  }
+
+  @Test
+  public void shouldSpillSemiJoinWhenHitDataRowsLimitOnRightInput() {
+    BlockListMultiStageOperator.Builder leftBuilder = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA);
+    BlockListMultiStageOperator.Builder rightBuilder = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA);
+    for (int i = 0; i < 100; i++) {
+      leftBuilder.addRow(i, "left" + i);
+      rightBuilder.addRow(i * 2, "right" + i);
+    }
+    _leftInput = leftBuilder.buildWithEos();
+    _rightInput = rightBuilder.buildWithEos();
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.JOIN_OVERFLOW_MODE, "SPILL",
+            PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "8")));
+    HashJoinOperator operator =
+        getOperator(DEFAULT_CHILD_SCHEMA, JoinRelType.SEMI, List.of(0), List.of(0), List.of(), nodeHint);
+
+    Set<Integer> resultKeys = new HashSet<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        assertTrue(resultKeys.add((Integer) row[0]));
+      }
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccess());
+    assertEquals(resultKeys.size(), 50);
+    for (int key : resultKeys) {
+      assertEquals(key % 2, 0);
+    }
+  }
+
   @Test
   public void shouldPropagateLeftInputJoinLimitError() {
     _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
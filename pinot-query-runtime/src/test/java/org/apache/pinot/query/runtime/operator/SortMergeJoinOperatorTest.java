@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.planner.plannode.PlanNode;
+import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
+import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SortMergeJoinOperatorTest {
+  private static final DataSchema DEFAULT_CHILD_SCHEMA = new DataSchema(new String[]{"int_col", "string_col"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+  private static final DataSchema JOINED_SCHEMA =
+      new DataSchema(new String[]{"int_col1", "string_col1", "int_col2", "string_col2"},
+          new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.STRING});
+
+  private MultiStageOperator _leftInput;
+  private MultiStageOperator _rightInput;
+
+  private void setUpInputs() {
+    // Both inputs are sorted on the int column with nulls last, and duplicate keys span multiple blocks
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "a1")
+        .addRow(2, "a2")
+        .finishBlock()
+        .addRow(2, "a3")
+        .addRow(4, "a4")
+        .addRow(null, "a5")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(0, "b0")
+        .addRow(2, "b1")
+        .finishBlock()
+        .addRow(2, "b2")
+        .finishBlock()
+        .addRow(3, "b3")
+        .addRow(4, "b4")
+        .addRow(null, "b5")
+        .buildWithEos();
+  }
+
+  @Test
+  public void shouldHandleInnerJoin() {
+    setUpInputs();
+    List<Object[]> resultRows = getAllRows(getOperator(JOINED_SCHEMA, JoinRelType.INNER, List.of()));
+    assertEquals(resultRows.size(), 5);
+    assertEquals(resultRows.get(0), new Object[]{2, "a2", 2, "b1"});
+    assertEquals(resultRows.get(1), new Object[]{2, "a2", 2, "b2"});
+    assertEquals(resultRows.get(2), new Object[]{2, "a3", 2, "b1"});
+    assertEquals(resultRows.get(3), new Object[]{2, "a3", 2, "b2"});
+    assertEquals(resultRows.get(4), new Object[]{4, "a4", 4, "b4"});
+  }
+
+  @Test
+  public void shouldHandleLeftJoin() {
+    setUpInputs();
+    List<Object[]> resultRows = getAllRows(getOperator(JOINED_SCHEMA, JoinRelType.LEFT, List.of()));
+    assertEquals(resultRows.size(), 7);
+    assertEquals(resultRows.get(0), new Object[]{1, "a1", null, null});
+    assertEquals(resultRows.get(1), new Object[]{2, "a2", 2, "b1"});
+    assertEquals(resultRows.get(5), new Object[]{4, "a4", 4, "b4"});
+    assertEquals(resultRows.get(6), new Object[]{null, "a5", null, null});
+  }
+
+  @Test
+  public void shouldHandleRightJoin() {
+    setUpInputs();
+    List<Object[]> resultRows = getAllRows(getOperator(JOINED_SCHEMA, JoinRelType.RIGHT, List.of()));
+    assertEquals(resultRows.size(), 8);
+    assertEquals(resultRows.get(0), new Object[]{null, null, 0, "b0"});
+    assertEquals(resultRows.get(5), new Object[]{null, null, 3, "b3"});
+    assertEquals(resultRows.get(6), new Object[]{4, "a4", 4, "b4"});
+    assertEquals(resultRows.get(7), new Object[]{null, null, null, "b5"});
+  }
+
+  @Test
+  public void shouldHandleFullJoin() {
+    setUpInputs();
+    List<Object[]> resultRows = getAllRows(getOperator(JOINED_SCHEMA, JoinRelType.FULL, List.of()));
+    assertEquals(resultRows.size(), 10);
+    assertEquals(resultRows.get(0), new Object[]{null, null, 0, "b0"});
+    assertEquals(resultRows.get(1), new Object[]{1, "a1", null, null});
+    assertEquals(resultRows.get(6), new Object[]{null, null, 3, "b3"});
+    assertEquals(resultRows.get(7), new Object[]{4, "a4", 4, "b4"});
+    assertEquals(resultRows.get(8), new Object[]{null, "a5", null, null});
+    assertEquals(resultRows.get(9), new Object[]{null, null, null, "b5"});
+  }
+
+  @Test
+  public void shouldHandleSemiAndAntiJoin() {
+    setUpInputs();
+    List<Object[]> resultRows = getAllRows(getOperator(DEFAULT_CHILD_SCHEMA, JoinRelType.SEMI, List.of()));
+    assertEquals(resultRows.size(), 3);
+    assertEquals(resultRows.get(0), new Object[]{2, "a2"});
+    assertEquals(resultRows.get(1), new Object[]{2, "a3"});
+    assertEquals(resultRows.get(2), new Object[]{4, "a4"});
+
+    setUpInputs();
+    resultRows = getAllRows(getOperator(DEFAULT_CHILD_SCHEMA, JoinRelType.ANTI, List.of()));
+    assertEquals(resultRows.size(), 2);
+    assertEquals(resultRows.get(0), new Object[]{1, "a1"});
+    assertEquals(resultRows.get(1), new Object[]{null, "a5"});
+  }
+
+  @Test
+  public void shouldHandleNonEquiConditions() {
+    setUpInputs();
+    List<RexExpression> functionOperands = List.of(new RexExpression.InputRef(3), new RexExpression.Literal(
+        ColumnDataType.STRING, "b1"));
+    List<RexExpression> nonEquiConditions =
+        List.of(new RexExpression.FunctionCall(ColumnDataType.BOOLEAN, SqlKind.NOT_EQUALS.name(), functionOperands));
+    List<Object[]> resultRows = getAllRows(getOperator(JOINED_SCHEMA, JoinRelType.RIGHT, nonEquiConditions));
+    assertEquals(resultRows.size(), 7);
+    assertEquals(resultRows.get(1), new Object[]{2, "a2", 2, "b2"});
+    assertEquals(resultRows.get(2), new Object[]{2, "a3", 2, "b2"});
+    assertEquals(resultRows.get(3), new Object[]{null, null, 2, "b1"});
+  }
+
+  @Test
+  public void shouldPropagateRightInputError() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "a1")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .buildWithError(ErrorMseBlock.fromException(new Exception("testSortMergeJoinRightError")));
+    MseBlock block = getOperator(JOINED_SCHEMA, JoinRelType.INNER, List.of()).nextBlock();
+    assertTrue(block.isError());
+    assertTrue(((ErrorMseBlock) block).getErrorMessages().get(QueryErrorCode.UNKNOWN)
+        .contains("testSortMergeJoinRightError"));
+  }
+
+  @Test
+  public void shouldThrowOnRightGroupLimitExceeded() {
+    setUpInputs();
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.JOIN_OVERFLOW_MODE, "THROW",
+            PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "1")));
+    MseBlock block = getOperator(JOINED_SCHEMA, JoinRelType.INNER, List.of(), nodeHint).nextBlock();
+    assertTrue(block.isError());
+    assertTrue(((ErrorMseBlock) block).getErrorMessages().get(QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED)
+        .contains("reached number of rows limit"));
+  }
+
+  private static List<Object[]> getAllRows(MultiStageOperator operator) {
+    List<Object[]> rows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      rows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccess());
+    return rows;
+  }
+
+  private SortMergeJoinOperator getOperator(DataSchema resultSchema, JoinRelType joinType,
+      List<RexExpression> nonEquiConditions) {
+    return getOperator(resultSchema, joinType, nonEquiConditions, PlanNode.NodeHint.EMPTY);
+  }
+
+  private SortMergeJoinOperator getOperator(DataSchema resultSchema, JoinRelType joinType,
+      List<RexExpression> nonEquiConditions, PlanNode.NodeHint nodeHint) {
+    return new SortMergeJoinOperator(OperatorTestUtil.getTracingContext(), _leftInput, DEFAULT_CHILD_SCHEMA,
+        _rightInput, new JoinNode(-1, resultSchema, nodeHint, List.of(), joinType, List.of(0), List.of(0),
+        nonEquiConditions, JoinNode.JoinStrategy.SORT_MERGE));
+  }
+}
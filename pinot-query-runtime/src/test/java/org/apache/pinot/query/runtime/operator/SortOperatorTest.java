@@ -18,10 +18,15 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelFieldCollation.Direction;
 import org.apache.calcite.rel.RelFieldCollation.NullDirection;
+import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.planner.plannode.SortNode;
@@ -30,6 +35,7 @@ import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.mockito.Mock;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -499,6 +505,47 @@ public class SortOperatorTest {
     assertTrue(operator.nextBlock().isSuccess(), "expected EOS block to propagate");
   }
 
+  @Test
+  public void shouldSpillWhenExceedingMaxRowsInSort() {
+    // Given:
+    DataSchema schema = new DataSchema(new String[]{"sort"}, new DataSchema.ColumnDataType[]{INT});
+    List<Object[]> inputRows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      inputRows.add(new Object[]{i});
+    }
+    Collections.shuffle(inputRows, new Random(42));
+    BlockListMultiStageOperator.Builder builder = new BlockListMultiStageOperator.Builder(schema);
+    for (int i = 0; i < 1000; i++) {
+      builder.addRow(inputRows.get(i));
+      if (i % 25 == 24) {
+        builder.finishBlock();
+      }
+    }
+    _input = builder.buildWithEos();
+    List<RelFieldCollation> collations = List.of(new RelFieldCollation(0, Direction.DESCENDING, NullDirection.LAST));
+    SortOperator operator =
+        new SortOperator(OperatorTestUtil.getContext(Map.of(QueryOptionKey.MAX_ROWS_IN_SORT, "64")), _input,
+            new SortNode(-1, schema, PlanNode.NodeHint.EMPTY, List.of(), collations, 500, 10));
+
+    // When:
+    List<Object[]> resultRows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess(), "expected EOS block to propagate");
+    assertEquals(resultRows.size(), 500);
+    for (int i = 0; i < 500; i++) {
+      assertEquals(resultRows.get(i), new Object[]{989 - i});
+    }
+    StatMap<SortOperator.StatKey> statMap =
+        OperatorTestUtil.getStatMap(SortOperator.StatKey.class, operator.calculateStats());
+    assertTrue(statMap.getLong(SortOperator.StatKey.NUM_SPILLED_ROWS) > 0, "expected rows to be spilled");
+  }
+
   private SortOperator getOperator(DataSchema schema, List<RelFieldCollation> collations, int fetch, int offset) {
     return new SortOperator(OperatorTestUtil.getTracingContext(), _input,
         new SortNode(-1, schema, PlanNode.NodeHint.EMPTY, List.of(), collations, fetch, offset));
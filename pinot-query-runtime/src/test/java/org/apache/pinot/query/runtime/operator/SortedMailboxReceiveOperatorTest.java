@@ -252,6 +252,30 @@ public class SortedMailboxReceiveOperatorTest {
     }
   }
 
+  @Test
+  public void shouldSortUnsortedBlockFromSortingSender() {
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_1))).thenReturn(_mailbox1);
+    Object[] row1 = new Object[]{3, 3};
+    Object[] row2 = new Object[]{1, 1};
+    Object[] row3 = new Object[]{2, 2};
+    when(_mailbox1.poll()).thenReturn(
+        OperatorTestUtil.blockWithStats(DATA_SCHEMA, row1, row2, row3),
+        OperatorTestUtil.eosWithEmptyStats());
+    OpChainExecutionContext context =
+        OperatorTestUtil.getOpChainContext(_mailboxService, Long.MAX_VALUE, _stageMetadata1);
+    MailboxReceiveNode node = mock(MailboxReceiveNode.class);
+    when(node.getDistributionType()).thenReturn(RelDistribution.Type.SINGLETON);
+    when(node.getSenderStageId()).thenReturn(1);
+    when(node.getDataSchema()).thenReturn(DATA_SCHEMA);
+    when(node.getCollations()).thenReturn(FIELD_COLLATIONS);
+    // Sender claims to sort, but the received block is not sorted
+    when(node.isSortedOnSender()).thenReturn(true);
+    try (SortedMailboxReceiveOperator operator = new SortedMailboxReceiveOperator(context, node)) {
+      assertEquals(((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows(), List.of(row2, row3, row1));
+      assertTrue(operator.nextBlock().isSuccess());
+    }
+  }
+
   private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
       DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs) {
     OpChainExecutionContext context = OperatorTestUtil.getOpChainContext(_mailboxService, deadlineMs, stageMetadata);
@@ -22,14 +22,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.apache.calcite.rel.RelDistribution;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.logical.PinotRelExchangeType;
 import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.core.data.table.Key;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.MailboxReceiveNode;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.planner.plannode.WindowNode;
 import org.apache.pinot.query.routing.VirtualServerAddress;
@@ -535,6 +538,143 @@ public class WindowAggregateOperatorTest {
         "Max rows in window should be reached");
   }
 
+  @Test
+  public void testShouldSpillWindowCacheWhenHitDataRowsLimit() {
+    // Given:
+    DataSchema inputSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, INT});
+    BlockListMultiStageOperator.Builder builder = new BlockListMultiStageOperator.Builder(inputSchema);
+    for (int i = 0; i < 200; i++) {
+      builder.addRow(i % 20, i);
+      if (i % 10 == 9) {
+        builder.finishBlock();
+      }
+    }
+    MultiStageOperator input = builder.buildWithEos();
+    DataSchema resultSchema =
+        new DataSchema(new String[]{"group", "arg", "sum"}, new ColumnDataType[]{INT, INT, DOUBLE});
+    List<Integer> keys = List.of(0);
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)));
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.WINDOW_HINT_OPTIONS,
+        Map.of(PinotHintOptions.WindowHintOptions.WINDOW_OVERFLOW_MODE, "SPILL",
+            PinotHintOptions.WindowHintOptions.MAX_ROWS_IN_WINDOW, "16")));
+    WindowAggregateOperator operator =
+        getOperator(inputSchema, resultSchema, keys, List.of(), aggCalls, WindowNode.WindowFrameType.RANGE,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, nodeHint, input);
+
+    // When:
+    List<Object[]> resultRows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess());
+    assertEquals(resultRows.size(), 200);
+    for (Object[] row : resultRows) {
+      int group = (int) row[0];
+      // Each group contains group, group + 20, ..., group + 180
+      assertEquals(row[2], (double) (10 * group + 900), "Wrong sum for group: " + group);
+    }
+    StatMap<WindowAggregateOperator.StatKey> windowStats =
+        OperatorTestUtil.getStatMap(WindowAggregateOperator.StatKey.class, operator.calculateStats());
+    assertTrue(windowStats.getLong(WindowAggregateOperator.StatKey.NUM_SPILLED_ROWS) >= 200);
+  }
+
+  @Test
+  public void testShouldStreamWindowAggregateWhenInputSortedOnPartitionKeys() {
+    // Given:
+    DataSchema inputSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, INT});
+    // Partitions are contiguous and cross the block boundaries
+    MultiStageOperator input = new BlockListMultiStageOperator.Builder(inputSchema)
+        .addRow(1, 1)
+        .addRow(1, 2)
+        .finishBlock()
+        .addRow(1, 3)
+        .addRow(2, 4)
+        .finishBlock()
+        .addRow(3, 5)
+        .addRow(3, 6)
+        .buildWithEos();
+    DataSchema resultSchema =
+        new DataSchema(new String[]{"group", "arg", "sum"}, new ColumnDataType[]{INT, INT, DOUBLE});
+    List<Integer> keys = List.of(0);
+    List<RelFieldCollation> collations = List.of(new RelFieldCollation(1));
+    MailboxReceiveNode receiveNode =
+        new MailboxReceiveNode(0, inputSchema, 1, PinotRelExchangeType.STREAMING, RelDistribution.Type.HASH_DISTRIBUTED,
+            keys, List.of(new RelFieldCollation(0), new RelFieldCollation(1)), true, false, null);
+    // Max rows in window applies to each partition in streaming mode
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.WINDOW_HINT_OPTIONS,
+        Map.of(PinotHintOptions.WindowHintOptions.MAX_ROWS_IN_WINDOW, "3")));
+    WindowAggregateOperator operator = new WindowAggregateOperator(OperatorTestUtil.getTracingContext(), input,
+        inputSchema, new WindowNode(-1, resultSchema, nodeHint, List.of(receiveNode), keys, collations,
+        List.of(getSum(new RexExpression.InputRef(1))), WindowNode.WindowFrameType.RANGE, Integer.MIN_VALUE, 0,
+        List.of()));
+
+    // When:
+    List<Object[]> resultRows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess());
+    assertEquals(resultRows.size(), 6);
+    assertEquals(resultRows.get(0), new Object[]{1, 1, 1.0});
+    assertEquals(resultRows.get(1), new Object[]{1, 2, 3.0});
+    assertEquals(resultRows.get(2), new Object[]{1, 3, 6.0});
+    assertEquals(resultRows.get(3), new Object[]{2, 4, 4.0});
+    assertEquals(resultRows.get(4), new Object[]{3, 5, 5.0});
+    assertEquals(resultRows.get(5), new Object[]{3, 6, 11.0});
+  }
+
+  @Test
+  public void testShouldNotStreamWindowAggregateWhenInputSortedOnSenderOnly() {
+    // Given:
+    DataSchema inputSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, INT});
+    // Blocks from 2 senders sorted on the sender are interleaved, so the partitions are not contiguous
+    MultiStageOperator input = new BlockListMultiStageOperator.Builder(inputSchema)
+        .addRow(1, 1)
+        .addRow(2, 4)
+        .finishBlock()
+        .addRow(1, 2)
+        .addRow(1, 3)
+        .buildWithEos();
+    DataSchema resultSchema =
+        new DataSchema(new String[]{"group", "arg", "sum"}, new ColumnDataType[]{INT, INT, DOUBLE});
+    List<Integer> keys = List.of(0);
+    List<RelFieldCollation> collations = List.of(new RelFieldCollation(1));
+    MailboxReceiveNode receiveNode =
+        new MailboxReceiveNode(0, inputSchema, 1, PinotRelExchangeType.STREAMING, RelDistribution.Type.HASH_DISTRIBUTED,
+            keys, List.of(new RelFieldCollation(0), new RelFieldCollation(1)), false, true, null);
+    WindowAggregateOperator operator = new WindowAggregateOperator(OperatorTestUtil.getTracingContext(), input,
+        inputSchema, new WindowNode(-1, resultSchema, PlanNode.NodeHint.EMPTY, List.of(receiveNode), keys, collations,
+        List.of(getSum(new RexExpression.InputRef(1))), WindowNode.WindowFrameType.RANGE, Integer.MIN_VALUE, 0,
+        List.of()));
+
+    // When:
+    List<Object[]> resultRows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess());
+    verifyResultRows(resultRows, keys, Map.of(
+        1, List.of(
+            new Object[]{1, 1, 1.0},
+            new Object[]{1, 2, 3.0},
+            new Object[]{1, 3, 6.0}),
+        2, List.<Object[]>of(
+            new Object[]{2, 4, 4.0})
+    ));
+  }
+
   @Test
   public void testLeadLagWindowFunction() {
     // Given:
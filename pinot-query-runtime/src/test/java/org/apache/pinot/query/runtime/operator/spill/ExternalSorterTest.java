@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class ExternalSorterTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "ExternalSorterTest");
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"intCol", "stringCol"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+  private static final Comparator<Object[]> COMPARATOR = Comparator.comparingInt(row -> (int) row[0]);
+
+  @BeforeMethod
+  public void setUp() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testSortInMemory()
+      throws Exception {
+    ExternalSorter sorter = new ExternalSorter(new SpillManager(TEMP_DIR, "test_"), DATA_SCHEMA, COMPARATOR,
+        Integer.MAX_VALUE, Integer.MAX_VALUE);
+    List<Object[]> rows = getShuffledRows(1000);
+    for (int i = 0; i < 1000; i += 100) {
+      sorter.addRows(rows.subList(i, i + 100));
+    }
+    sorter.finish();
+    assertSorted(sorter, 0, 1000);
+    assertFalse(sorter.hasSpilled());
+    sorter.close();
+  }
+
+  @Test
+  public void testMergeSortedRuns()
+      throws Exception {
+    ExternalSorter sorter = new ExternalSorter(new SpillManager(TEMP_DIR, "test_"), DATA_SCHEMA, COMPARATOR,
+        Integer.MAX_VALUE, Integer.MAX_VALUE);
+    // Interleaved sorted runs
+    for (int i = 0; i < 10; i++) {
+      List<Object[]> run = new ArrayList<>();
+      for (int j = i; j < 1000; j += 10) {
+        run.add(new Object[]{j, "value" + j});
+      }
+      sorter.addSortedRun(run);
+    }
+    sorter.finish();
+    assertSorted(sorter, 0, 1000);
+    assertFalse(sorter.hasSpilled());
+    sorter.close();
+  }
+
+  @Test
+  public void testSpill()
+      throws Exception {
+    // Small memory budget to force multiple merge passes over the spilled runs
+    ExternalSorter sorter = new ExternalSorter(new SpillManager(TEMP_DIR, "test_"), DATA_SCHEMA, COMPARATOR, 10,
+        Integer.MAX_VALUE);
+    List<Object[]> rows = getShuffledRows(2000);
+    for (int i = 0; i < 2000; i += 7) {
+      sorter.addRows(rows.subList(i, Math.min(i + 7, 2000)));
+    }
+    sorter.finish();
+    assertTrue(sorter.hasSpilled());
+    assertTrue(sorter.getNumSpilledRows() >= 2000);
+    assertSorted(sorter, 0, 2000);
+    sorter.close();
+    String[] spillDirs = TEMP_DIR.list();
+    assertTrue(spillDirs == null || spillDirs.length == 0);
+  }
+
+  @Test
+  public void testSpillWithLimit()
+      throws Exception {
+    ExternalSorter sorter =
+        new ExternalSorter(new SpillManager(TEMP_DIR, "test_"), DATA_SCHEMA, COMPARATOR, 100, 150);
+    List<Object[]> rows = getShuffledRows(1000);
+    for (int i = 0; i < 1000; i += 50) {
+      sorter.addRows(rows.subList(i, i + 50));
+    }
+    sorter.finish();
+    assertTrue(sorter.hasSpilled());
+    assertSorted(sorter, 0, 150);
+    sorter.close();
+  }
+
+  private static List<Object[]> getShuffledRows(int numRows) {
+    List<Object[]> rows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      rows.add(new Object[]{i, "value" + i});
+    }
+    Collections.shuffle(rows, new Random(42));
+    return rows;
+  }
+
+  private static void assertSorted(ExternalSorter sorter, int start, int end)
+      throws Exception {
+    int expected = start;
+    List<Object[]> block;
+    while ((block = sorter.nextBlock()) != null) {
+      for (Object[] row : block) {
+        assertEquals(row, new Object[]{expected, "value" + expected});
+        expected++;
+      }
+    }
+    assertEquals(expected, end);
+  }
+}
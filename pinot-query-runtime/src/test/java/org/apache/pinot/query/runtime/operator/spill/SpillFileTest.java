@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.spill;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class SpillFileTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SpillFileTest");
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"intCol", "stringCol", "doubleCol"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.DOUBLE});
+
+  @BeforeMethod
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testWriteAndRead()
+      throws Exception {
+    try (SpillManager spillManager = new SpillManager(TEMP_DIR, "test_")) {
+      SpillFile spillFile = spillManager.createFile(DATA_SCHEMA);
+      List<List<Object[]>> blocks = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int j = 0; j < 100; j++) {
+          rows.add(new Object[]{i * 100 + j, j % 7 == 0 ? null : "value" + j, (double) j});
+        }
+        blocks.add(rows);
+        spillManager.write(spillFile, rows);
+      }
+      // Empty blocks are ignored
+      spillManager.write(spillFile, List.of());
+      assertEquals(spillFile.getNumRows(), 300);
+      assertEquals(spillManager.getNumSpilledRows(), 300);
+      assertEquals(spillManager.getNumSpilledBytes(), spillFile.getSizeInBytes());
+
+      // Files can be read multiple times
+      for (int k = 0; k < 2; k++) {
+        try (SpillFile.Reader reader = spillFile.openReader()) {
+          for (List<Object[]> expectedRows : blocks) {
+            List<Object[]> rows = reader.nextBlock();
+            assertEquals(rows.size(), expectedRows.size());
+            for (int i = 0; i < rows.size(); i++) {
+              assertEquals(rows.get(i), expectedRows.get(i));
+            }
+          }
+          assertNull(reader.nextBlock());
+        }
+      }
+
+      File file = spillFile.getFile();
+      assertTrue(file.exists());
+      spillManager.release(spillFile);
+      assertFalse(file.exists());
+    }
+    // All the spill directories are removed on close
+    String[] spillDirs = TEMP_DIR.list();
+    assertTrue(spillDirs == null || spillDirs.length == 0);
+  }
+
+  @Test
+  public void testPartitionedWrite()
+      throws Exception {
+    try (SpillManager spillManager = new SpillManager(TEMP_DIR, "test_")) {
+      PartitionedSpillWriter writer = new PartitionedSpillWriter(spillManager, DATA_SCHEMA, 4, 10);
+      for (int i = 0; i < 1000; i++) {
+        writer.add(i % 4, new Object[]{i, "value" + i, (double) i});
+      }
+      SpillFile[] spillFiles = writer.finish();
+      assertEquals(spillFiles.length, 4);
+      for (int partitionId = 0; partitionId < 4; partitionId++) {
+        SpillFile spillFile = spillFiles[partitionId];
+        assertEquals(spillFile.getNumRows(), 250);
+        int numRows = 0;
+        try (SpillFile.Reader reader = spillFile.openReader()) {
+          List<Object[]> rows;
+          while ((rows = reader.nextBlock()) != null) {
+            assertTrue(rows.size() <= 10);
+            for (Object[] row : rows) {
+              assertEquals((int) row[0] % 4, partitionId);
+              numRows++;
+            }
+          }
+        }
+        assertEquals(numRows, 250);
+      }
+    }
+  }
+}
@@ -0,0 +1,660 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixManager;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap.Location;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.JsonUtils;
+
+
+/**
+ * Implementation of {@link PartitionDedupMetadataManager} that keeps the dedup metadata out of the Java heap with
+ * {@link OffHeapRecordLocationMap}s, where the primary keys are stored as 128-bit hashes, the segments as int ids
+ * assigned by this manager and the dedup time as the bits of a double.
+ * <p>When metadata TTL is enabled, the keys are split into time buckets by dedup time, each covering 1/N of the TTL.
+ * Removing the expired keys drops the buckets entirely out of TTL instead of iterating the keys, and the expired keys
+ * in the remaining buckets are treated as not existing until their bucket is dropped. A key is looked up in all the
+ * buckets, so N should be kept small.
+ * <p>When {@link #PERSISTENT_KEY} is set and both metadata TTL and preload are enabled, the buckets are stored in
+ * memory-mapped files under the table index dir, and a checkpoint of the metadata is taken after removing the expired
+ * keys when the consuming segment starts. On restart, the segments in the checkpoint are preloaded without reading the
+ * primary keys, as the metadata is loaded directly from the checkpoint.
+ * <p>To use it, set {@code metadataManagerClass} in the dedup config to {@link OffHeapTableDedupMetadataManager}.
+ */
+class OffHeapPartitionDedupMetadataManager extends BasePartitionDedupMetadataManager {
+  public static final String NUM_SHARDS_KEY = "offHeapNumShards";
+  public static final int DEFAULT_NUM_SHARDS = 16;
+  public static final String INITIAL_SHARD_CAPACITY_KEY = "offHeapInitialShardCapacity";
+  public static final int DEFAULT_INITIAL_SHARD_CAPACITY = 256;
+  public static final String NUM_TIME_BUCKETS_KEY = "offHeapNumTimeBuckets";
+  public static final int DEFAULT_NUM_TIME_BUCKETS = 8;
+  public static final String PERSISTENT_KEY = "offHeapPersistent";
+
+  private static final int NUM_KEY_LOCKS = 1024;
+  private static final String PERSISTENT_DIR_PREFIX = "offheap_dedup_metadata_";
+  private static final String WORKING_DIR_NAME = "working";
+  private static final String CHECKPOINT_DIR_NAME = "checkpoint";
+  private static final String CHECKPOINT_TMP_DIR_NAME = "checkpoint.tmp";
+  private static final String CHECKPOINT_METADATA_FILE_NAME = "metadata.json";
+  private static final String BUCKET_DIR_PREFIX = "bucket_";
+  private static final String NEXT_SEGMENT_ID_KEY = "nextSegmentId";
+  private static final String BUCKETS_KEY = "buckets";
+  private static final String SEGMENTS_KEY = "segments";
+  private static final String SEGMENT_ID_KEY = "id";
+  private static final String SEGMENT_NAME_KEY = "name";
+  private static final String SEGMENT_CRC_KEY = "crc";
+
+  // Time buckets keyed by bucket id, where bucket id is the dedup time divided by the bucket size. There is a single
+  // bucket with id 0 when TTL is not enabled.
+  @VisibleForTesting
+  final NavigableMap<Long, OffHeapRecordLocationMap> _buckets = new ConcurrentSkipListMap<>();
+
+  private final double _bucketSize;
+  private final int _numShards;
+  private final int _initialShardCapacity;
+  // Guards the key operations spanning multiple buckets
+  private final Object[] _keyLocks = new Object[NUM_KEY_LOCKS];
+  // Held (read) by the key operations and (write) when dropping the buckets
+  private final ReadWriteLock _bucketLock = new ReentrantReadWriteLock();
+  // Held (read) by the segment operations and (write) when taking the checkpoint
+  private final ReadWriteLock _checkpointLock = new ReentrantReadWriteLock();
+  // Segment id registry. Ids are never reused so that stale ids left in the map cannot resolve to another segment.
+  private final Map<IndexSegment, Integer> _segmentToIdMap = new ConcurrentHashMap<>();
+  private final Map<Integer, IndexSegment> _idToSegmentMap = new ConcurrentHashMap<>();
+  private final AtomicInteger _nextSegmentId = new AtomicInteger(OffHeapRecordLocationMap.EMPTY_SEGMENT_ID);
+  // Directory to persist the metadata, or null if the metadata is only kept in memory
+  @Nullable
+  private final File _persistentDir;
+  @Nullable
+  private final File _workingDir;
+  // Segments in the loaded checkpoint not preloaded yet keyed by segment name, only set while preloading the segments
+  private volatile Map<String, CheckpointedSegment> _checkpointedSegments;
+
+  protected OffHeapPartitionDedupMetadataManager(String tableNameWithType, int partitionId,
+      DedupContext dedupContext) {
+    super(tableNameWithType, partitionId, dedupContext);
+    Map<String, String> metadataManagerConfigs = dedupContext.getMetadataManagerConfigs();
+    int numShards = DEFAULT_NUM_SHARDS;
+    int initialShardCapacity = DEFAULT_INITIAL_SHARD_CAPACITY;
+    int numTimeBuckets = DEFAULT_NUM_TIME_BUCKETS;
+    boolean persistent = false;
+    if (metadataManagerConfigs != null) {
+      numShards = Integer.parseInt(metadataManagerConfigs.getOrDefault(NUM_SHARDS_KEY, Integer.toString(numShards)));
+      initialShardCapacity = Integer.parseInt(metadataManagerConfigs.getOrDefault(INITIAL_SHARD_CAPACITY_KEY,
+          Integer.toString(initialShardCapacity)));
+      numTimeBuckets = Integer.parseInt(
+          metadataManagerConfigs.getOrDefault(NUM_TIME_BUCKETS_KEY, Integer.toString(numTimeBuckets)));
+      persistent = Boolean.parseBoolean(metadataManagerConfigs.get(PERSISTENT_KEY));
+    }
+    Preconditions.checkArgument(numTimeBuckets > 0, "Invalid number of time buckets: %s for table: %s",
+        numTimeBuckets, tableNameWithType);
+    _numShards = numShards;
+    _initialShardCapacity = initialShardCapacity;
+    _bucketSize = _metadataTTL > 0 ? _metadataTTL / numTimeBuckets : 0;
+    for (int i = 0; i < NUM_KEY_LOCKS; i++) {
+      _keyLocks[i] = new Object();
+    }
+
+    File persistentDir = new File(_tableIndexDir, PERSISTENT_DIR_PREFIX + partitionId);
+    if (persistent && !(_metadataTTL > 0 && dedupContext.isPreloadEnabled())) {
+      // The checkpoint is taken when removing the expired keys, and only loaded when preloading the segments
+      _logger.warn("Persistent off-heap dedup metadata requires metadata TTL and preload to be enabled, keeping it in "
+          + "memory only");
+      persistent = false;
+    }
+    if (persistent) {
+      // The files left by the previous run are not reused, and the metadata is restored from the checkpoint if any
+      _workingDir = new File(persistentDir, WORKING_DIR_NAME);
+      try {
+        FileUtils.deleteDirectory(_workingDir);
+        FileUtils.forceMkdir(_workingDir);
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to create directory: " + _workingDir + " for table: " + tableNameWithType,
+            e);
+      }
+      _persistentDir = persistentDir;
+    } else {
+      // Clean up the checkpoint in case persistence was enabled before, as it won't be kept up-to-date
+      FileUtils.deleteQuietly(persistentDir);
+      _workingDir = null;
+      _persistentDir = null;
+    }
+  }
+
+  @Override
+  protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
+      HelixManager helixManager, ExecutorService segmentPreloadExecutor)
+      throws Exception {
+    Map<String, CheckpointedSegment> checkpointedSegments = _persistentDir != null ? loadCheckpoint() : null;
+    _checkpointedSegments = checkpointedSegments;
+    try {
+      super.doPreloadSegments(tableDataManager, indexLoadingConfig, helixManager, segmentPreloadExecutor);
+    } finally {
+      _checkpointedSegments = null;
+      if (checkpointedSegments != null) {
+        // Remove the keys of the segments not preloaded (e.g. segments removed or replaced while the server was down)
+        // and the consuming segments, which are added back when the segments are loaded or consumed again.
+        _logger.info("Removing primary keys of {} segments in the checkpoint not preloaded: {}",
+            checkpointedSegments.size(), checkpointedSegments.keySet());
+        removeKeysOfUnknownSegments();
+        updatePrimaryKeyGauge();
+      }
+    }
+  }
+
+  @Override
+  public void preloadSegment(ImmutableSegment segment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      if (!preloadSegmentFromCheckpoint(segment)) {
+        super.preloadSegment(segment);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Registers the segment with its id in the loaded checkpoint if the segment is not changed since the checkpoint is
+   * taken. Returns {@code false} if the segment is not in the checkpoint.
+   */
+  private boolean preloadSegmentFromCheckpoint(ImmutableSegment segment) {
+    Map<String, CheckpointedSegment> checkpointedSegments = _checkpointedSegments;
+    if (checkpointedSegments == null) {
+      return false;
+    }
+    String segmentName = segment.getSegmentName();
+    CheckpointedSegment checkpointedSegment = checkpointedSegments.get(segmentName);
+    if (checkpointedSegment == null || !checkpointedSegment._crc.equals(segment.getSegmentMetadata().getCrc())) {
+      return false;
+    }
+    if (!startOperation()) {
+      _logger.info("Skip preloading segment: {} because dedup metadata manager is already stopped", segmentName);
+      return true;
+    }
+    try {
+      checkpointedSegments.remove(segmentName);
+      // Update the watermark. The keys out of TTL are removed with their time buckets.
+      skipSegmentOutOfTTL(segment, true);
+      _segmentToIdMap.put(segment, checkpointedSegment._id);
+      _idToSegmentMap.put(checkpointedSegment._id, segment);
+      _logger.info("Preloaded segment: {} from checkpoint", segmentName);
+      return true;
+    } finally {
+      finishOperation();
+    }
+  }
+
+  @Override
+  protected void doPreloadSegment(ImmutableSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    int segmentId = getOrAssignSegmentId(segment);
+    while (dedupRecordInfoIterator.hasNext()) {
+      DedupRecordInfo dedupRecordInfo = dedupRecordInfoIterator.next();
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      compute(dedupRecordInfo.getPrimaryKey(),
+          (keyHigh, keyLow, bucket, location) -> put(keyHigh, keyLow, bucket, segmentId, dedupTime));
+    }
+  }
+
+  @Override
+  public void addSegment(IndexSegment segment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.addSegment(segment);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void replaceSegment(IndexSegment oldSegment, IndexSegment newSegment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.replaceSegment(oldSegment, newSegment);
+      releaseSegmentId(oldSegment);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void removeSegment(IndexSegment segment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.removeSegment(segment);
+      releaseSegmentId(segment);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(@Nullable IndexSegment oldSegment, IndexSegment newSegment,
+      Iterator<DedupRecordInfo> dedupRecordInfoIteratorOfNewSegment) {
+    String segmentName = newSegment.getSegmentName();
+    int segmentId = getOrAssignSegmentId(newSegment);
+    Integer oldSegmentId = oldSegment != null ? _segmentToIdMap.get(oldSegment) : null;
+    while (dedupRecordInfoIteratorOfNewSegment.hasNext()) {
+      DedupRecordInfo dedupRecordInfo = dedupRecordInfoIteratorOfNewSegment.next();
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      compute(dedupRecordInfo.getPrimaryKey(), (keyHigh, keyLow, bucket, location) -> {
+        double currentDedupTime = Double.longBitsToDouble(location.getValue());
+        // Stale metadata is treated as not existing when checking for deduplicates.
+        if (bucket == null || isOutOfMetadataTTL(currentDedupTime)) {
+          put(keyHigh, keyLow, bucket, segmentId, dedupTime);
+          return;
+        }
+        // when oldSegment is null, it means we are adding a new segment
+        // when oldSegment is not null, it means we are replacing an existing segment
+        boolean inOldSegment = oldSegmentId != null && location.getSegmentId() == oldSegmentId;
+        if (oldSegment == null) {
+          _logger.warn("When adding a new segment: record in segment: {} with primary key: {} and dedup "
+                  + "time: {} already exists in segment: {} with dedup time: {}", segmentName,
+              dedupRecordInfo.getPrimaryKey(), dedupTime, getSegmentName(location.getSegmentId()), currentDedupTime);
+        } else if (!inOldSegment) {
+          _logger.warn("When replacing a segment: record in segment: {} with primary key: {} and dedup "
+                  + "time: {} exists in segment: {} with dedup time: {} (but not the segment: {} to replace)",
+              segmentName, dedupRecordInfo.getPrimaryKey(), dedupTime, getSegmentName(location.getSegmentId()),
+              currentDedupTime, oldSegment.getSegmentName());
+        }
+        // When dedup time is the same, we always keep the latest segment
+        // This will handle segment replacement case correctly - a typical case is when a mutable segment is
+        // replaced by an immutable segment
+        if (currentDedupTime <= dedupTime) {
+          put(keyHigh, keyLow, bucket, segmentId, dedupTime);
+        } else if (inOldSegment) {
+          // Move the key off the segment being replaced, whose id is released after the replacement
+          put(keyHigh, keyLow, bucket, segmentId, currentDedupTime);
+        }
+      });
+    }
+  }
+
+  @Override
+  protected void doRemoveSegment(IndexSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    Integer segmentId = _segmentToIdMap.get(segment);
+    if (segmentId == null) {
+      return;
+    }
+    while (dedupRecordInfoIterator.hasNext()) {
+      DedupRecordInfo dedupRecordInfo = dedupRecordInfoIterator.next();
+      compute(dedupRecordInfo.getPrimaryKey(), (keyHigh, keyLow, bucket, location) -> {
+        // do not need to compare dedup time because we are removing the segment
+        if (bucket != null && location.getSegmentId() == segmentId) {
+          bucket.compute(keyHigh, keyLow, current -> false);
+        }
+      });
+    }
+  }
+
+  @Override
+  protected void doRemoveExpiredPrimaryKeys() {
+    double smallestTimeToKeep = _largestSeenTime.get() - _metadataTTL;
+    // Drop the buckets where all the keys are out of TTL
+    NavigableMap<Long, OffHeapRecordLocationMap> expiredBuckets =
+        _buckets.headMap(getBucketId(smallestTimeToKeep), false);
+    if (expiredBuckets.isEmpty()) {
+      return;
+    }
+    Lock lock = _bucketLock.writeLock();
+    lock.lock();
+    try {
+      while (!expiredBuckets.isEmpty()) {
+        Map.Entry<Long, OffHeapRecordLocationMap> entry = expiredBuckets.pollFirstEntry();
+        _logger.info("Dropping time bucket: {} with {} primary keys", entry.getKey(), entry.getValue().size());
+        closeBucket(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+    updatePrimaryKeyGauge();
+  }
+
+  @Override
+  public void removeExpiredPrimaryKeys() {
+    super.removeExpiredPrimaryKeys();
+    if (_persistentDir != null) {
+      takeCheckpoint();
+    }
+  }
+
+  @Override
+  public boolean checkRecordPresentOrUpdate(DedupRecordInfo dedupRecordInfo, IndexSegment indexSegment) {
+    if (!startOperation()) {
+      _logger.info("Skip adding record to {} because metadata manager is already stopped",
+          indexSegment.getSegmentName());
+      return true;
+    }
+    try {
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      if (_metadataTTL > 0) {
+        _largestSeenTime.getAndUpdate(time -> Math.max(time, dedupTime));
+      }
+      int segmentId = getOrAssignSegmentId(indexSegment);
+      boolean[] present = new boolean[1];
+      compute(dedupRecordInfo.getPrimaryKey(), (keyHigh, keyLow, bucket, location) -> {
+        // The dedup metadata out of TTL is cleaned up when starting the next consuming segment, so it's possible
+        // when ingesting records into current segment, some dedup metadata is already becoming stale. The stale
+        // metadata is treated as not existing when checking for deduplicates.
+        if (bucket == null || isOutOfMetadataTTL(Double.longBitsToDouble(location.getValue()))) {
+          put(keyHigh, keyLow, bucket, segmentId, dedupTime);
+        } else {
+          present[0] = true;
+        }
+      });
+      if (!present[0]) {
+        updatePrimaryKeyGauge();
+      }
+      return present[0];
+    } finally {
+      finishOperation();
+    }
+  }
+
+  @Override
+  public long getNumPrimaryKeys() {
+    long numPrimaryKeys = 0;
+    for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+      numPrimaryKeys += bucket.size();
+    }
+    return numPrimaryKeys;
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    Lock lock = _bucketLock.writeLock();
+    lock.lock();
+    try {
+      while (!_buckets.isEmpty()) {
+        Map.Entry<Long, OffHeapRecordLocationMap> entry = _buckets.pollFirstEntry();
+        closeBucket(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+    _segmentToIdMap.clear();
+    _idToSegmentMap.clear();
+  }
+
+  @FunctionalInterface
+  private interface KeyOperation {
+
+    /**
+     * Applies the operation on a key while holding its lock. The bucket is the one holding the key, and the location
+     * holds the current location of the key, or {@code null} if the key does not exist.
+     */
+    void apply(long keyHigh, long keyLow, @Nullable OffHeapRecordLocationMap bucket, Location location);
+  }
+
+  private void compute(PrimaryKey primaryKey, KeyOperation operation) {
+    byte[] key = OffHeapRecordLocationMap.getKey(primaryKey, _hashFunction);
+    long keyHigh = OffHeapRecordLocationMap.getKeyHigh(key);
+    long keyLow = OffHeapRecordLocationMap.getKeyLow(key);
+    Location location = new Location();
+    Lock lock = _bucketLock.readLock();
+    lock.lock();
+    try {
+      synchronized (_keyLocks[(int) (keyHigh ^ keyLow) & (NUM_KEY_LOCKS - 1)]) {
+        OffHeapRecordLocationMap bucket = null;
+        // Look up the most recent buckets first
+        for (OffHeapRecordLocationMap candidate : _buckets.descendingMap().values()) {
+          if (candidate.get(keyHigh, keyLow, location)) {
+            bucket = candidate;
+            break;
+          }
+        }
+        operation.apply(keyHigh, keyLow, bucket, location);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Puts the key into the bucket of the given dedup time, and removes it from its current bucket if different.
+   * NOTE: Must be called within {@link #compute(PrimaryKey, KeyOperation)}.
+   */
+  private void put(long keyHigh, long keyLow, @Nullable OffHeapRecordLocationMap currentBucket, int segmentId,
+      double dedupTime) {
+    OffHeapRecordLocationMap bucket = getOrCreateBucket(getBucketId(dedupTime));
+    if (currentBucket != null && currentBucket != bucket) {
+      currentBucket.compute(keyHigh, keyLow, location -> false);
+    }
+    bucket.put(keyHigh, keyLow, segmentId, 0, Double.doubleToLongBits(dedupTime));
+  }
+
+  private long getBucketId(double dedupTime) {
+    return _bucketSize > 0 ? (long) Math.floor(dedupTime / _bucketSize) : 0;
+  }
+
+  private OffHeapRecordLocationMap getOrCreateBucket(long bucketId) {
+    OffHeapRecordLocationMap bucket = _buckets.get(bucketId);
+    if (bucket != null) {
+      return bucket;
+    }
+    synchronized (_buckets) {
+      bucket = _buckets.get(bucketId);
+      if (bucket == null) {
+        bucket = createBucket(bucketId);
+        _buckets.put(bucketId, bucket);
+      }
+      return bucket;
+    }
+  }
+
+  private OffHeapRecordLocationMap createBucket(long bucketId) {
+    File bucketDir = null;
+    if (_workingDir != null) {
+      bucketDir = new File(_workingDir, BUCKET_DIR_PREFIX + bucketId);
+      try {
+        FileUtils.forceMkdir(bucketDir);
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to create directory: " + bucketDir + " for table: " + _tableNameWithType,
+            e);
+      }
+    }
+    return new OffHeapRecordLocationMap(_numShards, _initialShardCapacity, bucketDir,
+        "OffHeapPartitionDedupMetadataManager: " + _tableNameWithType + "-" + _partitionId + "-" + bucketId);
+  }
+
+  private void closeBucket(long bucketId, OffHeapRecordLocationMap bucket) {
+    try {
+      bucket.close();
+    } catch (IOException e) {
+      _logger.warn("Caught exception while closing time bucket: {}", bucketId, e);
+    }
+    if (_workingDir != null) {
+      FileUtils.deleteQuietly(new File(_workingDir, BUCKET_DIR_PREFIX + bucketId));
+    }
+  }
+
+  /**
+   * Loads the checkpoint of the metadata, and returns the segments in the checkpoint keyed by segment name. Returns
+   * {@code null} if there is no valid checkpoint.
+   */
+  @Nullable
+  private Map<String, CheckpointedSegment> loadCheckpoint() {
+    File checkpointDir = new File(_persistentDir, CHECKPOINT_DIR_NAME);
+    File metadataFile = new File(checkpointDir, CHECKPOINT_METADATA_FILE_NAME);
+    if (!metadataFile.isFile()) {
+      _logger.info("No checkpoint of dedup metadata to load");
+      return null;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    try {
+      JsonNode metadata = JsonUtils.fileToJsonNode(metadataFile);
+      Map<String, CheckpointedSegment> checkpointedSegments = new ConcurrentHashMap<>();
+      for (JsonNode segmentNode : metadata.get(SEGMENTS_KEY)) {
+        checkpointedSegments.put(segmentNode.get(SEGMENT_NAME_KEY).asText(), new CheckpointedSegment(
+            segmentNode.get(SEGMENT_ID_KEY).asInt(), segmentNode.get(SEGMENT_CRC_KEY).asText()));
+      }
+      // Set the next segment id before loading the buckets so that the ids in the buckets are never assigned again
+      _nextSegmentId.set(metadata.get(NEXT_SEGMENT_ID_KEY).asInt());
+      for (JsonNode bucketNode : metadata.get(BUCKETS_KEY)) {
+        long bucketId = bucketNode.asLong();
+        OffHeapRecordLocationMap bucket = getOrCreateBucket(bucketId);
+        if (!bucket.load(new File(checkpointDir, BUCKET_DIR_PREFIX + bucketId))) {
+          throw new IllegalStateException("Checkpoint of time bucket: " + bucketId
+              + " does not match the number of shards");
+        }
+      }
+      _logger.info("Loaded checkpoint of {} primary keys in {} time buckets for {} segments in {}ms",
+          getNumPrimaryKeys(), _buckets.size(), checkpointedSegments.size(), System.currentTimeMillis() - startTimeMs);
+      return checkpointedSegments;
+    } catch (Exception e) {
+      _logger.warn("Caught exception while loading checkpoint of dedup metadata, discarding it", e);
+      FileUtils.deleteQuietly(checkpointDir);
+      // Clean up the keys if the checkpoint is partially loaded
+      removeKeysOfUnknownSegments();
+      return null;
+    }
+  }
+
+  /**
+   * Writes a checkpoint of the metadata, which is always consistent by itself. Keys of the segments not in the
+   * checkpoint (e.g. consuming segments) are removed when loading the checkpoint.
+   */
+  private void takeCheckpoint() {
+    if (!startOperation()) {
+      _logger.info("Skip taking checkpoint because metadata manager is already stopped");
+      return;
+    }
+    // Do not wait for the segment operations to avoid blocking the consuming thread. The previous checkpoint is still
+    // valid, and the checkpoint is taken again when the next consuming segment starts.
+    Lock checkpointLock = _checkpointLock.writeLock();
+    if (!checkpointLock.tryLock()) {
+      _logger.info("Skip taking checkpoint of dedup metadata because segments are being added or removed");
+      finishOperation();
+      return;
+    }
+    Lock bucketLock = _bucketLock.readLock();
+    bucketLock.lock();
+    long startTimeMs = System.currentTimeMillis();
+    File checkpointDir = new File(_persistentDir, CHECKPOINT_DIR_NAME);
+    File tmpDir = new File(_persistentDir, CHECKPOINT_TMP_DIR_NAME);
+    try {
+      FileUtils.deleteDirectory(tmpDir);
+      ObjectNode metadata = JsonUtils.newObjectNode();
+      metadata.put(NEXT_SEGMENT_ID_KEY, _nextSegmentId.get());
+      ArrayNode segmentsNode = metadata.putArray(SEGMENTS_KEY);
+      for (Map.Entry<IndexSegment, Integer> entry : _segmentToIdMap.entrySet()) {
+        IndexSegment segment = entry.getKey();
+        // Records in the consuming segments are consumed again after restart
+        if (segment instanceof ImmutableSegment) {
+          ObjectNode segmentNode = segmentsNode.addObject();
+          segmentNode.put(SEGMENT_ID_KEY, entry.getValue());
+          segmentNode.put(SEGMENT_NAME_KEY, segment.getSegmentName());
+          segmentNode.put(SEGMENT_CRC_KEY, segment.getSegmentMetadata().getCrc());
+        }
+      }
+      ArrayNode bucketsNode = metadata.putArray(BUCKETS_KEY);
+      for (Map.Entry<Long, OffHeapRecordLocationMap> entry : _buckets.entrySet()) {
+        entry.getValue().checkpoint(new File(tmpDir, BUCKET_DIR_PREFIX + entry.getKey()));
+        bucketsNode.add(entry.getKey());
+      }
+      FileUtils.forceMkdir(tmpDir);
+      FileUtils.writeByteArrayToFile(new File(tmpDir, CHECKPOINT_METADATA_FILE_NAME),
+          JsonUtils.objectToBytes(metadata));
+      FileUtils.deleteDirectory(checkpointDir);
+      FileUtils.moveDirectory(tmpDir, checkpointDir);
+      _logger.info("Finished taking checkpoint of {} primary keys in {} time buckets for {} segments in {}ms",
+          getNumPrimaryKeys(), bucketsNode.size(), segmentsNode.size(), System.currentTimeMillis() - startTimeMs);
+    } catch (Exception e) {
+      _logger.warn("Caught exception while taking checkpoint of dedup metadata", e);
+      FileUtils.deleteQuietly(tmpDir);
+    } finally {
+      bucketLock.unlock();
+      checkpointLock.unlock();
+      finishOperation();
+    }
+  }
+
+  private void removeKeysOfUnknownSegments() {
+    for (OffHeapRecordLocationMap bucket : _buckets.values()) {
+      bucket.forEach(location -> !_idToSegmentMap.containsKey(location.getSegmentId()));
+    }
+  }
+
+  private int getOrAssignSegmentId(IndexSegment segment) {
+    return _segmentToIdMap.computeIfAbsent(segment, k -> {
+      int segmentId = _nextSegmentId.incrementAndGet();
+      Preconditions.checkState(segmentId != OffHeapRecordLocationMap.EMPTY_SEGMENT_ID, "Segment ids are exhausted");
+      _idToSegmentMap.put(segmentId, k);
+      return segmentId;
+    });
+  }
+
+  private void releaseSegmentId(IndexSegment segment) {
+    Integer segmentId = _segmentToIdMap.remove(segment);
+    if (segmentId != null) {
+      _idToSegmentMap.remove(segmentId);
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  IndexSegment getSegment(int segmentId) {
+    return _idToSegmentMap.get(segmentId);
+  }
+
+  private String getSegmentName(int segmentId) {
+    IndexSegment segment = _idToSegmentMap.get(segmentId);
+    return segment != null ? segment.getSegmentName() : "<removed segment>";
+  }
+
+  private static final class CheckpointedSegment {
+    final int _id;
+    final String _crc;
+
+    CheckpointedSegment(int id, String crc) {
+      _id = id;
+      _crc = crc;
+    }
+  }
+}
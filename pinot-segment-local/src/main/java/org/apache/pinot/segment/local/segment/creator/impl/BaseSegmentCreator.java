@@ -90,6 +90,7 @@ import org.apache.pinot.spi.data.FieldSpec.FieldType;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.env.CommonsConfigurationUtils;
 import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants;
 import org.apache.pinot.spi.utils.ReadMode;
 import org.apache.pinot.spi.utils.TimeUtils;
 import org.joda.time.DateTimeZone;
@@ -531,6 +532,7 @@ public abstract class BaseSegmentCreator implements SegmentCreator {
     for (Map.Entry<String, String> entry : _config.getCustomProperties().entrySet()) {
       properties.setProperty(entry.getKey(), entry.getValue());
     }
+    addBrokerPruningMinMaxValues(properties);
 
     for (Map.Entry<String, ColumnIndexCreationInfo> entry : _indexCreationInfoMap.entrySet()) {
       String column = entry.getKey();
@@ -549,6 +551,38 @@ public abstract class BaseSegmentCreator implements SegmentCreator {
     CommonsConfigurationUtils.saveToFile(properties, metadataFile);
   }
 
+  /**
+   * Publishes the min/max values of the broker pruning columns as custom properties, which are copied into the segment
+   * ZK metadata for the broker to prune segments.
+   */
+  private void addBrokerPruningMinMaxValues(PropertiesConfiguration properties) {
+    List<String> brokerPruningColumns = _config.getTableConfig().getIndexingConfig().getBrokerPruningColumns();
+    if (brokerPruningColumns == null || _totalDocs == 0) {
+      return;
+    }
+    for (String column : brokerPruningColumns) {
+      ColumnIndexCreationInfo columnIndexCreationInfo = _indexCreationInfoMap.get(column);
+      FieldSpec fieldSpec = _schema.getFieldSpecFor(column);
+      if (columnIndexCreationInfo == null || fieldSpec == null || fieldSpec.getFieldType() == FieldType.COMPLEX) {
+        continue;
+      }
+      Object min = columnIndexCreationInfo.getMin();
+      Object max = columnIndexCreationInfo.getMax();
+      if (min == null || max == null) {
+        continue;
+      }
+      DataType storedType = fieldSpec.getDataType().getStoredType();
+      String minValue = getValidPropertyValue(min.toString(), storedType);
+      String maxValue = getValidPropertyValue(max.toString(), storedType);
+      if (minValue != null && maxValue != null) {
+        properties.setProperty(CUSTOM_SUBSET + '.' + CommonConstants.Segment.PRUNING_MIN_VALUE_KEY_PREFIX + column,
+            minValue);
+        properties.setProperty(CUSTOM_SUBSET + '.' + CommonConstants.Segment.PRUNING_MAX_VALUE_KEY_PREFIX + column,
+            maxValue);
+      }
+    }
+  }
+
   /**
    * Adds column metadata information to the properties configuration.
    */
@@ -79,6 +79,10 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
   protected static final long OUT_OF_ORDER_EVENT_MIN_REPORT_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
   // The special value to indicate the largest comparison value is not set yet, and allow negative comparison values.
   protected static final double TTL_WATERMARK_NOT_SET = Double.NEGATIVE_INFINITY;
+  // Keys in the metadata manager configs to bootstrap the segments without validDocIds snapshot in parallel when
+  // preloading the partition. See PartitionUpsertBootstrapper for details.
+  public static final String PARALLEL_BOOTSTRAP_KEY = "parallelBootstrap";
+  public static final String PARALLEL_BOOTSTRAP_NUM_KEY_PARTITIONS_KEY = "parallelBootstrapNumKeyPartitions";
 
   protected final String _tableNameWithType;
   protected final TableType _tableType;
@@ -126,6 +130,10 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
   // The lock and boolean flag ensure only one thread can start preloading and preloading happens only once.
   private final Lock _preloadLock = new ReentrantLock();
   private volatile boolean _isPreloading;
+  // Number of key partitions to bootstrap the segments without validDocIds snapshot when preloading, or 0 if disabled
+  private final int _numBootstrapKeyPartitions;
+  // Only set while preloading the segments with parallel bootstrap enabled
+  private volatile PartitionUpsertBootstrapper _bootstrapper;
 
   // By default, the upsert consistency mode is NONE and upsertViewManager is disabled.
   private final UpsertViewManager _upsertViewManager;
@@ -169,6 +177,7 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
     }
     _serverMetrics = ServerMetrics.get();
     _logger = LoggerFactory.getLogger(tableNameWithType + "-" + partitionId + "-" + getClass().getSimpleName());
+    _numBootstrapKeyPartitions = getNumBootstrapKeyPartitions(context);
     if (isTTLEnabled()) {
       Preconditions.checkState(_comparisonColumns.size() == 1,
           "Upsert TTL does not work with multiple comparison columns");
@@ -181,6 +190,24 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
     }
   }
 
+  private int getNumBootstrapKeyPartitions(UpsertContext context) {
+    Map<String, String> metadataManagerConfigs = context.getMetadataManagerConfigs();
+    if (metadataManagerConfigs == null || !Boolean.parseBoolean(metadataManagerConfigs.get(PARALLEL_BOOTSTRAP_KEY))) {
+      return 0;
+    }
+    if (context.isEnableDeletedKeysCompactionConsistency()) {
+      // The distinct segment count of the primary keys requires adding all the docs of the segments
+      _logger.warn("Parallel bootstrap does not work with deleted keys compaction consistency, disabling it");
+      return 0;
+    }
+    int numKeyPartitions = Integer.parseInt(
+        metadataManagerConfigs.getOrDefault(PARALLEL_BOOTSTRAP_NUM_KEY_PARTITIONS_KEY,
+            Integer.toString(Runtime.getRuntime().availableProcessors())));
+    Preconditions.checkArgument(numKeyPartitions > 0, "Invalid number of key partitions: %s for table: %s",
+        numKeyPartitions, _tableNameWithType);
+    return numKeyPartitions;
+  }
+
   @Override
   public UpsertContext getContext() {
     return _context;
@@ -265,6 +292,28 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
   protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
       HelixManager helixManager, ExecutorService segmentPreloadExecutor)
       throws Exception {
+    if (_numBootstrapKeyPartitions > 0) {
+      // Preload all the segments, where the segments without validDocIds snapshot are bootstrapped after the segments
+      // with validDocIds snapshot are preloaded.
+      PartitionUpsertBootstrapper bootstrapper = new PartitionUpsertBootstrapper(this, _numBootstrapKeyPartitions);
+      _bootstrapper = bootstrapper;
+      try {
+        SegmentPreloadUtils.preloadSegments(tableDataManager, _partitionId, indexLoadingConfig, helixManager,
+            segmentPreloadExecutor, null);
+      } finally {
+        _bootstrapper = null;
+      }
+      if (!startOperation()) {
+        _logger.info("Skip bootstrapping segments because metadata manager is already stopped");
+        return;
+      }
+      try {
+        bootstrapper.bootstrap(segmentPreloadExecutor);
+      } finally {
+        finishOperation();
+      }
+      return;
+    }
     TableConfig tableConfig = indexLoadingConfig.getTableConfig();
     SegmentPreloadUtils.preloadSegments(tableDataManager, _partitionId, indexLoadingConfig, helixManager,
         segmentPreloadExecutor, (segmentName, segmentZKMetadata) -> {
@@ -314,6 +363,20 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
     return new UpsertUtils.RecordInfoReader(segment, _primaryKeyColumns, _comparisonColumns, _deleteRecordColumn);
   }
 
+  /**
+   * Creates a ComparisonColumnReader for the given segment, which reads the comparison values in the same way as
+   * {@link #createRecordInfoReader(IndexSegment)}.
+   */
+  protected UpsertUtils.ComparisonColumnReader createComparisonColumnReader(IndexSegment segment) {
+    if (_comparisonColumns.isEmpty()) {
+      return new UpsertUtils.ConstantComparisonColumnReader(getAuthoritativeUpdateOrCreationTime(segment));
+    }
+    if (_comparisonColumns.size() == 1) {
+      return new UpsertUtils.SingleComparisonColumnReader(segment, _comparisonColumns.get(0));
+    }
+    return new UpsertUtils.MultiComparisonColumnReader(segment, _comparisonColumns);
+  }
+
   protected boolean isTTLEnabled() {
     return _metadataTTL > 0 || _deletedKeysTTL > 0;
   }
@@ -418,7 +481,13 @@ public abstract class BasePartitionUpsertMetadataManager implements PartitionUps
       return;
     }
     try {
-      doPreloadSegment((ImmutableSegmentImpl) segment);
+      PartitionUpsertBootstrapper bootstrapper = _bootstrapper;
+      if (bootstrapper != null && !((ImmutableSegmentImpl) segment).hasSnapshotFile(
+          V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME)) {
+        bootstrapper.addSegment((ImmutableSegmentImpl) segment);
+      } else {
+        doPreloadSegment((ImmutableSegmentImpl) segment);
+      }
       _trackedSegments.add(segment);
       _updatedSegmentsSinceLastSnapshot.add(segment);
     } finally {
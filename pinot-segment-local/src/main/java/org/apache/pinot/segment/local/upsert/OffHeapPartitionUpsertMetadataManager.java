@@ -0,0 +1,763 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixManager;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Implementation of {@link PartitionUpsertMetadataManager} that is backed by an {@link OffHeapRecordLocationMap}, which
+ * keeps the primary key to record location map out of the Java heap.
+ * <p>The primary keys are stored as 128-bit hashes: the 16-byte output of the configured hash function is used as is,
+ * and the other keys (including the ones with hash function {@code NONE}) are hashed with MURMUR3. The segments are
+ * stored as int ids assigned by this manager, and the comparison value is stored as a long (or the bits of a double
+ * for floating point comparison columns).
+ * <p>Only single numeric comparison column is supported. Partial upsert, out-of-order record handling and deleted keys
+ * compaction consistency are not supported as they require tracking the previous record locations, see
+ * {@link #getUnsupportedReason(UpsertContext)}.
+ * <p>When {@link #PERSISTENT_KEY} is set and both snapshot and preload are enabled, the map is stored in memory-mapped
+ * files under the table index dir, and a checkpoint of the map is written along with the validDocIds snapshots. On
+ * restart, the segments in the checkpoint are preloaded with their validDocIds snapshots only, without reading the
+ * primary keys, as the map is loaded directly from the checkpoint.
+ */
+@ThreadSafe
+public class OffHeapPartitionUpsertMetadataManager extends BasePartitionUpsertMetadataManager {
+  public static final String NUM_SHARDS_KEY = "offHeapNumShards";
+  public static final int DEFAULT_NUM_SHARDS = 32;
+  public static final String INITIAL_SHARD_CAPACITY_KEY = "offHeapInitialShardCapacity";
+  public static final int DEFAULT_INITIAL_SHARD_CAPACITY = 1024;
+  public static final String PERSISTENT_KEY = "offHeapPersistent";
+
+  private static final String PERSISTENT_DIR_PREFIX = "offheap_upsert_metadata_";
+  private static final String WORKING_DIR_NAME = "working";
+  private static final String CHECKPOINT_DIR_NAME = "checkpoint";
+  private static final String CHECKPOINT_TMP_DIR_NAME = "checkpoint.tmp";
+  private static final String CHECKPOINT_METADATA_FILE_NAME = "metadata.json";
+  private static final String NEXT_SEGMENT_ID_KEY = "nextSegmentId";
+  private static final String SEGMENTS_KEY = "segments";
+  private static final String SEGMENT_ID_KEY = "id";
+  private static final String SEGMENT_NAME_KEY = "name";
+  private static final String SEGMENT_INDEX_DIR_KEY = "indexDir";
+  private static final String SEGMENT_NUM_VALID_DOCS_KEY = "numValidDocs";
+
+  @VisibleForTesting
+  final OffHeapRecordLocationMap _primaryKeyToRecordLocationMap;
+
+  private final boolean _floatingPointComparison;
+  private final DataType _comparisonStoredType;
+  // Segment id registry. Ids are never reused so that stale ids left in the map cannot resolve to another segment.
+  private final Map<IndexSegment, Integer> _segmentToIdMap = new ConcurrentHashMap<>();
+  private final Map<Integer, IndexSegment> _idToSegmentMap = new ConcurrentHashMap<>();
+  private final AtomicInteger _nextSegmentId = new AtomicInteger(OffHeapRecordLocationMap.EMPTY_SEGMENT_ID);
+  // Directory to persist the map, or null if the map is only kept in memory
+  @Nullable
+  private final File _persistentDir;
+  // Blocks the segment operations from the Helix threads while taking the snapshots and the checkpoint of the map
+  @VisibleForTesting
+  final ReadWriteLock _checkpointLock = new ReentrantReadWriteLock();
+  // Ids of the segments in the loaded checkpoint not preloaded yet, only set while preloading the segments
+  private volatile Map<String, Integer> _checkpointedSegmentIds;
+
+  public OffHeapPartitionUpsertMetadataManager(String tableNameWithType, int partitionId, UpsertContext context) {
+    super(tableNameWithType, partitionId, context);
+    String unsupportedReason = getUnsupportedReason(context);
+    Preconditions.checkArgument(unsupportedReason == null, "Cannot use off-heap upsert metadata for table: %s, %s",
+        tableNameWithType, unsupportedReason);
+    _comparisonStoredType =
+        context.getSchema().getFieldSpecFor(_comparisonColumns.get(0)).getDataType().getStoredType();
+    _floatingPointComparison = _comparisonStoredType == DataType.FLOAT || _comparisonStoredType == DataType.DOUBLE;
+    Map<String, String> metadataManagerConfigs = context.getMetadataManagerConfigs();
+    int numShards = DEFAULT_NUM_SHARDS;
+    int initialShardCapacity = DEFAULT_INITIAL_SHARD_CAPACITY;
+    boolean persistent = false;
+    if (metadataManagerConfigs != null) {
+      numShards = Integer.parseInt(metadataManagerConfigs.getOrDefault(NUM_SHARDS_KEY, Integer.toString(numShards)));
+      initialShardCapacity = Integer.parseInt(metadataManagerConfigs.getOrDefault(INITIAL_SHARD_CAPACITY_KEY,
+          Integer.toString(initialShardCapacity)));
+      persistent = Boolean.parseBoolean(metadataManagerConfigs.get(PERSISTENT_KEY));
+    }
+    File persistentDir = new File(_tableIndexDir, PERSISTENT_DIR_PREFIX + partitionId);
+    if (persistent && !(_enableSnapshot && context.isPreloadEnabled())) {
+      _logger.warn("Persistent off-heap upsert metadata requires snapshot and preload to be enabled, keeping it in "
+          + "memory only");
+      persistent = false;
+    }
+    File workingDir = null;
+    if (persistent) {
+      // The files left by the previous run are not reused, and the map is restored from the checkpoint if any
+      workingDir = new File(persistentDir, WORKING_DIR_NAME);
+      try {
+        FileUtils.deleteDirectory(workingDir);
+        FileUtils.forceMkdir(workingDir);
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to create directory: " + workingDir + " for table: " + tableNameWithType, e);
+      }
+      _persistentDir = persistentDir;
+    } else {
+      // Clean up the checkpoint in case persistence was enabled before, as it won't be kept up-to-date
+      FileUtils.deleteQuietly(persistentDir);
+      _persistentDir = null;
+    }
+    _primaryKeyToRecordLocationMap = new OffHeapRecordLocationMap(numShards, initialShardCapacity, workingDir,
+        "OffHeapPartitionUpsertMetadataManager: " + tableNameWithType + "-" + partitionId);
+  }
+
+  /**
+   * Returns the reason why the off-heap upsert metadata cannot be used with the given context, or {@code null} if it
+   * can be used.
+   */
+  @Nullable
+  public static String getUnsupportedReason(UpsertContext context) {
+    if (context.isTableTypeInconsistentDuringConsumption()) {
+      return "partial upsert and out-of-order record handling are not supported";
+    }
+    if (context.isEnableDeletedKeysCompactionConsistency()) {
+      return "deleted keys compaction consistency is not supported";
+    }
+    List<String> comparisonColumns = context.getComparisonColumns();
+    if (comparisonColumns.size() != 1) {
+      return "multiple comparison columns are not supported";
+    }
+    FieldSpec fieldSpec = context.getSchema().getFieldSpecFor(comparisonColumns.get(0));
+    if (fieldSpec == null || !fieldSpec.isSingleValueField()) {
+      return "comparison column: " + comparisonColumns.get(0) + " is not a single-value column";
+    }
+    switch (fieldSpec.getDataType().getStoredType()) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return null;
+      default:
+        return "comparison column: " + comparisonColumns.get(0) + " of type: " + fieldSpec.getDataType()
+            + " is not supported";
+    }
+  }
+
+  @Override
+  protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
+      HelixManager helixManager, ExecutorService segmentPreloadExecutor)
+      throws Exception {
+    Map<String, Integer> checkpointedSegmentIds = _persistentDir != null ? loadCheckpoint() : null;
+    _checkpointedSegmentIds = checkpointedSegmentIds;
+    try {
+      super.doPreloadSegments(tableDataManager, indexLoadingConfig, helixManager, segmentPreloadExecutor);
+    } finally {
+      _checkpointedSegmentIds = null;
+      if (checkpointedSegmentIds != null) {
+        // Remove the keys of the consuming segments and the segments not preloaded (e.g. segments removed while the
+        // server was down), so that they can be added back with the upsert handling when the records are consumed again
+        // or the segments are loaded via the normal segment loading logic
+        _logger.info("Removing primary keys of consuming segments and {} segments in the checkpoint not preloaded: {}",
+            checkpointedSegmentIds.size(), checkpointedSegmentIds.keySet());
+        removeKeysOfUnknownSegments();
+      }
+    }
+  }
+
+  @Override
+  protected void doPreloadSegment(ImmutableSegmentImpl segment) {
+    String segmentName = segment.getSegmentName();
+    Map<String, Integer> checkpointedSegmentIds = _checkpointedSegmentIds;
+    Integer segmentId = checkpointedSegmentIds != null ? checkpointedSegmentIds.remove(segmentName) : null;
+    if (segmentId == null) {
+      super.doPreloadSegment(segment);
+      return;
+    }
+    // The primary keys of the segment are already loaded from the checkpoint, and the validDocIds snapshot was checked
+    // against the checkpoint, so only the valid docs need to be restored.
+    MutableRoaringBitmap validDocIds = segment.loadDocIdsFromSnapshot(V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME);
+    Preconditions.checkState(validDocIds != null,
+        "Snapshot of validDocIds is required to preload segment: %s, table: %s", segmentName, _tableNameWithType);
+    if (isTTLEnabled()) {
+      double maxComparisonValue = getMaxComparisonValue(segment);
+      _largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, maxComparisonValue));
+    }
+    MutableRoaringBitmap queryableDocIds = getQueryableDocIds(segment, validDocIds);
+    segment.enableUpsert(this, new ThreadSafeMutableRoaringBitmap(validDocIds),
+        queryableDocIds != null ? new ThreadSafeMutableRoaringBitmap(queryableDocIds) : null);
+    _segmentToIdMap.put(segment, segmentId);
+    _idToSegmentMap.put(segmentId, segment);
+    _logger.info("Preloaded segment: {} with {} valid docs from checkpoint", segmentName,
+        validDocIds.getCardinality());
+  }
+
+  /**
+   * Loads the checkpoint of the map if it is consistent with the validDocIds snapshots of the segments, and returns the
+   * ids of the segments in the checkpoint keyed by segment name. Returns {@code null} if there is no valid checkpoint.
+   */
+  @Nullable
+  private Map<String, Integer> loadCheckpoint() {
+    File checkpointDir = new File(_persistentDir, CHECKPOINT_DIR_NAME);
+    File metadataFile = new File(checkpointDir, CHECKPOINT_METADATA_FILE_NAME);
+    if (!metadataFile.isFile()) {
+      _logger.info("No checkpoint of primary keys to load");
+      return null;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    try {
+      JsonNode metadata = JsonUtils.fileToJsonNode(metadataFile);
+      Map<String, Integer> segmentIds = new ConcurrentHashMap<>();
+      for (JsonNode segmentNode : metadata.get(SEGMENTS_KEY)) {
+        String segmentName = segmentNode.get(SEGMENT_NAME_KEY).asText();
+        // The segment might have been removed or replaced while the server was down, and won't be preloaded then
+        File indexDir = new File(segmentNode.get(SEGMENT_INDEX_DIR_KEY).asText());
+        File snapshotFile = indexDir.isDirectory() ? new File(SegmentDirectoryPaths.findSegmentDirectory(indexDir),
+            V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME) : null;
+        if (snapshotFile != null && snapshotFile.isFile()) {
+          long numValidDocs =
+              new ImmutableRoaringBitmap(ByteBuffer.wrap(FileUtils.readFileToByteArray(snapshotFile))).getCardinality();
+          long expectedNumValidDocs = segmentNode.get(SEGMENT_NUM_VALID_DOCS_KEY).asLong();
+          if (numValidDocs != expectedNumValidDocs) {
+            _logger.warn("Found {} valid docs in snapshot of segment: {}, expecting: {}, discarding the checkpoint of "
+                + "primary keys", numValidDocs, segmentName, expectedNumValidDocs);
+            FileUtils.deleteQuietly(checkpointDir);
+            return null;
+          }
+        }
+        segmentIds.put(segmentName, segmentNode.get(SEGMENT_ID_KEY).asInt());
+      }
+      // Set the next segment id before loading the map so that the ids in the map are never assigned again
+      _nextSegmentId.set(metadata.get(NEXT_SEGMENT_ID_KEY).asInt());
+      if (!_primaryKeyToRecordLocationMap.load(checkpointDir)) {
+        _logger.warn("Checkpoint of primary keys does not match the number of shards, discarding it");
+        FileUtils.deleteQuietly(checkpointDir);
+        return null;
+      }
+      _logger.info("Loaded checkpoint of {} primary keys for {} segments in {}ms", getNumPrimaryKeys(),
+          segmentIds.size(), System.currentTimeMillis() - startTimeMs);
+      return segmentIds;
+    } catch (Exception e) {
+      _logger.warn("Caught exception while loading checkpoint of primary keys, discarding it", e);
+      FileUtils.deleteQuietly(checkpointDir);
+      // Clean up the keys if the map is partially loaded
+      removeKeysOfUnknownSegments();
+      return null;
+    }
+  }
+
+  @Override
+  protected void doTakeSnapshot() {
+    if (_persistentDir == null) {
+      super.doTakeSnapshot();
+      return;
+    }
+    // Do not wait for the segment operations to avoid blocking the consuming thread. Skip both the snapshots and the
+    // checkpoint so that they are taken together next time.
+    Lock lock = _checkpointLock.writeLock();
+    if (!lock.tryLock()) {
+      _logger.info("Skip taking snapshot because segments are being added or removed");
+      return;
+    }
+    try {
+      // Delete the current checkpoint first as it no longer matches the snapshots once they are updated
+      File checkpointDir = new File(_persistentDir, CHECKPOINT_DIR_NAME);
+      FileUtils.deleteQuietly(checkpointDir);
+      super.doTakeSnapshot();
+      takeCheckpoint(checkpointDir);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void takeCheckpoint(File checkpointDir) {
+    // The checkpoint can only be used when the snapshots of all the immutable segments are up-to-date
+    if (!_updatedSegmentsSinceLastSnapshot.isEmpty()) {
+      _logger.warn("Skip taking checkpoint of primary keys because snapshots are not taken for {} segments",
+          _updatedSegmentsSinceLastSnapshot.size());
+      return;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    File tmpDir = new File(_persistentDir, CHECKPOINT_TMP_DIR_NAME);
+    try {
+      FileUtils.deleteDirectory(tmpDir);
+      ObjectNode metadata = JsonUtils.newObjectNode();
+      metadata.put(NEXT_SEGMENT_ID_KEY, _nextSegmentId.get());
+      ArrayNode segmentsNode = metadata.putArray(SEGMENTS_KEY);
+      for (IndexSegment segment : _trackedSegments) {
+        Integer segmentId = _segmentToIdMap.get(segment);
+        // Keys in the consuming segments are treated as absent after restart, as the records are consumed again
+        if (!(segment instanceof ImmutableSegmentImpl) || segmentId == null) {
+          continue;
+        }
+        ThreadSafeMutableRoaringBitmap validDocIds = segment.getValidDocIds();
+        ObjectNode segmentNode = segmentsNode.addObject();
+        segmentNode.put(SEGMENT_ID_KEY, segmentId);
+        segmentNode.put(SEGMENT_NAME_KEY, segment.getSegmentName());
+        segmentNode.put(SEGMENT_INDEX_DIR_KEY,
+            ((ImmutableSegmentImpl) segment).getSegmentMetadata().getIndexDir().getAbsolutePath());
+        segmentNode.put(SEGMENT_NUM_VALID_DOCS_KEY,
+            validDocIds != null ? validDocIds.getMutableRoaringBitmap().getCardinality() : 0);
+      }
+      _primaryKeyToRecordLocationMap.checkpoint(tmpDir);
+      FileUtils.writeByteArrayToFile(new File(tmpDir, CHECKPOINT_METADATA_FILE_NAME),
+          JsonUtils.objectToBytes(metadata));
+      FileUtils.moveDirectory(tmpDir, checkpointDir);
+      _logger.info("Finished taking checkpoint of {} primary keys for {} segments in {}ms", getNumPrimaryKeys(),
+          segmentsNode.size(), System.currentTimeMillis() - startTimeMs);
+    } catch (Exception e) {
+      _logger.warn("Caught exception while taking checkpoint of primary keys", e);
+      FileUtils.deleteQuietly(tmpDir);
+      FileUtils.deleteQuietly(checkpointDir);
+    }
+  }
+
+  private void removeKeysOfUnknownSegments() {
+    _primaryKeyToRecordLocationMap.forEach(location -> getSegment(location.getSegmentId()) == null);
+  }
+
+  @Override
+  public void addSegment(ImmutableSegment segment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.addSegment(segment);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  protected long getNumPrimaryKeys() {
+    return _primaryKeyToRecordLocationMap.size();
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator,
+      @Nullable IndexSegment oldSegment, @Nullable MutableRoaringBitmap validDocIdsForOldSegment) {
+    String segmentName = segment.getSegmentName();
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    int segmentId = getOrAssignSegmentId(segment);
+
+    AtomicInteger numKeysInWrongSegment = new AtomicInteger();
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      int newDocId = recordInfo.getDocId();
+      long newComparisonValue = encodeComparisonValue(recordInfo.getComparisonValue());
+      byte[] key = getKey(recordInfo.getPrimaryKey());
+      _primaryKeyToRecordLocationMap.compute(OffHeapRecordLocationMap.getKeyHigh(key),
+          OffHeapRecordLocationMap.getKeyLow(key), location -> {
+            IndexSegment currentSegment = getSegment(location.getSegmentId());
+            if (currentSegment != null) {
+              // Existing primary key
+              int currentDocId = location.getDocId();
+              int comparisonResult = compareComparisonValues(newComparisonValue, location.getValue());
+
+              // The current record is in the same segment
+              // Update the record location when there is a tie to keep the newer record. Note that the record info
+              // iterator will return records with incremental doc ids.
+              if (currentSegment == segment) {
+                if (comparisonResult >= 0) {
+                  replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+                  location.set(segmentId, newDocId, newComparisonValue);
+                }
+                return true;
+              }
+
+              // The current record is in an old segment being replaced
+              // See ConcurrentMapPartitionUpsertMetadataManager for how the valid doc ids of the old segment are
+              // tracked during the replacement.
+              if (currentSegment == oldSegment) {
+                if (comparisonResult >= 0) {
+                  if (validDocIdsForOldSegment == null && oldSegment.getValidDocIds() != null) {
+                    replaceDocId(segment, validDocIds, queryableDocIds, oldSegment, currentDocId, newDocId, recordInfo);
+                  } else {
+                    addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+                    if (validDocIdsForOldSegment != null) {
+                      validDocIdsForOldSegment.remove(currentDocId);
+                    }
+                  }
+                  location.set(segmentId, newDocId, newComparisonValue);
+                }
+                return true;
+              }
+
+              // This should not happen because the previously replaced segment should have all keys removed. We still
+              // handle it here, and also track the number of keys not properly replaced previously.
+              String currentSegmentName = currentSegment.getSegmentName();
+              if (currentSegmentName.equals(segmentName)) {
+                numKeysInWrongSegment.getAndIncrement();
+                if (comparisonResult >= 0) {
+                  addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+                  location.set(segmentId, newDocId, newComparisonValue);
+                }
+                return true;
+              }
+
+              // The current record is in a different segment
+              // Update the record location when getting a newer comparison value, or the value is the same as the
+              // current value, but the segment has a larger sequence number (the segment is newer than the current
+              // segment).
+              if (comparisonResult > 0 || (comparisonResult == 0 && shouldReplaceOnComparisonTie(segmentName,
+                  currentSegmentName, getAuthoritativeUpdateOrCreationTime(segment),
+                  getAuthoritativeUpdateOrCreationTime(currentSegment)))) {
+                replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+                location.set(segmentId, newDocId, newComparisonValue);
+              }
+              return true;
+            } else {
+              // New primary key, or the key is left in a removed segment
+              addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+              location.set(segmentId, newDocId, newComparisonValue);
+              return true;
+            }
+          });
+    }
+    int numKeys = numKeysInWrongSegment.get();
+    if (numKeys > 0) {
+      _logger.warn("Found {} primary keys in the wrong segment when adding segment: {}", numKeys, segmentName);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.UPSERT_KEYS_IN_WRONG_SEGMENT, numKeys);
+    }
+  }
+
+  @Override
+  protected void addSegmentWithoutUpsert(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator) {
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    int segmentId = getOrAssignSegmentId(segment);
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      int newDocId = recordInfo.getDocId();
+      addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+      byte[] key = getKey(recordInfo.getPrimaryKey());
+      _primaryKeyToRecordLocationMap.put(OffHeapRecordLocationMap.getKeyHigh(key),
+          OffHeapRecordLocationMap.getKeyLow(key), segmentId, newDocId,
+          encodeComparisonValue(recordInfo.getComparisonValue()));
+    }
+  }
+
+  @Override
+  protected void removeSegment(IndexSegment segment, Iterator<PrimaryKey> primaryKeyIterator) {
+    Integer segmentId = _segmentToIdMap.get(segment);
+    if (segmentId == null) {
+      return;
+    }
+    while (primaryKeyIterator.hasNext()) {
+      byte[] key = getKey(primaryKeyIterator.next());
+      _primaryKeyToRecordLocationMap.compute(OffHeapRecordLocationMap.getKeyHigh(key),
+          OffHeapRecordLocationMap.getKeyLow(key),
+          location -> location.getSegmentId() != OffHeapRecordLocationMap.EMPTY_SEGMENT_ID
+              && location.getSegmentId() != segmentId);
+    }
+  }
+
+  /**
+   * Reverting the metadata requires the previous record locations, which are not tracked, so simply remove the keys
+   * still pointing to the segment. This should not be invoked as the table types that can be inconsistent during
+   * consumption are not supported.
+   */
+  @Override
+  protected void revertAndRemoveSegment(IndexSegment segment,
+      Iterator<Map.Entry<Integer, PrimaryKey>> primaryKeyIterator) {
+    removeSegment(segment, new Iterator<PrimaryKey>() {
+      @Override
+      public boolean hasNext() {
+        return primaryKeyIterator.hasNext();
+      }
+
+      @Override
+      public PrimaryKey next() {
+        return primaryKeyIterator.next().getValue();
+      }
+    });
+  }
+
+  @Override
+  protected void removeSegment(IndexSegment segment, MutableRoaringBitmap validDocIds) {
+    try (PrimaryKeyReader primaryKeyReader = new PrimaryKeyReader(segment, _primaryKeyColumns)) {
+      removeSegment(segment, UpsertUtils.getPrimaryKeyIterator(primaryKeyReader, validDocIds));
+    } catch (Exception e) {
+      throw new RuntimeException(
+          String.format("Caught exception while removing segment: %s, table: %s, message: %s", segment.getSegmentName(),
+              _tableNameWithType, e.getMessage()), e);
+    }
+  }
+
+  @Override
+  public void replaceSegment(ImmutableSegment segment, IndexSegment oldSegment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.replaceSegment(segment, oldSegment);
+      if (!_trackedSegments.contains(oldSegment)) {
+        releaseSegmentId(oldSegment);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void removeSegment(IndexSegment segment) {
+    Lock lock = _checkpointLock.readLock();
+    lock.lock();
+    try {
+      super.removeSegment(segment);
+      if (!_trackedSegments.contains(segment)) {
+        releaseSegmentId(segment);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void doRemoveExpiredPrimaryKeys() {
+    AtomicInteger numMetadataTTLKeysRemoved = new AtomicInteger();
+    AtomicInteger numDeletedTTLKeysRemoved = new AtomicInteger();
+    AtomicInteger numTotalKeysMarkForDeletion = new AtomicInteger();
+    AtomicInteger numDeletedKeysWithinTTLWindow = new AtomicInteger();
+    double largestSeenComparisonValue = _largestSeenComparisonValue.get();
+    double metadataTTLKeysThreshold =
+        _metadataTTL > 0 ? largestSeenComparisonValue - _metadataTTL : Double.NEGATIVE_INFINITY;
+    double deletedKeysThreshold =
+        _deletedKeysTTL > 0 ? largestSeenComparisonValue - _deletedKeysTTL : Double.NEGATIVE_INFINITY;
+    _primaryKeyToRecordLocationMap.forEach(location -> {
+      IndexSegment segment = getSegment(location.getSegmentId());
+      if (segment == null) {
+        // The key is left in a removed segment
+        return true;
+      }
+      double comparisonValue = getComparisonValueAsDouble(location.getValue());
+      if (_metadataTTL > 0 && comparisonValue < metadataTTLKeysThreshold) {
+        numMetadataTTLKeysRemoved.getAndIncrement();
+        return true;
+      }
+      if (_deletedKeysTTL > 0) {
+        ThreadSafeMutableRoaringBitmap currentQueryableDocIds = segment.getQueryableDocIds();
+        // if key not part of queryable doc id, it means it is deleted
+        if (currentQueryableDocIds != null && !currentQueryableDocIds.contains(location.getDocId())) {
+          numTotalKeysMarkForDeletion.getAndIncrement();
+          if (comparisonValue >= deletedKeysThreshold) {
+            // If key is within the TTL window, do not remove it from the primary key map
+            numDeletedKeysWithinTTLWindow.getAndIncrement();
+          } else {
+            removeDocId(segment, location.getDocId());
+            numDeletedTTLKeysRemoved.getAndIncrement();
+            return true;
+          }
+        }
+      }
+      return false;
+    });
+
+    // Update metrics
+    updatePrimaryKeyGauge();
+    int numMetadataTTLKeys = numMetadataTTLKeysRemoved.get();
+    if (numMetadataTTLKeys > 0) {
+      _logger.info("Deleted {} primary keys based on metadataTTL", numMetadataTTLKeys);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.METADATA_TTL_PRIMARY_KEYS_REMOVED,
+          numMetadataTTLKeys);
+    }
+    int numDeletedTTLKeys = numDeletedTTLKeysRemoved.get();
+    if (numDeletedTTLKeys > 0) {
+      _logger.info("Deleted {} primary keys based on deletedKeysTTL", numDeletedTTLKeys);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_TTL_PRIMARY_KEYS_REMOVED,
+          numDeletedTTLKeys);
+    }
+    int numTotalKeysMarkedForDeletion = numTotalKeysMarkForDeletion.get();
+    if (numTotalKeysMarkedForDeletion > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.TOTAL_KEYS_MARKED_FOR_DELETION,
+          numTotalKeysMarkedForDeletion);
+    }
+    int numDeletedKeysWithinTTLWindowValue = numDeletedKeysWithinTTLWindow.get();
+    if (numDeletedKeysWithinTTLWindowValue > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_WITHIN_TTL_WINDOW,
+          numDeletedKeysWithinTTLWindowValue);
+    }
+  }
+
+  @Override
+  protected int getPrevKeyToRecordLocationSize() {
+    return 0;
+  }
+
+  @Override
+  protected void clearPrevKeyToRecordLocation() {
+  }
+
+  @Override
+  protected boolean doAddRecord(MutableSegment segment, RecordInfo recordInfo) {
+    ThreadSafeMutableRoaringBitmap validDocIds = Objects.requireNonNull(segment.getValidDocIds());
+    ThreadSafeMutableRoaringBitmap queryableDocIds = segment.getQueryableDocIds();
+    int segmentId = getOrAssignSegmentId(segment);
+    int newDocId = recordInfo.getDocId();
+    Comparable newComparisonValue = recordInfo.getComparisonValue();
+    long encodedNewComparisonValue = encodeComparisonValue(newComparisonValue);
+
+    // When TTL is enabled, update largestSeenComparisonValue when adding new record
+    if (isTTLEnabled()) {
+      double comparisonValue = ((Number) newComparisonValue).doubleValue();
+      _largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, comparisonValue));
+    }
+    // Holds the current comparison value of the out-of-order record
+    long[] outOfOrderComparisonValue = new long[1];
+    boolean[] isOutOfOrderRecord = new boolean[1];
+    byte[] key = getKey(recordInfo.getPrimaryKey());
+    _primaryKeyToRecordLocationMap.compute(OffHeapRecordLocationMap.getKeyHigh(key),
+        OffHeapRecordLocationMap.getKeyLow(key), location -> {
+          IndexSegment currentSegment = getSegment(location.getSegmentId());
+          if (currentSegment != null) {
+            // Existing primary key
+            // Update the record location when the new comparison value is greater than or equal to the current value.
+            // Update the record location when there is a tie to keep the newer record.
+            if (compareComparisonValues(encodedNewComparisonValue, location.getValue()) >= 0) {
+              int currentDocId = location.getDocId();
+              if (segment == currentSegment) {
+                replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+              } else {
+                replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+              }
+              location.set(segmentId, newDocId, encodedNewComparisonValue);
+            } else {
+              // Out-of-order record
+              outOfOrderComparisonValue[0] = location.getValue();
+              isOutOfOrderRecord[0] = true;
+            }
+          } else {
+            // New primary key
+            addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+            location.set(segmentId, newDocId, encodedNewComparisonValue);
+          }
+          return true;
+        });
+    if (isOutOfOrderRecord[0]) {
+      handleOutOfOrderEvent(decodeComparisonValue(outOfOrderComparisonValue[0]), newComparisonValue);
+    }
+
+    updatePrimaryKeyGauge();
+    return !isOutOfOrderRecord[0];
+  }
+
+  @Override
+  protected GenericRow doUpdateRecord(GenericRow record, RecordInfo recordInfo) {
+    throw new UnsupportedOperationException("Partial upsert is not supported with off-heap upsert metadata");
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    _primaryKeyToRecordLocationMap.close();
+    _segmentToIdMap.clear();
+    _idToSegmentMap.clear();
+  }
+
+  /**
+   * Returns the 16-byte key for the given primary key.
+   */
+  @VisibleForTesting
+  byte[] getKey(PrimaryKey primaryKey) {
+    return OffHeapRecordLocationMap.getKey(primaryKey, _hashFunction);
+  }
+
+  /**
+   * Returns the segment with the given id, or {@code null} if the id is empty or the segment is already removed.
+   */
+  @VisibleForTesting
+  @Nullable
+  IndexSegment getSegment(int segmentId) {
+    return segmentId != OffHeapRecordLocationMap.EMPTY_SEGMENT_ID ? _idToSegmentMap.get(segmentId) : null;
+  }
+
+  private int getOrAssignSegmentId(IndexSegment segment) {
+    return _segmentToIdMap.computeIfAbsent(segment, k -> {
+      int segmentId = _nextSegmentId.incrementAndGet();
+      Preconditions.checkState(segmentId != OffHeapRecordLocationMap.EMPTY_SEGMENT_ID, "Segment ids are exhausted");
+      _idToSegmentMap.put(segmentId, k);
+      return segmentId;
+    });
+  }
+
+  private void releaseSegmentId(IndexSegment segment) {
+    Integer segmentId = _segmentToIdMap.remove(segment);
+    if (segmentId != null) {
+      _idToSegmentMap.remove(segmentId);
+    }
+  }
+
+  private long encodeComparisonValue(Comparable comparisonValue) {
+    Number number = (Number) comparisonValue;
+    return _floatingPointComparison ? Double.doubleToLongBits(number.doubleValue()) : number.longValue();
+  }
+
+  @VisibleForTesting
+  Comparable decodeComparisonValue(long value) {
+    switch (_comparisonStoredType) {
+      case INT:
+        return (int) value;
+      case LONG:
+        return value;
+      case FLOAT:
+        return (float) Double.longBitsToDouble(value);
+      case DOUBLE:
+        return Double.longBitsToDouble(value);
+      default:
+        throw new IllegalStateException("Unsupported comparison column type: " + _comparisonStoredType);
+    }
+  }
+
+  private double getComparisonValueAsDouble(long value) {
+    return _floatingPointComparison ? Double.longBitsToDouble(value) : value;
+  }
+
+  private int compareComparisonValues(long value1, long value2) {
+    return _floatingPointComparison ? Double.compare(Double.longBitsToDouble(value1), Double.longBitsToDouble(value2))
+        : Long.compare(value1, value2);
+  }
+}
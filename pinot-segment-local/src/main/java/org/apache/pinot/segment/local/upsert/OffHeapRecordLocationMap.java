@@ -0,0 +1,590 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.ByteArray;
+
+
+/**
+ * Off-heap hash map from 128-bit hashed primary keys to record locations, where a record location is packed as a
+ * segment id (int), a doc id (int) and a comparison value (long).
+ * <p>The map is split into a fixed number of shards, each guarded by its own lock. Each shard is an open-addressing
+ * hash table with linear probing stored in a direct {@link PinotDataBuffer}, and is resized independently. Removal uses
+ * backward shift deletion so that no tombstones are left in the table.
+ * <p>When a directory is given, the shards are stored in memory-mapped files under the directory instead of direct
+ * memory, so that the map can grow beyond the available memory with the cold entries served from the page cache. The
+ * files are only the working copy of the map and are deleted on close, use {@link #checkpoint(File)} and
+ * {@link #load(File)} to persist the map.
+ * <p>Segment id {@link #EMPTY_SEGMENT_ID} is reserved to mark the empty slots.
+ */
+@ThreadSafe
+public class OffHeapRecordLocationMap implements Closeable {
+  public static final int EMPTY_SEGMENT_ID = 0;
+  public static final int KEY_SIZE = 16;
+
+  // Slot layout: key (2 longs), segment id (int), doc id (int), comparison value (long)
+  private static final int KEY_HIGH_OFFSET = 0;
+  private static final int KEY_LOW_OFFSET = 8;
+  private static final int SEGMENT_ID_OFFSET = 16;
+  private static final int DOC_ID_OFFSET = 20;
+  private static final int VALUE_OFFSET = 24;
+  private static final int SLOT_SIZE = 32;
+  private static final double MAX_LOAD_FACTOR = 0.75;
+  private static final int MAX_CAPACITY = 1 << 30;
+  private static final String CHECKPOINT_SHARD_FILE_PREFIX = "shard_";
+  private static final int CHECKPOINT_CHUNK_SIZE = 1 << 30;
+
+  @Nullable
+  private final File _dir;
+  private final String _description;
+  private final Shard[] _shards;
+  private final int _shardMask;
+
+  /**
+   * @param numShards Number of shards, rounded up to a power of 2
+   * @param initialShardCapacity Initial number of slots of each shard, rounded up to a power of 2
+   * @param description Description of the buffers allocated by the map
+   */
+  public OffHeapRecordLocationMap(int numShards, int initialShardCapacity, String description) {
+    this(numShards, initialShardCapacity, null, description);
+  }
+
+  /**
+   * @param numShards Number of shards, rounded up to a power of 2
+   * @param initialShardCapacity Initial number of slots of each shard, rounded up to a power of 2
+   * @param dir Directory of the memory-mapped files backing the shards, or {@code null} to use direct memory
+   * @param description Description of the buffers allocated by the map
+   */
+  public OffHeapRecordLocationMap(int numShards, int initialShardCapacity, @Nullable File dir, String description) {
+    Preconditions.checkArgument(numShards > 0 && numShards <= (1 << 16), "Invalid number of shards: %s", numShards);
+    Preconditions.checkArgument(initialShardCapacity > 0 && initialShardCapacity <= MAX_CAPACITY,
+        "Invalid initial shard capacity: %s", initialShardCapacity);
+    _dir = dir;
+    _description = description;
+    int shardCapacity = Math.max(nextPowerOfTwo(initialShardCapacity), 2);
+    _shards = new Shard[nextPowerOfTwo(numShards)];
+    for (int i = 0; i < _shards.length; i++) {
+      _shards[i] = new Shard(i, shardCapacity);
+    }
+    _shardMask = _shards.length - 1;
+  }
+
+  /**
+   * Mutable holder of a record location passed to the {@link Remapper} and the {@link Visitor}.
+   */
+  public static final class Location {
+    private int _segmentId;
+    private int _docId;
+    private long _value;
+
+    public void set(int segmentId, int docId, long value) {
+      Preconditions.checkArgument(segmentId != EMPTY_SEGMENT_ID, "Segment id: %s is reserved", EMPTY_SEGMENT_ID);
+      _segmentId = segmentId;
+      _docId = docId;
+      _value = value;
+    }
+
+    public int getSegmentId() {
+      return _segmentId;
+    }
+
+    public int getDocId() {
+      return _docId;
+    }
+
+    public long getValue() {
+      return _value;
+    }
+  }
+
+  @FunctionalInterface
+  public interface Remapper {
+
+    /**
+     * Computes the new location of a key while holding the lock of its shard. The given location holds the current
+     * location of the key, or {@link #EMPTY_SEGMENT_ID} as segment id if the key does not exist. Returns {@code true}
+     * to store the (possibly modified) location, or {@code false} to remove the key.
+     */
+    boolean remap(Location location);
+  }
+
+  @FunctionalInterface
+  public interface Visitor {
+
+    /**
+     * Visits an entry while holding the lock of its shard. Returns {@code true} to remove the entry.
+     */
+    boolean visit(Location location);
+  }
+
+  /**
+   * Returns the 16-byte key for the given primary key. The 16-byte output of the hash function is used as is, and the
+   * other keys (including the ones with hash function {@code NONE}) are hashed with MURMUR3.
+   */
+  public static byte[] getKey(PrimaryKey primaryKey, HashFunction hashFunction) {
+    Object hashedPrimaryKey = HashUtils.hashPrimaryKey(primaryKey, hashFunction);
+    byte[] bytes = hashedPrimaryKey instanceof ByteArray ? ((ByteArray) hashedPrimaryKey).getBytes()
+        : ((PrimaryKey) hashedPrimaryKey).asBytes();
+    return bytes.length == KEY_SIZE ? bytes : HashUtils.hashMurmur3(bytes);
+  }
+
+  /**
+   * Returns the first 8 bytes of the given 16-byte key as a big-endian long.
+   */
+  public static long getKeyHigh(byte[] key) {
+    return getLong(key, 0);
+  }
+
+  /**
+   * Returns the last 8 bytes of the given 16-byte key as a big-endian long.
+   */
+  public static long getKeyLow(byte[] key) {
+    return getLong(key, 8);
+  }
+
+  private static long getLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      value = (value << 8) | (bytes[i] & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Computes the new location of the given key with the remapper, see {@link Remapper#remap(Location)}.
+   */
+  public void compute(long keyHigh, long keyLow, Remapper remapper) {
+    long hash = hash(keyHigh, keyLow);
+    Shard shard = _shards[(int) (hash >>> 32) & _shardMask];
+    synchronized (shard) {
+      shard.compute(keyHigh, keyLow, (int) hash, remapper);
+    }
+  }
+
+  /**
+   * Puts the location of the given key, replacing the current location if any.
+   */
+  public void put(long keyHigh, long keyLow, int segmentId, int docId, long value) {
+    compute(keyHigh, keyLow, location -> {
+      location.set(segmentId, docId, value);
+      return true;
+    });
+  }
+
+  /**
+   * Reads the location of the given key into the given holder. Returns {@code false} if the key does not exist.
+   */
+  public boolean get(long keyHigh, long keyLow, Location location) {
+    long hash = hash(keyHigh, keyLow);
+    Shard shard = _shards[(int) (hash >>> 32) & _shardMask];
+    synchronized (shard) {
+      int slot = shard.findSlot(keyHigh, keyLow, (int) hash);
+      if (slot < 0) {
+        return false;
+      }
+      shard.read(slot, location);
+      return true;
+    }
+  }
+
+  /**
+   * Visits all the entries, one shard at a time, see {@link Visitor#visit(Location)}. Each entry is visited exactly
+   * once, even if entries are removed during the iteration.
+   */
+  public void forEach(Visitor visitor) {
+    Location location = new Location();
+    for (Shard shard : _shards) {
+      synchronized (shard) {
+        shard.forEach(visitor, location);
+      }
+    }
+  }
+
+  public long size() {
+    long size = 0;
+    for (Shard shard : _shards) {
+      synchronized (shard) {
+        size += shard._size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the off-heap memory allocated by the map in bytes.
+   */
+  public long getSizeInBytes() {
+    long sizeInBytes = 0;
+    for (Shard shard : _shards) {
+      synchronized (shard) {
+        sizeInBytes += (long) shard._capacity * SLOT_SIZE;
+      }
+    }
+    return sizeInBytes;
+  }
+
+  /**
+   * Writes a copy of the map into the given directory, which can be loaded back with {@link #load(File)}. Each shard is
+   * copied while holding its lock, so the caller should block the concurrent updates to get a consistent copy.
+   */
+  public void checkpoint(File dir)
+      throws IOException {
+    FileUtils.forceMkdir(dir);
+    for (int i = 0; i < _shards.length; i++) {
+      Shard shard = _shards[i];
+      synchronized (shard) {
+        shard.writeTo(new File(dir, CHECKPOINT_SHARD_FILE_PREFIX + i));
+      }
+    }
+  }
+
+  /**
+   * Replaces the content of the map with the copy written by {@link #checkpoint(File)}. Returns {@code false} without
+   * modifying the map if the copy does not match the number of shards of the map.
+   */
+  public boolean load(File dir)
+      throws IOException {
+    File[] files = new File[_shards.length];
+    for (int i = 0; i < _shards.length; i++) {
+      File file = new File(dir, CHECKPOINT_SHARD_FILE_PREFIX + i);
+      if (!file.isFile()) {
+        return false;
+      }
+      long length = file.length();
+      long capacity = length / SLOT_SIZE;
+      if (length % SLOT_SIZE != 0 || capacity < 2 || capacity > MAX_CAPACITY || Long.bitCount(capacity) != 1) {
+        return false;
+      }
+      files[i] = file;
+    }
+    if (new File(dir, CHECKPOINT_SHARD_FILE_PREFIX + _shards.length).exists()) {
+      return false;
+    }
+    for (int i = 0; i < _shards.length; i++) {
+      Shard shard = _shards[i];
+      synchronized (shard) {
+        shard.readFrom(files[i]);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    for (Shard shard : _shards) {
+      synchronized (shard) {
+        shard.close();
+      }
+    }
+  }
+
+  // Keys are already hashed, but mix the bits so that keys not uniformly distributed (e.g. UUIDs) are still spread out
+  private static long hash(long keyHigh, long keyLow) {
+    long hash = keyHigh ^ Long.rotateLeft(keyLow, 31);
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static int nextPowerOfTwo(int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  private final class Shard {
+    final int _index;
+    final Location _location = new Location();
+    PinotDataBuffer _buffer;
+    // File backing the buffer, or null when the buffer is in direct memory
+    File _file;
+    int _capacity;
+    int _mask;
+    int _size;
+    // Bumped for each new file so that a new buffer never maps the file of the current buffer
+    int _fileVersion;
+
+    Shard(int index, int capacity) {
+      _index = index;
+      _buffer = allocate(capacity);
+      _capacity = capacity;
+      _mask = capacity - 1;
+    }
+
+    /**
+     * Allocates a buffer with the given capacity and sets it as the new file of the shard if the map is file backed.
+     * The content of the buffer is undefined.
+     */
+    PinotDataBuffer allocateUninitialized(int capacity) {
+      long size = (long) capacity * SLOT_SIZE;
+      if (_dir == null) {
+        return PinotDataBuffer.allocateDirect(size, ByteOrder.nativeOrder(), _description);
+      }
+      File file = new File(_dir, CHECKPOINT_SHARD_FILE_PREFIX + _index + "." + _fileVersion++);
+      try {
+        PinotDataBuffer buffer = PinotDataBuffer.mapFile(file, false, 0, size, ByteOrder.nativeOrder(), _description);
+        deleteFile();
+        _file = file;
+        return buffer;
+      } catch (IOException e) {
+        FileUtils.deleteQuietly(file);
+        throw new RuntimeException("Caught exception while mapping file: " + file + " for: " + _description, e);
+      }
+    }
+
+    PinotDataBuffer allocate(int capacity) {
+      PinotDataBuffer buffer = allocateUninitialized(capacity);
+      for (int slot = 0; slot < capacity; slot++) {
+        buffer.putInt(offset(slot) + SEGMENT_ID_OFFSET, EMPTY_SEGMENT_ID);
+      }
+      return buffer;
+    }
+
+    long offset(int slot) {
+      return (long) slot * SLOT_SIZE;
+    }
+
+    boolean isEmpty(int slot) {
+      return _buffer.getInt(offset(slot) + SEGMENT_ID_OFFSET) == EMPTY_SEGMENT_ID;
+    }
+
+    int homeSlot(int slot) {
+      long offset = offset(slot);
+      return (int) hash(_buffer.getLong(offset + KEY_HIGH_OFFSET), _buffer.getLong(offset + KEY_LOW_OFFSET)) & _mask;
+    }
+
+    /**
+     * Returns the slot of the key if it exists, or {@code -(insertionSlot + 1)} otherwise.
+     */
+    int findSlot(long keyHigh, long keyLow, int hash) {
+      int slot = hash & _mask;
+      while (true) {
+        long offset = offset(slot);
+        if (_buffer.getInt(offset + SEGMENT_ID_OFFSET) == EMPTY_SEGMENT_ID) {
+          return -(slot + 1);
+        }
+        if (_buffer.getLong(offset + KEY_HIGH_OFFSET) == keyHigh
+            && _buffer.getLong(offset + KEY_LOW_OFFSET) == keyLow) {
+          return slot;
+        }
+        slot = (slot + 1) & _mask;
+      }
+    }
+
+    void read(int slot, Location location) {
+      long offset = offset(slot);
+      location._segmentId = _buffer.getInt(offset + SEGMENT_ID_OFFSET);
+      location._docId = _buffer.getInt(offset + DOC_ID_OFFSET);
+      location._value = _buffer.getLong(offset + VALUE_OFFSET);
+    }
+
+    void write(int slot, long keyHigh, long keyLow, Location location) {
+      long offset = offset(slot);
+      _buffer.putLong(offset + KEY_HIGH_OFFSET, keyHigh);
+      _buffer.putLong(offset + KEY_LOW_OFFSET, keyLow);
+      _buffer.putInt(offset + SEGMENT_ID_OFFSET, location._segmentId);
+      _buffer.putInt(offset + DOC_ID_OFFSET, location._docId);
+      _buffer.putLong(offset + VALUE_OFFSET, location._value);
+    }
+
+    void compute(long keyHigh, long keyLow, int hash, Remapper remapper) {
+      Location location = _location;
+      int slot = findSlot(keyHigh, keyLow, hash);
+      if (slot >= 0) {
+        read(slot, location);
+        if (remapper.remap(location)) {
+          long offset = offset(slot);
+          _buffer.putInt(offset + SEGMENT_ID_OFFSET, location._segmentId);
+          _buffer.putInt(offset + DOC_ID_OFFSET, location._docId);
+          _buffer.putLong(offset + VALUE_OFFSET, location._value);
+        } else {
+          remove(slot);
+        }
+      } else {
+        location._segmentId = EMPTY_SEGMENT_ID;
+        location._docId = 0;
+        location._value = 0;
+        if (remapper.remap(location) && location._segmentId != EMPTY_SEGMENT_ID) {
+          if (_size + 1 > _capacity * MAX_LOAD_FACTOR) {
+            resize();
+            slot = findSlot(keyHigh, keyLow, hash);
+          }
+          write(-(slot + 1), keyHigh, keyLow, location);
+          _size++;
+        }
+      }
+    }
+
+    /**
+     * Removes the entry at the given slot by shifting back the following entries of the same cluster that can be
+     * moved into the hole.
+     */
+    void remove(int slot) {
+      int hole = slot;
+      int next = (hole + 1) & _mask;
+      while (!isEmpty(next)) {
+        int home = homeSlot(next);
+        // The entry can be moved into the hole if the hole is between its home slot and its current slot
+        if (((next - home) & _mask) >= ((next - hole) & _mask)) {
+          copySlot(_buffer, offset(next), _buffer, offset(hole));
+          hole = next;
+        }
+        next = (next + 1) & _mask;
+      }
+      _buffer.putInt(offset(hole) + SEGMENT_ID_OFFSET, EMPTY_SEGMENT_ID);
+      _size--;
+    }
+
+    void resize() {
+      Preconditions.checkState(_capacity < MAX_CAPACITY, "Cannot resize shard with capacity: %s", _capacity);
+      PinotDataBuffer oldBuffer = _buffer;
+      int oldCapacity = _capacity;
+      _capacity = oldCapacity << 1;
+      _mask = _capacity - 1;
+      _buffer = allocate(_capacity);
+      for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+        long oldOffset = offset(oldSlot);
+        if (oldBuffer.getInt(oldOffset + SEGMENT_ID_OFFSET) != EMPTY_SEGMENT_ID) {
+          long keyHigh = oldBuffer.getLong(oldOffset + KEY_HIGH_OFFSET);
+          long keyLow = oldBuffer.getLong(oldOffset + KEY_LOW_OFFSET);
+          int slot = (int) hash(keyHigh, keyLow) & _mask;
+          while (!isEmpty(slot)) {
+            slot = (slot + 1) & _mask;
+          }
+          copySlot(oldBuffer, oldOffset, _buffer, offset(slot));
+        }
+      }
+      closeBuffer(oldBuffer);
+    }
+
+    // Copies the slot as longs, which is much cheaper than the bulk copy for such a small size
+    void copySlot(PinotDataBuffer srcBuffer, long srcOffset, PinotDataBuffer destBuffer, long destOffset) {
+      for (int i = 0; i < SLOT_SIZE; i += Long.BYTES) {
+        destBuffer.putLong(destOffset + i, srcBuffer.getLong(srcOffset + i));
+      }
+    }
+
+    void forEach(Visitor visitor, Location location) {
+      if (_size == 0) {
+        return;
+      }
+      // Start from an empty slot so that the entries shifted back on removal are never moved into the visited slots
+      int start = 0;
+      while (!isEmpty(start)) {
+        start++;
+      }
+      for (int i = 1; i <= _capacity; i++) {
+        int slot = (start + i) & _mask;
+        while (!isEmpty(slot)) {
+          read(slot, location);
+          if (visitor.visit(location)) {
+            // Re-visit the slot which might hold an entry shifted back by the removal
+            remove(slot);
+          } else {
+            break;
+          }
+        }
+      }
+    }
+
+    void writeTo(File file)
+        throws IOException {
+      long size = (long) _capacity * SLOT_SIZE;
+      try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        for (long offset = 0; offset < size; offset += CHECKPOINT_CHUNK_SIZE) {
+          ByteBuffer byteBuffer =
+              _buffer.toDirectByteBuffer(offset, (int) Math.min(size - offset, CHECKPOINT_CHUNK_SIZE));
+          while (byteBuffer.hasRemaining()) {
+            fileChannel.write(byteBuffer);
+          }
+        }
+        fileChannel.force(false);
+      }
+    }
+
+    void readFrom(File file)
+        throws IOException {
+      int capacity = (int) (file.length() / SLOT_SIZE);
+      long size = (long) capacity * SLOT_SIZE;
+      PinotDataBuffer oldBuffer = _buffer;
+      PinotDataBuffer buffer = allocateUninitialized(capacity);
+      try {
+        buffer.readFrom(0, file, 0, size);
+      } catch (IOException e) {
+        closeBuffer(buffer);
+        deleteFile();
+        throw e;
+      }
+      _buffer = buffer;
+      _capacity = capacity;
+      _mask = capacity - 1;
+      _size = 0;
+      for (int slot = 0; slot < capacity; slot++) {
+        if (!isEmpty(slot)) {
+          _size++;
+        }
+      }
+      closeBuffer(oldBuffer);
+    }
+
+    void close() {
+      if (_buffer != null) {
+        closeBuffer(_buffer);
+        deleteFile();
+        _buffer = null;
+        _capacity = 0;
+        _size = 0;
+      }
+    }
+
+    // NOTE: The file can be deleted while still being mapped, and the space is reclaimed once the buffer is closed
+    void deleteFile() {
+      if (_file != null) {
+        FileUtils.deleteQuietly(_file);
+        _file = null;
+      }
+    }
+
+    void closeBuffer(PinotDataBuffer buffer) {
+      try {
+        buffer.close();
+      } catch (IOException e) {
+        throw new RuntimeException("Caught exception while closing buffer: " + _description, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implementation of {@link TableUpsertMetadataManager} that keeps the primary key to record location maps off-heap with
+ * {@link OffHeapPartitionUpsertMetadataManager}. Falls back to {@link ConcurrentMapPartitionUpsertMetadataManager} when
+ * the table uses features not supported by the off-heap map.
+ * <p>To use it, set {@code metadataManagerClass} in the upsert config to the name of this class.
+ */
+@ThreadSafe
+public class OffHeapTableUpsertMetadataManager extends ConcurrentMapTableUpsertMetadataManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTableUpsertMetadataManager.class);
+
+  @Override
+  protected BasePartitionUpsertMetadataManager createPartitionManager(int partitionId) {
+    String unsupportedReason = OffHeapPartitionUpsertMetadataManager.getUnsupportedReason(_context);
+    if (unsupportedReason != null) {
+      LOGGER.warn("Cannot use off-heap upsert metadata for table: {}, partition: {} ({}), using on-heap map instead",
+          _tableNameWithType, partitionId, unsupportedReason);
+      return super.createPartitionManager(partitionId);
+    }
+    return new OffHeapPartitionUpsertMetadataManager(_tableNameWithType, partitionId, _context);
+  }
+}
@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerTimer;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Bootstraps the upsert metadata of a table partition from the segments without validDocIds snapshot when preloading
+ * the partition, instead of adding these segments one by one on the Helix threads after preloading. It runs in 3
+ * stages:
+ * <ul>
+ *   <li>Read: the primary keys and comparison values of each segment are read column by column on the segment preload
+ *   threads, and the docs are split into key partitions by the hash of the primary key.</li>
+ *   <li>Reduce: the location of each primary key is resolved for each key partition in parallel, with the same rules as
+ *   adding the segments one by one. The resolved locations are the valid docs of the segments.</li>
+ *   <li>Apply: the segments are added to the metadata manager in parallel with only the valid docs, which don't overlap
+ *   across the segments. The primary keys also existing in the segments preloaded from snapshots are still resolved by
+ *   the metadata manager.</li>
+ * </ul>
+ * All the primary keys and comparison values of the segments are held in memory until the reduce stage is done.
+ */
+class PartitionUpsertBootstrapper {
+  private final BasePartitionUpsertMetadataManager _metadataManager;
+  private final int _numKeyPartitions;
+  private final List<SegmentKeys> _segmentKeysList = new ArrayList<>();
+  private final AtomicInteger _numDocsRead = new AtomicInteger();
+
+  PartitionUpsertBootstrapper(BasePartitionUpsertMetadataManager metadataManager, int numKeyPartitions) {
+    _metadataManager = metadataManager;
+    _numKeyPartitions = numKeyPartitions;
+  }
+
+  /**
+   * Reads the primary keys and comparison values of the segment. Can be called concurrently for different segments.
+   */
+  void addSegment(ImmutableSegmentImpl segment) {
+    String segmentName = segment.getSegmentName();
+    double maxComparisonValue = Double.NaN;
+    if (_metadataManager.isTTLEnabled() && !_metadataManager._comparisonColumns.isEmpty()) {
+      double segmentMaxComparisonValue = _metadataManager.getMaxComparisonValue(segment);
+      _metadataManager._largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, segmentMaxComparisonValue));
+      if (_metadataManager.isOutOfMetadataTTL(segmentMaxComparisonValue)) {
+        _metadataManager.skipAddSegmentOutOfTTL(segment);
+        return;
+      }
+      maxComparisonValue = segmentMaxComparisonValue;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    int numDocs = segment.getSegmentMetadata().getTotalDocs();
+    Object[] primaryKeys = new Object[numDocs];
+    try (PrimaryKeyReader primaryKeyReader = new PrimaryKeyReader(segment, _metadataManager._primaryKeyColumns)) {
+      PrimaryKey[] values = primaryKeyReader.getPrimaryKeys(numDocs);
+      for (int docId = 0; docId < numDocs; docId++) {
+        primaryKeys[docId] = HashUtils.hashPrimaryKey(values[docId], _metadataManager._hashFunction);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(
+          String.format("Caught exception while reading primary keys of segment: %s, table: %s", segmentName,
+              _metadataManager._tableNameWithType), e);
+    }
+    Comparable[] comparisonValues = new Comparable[numDocs];
+    try (UpsertUtils.ComparisonColumnReader comparisonColumnReader =
+        _metadataManager.createComparisonColumnReader(segment)) {
+      for (int docId = 0; docId < numDocs; docId++) {
+        comparisonValues[docId] = comparisonColumnReader.getComparisonValue(docId);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(
+          String.format("Caught exception while reading comparison values of segment: %s, table: %s", segmentName,
+              _metadataManager._tableNameWithType), e);
+    }
+
+    // Split the docs into key partitions
+    int[] keyPartitionIds = new int[numDocs];
+    int[] keyPartitionSizes = new int[_numKeyPartitions];
+    for (int docId = 0; docId < numDocs; docId++) {
+      int keyPartitionId = (primaryKeys[docId].hashCode() & Integer.MAX_VALUE) % _numKeyPartitions;
+      keyPartitionIds[docId] = keyPartitionId;
+      keyPartitionSizes[keyPartitionId]++;
+    }
+    int[][] docIdsByKeyPartition = new int[_numKeyPartitions][];
+    for (int i = 0; i < _numKeyPartitions; i++) {
+      docIdsByKeyPartition[i] = new int[keyPartitionSizes[i]];
+      keyPartitionSizes[i] = 0;
+    }
+    for (int docId = 0; docId < numDocs; docId++) {
+      int keyPartitionId = keyPartitionIds[docId];
+      docIdsByKeyPartition[keyPartitionId][keyPartitionSizes[keyPartitionId]++] = docId;
+    }
+
+    int numSegmentsRead;
+    synchronized (_segmentKeysList) {
+      _segmentKeysList.add(
+          new SegmentKeys(segment, maxComparisonValue, primaryKeys, comparisonValues, docIdsByKeyPartition));
+      numSegmentsRead = _segmentKeysList.size();
+    }
+    int numDocsRead = _numDocsRead.addAndGet(numDocs);
+    String tableNameWithType = _metadataManager._tableNameWithType;
+    _metadataManager._serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.UPSERT_BOOTSTRAP_SEGMENTS_READ,
+        1);
+    _metadataManager._serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.UPSERT_BOOTSTRAP_ROWS_READ,
+        numDocs);
+    _metadataManager._logger.info("Read {} docs of segment: {} to bootstrap in {}ms, {} segments with {} docs read so "
+        + "far", numDocs, segmentName, System.currentTimeMillis() - startTimeMs, numSegmentsRead, numDocsRead);
+  }
+
+  /**
+   * Resolves the primary keys across the segments read, and adds the segments to the metadata manager. Should be called
+   * after all the segments are read.
+   */
+  void bootstrap(ExecutorService executorService)
+      throws ExecutionException, InterruptedException {
+    List<SegmentKeys> segmentKeysList = new ArrayList<>(_segmentKeysList.size());
+    for (SegmentKeys segmentKeys : _segmentKeysList) {
+      // Check TTL again as the watermark might be advanced by the segments read later
+      if (!Double.isNaN(segmentKeys._maxComparisonValue) && _metadataManager.isOutOfMetadataTTL(
+          segmentKeys._maxComparisonValue)) {
+        _metadataManager.skipAddSegmentOutOfTTL(segmentKeys._segment);
+      } else {
+        segmentKeysList.add(segmentKeys);
+      }
+    }
+    _segmentKeysList.clear();
+    if (segmentKeysList.isEmpty()) {
+      return;
+    }
+    // Sort the segments to resolve the primary keys deterministically
+    segmentKeysList.sort(Comparator.comparing(segmentKeys -> segmentKeys._segment.getSegmentName()));
+    SegmentKeys[] segmentKeysArray = segmentKeysList.toArray(new SegmentKeys[0]);
+    long startTimeMs = System.currentTimeMillis();
+    _metadataManager._logger.info("Bootstrapping {} segments with {} docs in {} key partitions",
+        segmentKeysArray.length, _numDocsRead.get(), _numKeyPartitions);
+
+    // Reduce
+    List<Future<?>> futures = new ArrayList<>(_numKeyPartitions);
+    for (int i = 0; i < _numKeyPartitions; i++) {
+      int keyPartitionId = i;
+      futures.add(executorService.submit(() -> reduce(segmentKeysArray, keyPartitionId)));
+    }
+    try {
+      waitForFutures(futures);
+    } catch (ExecutionException e) {
+      _metadataManager._logger.warn("Caught exception while resolving primary keys, adding {} segments one by one",
+          segmentKeysArray.length, e);
+      for (SegmentKeys segmentKeys : segmentKeysArray) {
+        segmentKeys.clear();
+        _metadataManager.doAddSegment(segmentKeys._segment);
+      }
+      return;
+    }
+    long reduceTimeMs = System.currentTimeMillis() - startTimeMs;
+    _metadataManager._logger.info("Resolved primary keys of {} segments in {}ms", segmentKeysArray.length,
+        reduceTimeMs);
+
+    // Apply
+    futures.clear();
+    AtomicInteger numSegmentsAdded = new AtomicInteger();
+    for (SegmentKeys segmentKeys : segmentKeysArray) {
+      ImmutableSegmentImpl segment = segmentKeys._segment;
+      MutableRoaringBitmap validDocIds = segmentKeys._validDocIds;
+      // Release the primary keys and comparison values before adding the segments
+      segmentKeys.clear();
+      futures.add(executorService.submit(() -> {
+        apply(segment, validDocIds);
+        _metadataManager._logger.info("Bootstrapped segment: {} with {} valid docs, {}/{} segments bootstrapped",
+            segment.getSegmentName(), validDocIds.getCardinality(), numSegmentsAdded.incrementAndGet(),
+            segmentKeysArray.length);
+      }));
+    }
+    waitForFutures(futures);
+
+    long durationMs = System.currentTimeMillis() - startTimeMs;
+    _metadataManager._serverMetrics.addTimedTableValue(_metadataManager._tableNameWithType,
+        ServerTimer.UPSERT_BOOTSTRAP_TIME_MS, durationMs, TimeUnit.MILLISECONDS);
+    long numPrimaryKeys = _metadataManager.getNumPrimaryKeys();
+    _metadataManager.updatePrimaryKeyGauge(numPrimaryKeys);
+    _metadataManager._logger.info("Finished bootstrapping {} segments in {}ms (reduce: {}ms), current primary key "
+        + "count: {}", segmentKeysArray.length, durationMs, reduceTimeMs, numPrimaryKeys);
+  }
+
+  /**
+   * Resolves the location of the primary keys within the key partition, and adds the docs at the resolved locations to
+   * the valid docs of the segments.
+   */
+  private void reduce(SegmentKeys[] segmentKeysArray, int keyPartitionId) {
+    // Value is the location of the primary key, with the segment index in the high 32 bits and doc id in the low bits
+    Object2LongOpenHashMap<Object> locations = new Object2LongOpenHashMap<>();
+    locations.defaultReturnValue(-1L);
+    int numSegments = segmentKeysArray.length;
+    for (int segmentIndex = 0; segmentIndex < numSegments; segmentIndex++) {
+      SegmentKeys segmentKeys = segmentKeysArray[segmentIndex];
+      // Doc ids are in ascending order
+      for (int docId : segmentKeys._docIdsByKeyPartition[keyPartitionId]) {
+        Object primaryKey = segmentKeys._primaryKeys[docId];
+        long location = locations.getLong(primaryKey);
+        if (location == -1L || shouldReplace(segmentKeysArray, segmentIndex, docId, location)) {
+          locations.put(primaryKey, ((long) segmentIndex << 32) | docId);
+        }
+      }
+    }
+    MutableRoaringBitmap[] validDocIdsArray = new MutableRoaringBitmap[numSegments];
+    for (long location : locations.values()) {
+      int segmentIndex = (int) (location >>> 32);
+      MutableRoaringBitmap validDocIds = validDocIdsArray[segmentIndex];
+      if (validDocIds == null) {
+        validDocIds = new MutableRoaringBitmap();
+        validDocIdsArray[segmentIndex] = validDocIds;
+      }
+      validDocIds.add((int) location);
+    }
+    for (int segmentIndex = 0; segmentIndex < numSegments; segmentIndex++) {
+      MutableRoaringBitmap validDocIds = validDocIdsArray[segmentIndex];
+      if (validDocIds != null) {
+        SegmentKeys segmentKeys = segmentKeysArray[segmentIndex];
+        synchronized (segmentKeys) {
+          segmentKeys._validDocIds.or(validDocIds);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the doc should replace the current location of the primary key, following the rules in
+   * {@link ConcurrentMapPartitionUpsertMetadataManager#doAddOrReplaceSegment}.
+   */
+  private boolean shouldReplace(SegmentKeys[] segmentKeysArray, int segmentIndex, int docId, long currentLocation) {
+    int currentSegmentIndex = (int) (currentLocation >>> 32);
+    SegmentKeys segmentKeys = segmentKeysArray[segmentIndex];
+    SegmentKeys currentSegmentKeys = segmentKeysArray[currentSegmentIndex];
+    @SuppressWarnings("unchecked")
+    int comparisonResult = segmentKeys._comparisonValues[docId].compareTo(
+        currentSegmentKeys._comparisonValues[(int) currentLocation]);
+    if (currentSegmentIndex == segmentIndex) {
+      // Keep the newer doc when there is a tie within the same segment
+      return comparisonResult >= 0;
+    }
+    if (comparisonResult != 0) {
+      return comparisonResult > 0;
+    }
+    ImmutableSegmentImpl segment = segmentKeys._segment;
+    ImmutableSegmentImpl currentSegment = currentSegmentKeys._segment;
+    return _metadataManager.shouldReplaceOnComparisonTie(segment.getSegmentName(), currentSegment.getSegmentName(),
+        _metadataManager.getAuthoritativeUpdateOrCreationTime(segment),
+        _metadataManager.getAuthoritativeUpdateOrCreationTime(currentSegment));
+  }
+
+  private void apply(ImmutableSegmentImpl segment, MutableRoaringBitmap validDocIds) {
+    try (UpsertUtils.RecordInfoReader recordInfoReader = _metadataManager.createRecordInfoReader(segment)) {
+      _metadataManager.addSegment(segment, null, null,
+          UpsertUtils.getRecordInfoIterator(recordInfoReader, validDocIds));
+    } catch (Exception e) {
+      // Fall back to adding the segment with all the docs, which also handles the docs already added
+      _metadataManager._logger.warn("Caught exception while bootstrapping segment: {}, adding it with all the docs",
+          segment.getSegmentName(), e);
+      _metadataManager.doAddSegment(segment);
+    }
+  }
+
+  private static void waitForFutures(List<Future<?>> futures)
+      throws ExecutionException, InterruptedException {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      for (Future<?> future : futures) {
+        if (!future.isDone()) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
+
+  private static final class SegmentKeys {
+    final ImmutableSegmentImpl _segment;
+    // NaN if TTL is not enabled
+    final double _maxComparisonValue;
+    final MutableRoaringBitmap _validDocIds = new MutableRoaringBitmap();
+    Object[] _primaryKeys;
+    Comparable[] _comparisonValues;
+    int[][] _docIdsByKeyPartition;
+
+    SegmentKeys(ImmutableSegmentImpl segment, double maxComparisonValue, Object[] primaryKeys,
+        Comparable[] comparisonValues, int[][] docIdsByKeyPartition) {
+      _segment = segment;
+      _maxComparisonValue = maxComparisonValue;
+      _primaryKeys = primaryKeys;
+      _comparisonValues = comparisonValues;
+      _docIdsByKeyPartition = docIdsByKeyPartition;
+    }
+
+    void clear() {
+      _primaryKeys = null;
+      _comparisonValues = null;
+      _docIdsByKeyPartition = null;
+    }
+  }
+}
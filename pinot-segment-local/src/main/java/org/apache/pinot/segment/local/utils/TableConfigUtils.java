@@ -440,6 +440,8 @@ public final class TableConfigUtils {
         List<Map<String, String>> streamConfigMaps = ingestionConfig.getStreamIngestionConfig().getStreamConfigMaps();
         Preconditions.checkState(!streamConfigMaps.isEmpty(), "Must have at least 1 stream in REALTIME table");
         // TODO: for multiple stream configs, validate them
+        Preconditions.checkState(ingestionConfig.getStreamIngestionConfig().getNumDecodeThreads() >= 0,
+            "Number of decode threads must be non-negative");
 
         boolean isPauselessEnabled = ingestionConfig.getStreamIngestionConfig().isPauselessConsumptionEnabled();
         if (isPauselessEnabled) {
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap.Location;
+import org.apache.pinot.segment.local.utils.SegmentPreloadUtils;
+import org.apache.pinot.segment.spi.ColumnMetadata;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.mockito.MockedStatic;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPartitionDedupMetadataManagerTest {
+  private static final File TEMP_DIR =
+      new File(FileUtils.getTempDirectory(), OffHeapPartitionDedupMetadataManagerTest.class.getSimpleName());
+  private static final int METADATA_TTL = 10000;
+  private static final String DEDUP_TIME_COLUMN_NAME = "dedupTimeColumn";
+  private DedupContext.Builder _dedupContextBuilder;
+
+  @BeforeMethod
+  public void setUpContextBuilder()
+      throws IOException {
+    FileUtils.forceMkdir(TEMP_DIR);
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(TEMP_DIR);
+    _dedupContextBuilder = new DedupContext.Builder()
+        .setTableConfig(mock(TableConfig.class))
+        .setSchema(mock(Schema.class))
+        .setTableDataManager(tableDataManager)
+        .setPrimaryKeyColumns(List.of("primaryKeyColumn"))
+        .setMetadataTTL(METADATA_TTL)
+        .setDedupTimeColumn(DEDUP_TIME_COLUMN_NAME);
+  }
+
+  @AfterMethod
+  public void cleanup() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testAddReplaceRemoveSegment()
+      throws IOException {
+    verifyAddReplaceRemoveSegment(HashFunction.NONE);
+    verifyAddReplaceRemoveSegment(HashFunction.MD5);
+    verifyAddReplaceRemoveSegment(HashFunction.MURMUR3);
+  }
+
+  private void verifyAddReplaceRemoveSegment(HashFunction hashFunction)
+      throws IOException {
+    _dedupContextBuilder.setHashFunction(hashFunction);
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader = generateDedupRecordInfoReader(10, 0);
+    IndexSegment segment1 = DedupTestUtils.mockSegment(1, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment1,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader, 10));
+    verifyInMemoryState(metadataManager, 0, 10, segment1, hashFunction);
+
+    // Replace with a segment with the same primary keys
+    IndexSegment segment2 = DedupTestUtils.mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(segment1, segment2,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader, 10));
+    verifyInMemoryState(metadataManager, 0, 10, segment2, hashFunction);
+
+    // Removing another segment should not remove the primary keys
+    metadataManager.doRemoveSegment(segment1, DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader, 10));
+    verifyInMemoryState(metadataManager, 0, 10, segment2, hashFunction);
+
+    metadataManager.doRemoveSegment(segment2, DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 0);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    verifyRemoveExpiredPrimaryKeys(HashFunction.NONE);
+    verifyRemoveExpiredPrimaryKeys(HashFunction.MD5);
+    verifyRemoveExpiredPrimaryKeys(HashFunction.MURMUR3);
+  }
+
+  private void verifyRemoveExpiredPrimaryKeys(HashFunction hashFunction)
+      throws IOException {
+    _dedupContextBuilder.setHashFunction(hashFunction);
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    IndexSegment segment = mock(MutableSegment.class);
+    for (int i = 0; i < 20; i++) {
+      assertFalse(metadataManager.checkRecordPresentOrUpdate(
+          new DedupRecordInfo(DedupTestUtils.getPrimaryKey(i), i * 1000), segment));
+    }
+    assertEquals(metadataManager._largestSeenTime.get(), 19000);
+    assertEquals(metadataManager.getNumPrimaryKeys(), 20);
+    // Each time bucket covers 1/8 of the TTL
+    assertEquals(metadataManager._buckets.size(), 16);
+
+    // Keys with dedup time less than 9000 are stale, and are treated as not existing
+    assertTrue(metadataManager.checkRecordPresentOrUpdate(
+        new DedupRecordInfo(DedupTestUtils.getPrimaryKey(9), 9000), segment));
+
+    // Buckets entirely out of TTL are dropped
+    metadataManager.removeExpiredPrimaryKeys();
+    assertEquals(metadataManager.getNumPrimaryKeys(), 11);
+    verifyInMemoryState(metadataManager, 9, 11, segment, hashFunction);
+    assertFalse(metadataManager.checkRecordPresentOrUpdate(
+        new DedupRecordInfo(DedupTestUtils.getPrimaryKey(0), 19000), segment));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 12);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testCheckpointAndPreload()
+      throws Exception {
+    _dedupContextBuilder.setHashFunction(HashFunction.MURMUR3)
+        .setEnablePreload(true)
+        .setMetadataManagerConfigs(Map.of(OffHeapPartitionDedupMetadataManager.PERSISTENT_KEY, "true"));
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    ImmutableSegmentImpl segment1 = mockSegment(1, "1", 19000);
+    metadataManager.doAddOrReplaceSegment(null, segment1,
+        DedupUtils.getDedupRecordInfoIterator(generateDedupRecordInfoReader(10, 10), 10));
+    ImmutableSegmentImpl segment2 = mockSegment(2, "2", 19000);
+    metadataManager.doAddOrReplaceSegment(null, segment2,
+        DedupUtils.getDedupRecordInfoIterator(generateDedupRecordInfoReader(5, 20), 5));
+    IndexSegment consumingSegment = mock(MutableSegment.class);
+    assertFalse(metadataManager.checkRecordPresentOrUpdate(
+        new DedupRecordInfo(DedupTestUtils.getPrimaryKey(100), 19500), consumingSegment));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 16);
+
+    // Checkpoint is taken after removing the expired primary keys
+    metadataManager.removeExpiredPrimaryKeys();
+    File checkpointDir = new File(TEMP_DIR, "offheap_dedup_metadata_0/checkpoint");
+    assertTrue(new File(checkpointDir, "metadata.json").isFile());
+    metadataManager.stop();
+    metadataManager.close();
+
+    // Preload segment 1 with the same CRC, and the primary keys of segment 2 (not preloaded) and the consuming segment
+    // are removed
+    OffHeapPartitionDedupMetadataManager newMetadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+    ImmutableSegmentImpl preloadedSegment1 = mockSegment(1, "1", 19000);
+    when(preloadedSegment1.getSegmentName()).thenReturn(segment1.getSegmentName());
+    try (MockedStatic<SegmentPreloadUtils> segmentPreloadUtils = mockStatic(SegmentPreloadUtils.class)) {
+      segmentPreloadUtils.when(() -> SegmentPreloadUtils.preloadSegments(any(), anyInt(), any(), any(), any(), any()))
+          .thenAnswer(invocation -> {
+            newMetadataManager.preloadSegment(preloadedSegment1);
+            return null;
+          });
+      newMetadataManager.preloadSegments(mock(IndexLoadingConfig.class));
+    }
+    assertFalse(newMetadataManager.isPreloading());
+    assertTrue(newMetadataManager._largestSeenTime.get() >= 19000);
+    assertEquals(newMetadataManager.getNumPrimaryKeys(), 10);
+    verifyInMemoryState(newMetadataManager, 10, 10, preloadedSegment1, HashFunction.MURMUR3);
+    assertTrue(newMetadataManager.checkRecordPresentOrUpdate(
+        new DedupRecordInfo(DedupTestUtils.getPrimaryKey(15), 19500), consumingSegment));
+    assertFalse(newMetadataManager.checkRecordPresentOrUpdate(
+        new DedupRecordInfo(DedupTestUtils.getPrimaryKey(100), 19500), consumingSegment));
+
+    newMetadataManager.stop();
+    newMetadataManager.close();
+  }
+
+  private static ImmutableSegmentImpl mockSegment(int sequenceNumber, String crc, long maxDedupTime) {
+    ImmutableSegmentImpl segment = DedupTestUtils.mockSegment(sequenceNumber, 10);
+    SegmentMetadataImpl segmentMetadata = segment.getSegmentMetadata();
+    when(segmentMetadata.getCrc()).thenReturn(crc);
+    ColumnMetadata columnMetadata = mock(ColumnMetadata.class);
+    when(columnMetadata.getMaxValue()).thenReturn(maxDedupTime);
+    TreeMap<String, ColumnMetadata> columnMetadataMap = new TreeMap<>();
+    columnMetadataMap.put(DEDUP_TIME_COLUMN_NAME, columnMetadata);
+    when(segmentMetadata.getColumnMetadataMap()).thenReturn(columnMetadataMap);
+    return segment;
+  }
+
+  private static void verifyInMemoryState(OffHeapPartitionDedupMetadataManager metadataManager, int startPrimaryKeyId,
+      int recordCount, IndexSegment segment, HashFunction hashFunction) {
+    for (int primaryKeyValue = startPrimaryKeyId; primaryKeyValue < startPrimaryKeyId + recordCount;
+        primaryKeyValue++) {
+      Location location = getLocation(metadataManager, DedupTestUtils.getPrimaryKey(primaryKeyValue), hashFunction);
+      assertEquals(metadataManager.getSegment(location.getSegmentId()), segment);
+      assertEquals(Double.longBitsToDouble(location.getValue()), primaryKeyValue * 1000.0);
+    }
+  }
+
+  private static Location getLocation(OffHeapPartitionDedupMetadataManager metadataManager, PrimaryKey primaryKey,
+      HashFunction hashFunction) {
+    byte[] key = OffHeapRecordLocationMap.getKey(primaryKey, hashFunction);
+    long keyHigh = OffHeapRecordLocationMap.getKeyHigh(key);
+    long keyLow = OffHeapRecordLocationMap.getKeyLow(key);
+    Location location = new Location();
+    OffHeapRecordLocationMap bucket = null;
+    for (OffHeapRecordLocationMap candidate : metadataManager._buckets.values()) {
+      if (candidate.get(keyHigh, keyLow, location)) {
+        assertNull(bucket, "Primary key exists in multiple time buckets");
+        bucket = candidate;
+      }
+    }
+    assertTrue(bucket != null, "Primary key does not exist: " + primaryKey);
+    // Re-read the location from the bucket holding the key
+    bucket.get(keyHigh, keyLow, location);
+    return location;
+  }
+
+  private static DedupUtils.DedupRecordInfoReader generateDedupRecordInfoReader(int numberOfDocs,
+      int startPrimaryKeyValue) {
+    PrimaryKeyReader primaryKeyReader = mock(PrimaryKeyReader.class);
+    PinotSegmentColumnReader dedupTimeColumnReader = mock(PinotSegmentColumnReader.class);
+    for (int i = 0; i < numberOfDocs; i++) {
+      int primaryKeyValue = startPrimaryKeyValue + i;
+      when(primaryKeyReader.getPrimaryKey(i)).thenReturn(DedupTestUtils.getPrimaryKey(primaryKeyValue));
+      double time = primaryKeyValue * 1000;
+      when(dedupTimeColumnReader.getValue(i)).thenReturn(time);
+    }
+    return new DedupUtils.DedupRecordInfoReader(primaryKeyReader, dedupTimeColumnReader);
+  }
+}
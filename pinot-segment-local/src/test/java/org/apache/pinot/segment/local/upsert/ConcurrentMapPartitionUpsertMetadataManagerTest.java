@@ -1355,6 +1355,62 @@ public class ConcurrentMapPartitionUpsertMetadataManagerTest {
     }
   }
 
+  @Test
+  public void testParallelBootstrap()
+      throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      verifyParallelBootstrap(HashFunction.NONE, executorService);
+      verifyParallelBootstrap(HashFunction.MD5, executorService);
+      verifyParallelBootstrap(HashFunction.MURMUR3, executorService);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void verifyParallelBootstrap(HashFunction hashFunction, ExecutorService executorService)
+      throws Exception {
+    ConcurrentMapPartitionUpsertMetadataManager upsertMetadataManager =
+        new ConcurrentMapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0,
+            _contextBuilder.setHashFunction(hashFunction).build());
+    Map<Object, RecordLocation> recordLocationMap = upsertMetadataManager._primaryKeyToRecordLocationMap;
+
+    // segment0 is preloaded with validDocIds snapshot: 3 -> {0, 150}
+    ThreadSafeMutableRoaringBitmap validDocIds0 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment0 =
+        mockImmutableSegmentWithTimestamps(0, validDocIds0, null, getPrimaryKeyList(1, new int[]{3}),
+            new int[]{150});
+    upsertMetadataManager.doPreloadSegment(segment0, validDocIds0, null,
+        getRecordInfoListWithIntegerComparison(1, new int[]{3}, new int[]{150}, null).iterator());
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}, 0 -> {3, 100}
+    int[] primaryKeys1 = new int[]{0, 1, 2, 0};
+    ImmutableSegmentImpl segment1 =
+        mockImmutableSegmentWithTimestamps(1, new ThreadSafeMutableRoaringBitmap(), null,
+            getPrimaryKeyList(4, primaryKeys1), new int[]{100, 120, 100, 100});
+    // segment2: 1 -> {0, 110}, 2 -> {1, 100}, 3 -> {2, 100}
+    int[] primaryKeys2 = new int[]{1, 2, 3};
+    ImmutableSegmentImpl segment2 =
+        mockImmutableSegmentWithTimestamps(2, new ThreadSafeMutableRoaringBitmap(), null,
+            getPrimaryKeyList(3, primaryKeys2), new int[]{110, 100, 100});
+
+    PartitionUpsertBootstrapper bootstrapper = new PartitionUpsertBootstrapper(upsertMetadataManager, 4);
+    bootstrapper.addSegment(segment2);
+    bootstrapper.addSegment(segment1);
+    bootstrapper.bootstrap(executorService);
+
+    // 0: the later doc wins on tie within the same segment
+    // 1: the larger comparison value wins across segments
+    // 2: the segment with larger sequence number wins on tie across segments
+    // 3: the key preloaded with validDocIds snapshot is still resolved by the metadata manager
+    assertEquals(recordLocationMap.size(), 4);
+    checkRecordLocation(recordLocationMap, 0, segment1, 3, 100, hashFunction);
+    checkRecordLocation(recordLocationMap, 1, segment1, 1, 120, hashFunction);
+    checkRecordLocation(recordLocationMap, 2, segment2, 1, 100, hashFunction);
+    checkRecordLocation(recordLocationMap, 3, segment0, 0, 150, hashFunction);
+    assertEquals(validDocIds0.getMutableRoaringBitmap().toArray(), new int[]{0});
+  }
+
   @Test
   public void testAddRecordWithDeleteColumn()
       throws IOException {
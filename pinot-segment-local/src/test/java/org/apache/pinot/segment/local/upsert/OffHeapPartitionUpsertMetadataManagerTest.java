@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.LLCSegmentName;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap.Location;
+import org.apache.pinot.segment.local.utils.SegmentPreloadUtils;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+import org.mockito.MockedStatic;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPartitionUpsertMetadataManagerTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String REALTIME_TABLE_NAME = TableNameBuilder.REALTIME.tableNameWithType(RAW_TABLE_NAME);
+  private static final List<String> PRIMARY_KEY_COLUMNS = List.of("pk");
+  private static final List<String> COMPARISON_COLUMNS = List.of("timeCol");
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory(), "OffHeapPartitionUpsertMetadataManagerTest");
+
+  private UpsertContext.Builder _contextBuilder;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.forceMkdir(INDEX_DIR);
+    ServerMetrics.register(mock(ServerMetrics.class));
+  }
+
+  @BeforeMethod
+  public void setUpContextBuilder() {
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(INDEX_DIR);
+    when(tableDataManager.getSegmentLock(anyString())).thenReturn(new ReentrantLock());
+    _contextBuilder = new UpsertContext.Builder()
+        .setTableConfig(mock(TableConfig.class))
+        .setSchema(createSchema(DataType.INT))
+        .setTableDataManager(tableDataManager)
+        .setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS)
+        .setComparisonColumns(COMPARISON_COLUMNS);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws IOException {
+    FileUtils.forceDelete(INDEX_DIR);
+  }
+
+  @Test
+  public void testAddSegmentAndRecord()
+      throws IOException {
+    verifyAddSegmentAndRecord(HashFunction.NONE);
+    verifyAddSegmentAndRecord(HashFunction.MD5);
+    verifyAddSegmentAndRecord(HashFunction.MURMUR3);
+    verifyAddSegmentAndRecord(HashFunction.XXHASH);
+  }
+
+  private void verifyAddSegmentAndRecord(HashFunction hashFunction)
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0,
+            _contextBuilder.setHashFunction(hashFunction).build());
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}, 0 -> {3, 90} (out-of-order within the segment)
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    ImmutableSegmentImpl segment1 = mockImmutableSegment(1, validDocIds1);
+    upsertMetadataManager.addSegment(segment1, validDocIds1, null,
+        getRecordInfoList(new int[]{0, 1, 2, 0}, new int[]{100, 120, 100, 90}).iterator());
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 3);
+    checkRecordLocation(upsertMetadataManager, 0, segment1, 0, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment1, 2, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+
+    // segment2 (consuming): 3 -> {0, 100}, 2 -> {1, 120}, 1 -> {2, 100} (out-of-order), 0 -> {3, 100} (tie)
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2);
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(3), 0, 100, false)));
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(2), 1, 120, false)));
+    assertFalse(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(1), 2, 100, false)));
+    assertTrue(upsertMetadataManager.addRecord(segment2, new RecordInfo(makePrimaryKey(0), 3, 100, false)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 4);
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 3, 100);
+    checkRecordLocation(upsertMetadataManager, 1, segment1, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 2, segment2, 1, 120);
+    checkRecordLocation(upsertMetadataManager, 3, segment2, 0, 100);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 3});
+
+    // Remove the keys of segment1, only the keys still pointing to segment1 should be removed
+    upsertMetadataManager.removeSegment(segment1,
+        List.of(makePrimaryKey(0), makePrimaryKey(1), makePrimaryKey(2)).iterator());
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 3);
+    assertNull(getRecordLocation(upsertMetadataManager, 1));
+    checkRecordLocation(upsertMetadataManager, 0, segment2, 3, 100);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0,
+            _contextBuilder.setSchema(createSchema(DataType.DOUBLE)).setEnableSnapshot(true).setMetadataTTL(30)
+                .build());
+    ThreadSafeMutableRoaringBitmap validDocIds = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment = mockMutableSegment(1, validDocIds);
+    double[] timestamps = new double[]{80.5, 120.5, 100.5, 150.5};
+    for (int i = 0; i < timestamps.length; i++) {
+      upsertMetadataManager.addRecord(segment, new RecordInfo(makePrimaryKey(i), i, timestamps[i], false));
+    }
+    checkRecordLocation(upsertMetadataManager, 0, segment, 0, 80.5);
+
+    // Keys with comparison value smaller than 150.5 - 30 should be removed
+    upsertMetadataManager.removeExpiredPrimaryKeys();
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 2);
+    assertNull(getRecordLocation(upsertMetadataManager, 0));
+    assertNull(getRecordLocation(upsertMetadataManager, 2));
+    checkRecordLocation(upsertMetadataManager, 1, segment, 1, 120.5);
+    checkRecordLocation(upsertMetadataManager, 3, segment, 3, 150.5);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testRestoreFromCheckpoint()
+      throws IOException {
+    UpsertContext context = _contextBuilder.setEnableSnapshot(true).setEnablePreload(true)
+        .setMetadataManagerConfigs(Map.of(OffHeapPartitionUpsertMetadataManager.PERSISTENT_KEY, "true")).build();
+    File checkpointDir = new File(INDEX_DIR, "offheap_upsert_metadata_0/checkpoint");
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, context);
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 100}, 2 -> {2, 100}, 0 -> {3, 120}
+    // segment2: 2 -> {0, 150}, 3 -> {1, 150}
+    // segment3 (consuming): 4 -> {0, 200}
+    String segmentName1 = getSegmentName(1);
+    String segmentName2 = getSegmentName(2);
+    ImmutableSegmentImpl segment1 = createImmutableSegment(segmentName1);
+    upsertMetadataManager.addSegment(segment1, null, null,
+        getRecordInfoList(new int[]{0, 1, 2, 0}, new int[]{100, 100, 100, 120}).iterator());
+    ImmutableSegmentImpl segment2 = createImmutableSegment(segmentName2);
+    upsertMetadataManager.addSegment(segment2, null, null,
+        getRecordInfoList(new int[]{2, 3}, new int[]{150, 150}).iterator());
+    for (ImmutableSegmentImpl segment : List.of(segment1, segment2)) {
+      upsertMetadataManager._trackedSegments.add(segment);
+      upsertMetadataManager._updatedSegmentsSinceLastSnapshot.add(segment);
+    }
+    MutableSegment segment3 = mockMutableSegment(3, new ThreadSafeMutableRoaringBitmap());
+    assertTrue(upsertMetadataManager.addRecord(segment3, new RecordInfo(makePrimaryKey(4), 0, 200, false)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 5);
+
+    // Both the snapshots and the checkpoint are skipped while segments are being added or removed
+    Lock lock = upsertMetadataManager._checkpointLock.readLock();
+    lock.lock();
+    try {
+      upsertMetadataManager.takeSnapshot();
+    } finally {
+      lock.unlock();
+    }
+    assertFalse(segment1.hasSnapshotFile(V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME));
+    assertFalse(checkpointDir.exists());
+
+    upsertMetadataManager.takeSnapshot();
+    assertTrue(segment1.hasSnapshotFile(V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME));
+    assertTrue(segment2.hasSnapshotFile(V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME));
+    assertTrue(new File(checkpointDir, "metadata.json").isFile());
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+
+    // Restore the keys of both segments from the checkpoint, and the keys of the consuming segment are removed
+    OffHeapPartitionUpsertMetadataManager restoredMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, context);
+    ImmutableSegmentImpl restoredSegment1 = createImmutableSegment(segmentName1);
+    ImmutableSegmentImpl restoredSegment2 = createImmutableSegment(segmentName2);
+    preloadSegments(restoredMetadataManager, restoredSegment1, restoredSegment2);
+    assertFalse(restoredMetadataManager.isPreloading());
+    assertEquals(restoredMetadataManager.getNumPrimaryKeys(), 4);
+    checkRecordLocation(restoredMetadataManager, 0, restoredSegment1, 3, 120);
+    checkRecordLocation(restoredMetadataManager, 1, restoredSegment1, 1, 100);
+    checkRecordLocation(restoredMetadataManager, 2, restoredSegment2, 0, 150);
+    checkRecordLocation(restoredMetadataManager, 3, restoredSegment2, 1, 150);
+    assertNull(getRecordLocation(restoredMetadataManager, 4));
+    assertEquals(restoredSegment1.getValidDocIds().getMutableRoaringBitmap().toArray(), new int[]{1, 3});
+    assertEquals(restoredSegment2.getValidDocIds().getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    restoredMetadataManager.stop();
+    restoredMetadataManager.close();
+
+    // Only preload segment1, and the keys of segment2 are removed
+    restoredMetadataManager = new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, context);
+    restoredSegment1 = createImmutableSegment(segmentName1);
+    preloadSegments(restoredMetadataManager, restoredSegment1);
+    assertEquals(restoredMetadataManager.getNumPrimaryKeys(), 2);
+    checkRecordLocation(restoredMetadataManager, 0, restoredSegment1, 3, 120);
+    checkRecordLocation(restoredMetadataManager, 1, restoredSegment1, 1, 100);
+    assertNull(getRecordLocation(restoredMetadataManager, 2));
+    assertNull(getRecordLocation(restoredMetadataManager, 3));
+    restoredMetadataManager.stop();
+    restoredMetadataManager.close();
+
+    // The checkpoint is discarded when the validDocIds snapshot of a segment does not match it
+    ThreadSafeMutableRoaringBitmap staleValidDocIds = new ThreadSafeMutableRoaringBitmap();
+    staleValidDocIds.add(1);
+    createImmutableSegment(segmentName1).persistDocIdsSnapshot(V1Constants.VALID_DOC_IDS_SNAPSHOT_FILE_NAME,
+        staleValidDocIds);
+    restoredMetadataManager = new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, context);
+    preloadSegments(restoredMetadataManager);
+    assertEquals(restoredMetadataManager.getNumPrimaryKeys(), 0);
+    assertFalse(checkpointDir.exists());
+    restoredMetadataManager.stop();
+    restoredMetadataManager.close();
+  }
+
+  @Test
+  public void testUnsupportedReason() {
+    assertNull(OffHeapPartitionUpsertMetadataManager.getUnsupportedReason(_contextBuilder.build()));
+    assertNotNull(OffHeapPartitionUpsertMetadataManager.getUnsupportedReason(
+        _contextBuilder.setSchema(createSchema(DataType.STRING)).build()));
+    assertNotNull(OffHeapPartitionUpsertMetadataManager.getUnsupportedReason(
+        _contextBuilder.setSchema(createSchema(DataType.INT)).setComparisonColumns(List.of("timeCol", "pk")).build()));
+    assertNotNull(OffHeapPartitionUpsertMetadataManager.getUnsupportedReason(
+        _contextBuilder.setComparisonColumns(COMPARISON_COLUMNS).setDropOutOfOrderRecord(true).build()));
+  }
+
+  private static Schema createSchema(DataType comparisonDataType) {
+    return new Schema.SchemaBuilder()
+        .setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension(PRIMARY_KEY_COLUMNS.get(0), DataType.INT)
+        .addSingleValueDimension(COMPARISON_COLUMNS.get(0), comparisonDataType)
+        .setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS)
+        .build();
+  }
+
+  private static List<RecordInfo> getRecordInfoList(int[] primaryKeys, int[] timestamps) {
+    List<RecordInfo> recordInfoList = new ArrayList<>();
+    for (int i = 0; i < primaryKeys.length; i++) {
+      recordInfoList.add(new RecordInfo(makePrimaryKey(primaryKeys[i]), i, timestamps[i], false));
+    }
+    return recordInfoList;
+  }
+
+  private static ImmutableSegmentImpl mockImmutableSegment(int sequenceNumber,
+      ThreadSafeMutableRoaringBitmap validDocIds) {
+    ImmutableSegmentImpl segment = mock(ImmutableSegmentImpl.class);
+    when(segment.getSegmentName()).thenReturn(getSegmentName(sequenceNumber));
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    return segment;
+  }
+
+  private static ImmutableSegmentImpl createImmutableSegment(String segmentName)
+      throws IOException {
+    File indexDir = new File(INDEX_DIR, segmentName);
+    FileUtils.forceMkdir(indexDir);
+    SegmentMetadataImpl segmentMetadata = mock(SegmentMetadataImpl.class);
+    when(segmentMetadata.getName()).thenReturn(segmentName);
+    when(segmentMetadata.getIndexDir()).thenReturn(indexDir);
+    return new ImmutableSegmentImpl(mock(SegmentDirectory.class), segmentMetadata, new HashMap<>(), null);
+  }
+
+  private static MutableSegment mockMutableSegment(int sequenceNumber, ThreadSafeMutableRoaringBitmap validDocIds) {
+    MutableSegment segment = mock(MutableSegment.class);
+    when(segment.getSegmentName()).thenReturn(getSegmentName(sequenceNumber));
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    return segment;
+  }
+
+  private static void preloadSegments(OffHeapPartitionUpsertMetadataManager upsertMetadataManager,
+      ImmutableSegmentImpl... segments) {
+    try (MockedStatic<SegmentPreloadUtils> segmentPreloadUtils = mockStatic(SegmentPreloadUtils.class)) {
+      segmentPreloadUtils.when(() -> SegmentPreloadUtils.preloadSegments(any(), anyInt(), any(), any(), any(), any()))
+          .thenAnswer(invocation -> {
+            for (ImmutableSegmentImpl segment : segments) {
+              upsertMetadataManager.preloadSegment(segment);
+            }
+            return null;
+          });
+      upsertMetadataManager.preloadSegments(mock(IndexLoadingConfig.class));
+    }
+  }
+
+  private static String getSegmentName(int sequenceNumber) {
+    return new LLCSegmentName(RAW_TABLE_NAME, 0, sequenceNumber, System.currentTimeMillis()).toString();
+  }
+
+  private static PrimaryKey makePrimaryKey(int value) {
+    return new PrimaryKey(new Object[]{value});
+  }
+
+  private static Location getRecordLocation(OffHeapPartitionUpsertMetadataManager upsertMetadataManager,
+      int keyValue) {
+    byte[] key = upsertMetadataManager.getKey(makePrimaryKey(keyValue));
+    Location location = new Location();
+    return upsertMetadataManager._primaryKeyToRecordLocationMap.get(OffHeapRecordLocationMap.getKeyHigh(key),
+        OffHeapRecordLocationMap.getKeyLow(key), location) ? location : null;
+  }
+
+  private static void checkRecordLocation(OffHeapPartitionUpsertMetadataManager upsertMetadataManager, int keyValue,
+      IndexSegment segment, int docId, Comparable comparisonValue) {
+    Location location = getRecordLocation(upsertMetadataManager, keyValue);
+    assertNotNull(location);
+    assertSame(upsertMetadataManager.getSegment(location.getSegmentId()), segment);
+    assertEquals(location.getDocId(), docId);
+    assertEquals(upsertMetadataManager.decodeComparisonValue(location.getValue()), comparisonValue);
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.upsert.OffHeapRecordLocationMap.Location;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapRecordLocationMapTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "OffHeapRecordLocationMapTest");
+
+  @Test
+  public void testComputeAndRemove()
+      throws Exception {
+    try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(4, 2, "test")) {
+      Location location = new Location();
+      assertFalse(map.get(1L, 2L, location));
+
+      map.put(1L, 2L, 1, 10, 100L);
+      assertTrue(map.get(1L, 2L, location));
+      assertEquals(location.getSegmentId(), 1);
+      assertEquals(location.getDocId(), 10);
+      assertEquals(location.getValue(), 100L);
+
+      // Keep the location when the new value is smaller
+      map.compute(1L, 2L, current -> {
+        if (current.getValue() < 50L) {
+          current.set(2, 20, 50L);
+        }
+        return true;
+      });
+      assertTrue(map.get(1L, 2L, location));
+      assertEquals(location.getSegmentId(), 1);
+
+      // Do not add the absent key when the remapper returns false
+      map.compute(3L, 4L, current -> false);
+      assertFalse(map.get(3L, 4L, location));
+      assertEquals(map.size(), 1);
+
+      map.compute(1L, 2L, current -> false);
+      assertFalse(map.get(1L, 2L, location));
+      assertEquals(map.size(), 0);
+    }
+  }
+
+  @Test
+  public void testRandomOperations()
+      throws Exception {
+    // Use few shards with small capacity to exercise the resize and the backward shift deletion
+    try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(2, 2, "test")) {
+      Map<Long, Integer> expected = new HashMap<>();
+      Random random = new Random();
+      Location location = new Location();
+      for (int i = 0; i < 100_000; i++) {
+        // Use a small key range and keys sharing the low bits to get collisions
+        long key = random.nextInt(5000);
+        if (random.nextInt(3) == 0) {
+          map.compute(key << 32, key, current -> false);
+          expected.remove(key);
+        } else {
+          map.put(key << 32, key, i + 1, i, key);
+          expected.put(key, i + 1);
+        }
+      }
+      assertEquals(map.size(), expected.size());
+      for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+        long key = entry.getKey();
+        assertTrue(map.get(key << 32, key, location));
+        assertEquals(location.getSegmentId(), (int) entry.getValue());
+        assertEquals(location.getValue(), key);
+      }
+
+      // Remove the odd keys while iterating, each entry should be visited exactly once
+      Map<Long, Integer> numVisits = new HashMap<>();
+      map.forEach(current -> {
+        numVisits.merge(current.getValue(), 1, Integer::sum);
+        return current.getValue() % 2 == 1;
+      });
+      assertEquals(numVisits.size(), expected.size());
+      for (int count : numVisits.values()) {
+        assertEquals(count, 1);
+      }
+      expected.keySet().removeIf(key -> key % 2 == 1);
+      assertEquals(map.size(), expected.size());
+      for (long key : expected.keySet()) {
+        assertTrue(map.get(key << 32, key, location));
+      }
+    }
+  }
+
+  @Test
+  public void testCheckpointAndLoad()
+      throws Exception {
+    File workingDir = new File(TEMP_DIR, "working");
+    File checkpointDir = new File(TEMP_DIR, "checkpoint");
+    FileUtils.deleteQuietly(TEMP_DIR);
+    FileUtils.forceMkdir(workingDir);
+    try {
+      Map<Long, Integer> expected = new HashMap<>();
+      // Use small capacity to exercise the resize of the file backed shards
+      try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(4, 2, workingDir, "test")) {
+        for (int i = 0; i < 10_000; i++) {
+          long key = i;
+          map.put(key << 32, key, i + 1, i, key);
+          expected.put(key, i + 1);
+        }
+        map.checkpoint(checkpointDir);
+        // Updates after the checkpoint should not be loaded
+        map.put(-1L, -1L, 1, 1, 1L);
+      }
+      // Working files are deleted on close
+      assertEquals(workingDir.list().length, 0);
+
+      // Number of shards does not match
+      try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(8, 2, workingDir, "test")) {
+        assertFalse(map.load(checkpointDir));
+        assertEquals(map.size(), 0);
+      }
+
+      for (File dir : new File[]{workingDir, null}) {
+        try (OffHeapRecordLocationMap map = new OffHeapRecordLocationMap(4, 2, dir, "test")) {
+          map.put(-2L, -2L, 1, 1, 1L);
+          assertTrue(map.load(checkpointDir));
+          assertEquals(map.size(), expected.size());
+          Location location = new Location();
+          assertFalse(map.get(-1L, -1L, location));
+          assertFalse(map.get(-2L, -2L, location));
+          for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            long key = entry.getKey();
+            assertTrue(map.get(key << 32, key, location));
+            assertEquals(location.getSegmentId(), (int) entry.getValue());
+            assertEquals(location.getValue(), key);
+          }
+          // The loaded map can still be updated
+          map.compute(0L, 0L, current -> false);
+          map.put(-3L, -3L, 1, 1, 1L);
+          assertEquals(map.size(), expected.size());
+        }
+      }
+    } finally {
+      FileUtils.deleteQuietly(TEMP_DIR);
+    }
+  }
+}
@@ -89,6 +89,29 @@ public class TableUpsertMetadataManagerFactoryTest {
         instanceof ConcurrentMapPartitionUpsertMetadataManagerForConsistentDeletes);
   }
 
+  @Test
+  public void testCreateForOffHeapManagerClass() {
+    UpsertConfig upsertConfig = new UpsertConfig(UpsertConfig.Mode.FULL);
+    upsertConfig.setMetadataManagerClass(OffHeapTableUpsertMetadataManager.class.getName());
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(new File(RAW_TABLE_NAME));
+    TableUpsertMetadataManager tableUpsertMetadataManager =
+        TableUpsertMetadataManagerFactory.create(new PinotConfiguration(), createTableConfig(upsertConfig), SCHEMA,
+            tableDataManager, null);
+    assertTrue(tableUpsertMetadataManager instanceof OffHeapTableUpsertMetadataManager);
+    assertTrue(tableUpsertMetadataManager.getOrCreatePartitionManager(0)
+        instanceof OffHeapPartitionUpsertMetadataManager);
+
+    // Fall back to the on-heap map for partial upsert
+    upsertConfig = new UpsertConfig(UpsertConfig.Mode.PARTIAL);
+    upsertConfig.setMetadataManagerClass(OffHeapTableUpsertMetadataManager.class.getName());
+    tableUpsertMetadataManager =
+        TableUpsertMetadataManagerFactory.create(new PinotConfiguration(), createTableConfig(upsertConfig), SCHEMA,
+            tableDataManager, null);
+    assertTrue(tableUpsertMetadataManager.getOrCreatePartitionManager(0)
+        instanceof ConcurrentMapPartitionUpsertMetadataManager);
+  }
+
   @SuppressWarnings("deprecation")
   @Test
   public void testEnablePreload()
@@ -67,6 +67,11 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
   private static final String MAX_PARALLEL_SEGMENT_BUILDS = "realtime.max.parallel.segment.builds";
   private static final int DEFAULT_MAX_PARALLEL_SEGMENT_BUILDS = 4;
 
+  // Key of how many threads can be used by the server to decode and transform the stream messages for the tables with
+  // pipelined consumption enabled (streamIngestionConfig.numDecodeThreads). The threads are shared by all the consuming
+  // segments. A value of <= 0 disables pipelined consumption.
+  private static final String MAX_REALTIME_DECODE_THREADS = "realtime.max.decode.threads";
+
   // Key of how many parallel segment downloads can be made per table.
   // A value of <= 0 indicates unlimited.
   // Unlimited parallel downloads can make Pinot controllers receive high burst of download requests,
@@ -276,6 +281,11 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
     return _serverConfig.getProperty(MAX_PARALLEL_SEGMENT_BUILDS, DEFAULT_MAX_PARALLEL_SEGMENT_BUILDS);
   }
 
+  @Override
+  public int getMaxRealtimeDecodeThreads() {
+    return _serverConfig.getProperty(MAX_REALTIME_DECODE_THREADS, Runtime.getRuntime().availableProcessors());
+  }
+
   @Override
   public int getMaxParallelSegmentDownloads() {
     return _serverConfig.getProperty(MAX_PARALLEL_SEGMENT_DOWNLOADS, DEFAULT_MAX_PARALLEL_SEGMENT_DOWNLOADS);
@@ -61,6 +61,8 @@ public interface InstanceDataManagerConfig {
 
   int getMaxParallelSegmentBuilds();
 
+  int getMaxRealtimeDecodeThreads();
+
   int getMaxParallelSegmentDownloads();
 
   String getSegmentDirectoryLoader();
@@ -61,6 +61,8 @@ public class IndexingConfig extends BaseJsonConfig {
   // Whether to allow creating star-tree when server loads the segment
   private boolean _enableDynamicStarTreeCreation;
   private SegmentPartitionConfig _segmentPartitionConfig;
+  // Columns whose min/max values are published into the segment ZK metadata for broker side segment pruning
+  private List<String> _brokerPruningColumns;
   private boolean _aggregateMetrics;
   private boolean _nullHandlingEnabled;
   private boolean _columnMajorSegmentBuilderEnabled = true;
@@ -320,6 +322,15 @@ public class IndexingConfig extends BaseJsonConfig {
     _segmentPartitionConfig = segmentPartitionConfig;
   }
 
+  @Nullable
+  public List<String> getBrokerPruningColumns() {
+    return _brokerPruningColumns;
+  }
+
+  public void setBrokerPruningColumns(List<String> brokerPruningColumns) {
+    _brokerPruningColumns = brokerPruningColumns;
+  }
+
   public boolean isAggregateMetrics() {
     return _aggregateMetrics;
   }
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.spi.config.table;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.pinot.spi.config.BaseJsonConfig;
+import org.apache.pinot.spi.utils.TimeUtils;
+
+
+/**
+ * The {@code RollupConfig} registers an OFFLINE table as a rollup of a source table, e.g. the output of the
+ * merge-rollup task with the time column rounded to {@code roundBucketTimePeriod}. The broker can then answer the
+ * compatible aggregation queries on the source table from the rollup table, as long as the query time range starts
+ * after the oldest segment of the rollup table.
+ * <p>The rollup table must share the time column (name and format) of the source table. The dimension columns of the
+ * rollup table are the group-by columns of the rollup, and the metric columns are aggregated with the configured
+ * aggregation types ({@code SUM} by default, same as the merge-rollup task). The dimension columns erased by the
+ * rollup (e.g. {@code dimensionsToErase} of the merge-rollup task) only hold the default value, and must be declared
+ * in {@code erasedDimensions} so that the queries referencing them are not answered from the rollup table.
+ */
+public class RollupConfig extends BaseJsonConfig {
+  // Raw name of the source table
+  private final String _sourceTableName;
+
+  // Period the time column values are rounded to (e.g. '1h', '1d')
+  private final String _roundBucketTimePeriod;
+
+  // Map from metric column to aggregation type (SUM, MIN or MAX)
+  private final Map<String, String> _aggregationTypes;
+
+  // Dimension columns erased by the rollup, filled with the default value
+  private final List<String> _erasedDimensions;
+
+  @JsonCreator
+  public RollupConfig(@JsonProperty(value = "sourceTableName", required = true) String sourceTableName,
+      @JsonProperty(value = "roundBucketTimePeriod", required = true) String roundBucketTimePeriod,
+      @JsonProperty("aggregationTypes") @Nullable Map<String, String> aggregationTypes,
+      @JsonProperty("erasedDimensions") @Nullable List<String> erasedDimensions) {
+    Preconditions.checkArgument(sourceTableName != null, "'sourceTableName' must be configured");
+    Preconditions.checkArgument(roundBucketTimePeriod != null && TimeUtils.convertPeriodToMillis(roundBucketTimePeriod)
+        > 0, "Invalid 'roundBucketTimePeriod': %s", roundBucketTimePeriod);
+    _sourceTableName = sourceTableName;
+    _roundBucketTimePeriod = roundBucketTimePeriod;
+    _aggregationTypes = aggregationTypes;
+    _erasedDimensions = erasedDimensions;
+  }
+
+  @JsonProperty("sourceTableName")
+  public String getSourceTableName() {
+    return _sourceTableName;
+  }
+
+  @JsonProperty("roundBucketTimePeriod")
+  public String getRoundBucketTimePeriod() {
+    return _roundBucketTimePeriod;
+  }
+
+  @Nullable
+  @JsonProperty("aggregationTypes")
+  public Map<String, String> getAggregationTypes() {
+    return _aggregationTypes;
+  }
+
+  @Nullable
+  @JsonProperty("erasedDimensions")
+  public List<String> getErasedDimensions() {
+    return _erasedDimensions;
+  }
+}
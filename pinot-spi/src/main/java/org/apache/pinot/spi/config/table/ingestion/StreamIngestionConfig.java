@@ -42,6 +42,11 @@ public class StreamIngestionConfig extends BaseJsonConfig {
   @JsonPropertyDescription("Whether to track offsets of the filtered stream messages during consumption.")
   private boolean _trackFilteredMessageOffsets;
 
+  @JsonPropertyDescription("Max number of threads used to decode and transform the stream messages of each consuming "
+      + "partition in parallel with the indexing. The threads are taken from the decode threads shared by the server. "
+      + "0 decodes, transforms and indexes on the consumer thread.")
+  private int _numDecodeThreads;
+
   @JsonPropertyDescription("Whether pauseless consumption is enabled for the table")
   private boolean _pauselessConsumptionEnabled;
 
@@ -87,6 +92,14 @@ public class StreamIngestionConfig extends BaseJsonConfig {
     return _trackFilteredMessageOffsets;
   }
 
+  public int getNumDecodeThreads() {
+    return _numDecodeThreads;
+  }
+
+  public void setNumDecodeThreads(int numDecodeThreads) {
+    _numDecodeThreads = numDecodeThreads;
+  }
+
   public boolean isPauselessConsumptionEnabled() {
     return _pauselessConsumptionEnabled;
   }
@@ -38,10 +38,11 @@ import org.slf4j.LoggerFactory;
  * In order to create a new executor, the {@code create} methods should be called.
  * These methods take an executor type as an argument.
  *
- * Pinot includes two executor service plugins:
+ * Pinot includes three executor service plugins:
  * <ul>
  *   <li>{@code cached}: creates a new cached thread pool</li>
  *   <li>{@code fixed}: creates a new fixed thread pool.</li>
+ *   <li>{@code workStealing}: creates a new work-stealing pool that compensates blocked tasks.</li>
  * </ul>
  *
  * @see ServiceLoader
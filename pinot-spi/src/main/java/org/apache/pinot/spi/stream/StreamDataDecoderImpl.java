@@ -50,12 +50,20 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
 
   @Override
   public StreamDataDecoderResult decode(StreamMessage message) {
+    _reuse.clear();
+    return decode(message, _reuse);
+  }
+
+  /**
+   * Decodes the message into the given destination row instead of the reused one, so that the decoded rows can be
+   * held across multiple decode calls.
+   */
+  public StreamDataDecoderResult decode(StreamMessage message, GenericRow destination) {
     try {
-      _reuse.clear();
       Object value = message.getValue();
       assert value != null;
       int length = message.getLength();
-      GenericRow row = _valueDecoder.decode(value, 0, length, _reuse);
+      GenericRow row = _valueDecoder.decode(value, 0, length, destination);
       if (row != null) {
         if (message.getKey() != null) {
           row.putValue(KEY, new String(message.getKey(), StandardCharsets.UTF_8));
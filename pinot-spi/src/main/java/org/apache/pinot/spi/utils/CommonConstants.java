@@ -409,6 +409,12 @@ public class CommonConstants {
     public static final String CONFIG_OF_MAX_REDUCE_THREADS_PER_QUERY = "pinot.broker.max.reduce.threads.per.query";
     public static final int DEFAULT_MAX_REDUCE_THREADS_PER_QUERY =
         Math.max(1, Math.min(10, Runtime.getRuntime().availableProcessors() / 2));
+
+    // Merge the group-by results of the servers as they arrive instead of after all the servers responded, so that the
+    // reduce work overlaps with waiting for the slower servers.
+    public static final String CONFIG_OF_ENABLE_INCREMENTAL_GROUP_BY_REDUCE =
+        "pinot.broker.incremental.group.by.reduce.enabled";
+    public static final boolean DEFAULT_ENABLE_INCREMENTAL_GROUP_BY_REDUCE = false;
     // Same logic as CombineOperatorUtils
 
     // Config for Jersey ThreadPoolExecutorProvider.
@@ -497,6 +503,54 @@ public class CommonConstants {
         "pinot.broker.enable.partition.metadata.manager";
     public static final boolean DEFAULT_ENABLE_PARTITION_METADATA_MANAGER = true;
 
+    // Whether to track the total docs of the tables from the segment ZK metadata, which is used by the multi-stage
+    // query planner for cost-based join ordering and join distribution selection. Enabling it requires reading the
+    // segment ZK metadata for all the tables, including the ones without segment pruners.
+    public static final String CONFIG_OF_ENABLE_TABLE_TOTAL_DOCS_MANAGER =
+        "pinot.broker.enable.table.total.docs.manager";
+    public static final boolean DEFAULT_ENABLE_TABLE_TOTAL_DOCS_MANAGER = false;
+
+    // Broker result cache for single-stage queries. Results are keyed on the rewritten query and the routed segments,
+    // and invalidated when the routing of a queried table changes. Results of queries touching a REALTIME table are
+    // kept at most the realtime TTL because consuming segments keep changing without a routing change.
+    public static final String CONFIG_OF_ENABLE_RESULT_CACHE = "pinot.broker.result.cache.enabled";
+    public static final boolean DEFAULT_ENABLE_RESULT_CACHE = false;
+    // Maximum number of result rows held by the cache. Each entry weighs its number of rows plus one.
+    public static final String CONFIG_OF_RESULT_CACHE_MAX_ROWS = "pinot.broker.result.cache.max.rows";
+    public static final long DEFAULT_RESULT_CACHE_MAX_ROWS = 1_000_000L;
+    public static final String CONFIG_OF_RESULT_CACHE_OFFLINE_TTL_MS = "pinot.broker.result.cache.offline.ttl.ms";
+    public static final long DEFAULT_RESULT_CACHE_OFFLINE_TTL_MS = 3_600_000L;
+    public static final String CONFIG_OF_RESULT_CACHE_REALTIME_TTL_MS = "pinot.broker.result.cache.realtime.ttl.ms";
+    public static final long DEFAULT_RESULT_CACHE_REALTIME_TTL_MS = 10_000L;
+
+    // Query coalescing (single-flight) for single-stage queries. Identical queries routed to the same segments while
+    // one of them is in flight wait for its response instead of being sent to the servers again.
+    public static final String CONFIG_OF_ENABLE_QUERY_COALESCING = "pinot.broker.query.coalescing.enabled";
+    public static final boolean DEFAULT_ENABLE_QUERY_COALESCING = false;
+
+    // Hedged requests for single-stage queries. When a server has not responded within the configured percentile of
+    // the server latencies of the table, the query for its segments is re-issued to another replica and the first
+    // response is used. The latencies are tracked by the ServerRoutingStatsManager, so stats collection must be enabled
+    // (see AdaptiveServerSelector#CONFIG_OF_ENABLE_STATS_COLLECTION).
+    public static final String CONFIG_OF_ENABLE_HEDGED_REQUESTS = "pinot.broker.hedged.requests.enabled";
+    public static final boolean DEFAULT_ENABLE_HEDGED_REQUESTS = false;
+    public static final String CONFIG_OF_HEDGED_REQUESTS_LATENCY_PERCENTILE =
+        "pinot.broker.hedged.requests.latency.percentile";
+    public static final double DEFAULT_HEDGED_REQUESTS_LATENCY_PERCENTILE = 95.0;
+    // Lower bound of the delay before sending hedged requests, to avoid hedging queries that are fast anyway
+    public static final String CONFIG_OF_HEDGED_REQUESTS_MIN_DELAY_MS = "pinot.broker.hedged.requests.min.delay.ms";
+    public static final long DEFAULT_HEDGED_REQUESTS_MIN_DELAY_MS = 10L;
+    public static final String CONFIG_OF_MAX_HEDGED_REQUESTS_PER_QUERY = "pinot.broker.hedged.requests.max.per.query";
+    public static final int DEFAULT_MAX_HEDGED_REQUESTS_PER_QUERY = 2;
+    // Caps the extra load: hedged requests can be at most this percentage of the regular server requests
+    public static final String CONFIG_OF_HEDGED_REQUESTS_BUDGET_PERCENT = "pinot.broker.hedged.requests.budget.percent";
+    public static final double DEFAULT_HEDGED_REQUESTS_BUDGET_PERCENT = 5.0;
+
+    // Rewrite the compatible single-stage aggregation queries to the rollup tables registered for the queried table
+    // (see RollupConfig), falling back to the raw table for the time range not covered by the rollup.
+    public static final String CONFIG_OF_ENABLE_ROLLUP_QUERY_REWRITE = "pinot.broker.rollup.query.rewrite.enabled";
+    public static final boolean DEFAULT_ENABLE_ROLLUP_QUERY_REWRITE = false;
+
     public static final String CONFIG_OF_ROUTING_ASSIGNMENT_CHANGE_PROCESS_PARALLELISM =
         "pinot.broker.routing.assignment.change.process.parallelism";
     public static final int DEFAULT_ROUTING_ASSIGNMENT_CHANGE_PROCESS_PARALLELISM =
@@ -638,6 +692,17 @@ public class CommonConstants {
     // TODO: Change this default to something very high, as this _optimnization_ is usually not beneficial.
     public static final int DEFAULT_SORT_EXCHANGE_COPY_THRESHOLD = 10_000;
 
+    /// Config for the broadcast join row count threshold in multi-stage engine.
+    ///
+    /// When a join does not have a distribution hint and the estimated row count of its right input is known (see
+    /// [#CONFIG_OF_ENABLE_TABLE_TOTAL_DOCS_MANAGER]) and not larger than this threshold, the right input is broadcast
+    /// to the workers of the left input instead of hash distributing both inputs.
+    ///
+    /// A non-positive value disables the optimization.
+    public static final String CONFIG_OF_BROADCAST_JOIN_ROW_COUNT_THRESHOLD =
+        "pinot.broker.multistage.broadcast.join.row.count.threshold";
+    public static final long DEFAULT_BROADCAST_JOIN_ROW_COUNT_THRESHOLD = -1L;
+
     public static class Request {
       public static final String SQL = "sql";
       public static final String SQL_V1 = "sqlV1";
@@ -756,6 +821,12 @@ public class CommonConstants {
         /** Throw an exception on reaching num_groups_limit instead of just setting a flag. */
         public static final String ERROR_ON_NUM_GROUPS_LIMIT = "errorOnNumGroupsLimit";
 
+        /**
+         * Spill the groups to local disk on reaching num_groups_limit instead of dropping the new groups, so that the
+         * MSE aggregation results stay exact. Takes precedence over {@link #ERROR_ON_NUM_GROUPS_LIMIT}.
+         */
+        public static final String SPILL_ON_NUM_GROUPS_LIMIT = "spillOnNumGroupsLimit";
+
         public static final String NUM_GROUPS_LIMIT = "numGroupsLimit";
         // Not actually accepted as Query Option but faked as one during MSE
         public static final String NUM_GROUPS_WARNING_LIMIT = "numGroupsWarningLimit";
@@ -793,6 +864,10 @@ public class CommonConstants {
         public static final String MAX_ROWS_IN_WINDOW = "maxRowsInWindow";
         public static final String WINDOW_OVERFLOW_MODE = "windowOverflowMode";
 
+        // Max number of rows kept in memory by the MSE sort operators, rows beyond it are spilled to local disk and
+        // merged back (external merge sort). Unlimited when not set.
+        public static final String MAX_ROWS_IN_SORT = "maxRowsInSort";
+
         // Indicates the maximum length of the serialized response per server for a query.
         public static final String MAX_SERVER_RESPONSE_SIZE_BYTES = "maxServerResponseSizeBytes";
 
@@ -889,6 +964,44 @@ public class CommonConstants {
 
         /// Option to customize the value of [Broker#CONFIG_OF_SORT_EXCHANGE_COPY_THRESHOLD]
         public static final String SORT_EXCHANGE_COPY_THRESHOLD = "sortExchangeCopyThreshold";
+
+        /// Option to customize the value of [Broker#CONFIG_OF_BROADCAST_JOIN_ROW_COUNT_THRESHOLD]
+        public static final String BROADCAST_JOIN_ROW_COUNT_THRESHOLD = "broadcastJoinRowCountThreshold";
+
+        /// Option to enable or disable the broker result cache for the query, overriding
+        /// [Broker#CONFIG_OF_ENABLE_RESULT_CACHE]. It has no effect when the cache is not configured on the broker.
+        public static final String USE_RESULT_CACHE = "useResultCache";
+
+        /// Option to enable or disable query coalescing for the query, overriding
+        /// [Broker#CONFIG_OF_ENABLE_QUERY_COALESCING]. It has no effect when coalescing is not enabled on the broker.
+        public static final String USE_QUERY_COALESCING = "useQueryCoalescing";
+
+        /// Option to skip the server segment result cache for the query (enabled by default when the cache is
+        /// configured on the server, see [Server#SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES])
+        public static final String USE_SEGMENT_RESULT_CACHE = "useSegmentResultCache";
+
+        /// Option to skip the server filter bitmap cache for the query (enabled by default when the cache is
+        /// configured on the server, see [Server#FILTER_BITMAP_CACHE_MAX_SIZE_BYTES])
+        public static final String USE_FILTER_BITMAP_CACHE = "useFilterBitmapCache";
+
+        /// Option to extrapolate the additive aggregation results (COUNT, SUM) of a query over the segments selected by
+        /// the [#TABLE_SAMPLER] to the whole table. Extrapolation only applies to the 'uniform' sampler, which selects
+        /// each segment with a fixed probability. It has no effect for the other samplers (e.g. 'firstN') or when no
+        /// sampler is set.
+        public static final String EXTRAPOLATE_SAMPLED_AGGREGATIONS = "extrapolateSampledAggregations";
+
+        /// Option to enable or disable the incremental reduce of the group-by results for the query, overriding
+        /// [Broker#CONFIG_OF_ENABLE_INCREMENTAL_GROUP_BY_REDUCE]
+        public static final String USE_INCREMENTAL_GROUP_BY_REDUCE = "useIncrementalGroupByReduce";
+
+        /// Option to enable or disable hedged requests for the query, overriding
+        /// [Broker#CONFIG_OF_ENABLE_HEDGED_REQUESTS]. It has no effect when hedging is not enabled on the broker.
+        public static final String USE_HEDGED_REQUESTS = "useHedgedRequests";
+
+        /// Option to enable or disable answering the query from the rollup tables, overriding
+        /// [Broker#CONFIG_OF_ENABLE_ROLLUP_QUERY_REWRITE]. It has no effect when the rewrite is not enabled on the
+        /// broker.
+        public static final String USE_ROLLUP_TABLES = "useRollupTables";
       }
 
       public static class QueryOptionValue {
@@ -944,6 +1057,7 @@ public class CommonConstants {
       public static final String PRUNE_EMPTY_JOIN_LEFT = "PruneEmptyJoinLeft";
       public static final String PRUNE_EMPTY_JOIN_RIGHT = "PruneEmptyJoinRight";
       public static final String JOIN_TO_ENRICHED_JOIN = "JoinToEnrichedJoin";
+      public static final String JOIN_REORDER = "JoinReorder";
     }
 
     /**
@@ -961,7 +1075,8 @@ public class CommonConstants {
         PlannerRuleNames.AGGREGATE_UNION_AGGREGATE,
         PlannerRuleNames.JOIN_TO_ENRICHED_JOIN,
         PlannerRuleNames.AGGREGATE_FUNCTION_REWRITE,
-        PlannerRuleNames.JOIN_PUSH_TRANSITIVE_PREDICATES
+        PlannerRuleNames.JOIN_PUSH_TRANSITIVE_PREDICATES,
+        PlannerRuleNames.JOIN_REORDER
     );
 
     public static final String CONFIG_OF_BROKER_MSE_PLANNER_DISABLED_RULES = "pinot.broker.mse.planner.disabled.rules";
@@ -1259,6 +1374,17 @@ public class CommonConstants {
     public static final String CONFIG_OF_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD =
         QUERY_EXECUTOR_CONFIG_PREFIX + "." + GROUPBY_TRIM_THRESHOLD;
     public static final int DEFAULT_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD = 1_000_000;
+    // Max size in bytes of the per-segment aggregation result cache for immutable segments, 0 to disable the cache
+    public static final String SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES = "segment.result.cache.max.size.bytes";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES;
+    public static final long DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES = 0L;
+    // Heap budget in bytes for the serialized bitmaps of the filter predicate bitmap cache for immutable segments, 0 to
+    // disable the cache
+    public static final String FILTER_BITMAP_CACHE_MAX_SIZE_BYTES = "filter.bitmap.cache.max.size.bytes";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_FILTER_BITMAP_CACHE_MAX_SIZE_BYTES =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + FILTER_BITMAP_CACHE_MAX_SIZE_BYTES;
+    public static final long DEFAULT_QUERY_EXECUTOR_FILTER_BITMAP_CACHE_MAX_SIZE_BYTES = 0L;
     // Do sort-aggregation when LIMIT is below this threshold
     public static final int DEFAULT_SORT_AGGREGATE_LIMIT_THRESHOLD = 10_000;
     // Use sequential instead of pair-wise combine for sort-aggr when numSegments is below this threshold
@@ -1833,6 +1959,9 @@ public class CommonConstants {
     public static final String CRYPTER_NAME = "segment.crypter";
     public static final String PARTITION_METADATA = "segment.partition.metadata";
     public static final String CUSTOM_MAP = "custom.map";
+    // Prefixes of the custom map keys holding the min/max values of the broker pruning columns
+    public static final String PRUNING_MIN_VALUE_KEY_PREFIX = "pruning.minValue.";
+    public static final String PRUNING_MAX_VALUE_KEY_PREFIX = "pruning.maxValue.";
     public static final String SIZE_IN_BYTES = "segment.size.in.bytes";
 
     /**
@@ -1990,6 +2119,22 @@ public class CommonConstants {
     public static final String KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES = "pinot.query.runner.max.msg.size.bytes";
     public static final int DEFAULT_MAX_INBOUND_QUERY_DATA_BLOCK_SIZE_BYTES = 16 * 1024 * 1024;
 
+    /**
+     * Configuration for the compression of the data blocks sent to other servers through the mailboxes.
+     *
+     * Supported codecs are NONE (default), LZ4 and ZSTANDARD. Blocks are only compressed when the receiver supports
+     * it, when they are larger than the min block size, and are sent uncompressed when the compressed size is larger
+     * than the max ratio of the uncompressed size.
+     */
+    public static final String KEY_OF_MAILBOX_COMPRESSION_CODEC = "pinot.query.runner.mailbox.compression.codec";
+    public static final String DEFAULT_MAILBOX_COMPRESSION_CODEC = "NONE";
+    public static final String KEY_OF_MAILBOX_COMPRESSION_MIN_BLOCK_SIZE_BYTES =
+        "pinot.query.runner.mailbox.compression.min.block.size.bytes";
+    public static final int DEFAULT_MAILBOX_COMPRESSION_MIN_BLOCK_SIZE_BYTES = 64 * 1024;
+    public static final String KEY_OF_MAILBOX_COMPRESSION_MAX_RATIO =
+        "pinot.query.runner.mailbox.compression.max.ratio";
+    public static final double DEFAULT_MAILBOX_COMPRESSION_MAX_RATIO = 0.8;
+
 
     /**
      * Configuration for channel idle timeout in seconds.
@@ -2054,20 +2199,40 @@ public class CommonConstants {
     /// successful queries and errors.
     public static final String KEY_OF_LOG_STATS = "logStats";
 
+    /// Mode when the right table of a hash join reaches the max rows in join:
+    /// - THROW: Break right table build process, and throw exception, no JOIN with left table performed.
+    /// - BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
+    /// - SPILL: Partition both sides of the join into local spill files and join them partition by partition, keeping
+    ///   at most max rows in join rows of the right table in memory (grace hash join). Results are complete.
     public enum JoinOverFlowMode {
-      THROW, BREAK
+      THROW, BREAK, SPILL
     }
 
+    /// Local directory used by multi-stage operators to spill rows that do not fit in their in-memory budget. Each
+    /// operator creates its own sub-directory, which is removed when the operator finishes.
+    /// Defaults to [#DEFAULT_SPILL_DIR_NAME] under the JVM temporary directory.
+    public static final String KEY_OF_SPILL_DIR = "pinot.query.runner.spill.dir";
+    public static final String DEFAULT_SPILL_DIR_NAME = "pinot-mse-spill";
+
     /**
      * Configuration for window overflow.
      */
     public static final String KEY_OF_MAX_ROWS_IN_WINDOW = "pinot.query.window.max.rows";
     public static final String KEY_OF_WINDOW_OVERFLOW_MODE = "pinot.query.window.overflow.mode";
 
+    /// Mode when the window cache reaches the max rows in window:
+    /// - THROW: Break window cache build process, and throw exception, no WINDOW operation performed.
+    /// - BREAK: Break window cache build process, continue to perform WINDOW operation, results might be partial.
+    /// - SPILL: Partition the cached rows on the window keys into local spill files and process them one at a time.
+    ///   Results are complete.
     public enum WindowOverFlowMode {
-      THROW, BREAK
+      THROW, BREAK, SPILL
     }
 
+    /// Max number of rows the sort operators keep in memory before spilling sorted runs into [#KEY_OF_SPILL_DIR].
+    /// Can be overridden per query with the `maxRowsInSort` query option. Unlimited when not set.
+    public static final String KEY_OF_MAX_ROWS_IN_SORT = "pinot.query.sort.max.rows";
+
     /**
      * Constants related to plan versions.
      */